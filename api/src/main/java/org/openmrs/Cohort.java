@@ -19,13 +19,13 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.ReportService;
 import org.openmrs.cohort.CohortDefinition;
 import org.openmrs.report.EvaluationContext;
+import org.openmrs.util.CompressedIntegerSet;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
@@ -35,7 +35,11 @@ import org.simpleframework.xml.Root;
  * This class represents a list of patientIds. If it is generated from a CohortDefinition via
  * {@link ReportService#evaluate(org.openmrs.report.ReportSchema, Cohort, EvaluationContext)} then
  * it will contain a link back to the CohortDefinition it came from and the EvalutionContext that
- * definition was evaluated in.
+ * definition was evaluated in. <br/>
+ * <br/>
+ * Members of a new Cohort are stored in a {@link CompressedIntegerSet}, and the static set
+ * operations ({@link #union(Cohort, Cohort)}, {@link #intersect(Cohort, Cohort)} and
+ * {@link #subtract(Cohort, Cohort)}) work bitmap-to-bitmap without boxing every member.
  * 
  * @see org.openmrs.cohort.CohortDefinition
  */
@@ -59,7 +63,7 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	private EvaluationContext evaluationContext;
 	
 	public Cohort() {
-		memberIds = new TreeSet<Integer>();
+		memberIds = new CompressedIntegerSet();
 	}
 	
 	/**
@@ -240,11 +244,8 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	 */
 	public static Cohort union(Cohort a, Cohort b) {
 		Cohort ret = new Cohort();
-		ret.setName("(" + a.getName() + " + " + b.getName() + ")");
-		if (a != null)
-			ret.getMemberIds().addAll(a.getMemberIds());
-		if (b != null)
-			ret.getMemberIds().addAll(b.getMemberIds());
+		ret.setName("(" + (a == null ? "NULL" : a.getName()) + " + " + (b == null ? "NULL" : b.getName()) + ")");
+		ret.setMemberIds(CompressedIntegerSet.or(getMemberSet(a), getMemberSet(b)));
 		return ret;
 	}
 	
@@ -258,10 +259,7 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	public static Cohort intersect(Cohort a, Cohort b) {
 		Cohort ret = new Cohort();
 		ret.setName("(" + (a == null ? "NULL" : a.getName()) + " * " + (b == null ? "NULL" : b.getName()) + ")");
-		if (a != null && b != null) {
-			ret.getMemberIds().addAll(a.getMemberIds());
-			ret.getMemberIds().retainAll(b.getMemberIds());
-		}
+		ret.setMemberIds(CompressedIntegerSet.and(getMemberSet(a), getMemberSet(b)));
 		return ret;
 	}
 	
@@ -274,15 +272,24 @@ public class Cohort extends BaseOpenmrsData implements Serializable {
 	 */
 	public static Cohort subtract(Cohort a, Cohort b) {
 		Cohort ret = new Cohort();
-		ret.setName("(" + a.getName() + " - " + b.getName() + ")");
-		if (a != null) {
-			ret.getMemberIds().addAll(a.getMemberIds());
-			if (b != null)
-				ret.getMemberIds().removeAll(b.getMemberIds());
-		}
+		ret.setName("(" + (a == null ? "NULL" : a.getName()) + " - " + (b == null ? "NULL" : b.getName()) + ")");
+		ret.setMemberIds(CompressedIntegerSet.andNot(getMemberSet(a), getMemberSet(b)));
 		return ret;
 	}
 	
+	/**
+	 * Gets the members of the given cohort as a compressed bitmap, copying them only if the cohort
+	 * is not already backed by one (e.g. a cohort loaded by hibernate)
+	 * 
+	 * @param cohort the cohort, may be null
+	 * @return the member bitmap, or null if the cohort or its members are null
+	 */
+	private static CompressedIntegerSet getMemberSet(Cohort cohort) {
+		if (cohort == null || cohort.getMemberIds() == null)
+			return null;
+		return CompressedIntegerSet.valueOf(cohort.getMemberIds());
+	}
+	
 	// getters and setters
 	
 	@Attribute(required = false)
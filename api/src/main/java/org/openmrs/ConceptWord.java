@@ -13,6 +13,7 @@
  */
 package org.openmrs;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -252,11 +253,26 @@ public class ConceptWord implements java.io.Serializable, Comparable<ConceptWord
 	 */
 	
 	public static Set<ConceptWord> makeConceptWords(Concept concept) {
+		return makeConceptWords(concept, Context.getConceptService().getConceptStopWords(Context.getLocale()));
+	}
+	
+	/**
+	 * Makes the concept words of a concept leaving out the given stop words. This does not use the
+	 * {@link Context}, so it can be called from threads that have no user context or session as
+	 * long as the names of the concept are loaded.
+	 * 
+	 * @param concept The concept from which to make the list of concept words.
+	 * @param stopWords the upper case words to leave out
+	 * @return Returns a list of unique concept words based on the specified concept.
+	 * @should leave out the given stop words
+	 * @since 1.9
+	 */
+	public static Set<ConceptWord> makeConceptWords(Concept concept, Collection<String> stopWords) {
 		Set<ConceptWord> words = new HashSet<ConceptWord>();
 		
 		for (ConceptName name : concept.getNames()) {
 			if (!name.isVoided()) {
-				List<String> uniqueParts = getUniqueWords(name.getName());
+				List<String> uniqueParts = getUniqueWords(splitPhrase(name.getName()), stopWords);
 				for (String part : uniqueParts) {
 					words.add(new ConceptWord(part, concept, name, name.getLocale()));
 				}
@@ -286,14 +302,23 @@ public class ConceptWord implements java.io.Serializable, Comparable<ConceptWord
 	public static List<String> getUniqueWords(String phrase, Locale locale) {
 		
 		String[] parts = splitPhrase(phrase);
+		if (parts == null)
+			return new Vector<String>();
+		
+		return getUniqueWords(parts, Context.getConceptService().getConceptStopWords(locale));
+	}
+	
+	/**
+	 * @return the distinct non blank parts in upper case, leaving out the stop words
+	 */
+	private static List<String> getUniqueWords(String[] parts, Collection<String> stopWords) {
 		List<String> uniqueParts = new Vector<String>();
 		
 		if (parts != null) {
-			List<String> conceptStopWords = Context.getConceptService().getConceptStopWords(locale);
 			for (String part : parts) {
 				if (!StringUtils.isBlank(part)) {
 					String upper = part.trim().toUpperCase();
-					if (!conceptStopWords.contains(upper) && !uniqueParts.contains(upper))
+					if (!stopWords.contains(upper) && !uniqueParts.contains(upper))
 						uniqueParts.add(upper);
 				}
 			}
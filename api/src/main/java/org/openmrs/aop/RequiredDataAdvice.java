@@ -18,9 +18,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openmrs.OpenmrsObject;
 import org.openmrs.Retireable;
@@ -84,6 +88,9 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 	
 	//private static Log log = LogFactory.getLog(RequiredDataAdvice.class);
 	
+	// the child collections of each class of OpenmrsObject that has been handled so far
+	private static final Map<Class<?>, List<ChildCollectionAccessor>> childCollectionAccessors = new ConcurrentHashMap<Class<?>, List<ChildCollectionAccessor>>();
+	
 	static {
 		fieldAccess.add("Concept.answers");
 		fieldAccess.add("Concept.names");
@@ -203,17 +210,31 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 	 *            handling collection properties.
 	 * @see HandlerUtil#getHandlersForType(Class, Class)
 	 */
-	@SuppressWarnings("unchecked")
 	public static <H extends RequiredDataHandler> void recursivelyHandle(Class<H> handlerType, OpenmrsObject openmrsObject,
 	        User currentUser, Date currentDate, String other, List<OpenmrsObject> alreadyHandled) {
 		if (openmrsObject == null)
 			return;
 		
-		Class<? extends OpenmrsObject> openmrsObjectClass = openmrsObject.getClass();
+		// objects are compared by identity, comparing with equals() is slow and treats new objects
+		// without an id or the same row loaded twice as already handled
+		Set<OpenmrsObject> handled = Collections.newSetFromMap(new IdentityHashMap<OpenmrsObject, Boolean>());
+		if (alreadyHandled != null)
+			handled.addAll(alreadyHandled);
 		
-		if (alreadyHandled == null) {
-			alreadyHandled = new ArrayList<OpenmrsObject>();
-		}
+		handleRecursively(handlerType, openmrsObject, currentUser, currentDate, other, handled);
+	}
+	
+	/**
+	 * Does the work of {@link #recursivelyHandle(Class, OpenmrsObject, User, Date, String, List)}
+	 * 
+	 * @param alreadyHandled the objects that have already been handled, compared by identity
+	 */
+	private static <H extends RequiredDataHandler> void handleRecursively(Class<H> handlerType, OpenmrsObject openmrsObject,
+	        User currentUser, Date currentDate, String other, Set<OpenmrsObject> alreadyHandled) {
+		if (!alreadyHandled.add(openmrsObject))
+			return;
+		
+		Class<? extends OpenmrsObject> openmrsObjectClass = openmrsObject.getClass();
 		
 		// fetch all handlers for the object being saved
 		List<H> handlers = HandlerUtil.getHandlersForType(handlerType, openmrsObjectClass);
@@ -222,31 +243,53 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 		for (H handler : handlers) {
 			handler.handle(openmrsObject, currentUser, currentDate, other);
 		}
-		alreadyHandled.add(openmrsObject);
-		
-		Reflect reflect = new Reflect(OpenmrsObject.class);
-		List<Field> allInheritedFields = reflect.getInheritedFields(openmrsObjectClass);
 		
 		// loop over all child collections of OpenmrsObjects and recursively save on those
-		for (Field field : allInheritedFields) {
-			if (reflect.isCollectionField(field)) {
-				
-				// the collection we'll be looping over
-				Collection<OpenmrsObject> childCollection = getChildCollection(openmrsObject, field);
-				
-				if (childCollection != null) {
-					for (Object collectionElement : childCollection) {
-						if (!alreadyHandled.contains(collectionElement)) {
-							recursivelyHandle(handlerType, (OpenmrsObject) collectionElement, currentUser, currentDate,
-							    other, alreadyHandled);
-						}
-					}
+		for (ChildCollectionAccessor accessor : getChildCollectionAccessors(openmrsObjectClass)) {
+			
+			// the collection we'll be looping over
+			Collection<OpenmrsObject> childCollection = accessor.get(openmrsObject);
+			
+			if (childCollection != null) {
+				for (OpenmrsObject collectionElement : childCollection) {
+					if (collectionElement != null)
+						handleRecursively(handlerType, collectionElement, currentUser, currentDate, other, alreadyHandled);
 				}
 			}
 		}
 		
 	}
 	
+	/**
+	 * Returns the accessors of all collections of {@link OpenmrsObject}s declared on the given
+	 * class and its superclasses. They are only looked up the first time a class is handled.
+	 * 
+	 * @param openmrsObjectClass the class of the objects being handled
+	 * @return the accessors of the child collections
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<ChildCollectionAccessor> getChildCollectionAccessors(Class<? extends OpenmrsObject> openmrsObjectClass) {
+		List<ChildCollectionAccessor> accessors = childCollectionAccessors.get(openmrsObjectClass);
+		if (accessors == null) {
+			accessors = new ArrayList<ChildCollectionAccessor>();
+			Reflect reflect = new Reflect(OpenmrsObject.class);
+			for (Field field : (List<Field>) reflect.getInheritedFields(openmrsObjectClass)) {
+				if (reflect.isCollectionField(field))
+					accessors.add(new ChildCollectionAccessor(openmrsObjectClass, field));
+			}
+			childCollectionAccessors.put(openmrsObjectClass, accessors);
+		}
+		return accessors;
+	}
+	
+	/**
+	 * Forgets the child collections found on the classes handled so far, so that classes of
+	 * stopped modules are not held on to
+	 */
+	public static void clearCachedChildCollections() {
+		childCollectionAccessors.clear();
+	}
+	
 	/**
 	 * This method gets a child attribute off of an OpenmrsObject. It usually uses the getter for
 	 * the attribute, but can use the direct field (even if its private) if told to by the
@@ -259,44 +302,75 @@ public class RequiredDataAdvice implements MethodBeforeAdvice {
 	 * @should be able to get private fields in fieldAccess list
 	 * @should throw APIException if getter method not found
 	 */
-	@SuppressWarnings("unchecked")
 	protected static Collection<OpenmrsObject> getChildCollection(OpenmrsObject openmrsObject, Field field) {
-		String fieldName = field.getName();
-		String classdotfieldname = field.getDeclaringClass().getSimpleName() + "." + fieldName;
-		String getterName = "get" + StringUtils.capitalize(fieldName);
+		return new ChildCollectionAccessor(openmrsObject.getClass(), field).get(openmrsObject);
+	}
+	
+	/**
+	 * Gets a child collection off of the objects of one class, the field or getter method to use
+	 * is looked up once when the accessor is created instead of every time a collection is read
+	 * 
+	 * @see RequiredDataAdvice#getChildCollection(OpenmrsObject, Field)
+	 */
+	private static class ChildCollectionAccessor {
 		
-		try {
+		private final String fieldName;
+		
+		private final String getterName;
+		
+		// set if the field is in the fieldAccess list, made accessible
+		private Field field;
+		
+		// set otherwise, null if the class has no such getter
+		private Method getterMethod;
+		
+		public ChildCollectionAccessor(Class<?> openmrsObjectClass, Field field) {
+			fieldName = field.getName();
+			getterName = "get" + StringUtils.capitalize(fieldName);
+			
 			// checks the fieldAccess list for something like "Concept.answers"
-			if (fieldAccess.contains(classdotfieldname)) {
-				boolean previousFieldAccessibility = field.isAccessible();
-				field.setAccessible(true);
-				Collection<OpenmrsObject> childCollection = (Collection<OpenmrsObject>) field.get(openmrsObject);
-				field.setAccessible(previousFieldAccessibility);
-				return childCollection;
-				
+			if (fieldAccess.contains(field.getDeclaringClass().getSimpleName() + "." + fieldName)) {
+				try {
+					// use a copy of the field so the accessibility of the given one is left alone
+					this.field = field.getDeclaringClass().getDeclaredField(fieldName);
+					this.field.setAccessible(true);
+				}
+				catch (NoSuchFieldException e) {
+					throw new APIException("Unable to get field: " + fieldName + " on " + openmrsObjectClass);
+				}
 			} else {
-				// access the field via its getter method
-				Class<? extends OpenmrsObject> openmrsObjectClass = openmrsObject.getClass();
+				try {
+					getterMethod = openmrsObjectClass.getMethod(getterName, (Class[]) null);
+				}
+				catch (NoSuchMethodException e) {
+					// only fail once an object of this class actually gets handled
+				}
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		public Collection<OpenmrsObject> get(OpenmrsObject openmrsObject) {
+			try {
+				if (field != null)
+					return (Collection<OpenmrsObject>) field.get(openmrsObject);
 				
-				Method getterMethod = openmrsObjectClass.getMethod(getterName, (Class[]) null);
+				// access the field via its getter method
+				if (getterMethod == null)
+					throw new APIException("Unable to find getter method: " + getterName + " for field: " + fieldName
+					        + " on " + openmrsObject.getClass());
 				return (Collection<OpenmrsObject>) getterMethod.invoke(openmrsObject, new Object[] {});
-				
 			}
-		}
-		catch (IllegalAccessException e) {
-			if (fieldAccess.contains(classdotfieldname))
-				throw new APIException("Unable to get field: " + fieldName + " on " + openmrsObject.getClass());
-			else
-				throw new APIException("Unable to use getter method: " + getterName + " for field: " + fieldName + " on "
+			catch (IllegalAccessException e) {
+				if (field != null)
+					throw new APIException("Unable to get field: " + fieldName + " on " + openmrsObject.getClass());
+				else
+					throw new APIException("Unable to use getter method: " + getterName + " for field: " + fieldName
+					        + " on " + openmrsObject.getClass());
+			}
+			catch (InvocationTargetException e) {
+				throw new APIException("Unable to run getter method: " + getterName + " for field: " + fieldName + " on "
 				        + openmrsObject.getClass());
-		}
-		catch (InvocationTargetException e) {
-			throw new APIException("Unable to run getter method: " + getterName + " for field: " + fieldName + " on "
-			        + openmrsObject.getClass());
-		}
-		catch (NoSuchMethodException e) {
-			throw new APIException("Unable to find getter method: " + getterName + " for field: " + fieldName + " on "
-			        + openmrsObject.getClass());
+			}
 		}
 	}
 	
@@ -449,6 +449,9 @@ public interface AdministrationService extends OpenmrsService {
 	 * <p>
 	 * If <code>propertyName</code> is not found in the list of Global Properties currently in the
 	 * database, a null value is returned. This method should not have any authorization check.
+	 * <p>
+	 * Values are cached in memory and dropped from the cache when the property is saved or purged
+	 * through this service.
 	 * 
 	 * @param propertyName property key to look for
 	 * @return value of property returned or null if none
@@ -456,6 +459,8 @@ public interface AdministrationService extends OpenmrsService {
 	 * @should not fail with null propertyName
 	 * @should get property value given valid property name
 	 * @should get property in case sensitive way
+	 * @should return the new value after the property is saved
+	 * @should return null after the property is purged
 	 */
 	@Transactional(readOnly = true)
 	public String getGlobalProperty(String propertyName) throws APIException;
@@ -696,6 +701,7 @@ public interface AdministrationService extends OpenmrsService {
 	 * @param propertyName
 	 * @should get property value in the proper type specified
 	 * @should return default value if property name does not exist
+	 * @should return the new value after the property is saved
 	 * @return property value in the type of the default value
 	 * @since 1.7
 	 */
@@ -0,0 +1,89 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of saving a list of objects in one call, e.g.
+ * {@link EncounterService#saveEncounters(List)}. Items that could not be saved are reported by
+ * their index in the list that was passed in, so callers such as data migration and sync clients
+ * can tell which of their records need attention without the whole batch failing.
+ * 
+ * @param <T> the type of object that was saved
+ * @since 1.9
+ */
+public class BatchSaveResult<T> {
+	
+	private final List<T> saved = new ArrayList<T>();
+	
+	private final Map<Integer, String> errors = new TreeMap<Integer, String>();
+	
+	/**
+	 * Records that the given item was saved
+	 * 
+	 * @param item the saved object
+	 */
+	public void addSaved(T item) {
+		saved.add(item);
+	}
+	
+	/**
+	 * Records that the item at the given index of the submitted list was not saved
+	 * 
+	 * @param index the position of the item in the submitted list
+	 * @param message why the item was not saved
+	 */
+	public void addError(Integer index, String message) {
+		errors.put(index, message);
+	}
+	
+	/**
+	 * Adds everything recorded in the given result to this one, shifting the error indexes of the
+	 * other result by <code>offset</code>
+	 * 
+	 * @param other the result of saving part of the submitted list
+	 * @param offset the index in the submitted list at which that part started
+	 */
+	public void addAll(BatchSaveResult<T> other, int offset) {
+		saved.addAll(other.saved);
+		for (Map.Entry<Integer, String> error : other.errors.entrySet())
+			errors.put(error.getKey() + offset, error.getValue());
+	}
+	
+	/**
+	 * @return the objects that were saved, in the order they were submitted
+	 */
+	public List<T> getSaved() {
+		return Collections.unmodifiableList(saved);
+	}
+	
+	/**
+	 * @return why each item was not saved, keyed by its index in the submitted list
+	 */
+	public Map<Integer, String> getErrors() {
+		return Collections.unmodifiableMap(errors);
+	}
+	
+	/**
+	 * @return true if any item was not saved
+	 */
+	public boolean hasErrors() {
+		return !errors.isEmpty();
+	}
+}
@@ -13,6 +13,8 @@
  */
 package org.openmrs.api;
 
+import java.io.OutputStream;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -37,6 +39,7 @@ import org.openmrs.ConceptWord;
 import org.openmrs.Drug;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.ConceptDAO;
+import org.openmrs.concept.ConceptDictionaryFormat;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -1512,6 +1515,44 @@ public interface ConceptService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
 	public void updateConceptIndexes(Integer conceptIdStart, Integer conceptIdEnd) throws APIException;
 	
+	/**
+	 * Rebuilds the whole concept word index. Concepts are read in batches of <code>batchSize</code>,
+	 * their words are made and weighed by a pool of <code>threads</code> workers and the results are
+	 * written with JDBC batch inserts next to the existing words, which are only deleted once every
+	 * concept has been indexed. As all of this happens in one transaction, searches keep using the
+	 * old index until the new one is complete.
+	 * 
+	 * @param threads the number of worker threads, defaults to the number of processors
+	 * @param batchSize the number of concepts per batch, defaults to 500
+	 * @param listener notified after each batch is written, may be null
+	 * @return the number of concepts indexed
+	 * @throws APIException if the rebuild fails or is cancelled by the listener, in which case the
+	 *             old index is kept
+	 * @should rebuild the words of every concept
+	 * @should report progress to the listener
+	 * @should keep the old index if the listener cancels the rebuild
+	 * @since 1.9
+	 */
+	@Authorized( { PrivilegeConstants.MANAGE_CONCEPTS })
+	public Integer rebuildConceptIndex(Integer threads, Integer batchSize, ConceptIndexRebuildListener listener)
+	        throws APIException;
+	
+	/**
+	 * Receives progress updates from {@link ConceptService#rebuildConceptIndex(Integer, Integer,
+	 * ConceptIndexRebuildListener)}
+	 * 
+	 * @since 1.9
+	 */
+	public interface ConceptIndexRebuildListener {
+		
+		/**
+		 * @param conceptsIndexed the number of concepts whose words have been written so far
+		 * @param totalConcepts the number of concepts being indexed
+		 * @return false to cancel the rebuild
+		 */
+		public boolean conceptsIndexed(int conceptsIndexed, int totalConcepts);
+	}
+	
 	/**
 	 * Searches for concepts with the given parameters
 	 * 
@@ -1539,6 +1580,7 @@ public interface ConceptService extends OpenmrsService {
 	 * @param answersToConcept all results will be a possible answer to this concept
 	 * @return the number of concepts matching the given search phrase
 	 * @throws APIException
+	 * @should return the same count from the in-memory index as from the database
 	 * @since 1.8
 	 */
 	@Transactional(readOnly = true)
@@ -1645,4 +1687,47 @@ public interface ConceptService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	public List<ConceptStopWord> getAllConceptStopWords();
 	
+	/**
+	 * @return the formats the concept dictionary can be exported in
+	 * @since 1.9
+	 * @see #exportConceptDictionary(OutputStream, String, Date, boolean, boolean)
+	 */
+	@Transactional(readOnly = true)
+	public List<ConceptDictionaryFormat> getConceptDictionaryFormats();
+	
+	/**
+	 * @param name the name of the format
+	 * @return the concept dictionary format with the given name, or null if there is none
+	 * @since 1.9
+	 * @should get the csv and json formats
+	 * @should return null for an unknown format
+	 */
+	@Transactional(readOnly = true)
+	public ConceptDictionaryFormat getConceptDictionaryFormat(String name);
+	
+	/**
+	 * Writes the concept dictionary to the given stream in the given format. The concepts are read
+	 * a page at a time in ascending id order, with everything the formats write about them fetched
+	 * in a few queries per page, and each page is evicted from the session once it is written. The
+	 * stream is not closed.
+	 * 
+	 * @param out where to write the export to
+	 * @param format the name of the {@link ConceptDictionaryFormat} to write the export in
+	 * @param changedSince only export concepts created or changed on or after this date, or null
+	 *            to export all of them
+	 * @param includeRetired whether to export retired concepts
+	 * @param gzip whether to gzip the export
+	 * @return the number of concepts exported
+	 * @throws APIException if the format is unknown or the export could not be written
+	 * @since 1.9
+	 * @should export all concepts in the given format
+	 * @should only export concepts changed since the given date
+	 * @should exclude retired concepts unless asked to include them
+	 * @should gzip the export if asked to
+	 * @should fail for an unknown format
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_CONCEPTS)
+	public Integer exportConceptDictionary(OutputStream out, String format, Date changedSince, boolean includeRetired,
+	        boolean gzip) throws APIException;
 }
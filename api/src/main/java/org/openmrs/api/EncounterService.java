@@ -15,6 +15,7 @@ package org.openmrs.api;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +31,7 @@ import org.openmrs.VisitType;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.util.PrivilegeConstants;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -40,6 +42,12 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public interface EncounterService extends OpenmrsService {
 	
+	/**
+	 * The number of encounters {@link #importEncounters(List, Integer)} saves per chunk when no
+	 * chunk size is given
+	 */
+	public static final int DEFAULT_IMPORT_CHUNK_SIZE = 500;
+	
 	/**
 	 * Set the given <code>dao</code> on this encounter service. The dao will act as the conduit
 	 * through with all encounter calls get to the database
@@ -69,6 +77,52 @@ public interface EncounterService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
 	public Encounter saveEncounter(Encounter encounter) throws APIException;
 	
+	/**
+	 * Saves a list of new or existing encounters, and the obs and orders they contain, in one
+	 * transaction. Each encounter gets the same validation and obs/order fixups as
+	 * {@link #saveEncounter(Encounter)}, but the save handlers run once over the whole list and the
+	 * session is flushed once at the end instead of once per encounter. An encounter that fails
+	 * validation or needs a privilege the user doesn't have is skipped and reported in the returned
+	 * result by its index in <code>encounters</code>; the rest are still saved. A skipped encounter
+	 * that already exists is evicted from the session, so its changes are not saved with the others.
+	 * Obs are saved through the encounter they belong to, there is no bulk counterpart on
+	 * {@link ObsService} for obs without an encounter.
+	 * 
+	 * @param encounters the encounters to save
+	 * @return the saved encounters and an error message for each encounter that was skipped
+	 * @throws APIException
+	 * @since 1.9
+	 * @should save all valid encounters
+	 * @should report invalid encounters by index and save the rest
+	 * @should cascade encounter datetime to obs of existing encounters
+	 * @should not save the changes to a rejected existing encounter
+	 */
+	@Authorized( { PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
+	public BatchSaveResult<Encounter> saveEncounters(List<Encounter> encounters) throws APIException;
+	
+	/**
+	 * Saves a large list of encounters in chunks of <code>chunkSize</code> using
+	 * {@link #saveEncounters(List)}, clearing the session after each chunk so that memory use stays
+	 * flat. When called outside of a transaction each chunk is committed on its own, so a chunk
+	 * that fails at the database only loses that chunk, and its encounters are reported as errors.
+	 * When called inside a transaction the chunks join it, and the exception of a failed chunk is
+	 * thrown since that transaction can only be rolled back.
+	 * 
+	 * @param encounters the encounters to save
+	 * @param chunkSize how many encounters to save per chunk, or null for the default of
+	 *            {@link #DEFAULT_IMPORT_CHUNK_SIZE}
+	 * @return the saved encounters and an error message for each encounter that was not saved,
+	 *         keyed by its index in <code>encounters</code>
+	 * @throws APIException
+	 * @since 1.9
+	 * @should save encounters across several chunks
+	 * @should report errors with indexes into the whole list
+	 * @should throw the error of a failed chunk when called inside a transaction
+	 */
+	@Authorized( { PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public BatchSaveResult<Encounter> importEncounters(List<Encounter> encounters, Integer chunkSize) throws APIException;
+	
 	/**
 	 * Get encounter by internal identifier
 	 * 
@@ -675,4 +729,18 @@ public interface EncounterService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	@Authorized( { PrivilegeConstants.VIEW_ENCOUNTERS })
 	List<Encounter> getEncountersByVisit(Visit visit);
+	
+	/**
+	 * Returns an iterator over all encounters, including voided ones, in ascending id order. The encounters
+	 * are read from the database a page at a time, so this can be used to go through all of them
+	 * without loading them all into memory.
+	 * 
+	 * @param pageSize the number of encounters to read at a time, or null for the default
+	 * @return the iterator
+	 * @since 1.9
+	 * @should iterate over all encounters in ascending id order
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_ENCOUNTERS)
+	public Iterator<Encounter> encounterIterator(Integer pageSize) throws APIException;
 }
@@ -14,6 +14,7 @@
 package org.openmrs.api;
 
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,8 @@ import org.openmrs.Person;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsStatistics;
+import org.openmrs.obs.ObsTimeSeries;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 import org.openmrs.util.PrivilegeConstants;
@@ -499,6 +502,27 @@ public interface ObsService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public List<Obs> getObservationsByPersonAndConcept(Person who, Concept question) throws APIException;
 	
+	/**
+	 * Gets the most recent nonvoided obs of the given person for each of the given question
+	 * concepts. Only one obs per concept is loaded, and which obs is the most recent one is
+	 * remembered until an obs or encounter of the person changes, see
+	 * {@link org.openmrs.obs.MostRecentObsCache}.
+	 * 
+	 * @param who the person to match on
+	 * @param questions the question concepts to match on
+	 * @return the most recent obs by question concept, in the order of the given concepts, without
+	 *         the concepts the person has no obs for
+	 * @throws APIException
+	 * @since 1.9
+	 * @should get the most recent obs for each concept
+	 * @should leave out concepts the person has no obs for
+	 * @should not return a cached obs after a newer one is saved
+	 * @should return an empty map for a null or unsaved person
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Map<Concept, Obs> getMostRecentObs(Person who, List<Concept> questions) throws APIException;
+	
 	/**
 	 * @deprecated use
 	 *             {@link #getObservations(List, List, List, List, List, List, List, Integer, Integer, Date, Date, boolean)}
@@ -708,4 +732,152 @@ public interface ObsService extends OpenmrsService {
 	@Transactional(readOnly = true)
 	@Authorized(PrivilegeConstants.VIEW_OBS)
 	public Integer getObservationCount(List<ConceptName> conceptNames, boolean includeVoided);
+	
+	/**
+	 * Returns an iterator over all observations, including voided ones, in ascending id order. The observations
+	 * are read from the database a page at a time, so this can be used to go through all of them
+	 * without loading them all into memory.
+	 * 
+	 * @param pageSize the number of observations to read at a time, or null for the default
+	 * @return the iterator
+	 * @since 1.9
+	 * @should iterate over all observations in ascending id order
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Iterator<Obs> obsIterator(Integer pageSize) throws APIException;
+	
+	/**
+	 * Computes summary statistics of the numeric values of a question concept's non-voided obs in
+	 * the database, without loading the obs themselves.
+	 * 
+	 * @param question the question concept
+	 * @param locations if not empty, only obs at these locations are used
+	 * @param fromDate if not null, only obs on or after this date are used
+	 * @param toDate if not null, only obs on or before this date are used
+	 * @param minValue if not null, only values greater than or equal to this are used
+	 * @param maxValue if not null, only values less than or equal to this are used
+	 * @param percentiles the fractions between 0 and 1 to compute percentiles for, may be null
+	 * @param histogramBins if not null, a histogram with this many bins of equal width between the
+	 *            smallest and the largest value is computed
+	 * @return the statistics
+	 * @throws APIException
+	 * @since 1.9
+	 * @should compute count min max mean and standard deviation
+	 * @should compute the requested percentiles
+	 * @should compute a histogram with the given number of bins
+	 * @should only use values within the given limits
+	 * @should return a zero count if there are no values
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public ObsStatistics getNumericObsStatistics(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate, Double minValue, Double maxValue, double[] percentiles, Integer histogramBins)
+	        throws APIException;
+	
+	/**
+	 * Computes the count, minimum, maximum, mean and standard deviation of the numeric values of a
+	 * question concept's non-voided obs in the database for each location or month.
+	 * 
+	 * @param question the question concept
+	 * @param groupBy what to group the values by
+	 * @param locations if not empty, only obs at these locations are used
+	 * @param fromDate if not null, only obs on or after this date are used
+	 * @param toDate if not null, only obs on or before this date are used
+	 * @return the statistics by {@link Location}, or by the {@link Date} of the first day of the
+	 *         month, in ascending order
+	 * @throws APIException
+	 * @since 1.9
+	 * @should group the statistics by location
+	 * @should group the statistics by month
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Map<Object, ObsStatistics> getNumericObsStatisticsByGroup(Concept question, ObsGrouping groupBy,
+	        List<Location> locations, Date fromDate, Date toDate) throws APIException;
+	
+	/**
+	 * Counts the non-voided obs of a question concept in the database by coded answer.
+	 * 
+	 * @param question the question concept
+	 * @param locations if not empty, only obs at these locations are counted
+	 * @param fromDate if not null, only obs on or after this date are counted
+	 * @param toDate if not null, only obs on or before this date are counted
+	 * @return the number of obs by answer, with the obs without a coded answer under null
+	 * @throws APIException
+	 * @since 1.9
+	 * @should count the obs by coded answer
+	 * @should count the obs without a coded answer under null
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Map<Concept, Long> getCodedObsFrequencies(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate) throws APIException;
+	
+	/**
+	 * Gets the non-voided obs of a question concept with a numeric value outside of the given limits,
+	 * e.g. to list the outliers left out of {@link #getNumericObsStatistics}.
+	 * 
+	 * @param question the question concept
+	 * @param lowerLimit obs with values less than this are returned
+	 * @param upperLimit obs with values greater than this are returned
+	 * @param locations if not empty, only obs at these locations are returned
+	 * @param fromDate if not null, only obs on or after this date are returned
+	 * @param toDate if not null, only obs on or before this date are returned
+	 * @param maxResults if not null, at most this many obs are returned
+	 * @return the obs, ordered by value
+	 * @throws APIException
+	 * @since 1.9
+	 * @should get the obs with values outside of the limits ordered by value
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public List<Obs> getNumericObsOutsideRange(Concept question, double lowerLimit, double upperLimit,
+	        List<Location> locations, Date fromDate, Date toDate, Integer maxResults) throws APIException;
+	
+	/**
+	 * What {@link ObsService#getNumericObsStatisticsByGroup} groups the values by
+	 * 
+	 * @since 1.9
+	 */
+	public enum ObsGrouping {
+		LOCATION, MONTH
+	}
+	
+	/**
+	 * Gets the dates and numeric values of a person's non-voided obs for a question concept, without
+	 * loading the obs themselves
+	 * 
+	 * @param who the person
+	 * @param question the question concept
+	 * @param fromDate if not null, only obs on or after this date are returned
+	 * @param toDate if not null, only obs before this date are returned
+	 * @return the time series, in ascending date order
+	 * @throws APIException
+	 * @since 1.9
+	 * @should get the dates and values of the obs in date order
+	 * @should only get obs within the given dates
+	 * @should leave out voided obs
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public ObsTimeSeries getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException;
+	
+	/**
+	 * Gets when a person's obs for a question concept last changed, i.e. the latest date one of
+	 * them, including voided ones, was created or voided. Since obs are not edited but voided and
+	 * replaced, this tells whether anything derived from the obs, like a graph, is out of date.
+	 * 
+	 * @param who the person
+	 * @param question the question concept
+	 * @return the date of the last change, or null if the person has no obs for the concept
+	 * @throws APIException
+	 * @since 1.9
+	 * @should get the latest date an obs was created or voided
+	 * @should return null if the person has no obs for the concept
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_OBS)
+	public Date getLastObsChange(Person who, Concept question) throws APIException;
 }
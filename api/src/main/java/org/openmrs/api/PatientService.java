@@ -15,6 +15,7 @@ package org.openmrs.api;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -28,7 +29,10 @@ import org.openmrs.activelist.Allergy;
 import org.openmrs.activelist.Problem;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.db.PatientDAO;
+import org.openmrs.patient.DuplicatePatientDetector;
+import org.openmrs.patient.DuplicatePatientMatch;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResults;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.PatientIdentifierValidator;
 import org.springframework.transaction.annotation.Transactional;
@@ -568,6 +572,32 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
 	public List<Patient> getPatients(String query, Integer start, Integer length) throws APIException;
 	
+	/**
+	 * Searches on patients the same way as {@link #getPatients(String, Integer, Integer)}, but
+	 * returns the total number of matches together with the ids and match ranks of the patients
+	 * from the specified starting position, so that callers showing a page of results only search
+	 * once. When the {@link org.openmrs.util.OpenmrsConstants#GP_PATIENT_SEARCH_IN_MEMORY_INDEX}
+	 * global property is true, the search is answered from an in-memory index, the results are
+	 * ordered by match rank and names that sound like the query are found too.
+	 * 
+	 * @param query the name or identifier to search on
+	 * @param start the starting index, defaults to 0
+	 * @param length the number of patients to return, defaults to the maximum number of search
+	 *            results
+	 * @return the count of matches and one page of matching patient ids
+	 * @throws APIException
+	 * @since 1.9
+	 * @should return the count and a page of patients matching the given name
+	 * @should return patients matching the given identifier
+	 * @should return empty results for a blank query
+	 * @should rank exact and prefix matches before names that sound alike when the index is enabled
+	 * @should match identifiers without separators when the index is enabled
+	 * @should not return voided identifiers when the index is enabled
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
+	public PatientSearchResults searchPatients(String query, Integer start, Integer length) throws APIException;
+	
 	/**
 	 * @see #getPatientByExample(Patient)
 	 * @deprecated use #getPatientByExample(Patient)
@@ -618,6 +648,31 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
 	public List<Patient> getDuplicatePatientsByAttributes(List<String> attributes) throws APIException;
 	
+	/**
+	 * Finds pairs of patients that are likely to be the same person because they have the same
+	 * gender, names that are the same or sound alike and birthdates that are close. Unlike
+	 * {@link #getDuplicatePatientsByAttributes(List)}, patients are only compared with the patients
+	 * that share a phonetic key of their family or given name, so this scales to large databases.
+	 * 
+	 * @param minimumScore the score between 0 and 1 a pair needs to be returned, defaults to
+	 *            {@link DuplicatePatientDetector#DEFAULT_MINIMUM_SCORE}
+	 * @param birthdateWindowDays how many days apart two birthdates can be, defaults to
+	 *            {@link DuplicatePatientDetector#DEFAULT_BIRTHDATE_WINDOW_DAYS}
+	 * @param includeVoided whether voided patients are compared too
+	 * @param maxResults the number of pairs to return at most, null to return them all
+	 * @return the likely duplicates, best score first
+	 * @throws APIException
+	 * @since 1.9
+	 * @see DuplicatePatientDetector
+	 * @should find patients whose names sound alike with close birthdates
+	 * @should not return voided patients unless asked to
+	 * @should return at most the maximum number of pairs
+	 */
+	@Transactional(readOnly = true)
+	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
+	public List<DuplicatePatientMatch> getLikelyDuplicatePatients(Double minimumScore, Integer birthdateWindowDays,
+	        boolean includeVoided, Integer maxResults) throws APIException;
+	
 	/**
 	 * Convenience method to join two patients' information into one record.
 	 * <ol>
@@ -985,4 +1040,18 @@ public interface PatientService extends OpenmrsService {
 	@Authorized( { PrivilegeConstants.VIEW_PATIENTS })
 	public List<Patient> getPatients(String name, String identifier, List<PatientIdentifierType> identifierTypes,
 	        boolean matchIdentifierExactly, Integer start, Integer length) throws APIException;
+	
+	/**
+	 * Returns an iterator over all patients, including voided ones, in ascending id order. The patients
+	 * are read from the database a page at a time, so this can be used to go through all of them
+	 * without loading them all into memory.
+	 * 
+	 * @param pageSize the number of patients to read at a time, or null for the default
+	 * @return the iterator
+	 * @since 1.9
+	 * @should iterate over all patients in ascending id order
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(PrivilegeConstants.VIEW_PATIENTS)
+	public Iterator<Patient> patientIterator(Integer pageSize) throws APIException;
 }
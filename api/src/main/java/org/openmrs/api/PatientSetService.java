@@ -41,6 +41,7 @@ import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientSetDAO;
+import org.openmrs.util.OpenmrsConstants;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -544,6 +545,63 @@ public interface PatientSetService {
 	@Transactional(readOnly = true)
 	public List<Encounter> getEncountersByForm(Cohort patients, List<Form> form);
 	
+	/**
+	 * Streams the non-voided obs for the given concept to the handler one patient at a time, most
+	 * recent first. The cohort is queried in batches of patient ids in ascending order and each
+	 * batch is read with a forward-only cursor, so memory use depends on the batch size rather than
+	 * on the size of the cohort. Obs are evicted from the session once the handler returns.
+	 * 
+	 * @param patients the patients to fetch obs for, or null for all patients
+	 * @param concept the question concept of the obs
+	 * @param batchSize the number of patients per query, or null to use the
+	 *            {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 * @param handler receives each patient's obs
+	 * @since 1.9
+	 * @should pass each patient's obs to the handler
+	 * @should query in batches of the given size
+	 */
+	@Transactional(readOnly = true)
+	public void streamObservations(Cohort patients, Concept concept, Integer batchSize,
+	        PatientDataHandler<List<Obs>> handler);
+	
+	/**
+	 * Streaming version of {@link #getObservationsValues(Cohort, Concept, List, Integer, boolean)}
+	 * that hands each patient's rows to the handler as soon as they have been read.
+	 * 
+	 * @param patients the patients to fetch values for, or null for all patients
+	 * @param c the concept to look for in obs.concept_id
+	 * @param attributes list of attributes
+	 * @param limit the maximum number of rows per patient. If null or less than zero, return all
+	 * @param showMostRecentFirst if true, obs with the highest obsDatetime will be first
+	 * @param batchSize the number of patients per query, or null to use the
+	 *            {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 * @param handler receives each patient's rows
+	 * @see #streamObservations(Cohort, Concept, Integer, PatientDataHandler)
+	 * @since 1.9
+	 * @should pass the same values as getObservationsValues
+	 */
+	@Transactional(readOnly = true)
+	public void streamObservationsValues(Cohort patients, Concept c, List<String> attributes, Integer limit,
+	        boolean showMostRecentFirst, Integer batchSize, PatientDataHandler<List<List<Object>>> handler);
+	
+	/**
+	 * Streaming version of {@link #getEncountersByType(Cohort, List)} that hands each patient's most
+	 * recent encounter to the handler, querying the cohort in batches. Encounters are evicted from
+	 * the session once the handler returns.
+	 * 
+	 * @param patients the patients to fetch encounters for, or null for all patients
+	 * @param encTypes the encounter types to include, or null for all types
+	 * @param batchSize the number of patients per query, or null to use the
+	 *            {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 * @param handler receives each patient's most recent encounter
+	 * @see #streamObservations(Cohort, Concept, Integer, PatientDataHandler)
+	 * @since 1.9
+	 * @should pass each patient's most recent encounter to the handler
+	 */
+	@Transactional(readOnly = true)
+	public void streamEncountersByType(Cohort patients, List<EncounterType> encTypes, Integer batchSize,
+	        PatientDataHandler<Encounter> handler);
+	
 	public enum Modifier {
 		LESS_THAN("<"), LESS_EQUAL("<="), EQUAL("="), GREATER_EQUAL(">="), GREATER_THAN(">");
 		
@@ -575,6 +633,20 @@ public interface PatientSetService {
 		EARLIEST_ENCOUNTER, LATEST_ENCOUNTER, ANY_ENCOUNTER, PATIENT_HEALTH_CENTER
 	}
 	
+	/**
+	 * Receives the results of the streaming lookups in this service one patient at a time
+	 * 
+	 * @since 1.9
+	 */
+	public interface PatientDataHandler<T> {
+		
+		/**
+		 * @param patientId the patient the data belongs to
+		 * @param data the data fetched for that patient
+		 */
+		public void handle(Integer patientId, T data);
+	}
+	
 	/**
 	 * Equivalent to Cohort.subtract(PatientSetService.getAllPatients(), cohort) but may eventually
 	 * perform faster by delegating to the database. (The current implementation has *not* been
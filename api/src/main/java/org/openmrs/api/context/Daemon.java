@@ -20,6 +20,7 @@ import org.openmrs.module.Module;
 import org.openmrs.module.ModuleException;
 import org.openmrs.module.ModuleFactory;
 import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask;
 import org.openmrs.scheduler.timer.TimerSchedulerTask;
 import org.openmrs.util.OpenmrsSecurityManager;
 
@@ -89,20 +90,24 @@ public class Daemon {
 	/**
 	 * Executes the given task in a new thread that is authenticated as the daemon user. <br/>
 	 * <br/>
-	 * This can only be called from {@link TimerSchedulerTask} during actual task execution
+	 * This can only be called from {@link TimerSchedulerTask} or {@link ExecutorSchedulerTask}
+	 * during actual task execution
 	 * 
 	 * @param task the task to run
 	 * @should not be called from other methods other than TimerSchedulerTask
 	 * @should not throw error if called from a TimerSchedulerTask class
+	 * @should not throw error if called from an ExecutorSchedulerTask class
 	 */
 	public static void executeScheduledTask(final Task task) throws Throwable {
 		
 		// quick check to make sure we're only being called by ourselves
 		//Class<?> callerClass = Reflection.getCallerClass(0);
 		Class<?> callerClass = new OpenmrsSecurityManager().getCallerClass(0);
-		if (!TimerSchedulerTask.class.isAssignableFrom(callerClass))
-			throw new APIException("This method can only be called from the TimerSchedulerTask class, not "
-			        + callerClass.getName());
+		if (!TimerSchedulerTask.class.isAssignableFrom(callerClass)
+		        && !ExecutorSchedulerTask.class.isAssignableFrom(callerClass))
+			throw new APIException(
+			        "This method can only be called from the TimerSchedulerTask class or an ExecutorSchedulerTask, not "
+			                + callerClass.getName());
 		
 		// now create a new thread and execute that task in it
 		DaemonThread executeTaskThread = new DaemonThread() {
@@ -151,12 +156,28 @@ public class Daemon {
 	 * @should not throw error if called from a daemon thread
 	 */
 	public static Thread runInNewDaemonThread(final Runnable runnable) {
+		Thread thread = newDaemonThread(runnable);
+		thread.start();
+		return thread;
+	}
+	
+	/**
+	 * Same as {@link #runInNewDaemonThread(Runnable)}, but the thread is not started, for example so
+	 * that it can be handed out by the thread factory of an executor. You may only call this method
+	 * from a Daemon thread.
+	 * 
+	 * @param runnable what to run in the new thread
+	 * @return the new {@link Thread}, not started yet
+	 * @should throw error if called from a non daemon thread
+	 * @since 1.9
+	 */
+	public static Thread newDaemonThread(final Runnable runnable) {
 		// make sure we're already in a daemon thread
 		if (!isDaemonThread())
 			throw new APIAuthenticationException("Only daemon threads can spawn new daemon threads");
 		
 		// we should consider making DaemonThread public, so the caller can access returnedObject and exceptionThrown
-		DaemonThread thread = new DaemonThread() {
+		return new DaemonThread() {
 			
 			@Override
 			public void run() {
@@ -170,9 +191,6 @@ public class Daemon {
 				}
 			}
 		};
-		
-		thread.start();
-		return thread;
 	}
 	
 	/**
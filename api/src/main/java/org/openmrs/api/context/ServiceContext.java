@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.aopalliance.aop.Advice;
 import org.apache.commons.logging.Log;
@@ -54,6 +55,7 @@ import org.openmrs.notification.AlertService;
 import org.openmrs.notification.MessageService;
 import org.openmrs.reporting.ReportObjectService;
 import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.util.HandlerUtil;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.springframework.aop.Advisor;
 import org.springframework.aop.framework.Advised;
@@ -79,11 +81,19 @@ public class ServiceContext implements ApplicationContextAware {
 	
 	private static final Log log = LogFactory.getLog(ServiceContext.class);
 	
-	private static ServiceContext instance;
+	private static volatile ServiceContext instance;
 	
 	private ApplicationContext applicationContext;
 	
-	private Boolean refreshingContext = new Boolean(false);
+	// true between startRefreshingContext() and doneRefreshingContext()
+	private volatile boolean refreshingContext = false;
+	
+	// released by the doneRefreshingContext() call that ends the refresh in progress, or the next
+	// refresh when none is in progress. It is only replaced after refreshingContext is cleared, so a
+	// thread that reads it and then still sees refreshingContext set waits on a refresh in progress
+	private volatile CountDownLatch refreshDone = new CountDownLatch(1);
+	
+	private final Object refreshLock = new Object();
 	
 	/**
 	 * Static variable holding whether or not to use the system classloader. By default this is
@@ -91,9 +101,10 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	private boolean useSystemClassLoader = false;
 	
-	// Cached service objects
+	// Cached service objects, never modified once published: setService replaces the whole map so
+	// that getService can read it without locking
 	@SuppressWarnings("unchecked")
-	Map<Class, Object> services = new HashMap<Class, Object>();
+	volatile Map<Class, Object> services = Collections.emptyMap();
 	
 	// Advisors added to services by this service
 	@SuppressWarnings("unchecked")
@@ -130,8 +141,12 @@ public class ServiceContext implements ApplicationContextAware {
 	 * @see org.openmrs.api.context.Context
 	 */
 	public static ServiceContext getInstance() {
-		if (instance == null)
-			instance = new ServiceContext();
+		if (instance == null) {
+			synchronized (ServiceContext.class) {
+				if (instance == null)
+					instance = new ServiceContext();
+			}
+		}
 		
 		return instance;
 	}
@@ -154,10 +169,7 @@ public class ServiceContext implements ApplicationContextAware {
 				instance.removeAddedAOP(serviceClass);
 			}
 			
-			if (instance.services != null) {
-				instance.services.clear();
-				instance.services = null;
-			}
+			instance.services = null;
 			
 			if (instance.addedAdvisors != null) {
 				instance.addedAdvisors.clear();
@@ -703,10 +715,12 @@ public class ServiceContext implements ApplicationContextAware {
 	}
 	
 	/**
-	 * Returns the current proxy that is stored for the Class <code>cls</code>
+	 * Returns the current proxy that is stored for the Class <code>cls</code>. Lookups do not lock,
+	 * they only wait while the application context is being refreshed.
 	 * 
 	 * @param cls
 	 * @return Object that is a proxy for the <code>cls</code> class
+	 * @should wait until the context is done refreshing
 	 */
 	@SuppressWarnings("unchecked")
 	public <T extends Object> T getService(Class<? extends T> cls) {
@@ -715,16 +729,19 @@ public class ServiceContext implements ApplicationContextAware {
 		
 		// if the context is refreshing, wait until it is
 		// done -- otherwise a null service might be returned
-		synchronized (refreshingContext) {
-			if (refreshingContext.booleanValue())
+		if (refreshingContext) {
+			CountDownLatch done = refreshDone;
+			// the refresh may have ended in between, if it is set again done belongs to a new refresh
+			if (refreshingContext) {
 				try {
 					log.warn("Waiting to get service: " + cls + " while the context is being refreshed");
-					refreshingContext.wait();
+					done.await();
 					log.warn("Finished waiting to get service " + cls + " while the context was being refreshed");
 				}
 				catch (InterruptedException e) {
 					log.warn("Refresh lock was interrupted", e);
 				}
+			}
 		}
 		
 		Object service = services.get(cls);
@@ -741,7 +758,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 * @param classInstance the actual instance of the <code>cls</code> interface
 	 */
 	@SuppressWarnings("unchecked")
-	public void setService(Class cls, Object classInstance) {
+	public synchronized void setService(Class cls, Object classInstance) {
 		
 		log.debug("Setting service: " + cls);
 		
@@ -768,7 +785,9 @@ public class ServiceContext implements ApplicationContextAware {
 					if (replacingService)
 						moveAddedAOP(cachedService, advisedService);
 					
-					services.put(cls, advisedService);
+					Map<Class, Object> newServices = new HashMap<Class, Object>(services);
+					newServices.put(cls, advisedService);
+					services = Collections.unmodifiableMap(newServices);
 				}
 				log.debug("Service: " + cls + " set successfully");
 			}
@@ -856,7 +875,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 * getService to wait until <code>doneRefreshingContext</code> is called
 	 */
 	public void startRefreshingContext() {
-		synchronized (refreshingContext) {
+		synchronized (refreshLock) {
 			refreshingContext = true;
 		}
 	}
@@ -866,9 +885,11 @@ public class ServiceContext implements ApplicationContextAware {
 	 * getService that were waiting because <code>startRefreshingContext</code> was called
 	 */
 	public void doneRefreshingContext() {
-		synchronized (refreshingContext) {
-			refreshingContext.notifyAll();
+		synchronized (refreshLock) {
 			refreshingContext = false;
+			CountDownLatch done = refreshDone;
+			refreshDone = new CountDownLatch(1);
+			done.countDown();
 		}
 	}
 	
@@ -881,7 +902,7 @@ public class ServiceContext implements ApplicationContextAware {
 	 *         doneRefreshingContext()
 	 */
 	public boolean isRefreshingContext() {
-		return refreshingContext.booleanValue();
+		return refreshingContext;
 	}
 	
 	/**
@@ -933,6 +954,9 @@ public class ServiceContext implements ApplicationContextAware {
 	 */
 	public void setApplicationContext(ApplicationContext applicationContext) {
 		this.applicationContext = applicationContext;
+		
+		// the handlers of the previous context are not registered anymore
+		HandlerUtil.clearCachedHandlers();
 	}
 	
 	/**
@@ -944,15 +968,14 @@ public class ServiceContext implements ApplicationContextAware {
 	 * @since 1.9
 	 */
 	private void runOpenmrsServiceOnStartup(final OpenmrsService openmrsService, final String classString) {
+		final CountDownLatch done = refreshDone;
 		new Thread() {
 			
 			@Override
 			public void run() {
 				try {
-					synchronized (refreshingContext) {
-						//Need to wait for application context to finish refreshing otherwise we get into trouble.
-						refreshingContext.wait();
-					}
+					//Need to wait for application context to finish refreshing otherwise we get into trouble.
+					done.await();
 					
 					Daemon.runStartupForService(openmrsService);
 				}
@@ -13,16 +13,19 @@
  */
 package org.openmrs.api.context;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Location;
+import org.openmrs.Privilege;
 import org.openmrs.Role;
 import org.openmrs.User;
 import org.openmrs.api.APIAuthenticationException;
@@ -77,12 +80,63 @@ public class UserContext {
 	 */
 	private Location location = null;
 	
+	/**
+	 * The privileges of the current user, computed on the first check after the user or any role
+	 * changed
+	 */
+	private volatile PrivilegeSet privileges = null;
+	
+	/**
+	 * Bumped whenever a role, privilege or the roles of a user change anywhere
+	 * 
+	 * @see #privilegesChanged()
+	 */
+	private static final AtomicInteger privilegesVersion = new AtomicInteger();
+	
+	/**
+	 * The names of all privileges given by the expanded roles of a user, including the anonymous
+	 * and authenticated roles. Never modified once built.
+	 */
+	private static class PrivilegeSet {
+		
+		private final User user;
+		
+		private final int version;
+		
+		private final boolean superUser;
+		
+		private final Set<String> names;
+		
+		public PrivilegeSet(User user, int version, boolean superUser, Set<String> names) {
+			this.user = user;
+			this.version = version;
+			this.superUser = superUser;
+			this.names = Collections.unmodifiableSet(names);
+		}
+	}
+	
 	/**
 	 * Default public constructor
 	 */
 	public UserContext() {
 	}
 	
+	/**
+	 * Creates a user context for another thread, authenticated as the same user and with the same
+	 * locale and location as the given one. User contexts are not thread safe, so threads must not
+	 * share one. The proxy privileges are not copied.
+	 * 
+	 * @param userContext the user context to copy
+	 * @should be authenticated as the same user
+	 * @should not copy the proxy privileges
+	 * @since 1.9
+	 */
+	public UserContext(UserContext userContext) {
+		this.user = userContext.user;
+		this.locale = userContext.locale;
+		this.location = userContext.location;
+	}
+	
 	/**
 	 * Authenticate the user to this UserContext.
 	 * 
@@ -98,6 +152,7 @@ public class UserContext {
 			log.debug("Authenticating with username: " + username);
 		
 		this.user = contextDAO.authenticate(username, password);
+		this.privileges = null;
 		
 		setUserLocation();
 		if (log.isDebugEnabled())
@@ -119,6 +174,7 @@ public class UserContext {
 		
 		if (user != null) {
 			user = Context.getUserService().getUser(user.getUserId());
+			privileges = null;
 			//update the stored location in the user's session
 			setUserLocation();
 		}
@@ -153,6 +209,7 @@ public class UserContext {
 			userToBecome.getPrivileges().size();
 		
 		this.user = userToBecome;
+		this.privileges = null;
 		//update the user's location
 		setUserLocation();
 		
@@ -184,6 +241,7 @@ public class UserContext {
 	public void logout() {
 		log.debug("setting user to null on logout");
 		user = null;
+		privileges = null;
 	}
 	
 	/**
@@ -288,20 +346,23 @@ public class UserContext {
 	 * @should not authorize if authenticated role does not have specified privilege
 	 * @should not authorize if proxied user does not have specified privilege
 	 * @should not authorize if anonymous user does not have specified privilege
+	 * @should authorize once a privilege is added to a role of the user after the first check
 	 */
 	public boolean hasPrivilege(String privilege) {
+		PrivilegeSet privilegeSet = getPrivilegeSet();
 		
 		// if a user has logged in, check their privileges
 		if (isAuthenticated()) {
 			
-			// check user's privileges
-			if (getAuthenticatedUser().hasPrivilege(privilege))
-				return true;
-			
-			if (getAuthenticatedRole().hasPrivilege(privilege))
+			// all authenticated users have the "" (empty) privilege
+			if (privilege == null || privilege.equals("") || privilegeSet.superUser)
 				return true;
 		}
 		
+		// the user's, authenticated and anonymous roles' privileges
+		if (privilegeSet.names.contains(privilege))
+			return true;
+		
 		if (log.isDebugEnabled())
 			log.debug("Checking '" + privilege + "' against proxies: " + proxies);
 		
@@ -310,13 +371,69 @@ public class UserContext {
 			if (s.equals(privilege))
 				return true;
 		
-		if (getAnonymousRole().hasPrivilege(privilege))
-			return true;
-		
 		// default return value
 		return false;
 	}
 	
+	/**
+	 * Gets the privileges of the current user, expanding its roles again if the user or any role
+	 * changed since they were last expanded
+	 * 
+	 * @return the privileges of the current user
+	 */
+	private PrivilegeSet getPrivilegeSet() {
+		User currentUser = user;
+		int version = privilegesVersion.get();
+		PrivilegeSet privilegeSet = privileges;
+		if (privilegeSet != null && privilegeSet.user == currentUser && privilegeSet.version == version)
+			return privilegeSet;
+		
+		if (privilegeSet != null && privilegeSet.version != version) {
+			// the cached roles may have changed too
+			anonymousRole = null;
+			authenticatedRole = null;
+		}
+		
+		Set<Role> roles = new HashSet<Role>();
+		if (currentUser != null)
+			roles.addAll(currentUser.getAllRoles());
+		
+		boolean superUser = false;
+		for (Role role : roles) {
+			if (RoleConstants.SUPERUSER.equals(role.getRole()))
+				superUser = true;
+		}
+		
+		// a superuser has every privilege, there is no need to look at the other roles
+		Set<String> names = new HashSet<String>();
+		if (!superUser) {
+			roles.add(getAnonymousRole());
+			if (currentUser != null)
+				roles.add(getAuthenticatedRole());
+			
+			for (Role role : roles) {
+				if (role.getPrivileges() != null) {
+					for (Privilege privilege : role.getPrivileges())
+						names.add(privilege.getPrivilege());
+				}
+			}
+		}
+		
+		privilegeSet = new PrivilegeSet(currentUser, version, superUser, names);
+		privileges = privilegeSet;
+		return privilegeSet;
+	}
+	
+	/**
+	 * Makes every UserContext expand the roles of its user again before its next privilege check.
+	 * Needs to be called whenever a role, a privilege or the roles of a user are changed.
+	 * 
+	 * @since 1.9
+	 */
+	public static void privilegesChanged() {
+		privilegesVersion.incrementAndGet();
+	}
+	
 	/**
 	 * Convenience method to get the Role in the system designed to be given to all users
 	 * 
@@ -15,6 +15,7 @@ package org.openmrs.api.db;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.GlobalProperty;
 import org.openmrs.reporting.AbstractReportObject;
@@ -114,6 +115,15 @@ public interface AdministrationDAO {
 	 */
 	public List<GlobalProperty> getAllGlobalProperties() throws DAOException;
 	
+	/**
+	 * Gets the values of all global properties without loading them into the session
+	 * 
+	 * @return property values by property name
+	 * @throws DAOException
+	 * @since 1.9
+	 */
+	public Map<String, String> getAllGlobalPropertyValues() throws DAOException;
+	
 	public GlobalProperty getGlobalPropertyByUuid(String uuid) throws DAOException;
 	
 	/**
@@ -12,6 +12,8 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -290,6 +292,48 @@ public interface ConceptDAO {
 	 */
 	public void updateConceptWord(Concept concept) throws DAOException;
 	
+	/**
+	 * @return the number of concepts in the dictionary, retired or not
+	 * @since 1.9
+	 */
+	public Integer getCountOfAllConcepts() throws DAOException;
+	
+	/**
+	 * Returns the next concepts in concept id order with their names loaded, evicted from the
+	 * session so that they can be read from other threads
+	 * 
+	 * @param afterConceptId only concepts with a greater id are returned, null to start from the
+	 *            first concept
+	 * @param maxResults the maximum number of concepts to return
+	 * @return the concepts, in ascending concept id order
+	 * @since 1.9
+	 */
+	public List<Concept> getDetachedConceptsWithNames(Integer afterConceptId, int maxResults) throws DAOException;
+	
+	/**
+	 * @return the highest concept word id in the concept word table, or null if it is empty
+	 * @since 1.9
+	 */
+	public Integer getMaxConceptWordId() throws DAOException;
+	
+	/**
+	 * Deletes the concept words whose ids are between the given bounds
+	 * 
+	 * @param minConceptWordId the lowest id to delete, null for no lower bound
+	 * @param maxConceptWordId the highest id to delete, null for no upper bound
+	 * @since 1.9
+	 */
+	public void deleteConceptWords(Integer minConceptWordId, Integer maxConceptWordId) throws DAOException;
+	
+	/**
+	 * Inserts the given concept words using JDBC batches. The words must already be weighed and
+	 * their concepts and names must have ids.
+	 * 
+	 * @param words the words to insert
+	 * @since 1.9
+	 */
+	public void saveConceptWords(Collection<ConceptWord> words) throws DAOException;
+	
 	public ConceptNameTag saveConceptNameTag(ConceptNameTag nameTag);
 	
 	public ConceptNameTag getConceptNameTag(Integer i);
@@ -522,4 +566,21 @@ public interface ConceptDAO {
 	 */
 	public Double weighConceptWord(ConceptWord word);
 	
+	/**
+	 * Gets the next page of concepts to export, with their names, descriptions, answers, set
+	 * members and mappings loaded, and the names of the concepts their answers and set members
+	 * refer to
+	 * 
+	 * @param afterConceptId the concept id to start after, or null to start at the lowest id
+	 * @param changedSince only get concepts created or changed on or after this date, or null to
+	 *            get all of them
+	 * @param includeRetired whether to get retired concepts
+	 * @param maxResults the maximum number of concepts to get
+	 * @return the concepts in ascending id order
+	 * @throws DAOException
+	 * @see org.openmrs.api.ConceptService#exportConceptDictionary(java.io.OutputStream, String,
+	 *      Date, boolean, boolean)
+	 */
+	public List<Concept> getConceptsForExport(Integer afterConceptId, Date changedSince, boolean includeRetired,
+	        int maxResults) throws DAOException;
 }
@@ -15,6 +15,7 @@ package org.openmrs.api.db;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +43,15 @@ public interface EncounterDAO {
 	 */
 	public Encounter saveEncounter(Encounter encounter) throws DAOException;
 	
+	/**
+	 * Saves the given encounters and flushes them to the database once
+	 * 
+	 * @param encounters to be saved
+	 * @throws DAOException
+	 * @see EncounterService#saveEncounters(List)
+	 */
+	public void saveEncounters(List<Encounter> encounters) throws DAOException;
+	
 	/**
 	 * Purge an encounter from database.
 	 * 
@@ -192,4 +202,9 @@ public interface EncounterDAO {
 	 * @see EncounterService#getEncountersByVisit(Visit)
 	 */
 	public List<Encounter> getEncountersByVisit(Visit visit);
+	
+	/**
+	 * @see org.openmrs.api.EncounterService#encounterIterator(java.lang.Integer)
+	 */
+	public Iterator<Encounter> encounterIterator(Integer pageSize) throws DAOException;
 }
@@ -14,7 +14,9 @@
 package org.openmrs.api.db;
 
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.Concept;
 import org.openmrs.ConceptName;
@@ -24,6 +26,7 @@ import org.openmrs.MimeType;
 import org.openmrs.Obs;
 import org.openmrs.Person;
 import org.openmrs.api.ObsService;
+import org.openmrs.api.ObsService.ObsGrouping;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
 
 /**
@@ -105,4 +108,75 @@ public interface ObsDAO {
 	 */
 	public Obs getObsByUuid(String uuid);
 	
+	/**
+	 * @see org.openmrs.api.ObsService#obsIterator(java.lang.Integer)
+	 */
+	public Iterator<Obs> obsIterator(Integer pageSize) throws DAOException;
+	
+	/**
+	 * Computes the count, minimum, maximum, mean and sum of squares of the numeric values of a
+	 * question concept's non-voided obs
+	 * 
+	 * @param groupBy what to group the values by, or null to compute them over all values
+	 * @return one row per group, holding the location id or the year and month of the group if
+	 *         grouped, followed by the count, minimum, maximum, mean and sum of squares, in ascending
+	 *         order of the group
+	 * @see org.openmrs.api.ObsService#getNumericObsStatistics(Concept, List, Date, Date, Double,
+	 *      Double, double[], Integer)
+	 * @see org.openmrs.api.ObsService#getNumericObsStatisticsByGroup(Concept, ObsGrouping, List,
+	 *      Date, Date)
+	 */
+	public List<Object[]> getNumericObsAggregates(Concept question, ObsGrouping groupBy, List<Location> locations,
+	        Date fromDate, Date toDate, Double minValue, Double maxValue) throws DAOException;
+	
+	/**
+	 * Gets the numeric value at the given position when the values of a question concept's
+	 * non-voided obs are sorted in ascending order
+	 * 
+	 * @param position the zero based position
+	 * @return the value, or null if there are not that many values
+	 * @see org.openmrs.api.ObsService#getNumericObsStatistics(Concept, List, Date, Date, Double,
+	 *      Double, double[], Integer)
+	 */
+	public Double getNumericObsValueAt(Concept question, List<Location> locations, Date fromDate, Date toDate,
+	        Double minValue, Double maxValue, int position) throws DAOException;
+	
+	/**
+	 * Counts the numeric values of a question concept's non-voided obs in bins of equal width
+	 * 
+	 * @param start the lower bound of bin 0
+	 * @param binWidth the width of each bin
+	 * @return the number of values by bin, leaving out empty bins
+	 * @see org.openmrs.api.ObsService#getNumericObsStatistics(Concept, List, Date, Date, Double,
+	 *      Double, double[], Integer)
+	 */
+	public Map<Integer, Long> getNumericObsHistogram(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate, Double minValue, Double maxValue, double start, double binWidth) throws DAOException;
+	
+	/**
+	 * @return the number of obs by coded answer concept id, with the obs without a coded answer
+	 *         under null
+	 * @see org.openmrs.api.ObsService#getCodedObsFrequencies(Concept, List, Date, Date)
+	 */
+	public Map<Integer, Long> getCodedObsCounts(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsOutsideRange(Concept, double, double, List, Date,
+	 *      Date, Integer)
+	 */
+	public List<Obs> getNumericObsOutsideRange(Concept question, double lowerLimit, double upperLimit,
+	        List<Location> locations, Date fromDate, Date toDate, Integer maxResults) throws DAOException;
+	
+	/**
+	 * @return the obs datetime and value of each obs, in ascending date order
+	 * @see org.openmrs.api.ObsService#getNumericObsTimeSeries(Person, Concept, Date, Date)
+	 */
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getLastObsChange(Person, Concept)
+	 */
+	public Date getLastObsChange(Person who, Concept question) throws DAOException;
 }
@@ -13,6 +13,7 @@
  */
 package org.openmrs.api.db;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.openmrs.Location;
@@ -20,6 +21,8 @@ import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.api.PatientService;
+import org.openmrs.patient.DuplicatePatientDetector;
+import org.openmrs.patient.PatientSearchResults;
 
 /**
  * Database methods for the PatientService
@@ -107,6 +110,16 @@ public interface PatientDAO {
 	 */
 	public List<Patient> getDuplicatePatientsByAttributes(List<String> attributes) throws DAOException;
 	
+	/**
+	 * Adds the gender, birthdate and every non voided name of the patients to the given detector
+	 * 
+	 * @param detector the detector to fill
+	 * @param includeVoided whether voided patients are added too
+	 * @see org.openmrs.api.PatientService#getLikelyDuplicatePatients(Double, Integer, boolean)
+	 */
+	public void addDuplicatePatientCandidates(DuplicatePatientDetector detector, boolean includeVoided)
+	        throws DAOException;
+	
 	/**
 	 * @see org.openmrs.api.PatientService#isIdentifierInUseByAnotherPatient(PatientIdentifier)
 	 */
@@ -150,4 +163,17 @@ public interface PatientDAO {
 	 */
 	public Integer getCountOfPatients(String name, String identifier, List<PatientIdentifierType> identifierTypes,
 	        boolean matchIdentifierExactly);
+	
+	/**
+	 * Searches for patients by name or by identifier, only one of the two should be given
+	 * 
+	 * @see PatientService#searchPatients(String, Integer, Integer)
+	 */
+	public PatientSearchResults searchPatients(String name, String identifier, Integer start, Integer length)
+	        throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.PatientService#patientIterator(java.lang.Integer)
+	 */
+	public Iterator<Patient> patientIterator(Integer pageSize) throws DAOException;
 }
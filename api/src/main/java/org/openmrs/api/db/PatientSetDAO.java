@@ -40,6 +40,7 @@ import org.openmrs.ProgramWorkflowState;
 import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.PatientSetService;
+import org.openmrs.api.PatientSetService.PatientDataHandler;
 import org.openmrs.api.PatientSetService.PatientLocationMethod;
 import org.openmrs.api.PatientSetService.TimeModifier;
 
@@ -93,6 +94,27 @@ public interface PatientSetDAO {
 	
 	public Map<Integer, Encounter> getEncountersByType(Cohort patients, List<EncounterType> encType);
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamObservations(Cohort, Concept, Integer,
+	 *      PatientDataHandler)
+	 */
+	public void streamObservations(Cohort patients, Concept concept, Date fromDate, Date toDate, Integer batchSize,
+	        PatientDataHandler<List<Obs>> handler) throws DAOException;
+	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamObservationsValues(Cohort, Concept, List, Integer,
+	 *      boolean, Integer, PatientDataHandler)
+	 */
+	public void streamObservationsValues(Cohort patients, Concept c, List<String> attributes, Integer limit,
+	        boolean showMostRecentFirst, Integer batchSize, PatientDataHandler<List<List<Object>>> handler);
+	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamEncountersByType(Cohort, List, Integer,
+	 *      PatientDataHandler)
+	 */
+	public void streamEncountersByType(Cohort patients, List<EncounterType> encTypes, Integer batchSize,
+	        PatientDataHandler<Encounter> handler);
+	
 	public Map<Integer, Object> getEncounterAttrsByType(Cohort patients, List<EncounterType> encTypes, String attr,
 	        Boolean earliestFirst);
 	
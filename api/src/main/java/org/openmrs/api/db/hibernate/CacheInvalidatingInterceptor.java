@@ -0,0 +1,127 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+
+/**
+ * Base class for interceptors that keep a cache up to date with the database. Subclasses tell which
+ * keys of the cache a saved, changed or deleted object affects. The values of those keys are thrown
+ * away right away and once more when the transaction ends, so that values looked up by other
+ * threads in between, while the change was not yet committed or rolled back, are not kept either.
+ * 
+ * @param <K> the type of the keys values are thrown away by
+ * @since 1.9
+ */
+public abstract class CacheInvalidatingInterceptor<K> extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// the keys changed by the transaction of the current thread
+	private final ThreadLocal<Set<K>> changedKeys = new ThreadLocal<Set<K>>();
+	
+	/**
+	 * @param entity a saved, changed or deleted object
+	 * @return the keys of the cached values that depend on the object, empty if there are none
+	 */
+	protected abstract Collection<K> getKeys(Object entity);
+	
+	/**
+	 * Throws away the cached values of the given key
+	 * 
+	 * @param key a key returned by {@link #getKeys(Object)}
+	 */
+	protected abstract void invalidate(K key);
+	
+	/**
+	 * Throws away every cached value, for when the tables are written to without going through
+	 * Hibernate
+	 */
+	public abstract void invalidateAll();
+	
+	/**
+	 * Throws away the values that depend on the given object and remembers their keys for the end
+	 * of the transaction
+	 * 
+	 * @param entity a saved, changed or deleted object
+	 */
+	protected final void changed(Object entity) {
+		Collection<K> keys = getKeys(entity);
+		if (keys.isEmpty())
+			return;
+		
+		Set<K> changed = changedKeys.get();
+		if (changed == null) {
+			changed = new HashSet<K>();
+			changedKeys.set(changed);
+		}
+		for (K key : keys) {
+			invalidate(key);
+			changed.add(key);
+		}
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onSave(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 * @should throw away the values that depend on the saved object
+	 * @should throw away the values again when the transaction ends
+	 */
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		changed(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		changed(entity);
+		return false;
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onDelete(java.lang.Object, java.io.Serializable,
+	 *      java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		changed(entity);
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionCompletion(org.hibernate.Transaction)
+	 * @should not throw away values when the transaction changed nothing
+	 */
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Set<K> keys = changedKeys.get();
+		if (keys == null)
+			return;
+		changedKeys.remove();
+		for (K key : keys)
+			invalidate(key);
+	}
+}
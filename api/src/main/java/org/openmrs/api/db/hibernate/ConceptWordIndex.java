@@ -0,0 +1,472 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openmrs.util.CompressedIntegerSet;
+
+/**
+ * An in-memory copy of the concept_word table used by {@link HibernateConceptDAO} to answer
+ * concept searches without querying the database. Words are kept per locale in a sorted map so
+ * that a prefix match is a single range lookup, and the concept class, datatype and retired
+ * status of each concept are kept as {@link CompressedIntegerSet}s of concept ids so that the
+ * search restrictions become set operations. <br/>
+ * <br/>
+ * The matching rules are the same as the ones used by the database search: the first word of
+ * the phrase must be the start of the matched word, and every other word of the phrase must be
+ * the start of some word of the same concept in one of the given locales. <br/>
+ * <br/>
+ * This class is thread safe.
+ * 
+ * @since 1.9
+ */
+public class ConceptWordIndex {
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final Map<Locale, TreeMap<String, List<Entry>>> wordsByLocale = new HashMap<Locale, TreeMap<String, List<Entry>>>();
+	
+	private final Map<Integer, List<Entry>> entriesByConcept = new HashMap<Integer, List<Entry>>();
+	
+	private final Map<Integer, Integer> conceptClasses = new HashMap<Integer, Integer>();
+	
+	private final Map<Integer, Integer> conceptDatatypes = new HashMap<Integer, Integer>();
+	
+	private final Map<Integer, CompressedIntegerSet> classMembers = new HashMap<Integer, CompressedIntegerSet>();
+	
+	private final Map<Integer, CompressedIntegerSet> datatypeMembers = new HashMap<Integer, CompressedIntegerSet>();
+	
+	private final CompressedIntegerSet retired = new CompressedIntegerSet();
+	
+	/**
+	 * Orders matches by descending weight, then by concept id so that results are stable between
+	 * calls
+	 */
+	private static final Comparator<Entry> BY_WEIGHT = new Comparator<Entry>() {
+		
+		public int compare(Entry a, Entry b) {
+			int c = Double.compare(b.getWeight(), a.getWeight());
+			return c != 0 ? c : a.getConceptId() - b.getConceptId();
+		}
+	};
+	
+	/**
+	 * Sets the concept class, datatype and retired status of a concept, replacing any that were
+	 * set before
+	 * 
+	 * @param conceptId the concept id
+	 * @param conceptClassId the concept class id, may be null
+	 * @param datatypeId the concept datatype id, may be null
+	 * @param isRetired whether the concept is retired
+	 */
+	public void putConceptAttributes(Integer conceptId, Integer conceptClassId, Integer datatypeId, boolean isRetired) {
+		lock.writeLock().lock();
+		try {
+			setAttributes(conceptId, conceptClassId, datatypeId, isRetired);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Adds a single word to the index
+	 * 
+	 * @param entry the word to add
+	 */
+	public void addEntry(Entry entry) {
+		lock.writeLock().lock();
+		try {
+			add(entry);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replaces everything indexed for a concept with the given attributes and words
+	 * 
+	 * @param conceptId the concept id
+	 * @param conceptClassId the concept class id, may be null
+	 * @param datatypeId the concept datatype id, may be null
+	 * @param isRetired whether the concept is retired
+	 * @param entries the words of the concept
+	 * @should replace the words and attributes of the concept
+	 */
+	public void putConcept(Integer conceptId, Integer conceptClassId, Integer datatypeId, boolean isRetired,
+	        Collection<Entry> entries) {
+		lock.writeLock().lock();
+		try {
+			remove(conceptId);
+			setAttributes(conceptId, conceptClassId, datatypeId, isRetired);
+			for (Entry entry : entries)
+				add(entry);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Removes a concept and all of its words from the index
+	 * 
+	 * @param conceptId the concept id
+	 * @should remove the concept from search results
+	 */
+	public void removeConcept(Integer conceptId) {
+		lock.writeLock().lock();
+		try {
+			remove(conceptId);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds the concepts with a word that matches the given search words, returning the highest
+	 * weighted matching word of each concept, ordered by descending weight
+	 * 
+	 * @param words the unique words of the search phrase
+	 * @param locales the locales to restrict to
+	 * @param includeRetired whether to include retired concepts
+	 * @param answerIds if not null, only these concepts are returned
+	 * @param requireClassIds concept classes to restrict to
+	 * @param excludeClassIds concept classes to leave out
+	 * @param requireDatatypeIds concept datatypes to restrict to
+	 * @param excludeDatatypeIds concept datatypes to leave out
+	 * @param start the number of results to skip, may be null
+	 * @param size if non zero, the maximum number of results to return, may be null
+	 * @return one entry per matched concept
+	 * @should match every word of the phrase against the start of a word of the concept
+	 * @should return the highest weighted word of each concept first
+	 * @should exclude retired concepts unless asked to include them
+	 * @should restrict on concept classes and datatypes
+	 * @should restrict on answers when there are no search words
+	 */
+	public List<Entry> getConcepts(List<String> words, Collection<Locale> locales, boolean includeRetired,
+	        Collection<Integer> answerIds, Collection<Integer> requireClassIds, Collection<Integer> excludeClassIds,
+	        Collection<Integer> requireDatatypeIds, Collection<Integer> excludeDatatypeIds, Integer start, Integer size) {
+		Map<Integer, Entry> best = new LinkedHashMap<Integer, Entry>();
+		for (Entry entry : findEntries(words, locales, includeRetired, answerIds, requireClassIds, excludeClassIds,
+		    requireDatatypeIds, excludeDatatypeIds)) {
+			Entry current = best.get(entry.getConceptId());
+			if (current == null || entry.getWeight() > current.getWeight())
+				best.put(entry.getConceptId(), entry);
+		}
+		
+		List<Entry> results = new ArrayList<Entry>(best.values());
+		Collections.sort(results, BY_WEIGHT);
+		
+		int from = (start != null && start > 0) ? Math.min(start, results.size()) : 0;
+		int to = (size != null && size > 0) ? Math.min(from + size, results.size()) : results.size();
+		return new ArrayList<Entry>(results.subList(from, to));
+	}
+	
+	/**
+	 * Counts the words, or the distinct concepts, that match the given search words
+	 * 
+	 * @param words the unique words of the search phrase
+	 * @param locales the locales to restrict to
+	 * @param includeRetired whether to include retired concepts
+	 * @param answerIds if not null, only these concepts are counted
+	 * @param requireClassIds concept classes to restrict to
+	 * @param excludeClassIds concept classes to leave out
+	 * @param requireDatatypeIds concept datatypes to restrict to
+	 * @param excludeDatatypeIds concept datatypes to leave out
+	 * @param forUniqueConcepts whether to count distinct concepts rather than matched words
+	 * @return the number of matches
+	 * @should count matched words or distinct concepts
+	 */
+	public int getCount(List<String> words, Collection<Locale> locales, boolean includeRetired,
+	        Collection<Integer> answerIds, Collection<Integer> requireClassIds, Collection<Integer> excludeClassIds,
+	        Collection<Integer> requireDatatypeIds, Collection<Integer> excludeDatatypeIds, boolean forUniqueConcepts) {
+		List<Entry> entries = findEntries(words, locales, includeRetired, answerIds, requireClassIds, excludeClassIds,
+		    requireDatatypeIds, excludeDatatypeIds);
+		if (!forUniqueConcepts)
+			return entries.size();
+		
+		CompressedIntegerSet conceptIds = new CompressedIntegerSet();
+		for (Entry entry : entries)
+			conceptIds.add(entry.getConceptId());
+		return conceptIds.size();
+	}
+	
+	/**
+	 * @return the number of concepts in the index
+	 */
+	public int getConceptCount() {
+		lock.readLock().lock();
+		try {
+			return conceptClasses.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds every indexed word in the given locales that the search matches on
+	 */
+	private List<Entry> findEntries(List<String> words, Collection<Locale> locales, boolean includeRetired,
+	        Collection<Integer> answerIds, Collection<Integer> requireClassIds, Collection<Integer> excludeClassIds,
+	        Collection<Integer> requireDatatypeIds, Collection<Integer> excludeDatatypeIds) {
+		List<Entry> results = new ArrayList<Entry>();
+		if (words.isEmpty() && (answerIds == null || answerIds.isEmpty()))
+			return results;
+		
+		Set<Locale> localeSet = new HashSet<Locale>(locales);
+		
+		lock.readLock().lock();
+		try {
+			// the concepts a match must belong to, null for no restriction
+			CompressedIntegerSet allowed = null;
+			if (answerIds != null && !answerIds.isEmpty())
+				allowed = new CompressedIntegerSet(answerIds);
+			for (int i = 1; i < words.size(); i++)
+				allowed = intersect(allowed, getConceptsWithWordStartingWith(words.get(i), localeSet));
+			if (requireClassIds != null && !requireClassIds.isEmpty())
+				allowed = intersect(allowed, union(classMembers, requireClassIds));
+			if (requireDatatypeIds != null && !requireDatatypeIds.isEmpty())
+				allowed = intersect(allowed, union(datatypeMembers, requireDatatypeIds));
+			
+			CompressedIntegerSet excluded = new CompressedIntegerSet();
+			if (excludeClassIds != null)
+				excluded.addAll(union(classMembers, excludeClassIds));
+			if (excludeDatatypeIds != null)
+				excluded.addAll(union(datatypeMembers, excludeDatatypeIds));
+			
+			if (allowed != null && allowed.isEmpty())
+				return results;
+			
+			if (words.isEmpty()) {
+				for (Integer conceptId : allowed) {
+					List<Entry> entries = entriesByConcept.get(conceptId);
+					if (entries != null && isIncluded(conceptId, excluded, includeRetired)) {
+						for (Entry entry : entries) {
+							if (localeSet.contains(entry.getLocale()))
+								results.add(entry);
+						}
+					}
+				}
+			} else {
+				for (Locale locale : localeSet) {
+					TreeMap<String, List<Entry>> localeWords = wordsByLocale.get(locale);
+					if (localeWords == null)
+						continue;
+					for (List<Entry> entries : prefixRange(localeWords, words.get(0)).values()) {
+						for (Entry entry : entries) {
+							int conceptId = entry.getConceptId();
+							if ((allowed == null || allowed.contains(conceptId))
+							        && isIncluded(conceptId, excluded, includeRetired))
+								results.add(entry);
+						}
+					}
+				}
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+		return results;
+	}
+	
+	private boolean isIncluded(int conceptId, CompressedIntegerSet excluded, boolean includeRetired) {
+		return !excluded.contains(conceptId) && (includeRetired || !retired.contains(conceptId));
+	}
+	
+	/**
+	 * @return the ids of the concepts with a word in one of the locales that starts with prefix
+	 */
+	private CompressedIntegerSet getConceptsWithWordStartingWith(String prefix, Set<Locale> locales) {
+		CompressedIntegerSet conceptIds = new CompressedIntegerSet();
+		for (Locale locale : locales) {
+			TreeMap<String, List<Entry>> localeWords = wordsByLocale.get(locale);
+			if (localeWords == null)
+				continue;
+			for (List<Entry> entries : prefixRange(localeWords, prefix).values()) {
+				for (Entry entry : entries)
+					conceptIds.add(entry.getConceptId());
+			}
+		}
+		return conceptIds;
+	}
+	
+	/**
+	 * @return the part of the sorted word map whose keys start with prefix
+	 */
+	private static SortedMap<String, List<Entry>> prefixRange(TreeMap<String, List<Entry>> words, String prefix) {
+		return words.subMap(prefix, prefix + Character.MAX_VALUE);
+	}
+	
+	private static CompressedIntegerSet intersect(CompressedIntegerSet a, CompressedIntegerSet b) {
+		return a == null ? b : CompressedIntegerSet.and(a, b);
+	}
+	
+	private static CompressedIntegerSet union(Map<Integer, CompressedIntegerSet> members, Collection<Integer> ids) {
+		CompressedIntegerSet result = new CompressedIntegerSet();
+		for (Integer id : ids) {
+			CompressedIntegerSet set = members.get(id);
+			if (set != null)
+				result.addAll(set);
+		}
+		return result;
+	}
+	
+	/**
+	 * Must be called with the write lock held
+	 */
+	private void setAttributes(Integer conceptId, Integer conceptClassId, Integer datatypeId, boolean isRetired) {
+		removeAttributes(conceptId);
+		conceptClasses.put(conceptId, conceptClassId);
+		conceptDatatypes.put(conceptId, datatypeId);
+		if (conceptClassId != null)
+			getMembers(classMembers, conceptClassId).add(conceptId.intValue());
+		if (datatypeId != null)
+			getMembers(datatypeMembers, datatypeId).add(conceptId.intValue());
+		if (isRetired)
+			retired.add(conceptId.intValue());
+	}
+	
+	/**
+	 * Must be called with the write lock held
+	 */
+	private void add(Entry entry) {
+		TreeMap<String, List<Entry>> localeWords = wordsByLocale.get(entry.getLocale());
+		if (localeWords == null) {
+			localeWords = new TreeMap<String, List<Entry>>();
+			wordsByLocale.put(entry.getLocale(), localeWords);
+		}
+		List<Entry> entries = localeWords.get(entry.getWord());
+		if (entries == null) {
+			entries = new ArrayList<Entry>(1);
+			localeWords.put(entry.getWord(), entries);
+		}
+		entries.add(entry);
+		
+		List<Entry> conceptEntries = entriesByConcept.get(entry.getConceptId());
+		if (conceptEntries == null) {
+			conceptEntries = new ArrayList<Entry>();
+			entriesByConcept.put(entry.getConceptId(), conceptEntries);
+		}
+		conceptEntries.add(entry);
+	}
+	
+	/**
+	 * Must be called with the write lock held
+	 */
+	private void remove(Integer conceptId) {
+		removeAttributes(conceptId);
+		List<Entry> conceptEntries = entriesByConcept.remove(conceptId);
+		if (conceptEntries == null)
+			return;
+		for (Entry entry : conceptEntries) {
+			TreeMap<String, List<Entry>> localeWords = wordsByLocale.get(entry.getLocale());
+			List<Entry> entries = localeWords.get(entry.getWord());
+			if (entries != null) {
+				entries.remove(entry);
+				if (entries.isEmpty())
+					localeWords.remove(entry.getWord());
+			}
+		}
+	}
+	
+	private void removeAttributes(Integer conceptId) {
+		Integer conceptClassId = conceptClasses.remove(conceptId);
+		if (conceptClassId != null)
+			getMembers(classMembers, conceptClassId).remove(conceptId.intValue());
+		Integer datatypeId = conceptDatatypes.remove(conceptId);
+		if (datatypeId != null)
+			getMembers(datatypeMembers, datatypeId).remove(conceptId.intValue());
+		retired.remove(conceptId.intValue());
+	}
+	
+	private static CompressedIntegerSet getMembers(Map<Integer, CompressedIntegerSet> members, Integer id) {
+		CompressedIntegerSet set = members.get(id);
+		if (set == null) {
+			set = new CompressedIntegerSet();
+			members.put(id, set);
+		}
+		return set;
+	}
+	
+	/**
+	 * A single indexed word of a concept name
+	 */
+	public static class Entry {
+		
+		private final int conceptId;
+		
+		private final Integer conceptNameId;
+		
+		private final String word;
+		
+		private final Locale locale;
+		
+		private final double weight;
+		
+		public Entry(int conceptId, Integer conceptNameId, String word, Locale locale, double weight) {
+			this.conceptId = conceptId;
+			this.conceptNameId = conceptNameId;
+			this.word = word;
+			this.locale = locale;
+			this.weight = weight;
+		}
+		
+		public int getConceptId() {
+			return conceptId;
+		}
+		
+		public Integer getConceptNameId() {
+			return conceptNameId;
+		}
+		
+		public String getWord() {
+			return word;
+		}
+		
+		public Locale getLocale() {
+			return locale;
+		}
+		
+		public double getWeight() {
+			return weight;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return word + " (" + locale + ") -> " + conceptId;
+		}
+	}
+}
@@ -268,6 +268,19 @@ public class HibernateAdministrationDAO implements AdministrationDAO {
 		return criteria.addOrder(Order.asc("property")).list();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.AdministrationDAO#getAllGlobalPropertyValues()
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, String> getAllGlobalPropertyValues() throws DAOException {
+		List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(
+		    "select gp.property, gp.propertyValue from GlobalProperty gp").list();
+		Map<String, String> values = new HashMap<String, String>();
+		for (Object[] row : rows)
+			values.put((String) row[0], (String) row[1]);
+		return values;
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.AdministrationDAO#getGlobalPropertiesByPrefix(java.lang.String)
 	 */
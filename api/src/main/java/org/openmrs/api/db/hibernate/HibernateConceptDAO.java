@@ -20,24 +20,32 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.NonUniqueObjectException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -74,6 +82,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ConceptDAO;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.util.OpenmrsConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * The Hibernate class for Concepts, Drugs, and related classes. <br/>
@@ -88,6 +98,30 @@ public class HibernateConceptDAO implements ConceptDAO {
 	
 	private SessionFactory sessionFactory;
 	
+	/**
+	 * In-memory copy of the concept_word table, only used when the
+	 * {@link OpenmrsConstants#GP_CONCEPT_SEARCH_IN_MEMORY_INDEX} global property is true. It is
+	 * built on the first search and dropped whenever it might no longer match the database.
+	 */
+	private volatile ConceptWordIndex conceptWordIndex;
+	
+	/**
+	 * Incremented every time the concept word index is dropped, so that an index that was being
+	 * built at the time is not kept
+	 */
+	private final AtomicInteger conceptWordIndexVersion = new AtomicInteger();
+	
+	/**
+	 * Bound to the current transaction once it has built the concept word index
+	 */
+	private final Object conceptWordIndexTransactionKey = new Object();
+	
+	/**
+	 * Bound to the current transaction to the concept word index changes it has to apply once it
+	 * commits
+	 */
+	private final Object conceptWordIndexUpdatesKey = new Object();
+	
 	/**
 	 * Sets the session factory
 	 * 
@@ -276,6 +310,8 @@ public class HibernateConceptDAO implements ConceptDAO {
 		
 		// now we can safely delete the concept
 		sessionFactory.getCurrentSession().delete(concept);
+		
+		updateConceptWordIndex(concept, null);
 	}
 	
 	/**
@@ -610,7 +646,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 		Integer i = c.getConceptId();
 		
 		List<Concept> concepts = sessionFactory.getCurrentSession().createCriteria(Concept.class).add(
-		    Expression.lt("conceptId", i)).addOrder(Order.desc("conceptId")).setFetchSize(1).list();
+		    Expression.lt("conceptId", i)).addOrder(Order.desc("conceptId")).setMaxResults(1).list();
 		
 		if (concepts.size() < 1)
 			return null;
@@ -625,7 +661,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 		Integer i = c.getConceptId();
 		
 		List<Concept> concepts = sessionFactory.getCurrentSession().createCriteria(Concept.class).add(
-		    Expression.gt("conceptId", i)).addOrder(Order.asc("conceptId")).setFetchSize(1).list();
+		    Expression.gt("conceptId", i)).addOrder(Order.asc("conceptId")).setMaxResults(1).list();
 		
 		if (concepts.size() < 1)
 			return null;
@@ -651,6 +687,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#updateConceptWord(org.openmrs.Concept)
+	 * @should keep the in-memory index up to date
 	 */
 	public void updateConceptWord(Concept concept) throws DAOException {
 		log.debug("updateConceptWord(" + concept + ")");
@@ -674,6 +711,8 @@ public class HibernateConceptDAO implements ConceptDAO {
 					sessionFactory.getCurrentSession().save(word);
 				}
 			}
+			
+			updateConceptWordIndex(concept, words);
 		}
 	}
 	
@@ -704,6 +743,160 @@ public class HibernateConceptDAO implements ConceptDAO {
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getCountOfAllConcepts()
+	 */
+	public Integer getCountOfAllConcepts() throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Concept.class);
+		criteria.setProjection(Projections.rowCount());
+		return (Integer) criteria.uniqueResult();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getDetachedConceptsWithNames(java.lang.Integer, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Concept> getDetachedConceptsWithNames(Integer afterConceptId, int maxResults) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		
+		// page on the ids first, limits don't mix with fetching a collection
+		Criteria idCriteria = session.createCriteria(Concept.class);
+		if (afterConceptId != null)
+			idCriteria.add(Expression.gt("conceptId", afterConceptId));
+		idCriteria.setProjection(Projections.property("conceptId")).addOrder(Order.asc("conceptId"));
+		idCriteria.setMaxResults(maxResults);
+		List<Integer> conceptIds = idCriteria.list();
+		if (conceptIds.isEmpty())
+			return Collections.emptyList();
+		
+		Criteria criteria = session.createCriteria(Concept.class);
+		criteria.add(Expression.in("conceptId", conceptIds));
+		criteria.setFetchMode("names", FetchMode.JOIN);
+		criteria.addOrder(Order.asc("conceptId"));
+		criteria.setResultTransformer(new DistinctRootEntityResultTransformer());
+		List<Concept> concepts = criteria.list();
+		
+		// also evicts the names
+		for (Concept concept : concepts)
+			session.evict(concept);
+		
+		return concepts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getConceptsForExport(java.lang.Integer, java.util.Date,
+	 *      boolean, int)
+	 */
+	public List<Concept> getConceptsForExport(Integer afterConceptId, Date changedSince, boolean includeRetired,
+	        int maxResults) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		
+		Criterion restriction = null;
+		if (!includeRetired)
+			restriction = Expression.eq("retired", false);
+		if (changedSince != null) {
+			Criterion changed = Expression.or(Expression.ge("dateCreated", changedSince), Expression.ge("dateChanged",
+			    changedSince));
+			restriction = (restriction == null) ? changed : Expression.and(restriction, changed);
+		}
+		List<Concept> concepts = KeysetIterator.getPage(session, Concept.class, restriction, afterConceptId, maxResults,
+		    "names", "descriptions", "answers", "conceptSets", "conceptMappings");
+		
+		// load the names of the concepts the answers and set members refer to in a few queries
+		// instead of one per concept
+		Set<Integer> referencedIds = new HashSet<Integer>();
+		for (Concept concept : concepts) {
+			for (ConceptAnswer answer : concept.getAnswers(true)) {
+				if (answer.getAnswerConcept() != null)
+					referencedIds.add(answer.getAnswerConcept().getConceptId());
+			}
+			for (ConceptSet set : concept.getConceptSets()) {
+				if (set.getConcept() != null)
+					referencedIds.add(set.getConcept().getConceptId());
+			}
+		}
+		for (Concept concept : concepts)
+			referencedIds.remove(concept.getConceptId());
+		
+		List<Integer> ids = new ArrayList<Integer>(referencedIds);
+		for (int from = 0; from < ids.size(); from += maxResults) {
+			Criteria criteria = session.createCriteria(Concept.class);
+			criteria.add(Expression.in("conceptId", ids.subList(from, Math.min(from + maxResults, ids.size()))));
+			criteria.setFetchMode("names", FetchMode.JOIN);
+			criteria.list();
+		}
+		
+		return concepts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#getMaxConceptWordId()
+	 */
+	public Integer getMaxConceptWordId() throws DAOException {
+		return (Integer) sessionFactory.getCurrentSession().createQuery("select max(conceptWordId) from ConceptWord")
+		        .uniqueResult();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#deleteConceptWords(java.lang.Integer, java.lang.Integer)
+	 */
+	public void deleteConceptWords(Integer minConceptWordId, Integer maxConceptWordId) throws DAOException {
+		StringBuilder hql = new StringBuilder("delete from ConceptWord where 1 = 1");
+		if (minConceptWordId != null)
+			hql.append(" and conceptWordId >= :minId");
+		if (maxConceptWordId != null)
+			hql.append(" and conceptWordId <= :maxId");
+		Query query = sessionFactory.getCurrentSession().createQuery(hql.toString());
+		if (minConceptWordId != null)
+			query.setInteger("minId", minConceptWordId);
+		if (maxConceptWordId != null)
+			query.setInteger("maxId", maxConceptWordId);
+		query.executeUpdate();
+		
+		// the words of any concept may have changed, rebuild the in-memory index from scratch
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			getConceptWordIndexUpdates().dropIndex = true;
+		else
+			dropConceptWordIndex();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ConceptDAO#saveConceptWords(java.util.Collection)
+	 */
+	public void saveConceptWords(Collection<ConceptWord> words) throws DAOException {
+		if (words.isEmpty())
+			return;
+		
+		Connection connection = sessionFactory.getCurrentSession().connection();
+		PreparedStatement ps = null;
+		try {
+			ps = connection.prepareStatement("INSERT INTO concept_word (concept_id, word, locale, concept_name_id, weight) "
+			        + "VALUES (?, ?, ?, ?, ?)");
+			for (ConceptWord word : words) {
+				ps.setInt(1, word.getConcept().getConceptId());
+				ps.setString(2, word.getWord());
+				ps.setString(3, word.getLocale().toString());
+				ps.setInt(4, word.getConceptName().getConceptNameId());
+				ps.setDouble(5, word.getWeight());
+				ps.addBatch();
+			}
+			ps.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DAOException("Unable to insert the concept words", e);
+		}
+		finally {
+			if (ps != null) {
+				try {
+					ps.close();
+				}
+				catch (SQLException e) {
+					log.error("Error generated while closing statement", e);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.ConceptDAO#saveConceptProposal(org.openmrs.ConceptProposal)
 	 */
@@ -1042,51 +1235,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	 * @see org.openmrs.api.db.ConceptDAO#conceptIterator()
 	 */
 	public Iterator<Concept> conceptIterator() {
-		return new ConceptIterator();
-	}
-	
-	/**
-	 * An iterator that loops over all concepts in the dictionary one at a time
-	 */
-	private class ConceptIterator implements Iterator<Concept> {
-		
-		Concept currentConcept = null;
-		
-		Concept nextConcept;
-		
-		public ConceptIterator() {
-			final int firstConceptId = getMinConceptId();
-			nextConcept = getConcept(firstConceptId);
-		}
-		
-		/**
-		 * @see java.util.Iterator#hasNext()
-		 */
-		public boolean hasNext() {
-			return (nextConcept != null);
-		}
-		
-		/**
-		 * @see java.util.Iterator#next()
-		 */
-		public Concept next() {
-			if (currentConcept != null) {
-				sessionFactory.getCurrentSession().evict(currentConcept);
-			}
-			
-			currentConcept = nextConcept;
-			nextConcept = getNextConcept(currentConcept);
-			
-			return currentConcept;
-		}
-		
-		/**
-		 * @see java.util.Iterator#remove()
-		 */
-		public void remove() {
-			throw new UnsupportedOperationException();
-		}
-		
+		return new KeysetIterator<Concept>(sessionFactory, Concept.class, null, "names", "descriptions");
 	}
 	
 	/**
@@ -1343,6 +1492,12 @@ public class HibernateConceptDAO implements ConceptDAO {
 	public Integer getCountOfConceptWords(String phrase, List<Locale> locales, boolean includeRetired,
 	        List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses, List<ConceptDatatype> requireDatatypes,
 	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept, boolean forUniqueConcepts) {
+		ConceptWordIndex index = getConceptWordIndex();
+		if (index != null)
+			return index.getCount(ConceptWord.getUniqueWords(phrase), getSearchLocales(locales), includeRetired,
+			    getAnswerIds(answersToConcept), getConceptClassIds(requireClasses), getConceptClassIds(excludeClasses),
+			    getConceptDatatypeIds(requireDatatypes), getConceptDatatypeIds(excludeDatatypes), forUniqueConcepts);
+		
 		Criteria searchCriteria = createConceptWordSearchCriteria(phrase, locales, includeRetired, requireClasses,
 		    excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
 		if (searchCriteria != null) {
@@ -1424,9 +1579,10 @@ public class HibernateConceptDAO implements ConceptDAO {
 					if (log.isDebugEnabled())
 						log.debug("Current word: " + w);
 					
-					DetachedCriteria crit = DetachedCriteria.forClass(ConceptWord.class).setProjection(
-					    Property.forName("concept")).add(Expression.eqProperty("concept", "cw1.concept")).add(
-					    Restrictions.like("word", w, MatchMode.START)).add(Expression.in("locale", locales));
+					// the subquery needs its own alias, otherwise "concept" resolves to the outer concept alias
+					DetachedCriteria crit = DetachedCriteria.forClass(ConceptWord.class, "cw2").setProjection(
+					    Property.forName("cw2.concept")).add(Expression.eqProperty("cw2.concept", "cw1.concept")).add(
+					    Restrictions.like("cw2.word", w, MatchMode.START)).add(Expression.in("cw2.locale", locales));
 					junction.add(Subqueries.exists(crit));
 				}
 				searchCriteria.add(junction);
@@ -1513,6 +1669,7 @@ public class HibernateConceptDAO implements ConceptDAO {
 	/**
 	 * @see ConceptDAO#getConcepts(String, List, boolean, List, List, List, List, Concept, Integer,
 	 *      Integer)
+	 * @should return the highest weighted name of each concept first when using the in-memory index
 	 */
 	@SuppressWarnings( { "rawtypes" })
 	@Override
@@ -1521,6 +1678,11 @@ public class HibernateConceptDAO implements ConceptDAO {
 	        List<ConceptDatatype> excludeDatatypes, Concept answersToConcept, Integer start, Integer size)
 	        throws DAOException {
 		
+		ConceptWordIndex index = getConceptWordIndex();
+		if (index != null)
+			return getConceptsFromIndex(index, phrase, locales, includeRetired, requireClasses, excludeClasses,
+			    requireDatatypes, excludeDatatypes, answersToConcept, start, size);
+		
 		Criteria searchCriteria = createConceptWordSearchCriteria(phrase, locales, includeRetired, requireClasses,
 		    excludeClasses, requireDatatypes, excludeDatatypes, answersToConcept);
 		
@@ -1555,6 +1717,291 @@ public class HibernateConceptDAO implements ConceptDAO {
 		return results;
 	}
 	
+	/**
+	 * Answers {@link #getConcepts(String, List, boolean, List, List, List, List, Concept, Integer,
+	 * Integer)} from the in-memory concept word index, only the matched concepts and names are
+	 * fetched from the session
+	 */
+	private List<ConceptSearchResult> getConceptsFromIndex(ConceptWordIndex index, String phrase, List<Locale> locales,
+	        boolean includeRetired, List<ConceptClass> requireClasses, List<ConceptClass> excludeClasses,
+	        List<ConceptDatatype> requireDatatypes, List<ConceptDatatype> excludeDatatypes, Concept answersToConcept,
+	        Integer start, Integer size) {
+		List<ConceptSearchResult> results = new Vector<ConceptSearchResult>();
+		Session session = sessionFactory.getCurrentSession();
+		for (ConceptWordIndex.Entry entry : index.getConcepts(ConceptWord.getUniqueWords(phrase), getSearchLocales(locales),
+		    includeRetired, getAnswerIds(answersToConcept), getConceptClassIds(requireClasses),
+		    getConceptClassIds(excludeClasses), getConceptDatatypeIds(requireDatatypes),
+		    getConceptDatatypeIds(excludeDatatypes), start, size)) {
+			Concept concept = (Concept) session.get(Concept.class, entry.getConceptId());
+			if (concept == null)
+				continue;
+			ConceptName conceptName = null;
+			if (entry.getConceptNameId() != null)
+				conceptName = (ConceptName) session.get(ConceptName.class, entry.getConceptNameId());
+			results.add(new ConceptSearchResult(entry.getWord(), concept, conceptName, entry.getWeight()));
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * @return the given locales plus the language-only part of each of them, the same locales that
+	 *         {@link #createConceptWordSearchCriteria} searches in
+	 */
+	private Set<Locale> getSearchLocales(List<Locale> locales) {
+		Set<Locale> searchLocales = new HashSet<Locale>();
+		for (Locale locale : locales) {
+			searchLocales.add(locale);
+			searchLocales.add(new Locale(locale.getLanguage()));
+		}
+		return searchLocales;
+	}
+	
+	/**
+	 * @return the ids of the answers to the given concept, or null if there are none to restrict on
+	 */
+	private Set<Integer> getAnswerIds(Concept answersToConcept) {
+		if (answersToConcept == null || answersToConcept.getAnswers(false) == null)
+			return null;
+		Set<Integer> answerIds = new HashSet<Integer>();
+		for (ConceptAnswer conceptAnswer : answersToConcept.getAnswers(false))
+			answerIds.add(conceptAnswer.getAnswerConcept().getConceptId());
+		return answerIds.isEmpty() ? null : answerIds;
+	}
+	
+	private List<Integer> getConceptClassIds(List<ConceptClass> conceptClasses) {
+		List<Integer> ids = new ArrayList<Integer>();
+		if (conceptClasses != null) {
+			for (ConceptClass conceptClass : conceptClasses)
+				ids.add(conceptClass.getConceptClassId());
+		}
+		return ids;
+	}
+	
+	private List<Integer> getConceptDatatypeIds(List<ConceptDatatype> datatypes) {
+		List<Integer> ids = new ArrayList<Integer>();
+		if (datatypes != null) {
+			for (ConceptDatatype datatype : datatypes)
+				ids.add(datatype.getConceptDatatypeId());
+		}
+		return ids;
+	}
+	
+	/**
+	 * Returns the in-memory concept word index, building it if needed
+	 * 
+	 * @return the index, or null if concept searches should query the database
+	 */
+	private ConceptWordIndex getConceptWordIndex() {
+		String enabled = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_CONCEPT_SEARCH_IN_MEMORY_INDEX, "false");
+		if (!Boolean.valueOf(enabled.trim())) {
+			conceptWordIndex = null;
+			return null;
+		}
+		
+		ConceptWordIndex index = conceptWordIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = conceptWordIndex;
+				if (index == null) {
+					int version = conceptWordIndexVersion.get();
+					index = buildConceptWordIndex();
+					if (version == conceptWordIndexVersion.get())
+						conceptWordIndex = index;
+				}
+			}
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Loads the concept word index from the concept and concept_word tables
+	 */
+	private ConceptWordIndex buildConceptWordIndex() {
+		long startTime = System.currentTimeMillis();
+		
+		// the index sees the changes made by the current transaction, so it can't outlive a rollback
+		dropConceptWordIndexOnRollback();
+		
+		ConceptWordIndex index = new ConceptWordIndex();
+		Session session = sessionFactory.getCurrentSession();
+		
+		ScrollableResults concepts = session.createQuery(
+		    "select c.conceptId, cc.conceptClassId, dt.conceptDatatypeId, c.retired from Concept c "
+		            + "left join c.conceptClass cc left join c.datatype dt").scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (concepts.next()) {
+				Object[] row = concepts.get();
+				index.putConceptAttributes((Integer) row[0], (Integer) row[1], (Integer) row[2], Boolean.TRUE.equals(row[3]));
+			}
+		}
+		finally {
+			concepts.close();
+		}
+		
+		ScrollableResults words = session.createQuery(
+		    "select c.conceptId, cn.conceptNameId, cw.word, cw.locale, cw.weight from ConceptWord cw "
+		            + "join cw.concept c left join cw.conceptName cn").scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (words.next()) {
+				Object[] row = words.get();
+				if (row[2] != null && row[3] != null)
+					index.addEntry(new ConceptWordIndex.Entry((Integer) row[0], (Integer) row[1], (String) row[2],
+					        (Locale) row[3], row[4] == null ? 0.0 : (Double) row[4]));
+			}
+		}
+		finally {
+			words.close();
+		}
+		
+		if (log.isDebugEnabled())
+			log.debug("Built the concept word index of " + index.getConceptCount() + " concepts in "
+			        + (System.currentTimeMillis() - startTime) + "ms");
+		
+		return index;
+	}
+	
+	/**
+	 * Brings the in-memory concept word index up to date with the given words of a concept once the
+	 * current transaction commits, so that other threads never search words that may still be
+	 * rolled back
+	 * 
+	 * @param concept the concept whose words changed
+	 * @param words the new words of the concept, null if the concept was deleted
+	 */
+	private void updateConceptWordIndex(Concept concept, Collection<ConceptWord> words) {
+		if (concept.getConceptId() == null)
+			return;
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			Map<Concept, Collection<ConceptWord>> concepts = getConceptWordIndexUpdates().concepts;
+			concepts.remove(concept);
+			concepts.put(concept, words);
+		} else
+			applyConceptWordIndexUpdate(concept, words);
+	}
+	
+	/**
+	 * Applies the words of a concept to the in-memory concept word index. If there is no index,
+	 * an index that is being built at the time is not kept, since it may have missed the change.
+	 * 
+	 * @param concept the concept whose words changed
+	 * @param words the new words of the concept, null if the concept was deleted
+	 */
+	private void applyConceptWordIndexUpdate(Concept concept, Collection<ConceptWord> words) {
+		ConceptWordIndex index = conceptWordIndex;
+		if (index == null) {
+			dropConceptWordIndex();
+			return;
+		}
+		
+		if (words == null) {
+			index.removeConcept(concept.getConceptId());
+			return;
+		}
+		
+		List<ConceptWordIndex.Entry> entries = new ArrayList<ConceptWordIndex.Entry>();
+		for (ConceptWord word : words) {
+			if (word.getConceptName().getConceptNameId() == null) {
+				// can't tell which name this is, reload everything on the next search
+				dropConceptWordIndex();
+				return;
+			}
+			entries.add(new ConceptWordIndex.Entry(concept.getConceptId(), word.getConceptName().getConceptNameId(), word
+			        .getWord(), word.getLocale(), word.getWeight()));
+		}
+		
+		Integer conceptClassId = concept.getConceptClass() == null ? null : concept.getConceptClass().getConceptClassId();
+		Integer datatypeId = concept.getDatatype() == null ? null : concept.getDatatype().getConceptDatatypeId();
+		index.putConcept(concept.getConceptId(), conceptClassId, datatypeId, Boolean.TRUE.equals(concept.isRetired()),
+		    entries);
+	}
+	
+	/**
+	 * Returns the concept word index changes of the current transaction, registering them to be
+	 * applied when it commits
+	 * 
+	 * @return the pending changes
+	 */
+	private ConceptWordIndexUpdates getConceptWordIndexUpdates() {
+		ConceptWordIndexUpdates updates = (ConceptWordIndexUpdates) TransactionSynchronizationManager
+		        .getResource(conceptWordIndexUpdatesKey);
+		if (updates == null) {
+			final ConceptWordIndexUpdates pending = new ConceptWordIndexUpdates();
+			TransactionSynchronizationManager.bindResource(conceptWordIndexUpdatesKey, pending);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCommit() {
+					applyConceptWordIndexUpdates(pending);
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(conceptWordIndexUpdatesKey);
+				}
+			});
+			updates = pending;
+		}
+		return updates;
+	}
+	
+	/**
+	 * Applies the concept word index changes of a transaction
+	 * 
+	 * @param updates the changes
+	 */
+	private void applyConceptWordIndexUpdates(ConceptWordIndexUpdates updates) {
+		if (updates.dropIndex) {
+			dropConceptWordIndex();
+			return;
+		}
+		for (Map.Entry<Concept, Collection<ConceptWord>> e : updates.concepts.entrySet())
+			applyConceptWordIndexUpdate(e.getKey(), e.getValue());
+	}
+	
+	/**
+	 * Applies the concept word index changes of the current transaction right away instead of when
+	 * it commits, for tests, whose transactions are rolled back
+	 */
+	void applyConceptWordIndexUpdates() {
+		ConceptWordIndexUpdates updates = (ConceptWordIndexUpdates) TransactionSynchronizationManager
+		        .getResource(conceptWordIndexUpdatesKey);
+		if (updates != null) {
+			applyConceptWordIndexUpdates(updates);
+			updates.concepts.clear();
+			updates.dropIndex = false;
+		}
+	}
+	
+	/**
+	 * Makes sure the in-memory concept word index is dropped if the current transaction does not
+	 * commit, since it may hold changes that were rolled back
+	 */
+	private void dropConceptWordIndexOnRollback() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()
+		        || TransactionSynchronizationManager.hasResource(conceptWordIndexTransactionKey))
+			return;
+		
+		TransactionSynchronizationManager.bindResource(conceptWordIndexTransactionKey, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(conceptWordIndexTransactionKey);
+				if (status != STATUS_COMMITTED)
+					dropConceptWordIndex();
+			}
+		});
+	}
+	
+	private void dropConceptWordIndex() {
+		conceptWordIndexVersion.incrementAndGet();
+		conceptWordIndex = null;
+	}
+	
 	/**
 	 * @see ConceptDAO#weighConceptWord(ConceptWord)
 	 */
@@ -1646,4 +2093,20 @@ public class HibernateConceptDAO implements ConceptDAO {
 		
 		return bonusWeight;
 	}
+	
+	/**
+	 * The concept word index changes a transaction applies when it commits
+	 */
+	private static class ConceptWordIndexUpdates {
+		
+		/**
+		 * The new words of each changed concept, null for deleted concepts
+		 */
+		private Map<Concept, Collection<ConceptWord>> concepts = new LinkedHashMap<Concept, Collection<ConceptWord>>();
+		
+		/**
+		 * True if the words of any concept may have changed
+		 */
+		private boolean dropIndex;
+	}
 }
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.SQLQuery;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.MatchMode;
@@ -78,6 +80,16 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		return encounter;
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.EncounterDAO#saveEncounters(java.util.List)
+	 */
+	public void saveEncounters(List<Encounter> encounters) throws DAOException {
+		Session session = sessionFactory.getCurrentSession();
+		for (Encounter encounter : encounters)
+			session.saveOrUpdate(encounter);
+		session.flush();
+	}
+	
 	/**
 	 * @see org.openmrs.api.EncounterService#deleteEncounter(org.openmrs.Encounter)
 	 */
@@ -361,4 +373,11 @@ public class HibernateEncounterDAO implements EncounterDAO {
 		
 		return crit.list();
 	}
+	
+	/**
+	 * @see org.openmrs.api.db.EncounterDAO#encounterIterator(java.lang.Integer)
+	 */
+	public Iterator<Encounter> encounterIterator(Integer pageSize) throws DAOException {
+		return new KeysetIterator<Encounter>(sessionFactory, Encounter.class, pageSize, "obs");
+	}
 }
@@ -13,13 +13,18 @@
  */
 package org.openmrs.api.db.hibernate;
 
+import java.math.BigDecimal;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
@@ -37,6 +42,7 @@ import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.User;
+import org.openmrs.api.ObsService.ObsGrouping;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
@@ -277,4 +283,198 @@ public class HibernateObsDAO implements ObsDAO {
 		    uuid).uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#obsIterator(java.lang.Integer)
+	 */
+	public Iterator<Obs> obsIterator(Integer pageSize) throws DAOException {
+		return new KeysetIterator<Obs>(sessionFactory, Obs.class, pageSize, "concept");
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsAggregates(org.openmrs.Concept,
+	 *      org.openmrs.api.ObsService.ObsGrouping, java.util.List, java.util.Date, java.util.Date,
+	 *      java.lang.Double, java.lang.Double)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getNumericObsAggregates(Concept question, ObsGrouping groupBy, List<Location> locations,
+	        Date fromDate, Date toDate, Double minValue, Double maxValue) throws DAOException {
+		String group = null;
+		if (groupBy == ObsGrouping.LOCATION)
+			group = "o.location.locationId";
+		else if (groupBy == ObsGrouping.MONTH)
+			group = "year(o.obsDatetime), month(o.obsDatetime)";
+		
+		String select = "count(o.valueNumeric), min(o.valueNumeric), max(o.valueNumeric), avg(o.valueNumeric), "
+		        + "sum(o.valueNumeric * o.valueNumeric)";
+		String hql = "select " + (group == null ? select : group + ", " + select) + " from Obs o where "
+		        + getNumericObsRestrictions(locations, fromDate, toDate, minValue, maxValue);
+		if (group != null)
+			hql += " group by " + group + " order by " + group;
+		
+		Query query = sessionFactory.getCurrentSession().createQuery(hql);
+		setObsParameters(query, question, locations, fromDate, toDate, minValue, maxValue);
+		return query.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsValueAt(org.openmrs.Concept, java.util.List,
+	 *      java.util.Date, java.util.Date, java.lang.Double, java.lang.Double, int)
+	 */
+	public Double getNumericObsValueAt(Concept question, List<Location> locations, Date fromDate, Date toDate,
+	        Double minValue, Double maxValue, int position) throws DAOException {
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "select o.valueNumeric from Obs o where "
+		            + getNumericObsRestrictions(locations, fromDate, toDate, minValue, maxValue)
+		            + " order by o.valueNumeric asc");
+		setObsParameters(query, question, locations, fromDate, toDate, minValue, maxValue);
+		query.setFirstResult(position);
+		query.setMaxResults(1);
+		return (Double) query.uniqueResult();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsHistogram(org.openmrs.Concept, java.util.List,
+	 *      java.util.Date, java.util.Date, java.lang.Double, java.lang.Double, double, double)
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Integer, Long> getNumericObsHistogram(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate, Double minValue, Double maxValue, double start, double binWidth) throws DAOException {
+		// the bounds are written into the query because not every database can group by an
+		// expression holding parameters
+		String bin = "floor((o.valueNumeric - (" + BigDecimal.valueOf(start).toPlainString() + ")) / "
+		        + BigDecimal.valueOf(binWidth).toPlainString() + ")";
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "select " + bin + ", count(o.valueNumeric) from Obs o where "
+		            + getNumericObsRestrictions(locations, fromDate, toDate, minValue, maxValue) + " group by " + bin);
+		setObsParameters(query, question, locations, fromDate, toDate, minValue, maxValue);
+		
+		Map<Integer, Long> counts = new HashMap<Integer, Long>();
+		for (Object[] row : (List<Object[]>) query.list())
+			counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+		return counts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getCodedObsCounts(org.openmrs.Concept, java.util.List,
+	 *      java.util.Date, java.util.Date)
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Integer, Long> getCodedObsCounts(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate) throws DAOException {
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "select answer.conceptId, count(o.obsId) from Obs o left join o.valueCoded answer where "
+		            + getObsRestrictions(locations, fromDate, toDate) + " group by answer.conceptId");
+		setObsParameters(query, question, locations, fromDate, toDate, null, null);
+		
+		Map<Integer, Long> counts = new HashMap<Integer, Long>();
+		for (Object[] row : (List<Object[]>) query.list())
+			counts.put((Integer) row[0], ((Number) row[1]).longValue());
+		return counts;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsOutsideRange(org.openmrs.Concept, double, double,
+	 *      java.util.List, java.util.Date, java.util.Date, java.lang.Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Obs> getNumericObsOutsideRange(Concept question, double lowerLimit, double upperLimit,
+	        List<Location> locations, Date fromDate, Date toDate, Integer maxResults) throws DAOException {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
+		criteria.add(Restrictions.eq("concept", question));
+		criteria.add(Restrictions.eq("voided", false));
+		criteria.add(Restrictions.or(Restrictions.lt("valueNumeric", lowerLimit), Restrictions.gt("valueNumeric",
+		    upperLimit)));
+		if (CollectionUtils.isNotEmpty(locations))
+			criteria.add(Restrictions.in("location", locations));
+		if (fromDate != null)
+			criteria.add(Restrictions.ge("obsDatetime", fromDate));
+		if (toDate != null)
+			criteria.add(Restrictions.le("obsDatetime", toDate));
+		criteria.addOrder(Order.asc("valueNumeric"));
+		criteria.addOrder(Order.asc("obsId"));
+		if (maxResults != null)
+			criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+	
+	/**
+	 * Gets the where clause of the queries over the obs of a question concept, the parameters of
+	 * which are set by {@link #setObsParameters}
+	 */
+	private String getObsRestrictions(List<Location> locations, Date fromDate, Date toDate) {
+		StringBuilder where = new StringBuilder("o.concept = :question and o.voided = false");
+		if (CollectionUtils.isNotEmpty(locations))
+			where.append(" and o.location in (:locations)");
+		if (fromDate != null)
+			where.append(" and o.obsDatetime >= :fromDate");
+		if (toDate != null)
+			where.append(" and o.obsDatetime <= :toDate");
+		return where.toString();
+	}
+	
+	/**
+	 * Gets the where clause of the queries over the numeric values of a question concept's obs
+	 */
+	private String getNumericObsRestrictions(List<Location> locations, Date fromDate, Date toDate, Double minValue,
+	        Double maxValue) {
+		StringBuilder where = new StringBuilder(getObsRestrictions(locations, fromDate, toDate));
+		where.append(" and o.valueNumeric is not null");
+		if (minValue != null)
+			where.append(" and o.valueNumeric >= :minValue");
+		if (maxValue != null)
+			where.append(" and o.valueNumeric <= :maxValue");
+		return where.toString();
+	}
+	
+	private void setObsParameters(Query query, Concept question, List<Location> locations, Date fromDate,
+	        Date toDate, Double minValue, Double maxValue) {
+		query.setParameter("question", question);
+		if (CollectionUtils.isNotEmpty(locations))
+			query.setParameterList("locations", locations);
+		if (fromDate != null)
+			query.setTimestamp("fromDate", fromDate);
+		if (toDate != null)
+			query.setTimestamp("toDate", toDate);
+		if (minValue != null)
+			query.setDouble("minValue", minValue);
+		if (maxValue != null)
+			query.setDouble("maxValue", maxValue);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getNumericObsTimeSeries(org.openmrs.Person,
+	 *      org.openmrs.Concept, java.util.Date, java.util.Date)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws DAOException {
+		String hql = "select o.obsDatetime, o.valueNumeric from Obs o where o.person = :who and o.concept = :question"
+		        + " and o.voided = false and o.valueNumeric is not null";
+		if (fromDate != null)
+			hql += " and o.obsDatetime >= :fromDate";
+		if (toDate != null)
+			hql += " and o.obsDatetime < :toDate";
+		Query query = sessionFactory.getCurrentSession().createQuery(hql + " order by o.obsDatetime asc, o.obsId asc");
+		query.setParameter("who", who);
+		query.setParameter("question", question);
+		if (fromDate != null)
+			query.setTimestamp("fromDate", fromDate);
+		if (toDate != null)
+			query.setTimestamp("toDate", toDate);
+		return query.list();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.ObsDAO#getLastObsChange(org.openmrs.Person, org.openmrs.Concept)
+	 */
+	public Date getLastObsChange(Person who, Concept question) throws DAOException {
+		Object[] row = (Object[]) sessionFactory.getCurrentSession().createQuery(
+		    "select max(o.dateCreated), max(o.dateVoided) from Obs o where o.person = :who and o.concept = :question")
+		        .setParameter("who", who).setParameter("question", question).uniqueResult();
+		Date created = (Date) row[0];
+		Date voided = (Date) row[1];
+		if (voided != null && (created == null || voided.after(created)))
+			return voided;
+		return created;
+	}
 }
@@ -17,8 +17,13 @@ import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
@@ -26,6 +31,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.Order;
@@ -36,8 +44,13 @@ import org.openmrs.PatientIdentifier;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.Person;
 import org.openmrs.PersonName;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientDAO;
+import org.openmrs.patient.DuplicatePatientDetector;
+import org.openmrs.patient.PatientSearchIndex;
+import org.openmrs.patient.PatientSearchResults;
+import org.openmrs.util.OpenmrsConstants;
 
 /**
  * Hibernate specific database methods for the PatientService
@@ -64,6 +77,19 @@ public class HibernatePatientDAO implements PatientDAO {
 		this.sessionFactory = sessionFactory;
 	}
 	
+	/**
+	 * In-memory index of patient names and identifiers, only used when the
+	 * {@link OpenmrsConstants#GP_PATIENT_SEARCH_IN_MEMORY_INDEX} global property is true
+	 */
+	private PatientSearchIndex patientSearchIndex;
+	
+	/**
+	 * @param patientSearchIndex the patientSearchIndex to set
+	 */
+	public void setPatientSearchIndex(PatientSearchIndex patientSearchIndex) {
+		this.patientSearchIndex = patientSearchIndex;
+	}
+	
 	/**
 	 * @see org.openmrs.api.PatientService#getPatient(java.lang.Integer)
 	 */
@@ -270,6 +296,8 @@ public class HibernatePatientDAO implements PatientDAO {
 	 */
 	public void deletePatient(Patient patient) throws DAOException {
 		HibernatePersonDAO.deletePersonAndAttributes(sessionFactory, patient);
+		if (patientSearchIndex != null)
+			patientSearchIndex.removeAfterCommit(patient);
 	}
 	
 	/**
@@ -326,6 +354,30 @@ public class HibernatePatientDAO implements PatientDAO {
 		return criteria.list();
 	}
 	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#addDuplicatePatientCandidates(DuplicatePatientDetector,
+	 *      boolean)
+	 */
+	public void addDuplicatePatientCandidates(DuplicatePatientDetector detector, boolean includeVoided)
+	        throws DAOException {
+		String hql = "select p.patientId, p.gender, p.birthdate, p.birthdateEstimated, pn.givenName, pn.familyName "
+		        + "from Patient p, PersonName pn where pn.person.personId = p.patientId and pn.voided = false";
+		if (!includeVoided)
+			hql += " and p.voided = false";
+		
+		ScrollableResults rows = sessionFactory.getCurrentSession().createQuery(hql).scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (rows.next()) {
+				Object[] row = rows.get();
+				detector.addPatient((Integer) row[0], (String) row[1], (Date) row[2], Boolean.TRUE.equals(row[3]),
+				    (String) row[4], (String) row[5]);
+			}
+		}
+		finally {
+			rows.close();
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.api.db.PatientDAO#getDuplicatePatientsByAttributes(java.util.List)
 	 */
@@ -518,6 +570,8 @@ public class HibernatePatientDAO implements PatientDAO {
 	public PatientIdentifier savePatientIdentifier(PatientIdentifier patientIdentifier) {
 		
 		sessionFactory.getCurrentSession().saveOrUpdate(patientIdentifier);
+		if (patientSearchIndex != null)
+			patientSearchIndex.reindexAfterCommit(patientIdentifier.getPatient());
 		return patientIdentifier;
 		
 	}
@@ -529,6 +583,8 @@ public class HibernatePatientDAO implements PatientDAO {
 	public void deletePatientIdentifier(PatientIdentifier patientIdentifier) throws DAOException {
 		
 		sessionFactory.getCurrentSession().delete(patientIdentifier);
+		if (patientSearchIndex != null)
+			patientSearchIndex.reindexAfterCommit(patientIdentifier.getPatient());
 		
 	}
 	
@@ -546,4 +602,148 @@ public class HibernatePatientDAO implements PatientDAO {
 		criteria.setProjection(Projections.countDistinct("patientId"));
 		return (Integer) criteria.uniqueResult();
 	}
+	
+	/**
+	 * @see PatientDAO#searchPatients(String, String, Integer, Integer)
+	 */
+	public PatientSearchResults searchPatients(String name, String identifier, Integer start, Integer length)
+	        throws DAOException {
+		int limit = HibernatePersonDAO.getMaximumSearchResults();
+		if (length == null || length > limit)
+			length = limit;
+		if (start == null || start < 0)
+			start = 0;
+		
+		Map<Integer, Integer> matches = null;
+		if (getPatientSearchIndex(name != null) != null) {
+			if (name != null) {
+				int minChars = Context.getAdministrationService().getGlobalPropertyValue(
+				    OpenmrsConstants.GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS,
+				    OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS);
+				matches = patientSearchIndex.searchNames(name, minChars);
+			} else {
+				matches = patientSearchIndex.searchIdentifier(identifier);
+			}
+		}
+		
+		Map<Integer, Integer> page = new LinkedHashMap<Integer, Integer>();
+		if (matches != null) {
+			int i = 0;
+			for (Map.Entry<Integer, Integer> match : matches.entrySet()) {
+				if (i >= start + length)
+					break;
+				if (i++ >= start)
+					page.put(match.getKey(), match.getValue());
+			}
+			return new PatientSearchResults(matches.size(), page);
+		}
+		
+		// the index can't be used, so count and fetch the page from the database without ranks
+		List<PatientIdentifierType> noTypes = Collections.emptyList();
+		int count = getCountOfPatients(name, identifier, noTypes, false);
+		if (count > start)
+			for (Patient patient : getPatients(name, identifier, noTypes, false, start, length))
+				page.put(patient.getPatientId(), 0);
+		return new PatientSearchResults(count, page);
+	}
+	
+	/**
+	 * Returns the patient search index, loading it first if needed
+	 * 
+	 * @param nameSearch whether the index is needed to search on names
+	 * @return the loaded index, or null if it is disabled, can't match names the way the
+	 *         {@link OpenmrsConstants#GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_MODE} global property
+	 *         asks, or could not be loaded
+	 */
+	private PatientSearchIndex getPatientSearchIndex(boolean nameSearch) {
+		if (patientSearchIndex == null)
+			return null;
+		
+		String enabled = Context.getAdministrationService().getGlobalProperty(
+		    OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "false");
+		if (!Boolean.valueOf(enabled.trim())) {
+			if (patientSearchIndex.isLoaded())
+				patientSearchIndex.clear();
+			return null;
+		}
+		
+		if (nameSearch
+		        && OpenmrsConstants.GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_ANYWHERE.equalsIgnoreCase(Context
+		                .getAdministrationService().getGlobalProperty(
+		                    OpenmrsConstants.GLOBAL_PROPERTY_PATIENT_SEARCH_MATCH_MODE)))
+			return null;
+		
+		if (!patientSearchIndex.isLoaded() && !loadPatientSearchIndex())
+			return null;
+		
+		return patientSearchIndex;
+	}
+	
+	/**
+	 * Loads the patient search index from the person_name and patient_identifier tables
+	 * 
+	 * @return false if the index could not be loaded because it was cleared while loading, or
+	 *         because the current transaction changed patients that are not committed yet
+	 */
+	private synchronized boolean loadPatientSearchIndex() {
+		if (patientSearchIndex.isLoaded())
+			return true;
+		
+		// the index would see changes that might still be rolled back
+		if (patientSearchIndex.hasPendingChanges())
+			return false;
+		
+		long startTime = System.currentTimeMillis();
+		PatientSearchIndex.Loader loader = patientSearchIndex.newLoader();
+		boolean loaded = false;
+		try {
+			Session session = sessionFactory.getCurrentSession();
+			
+			ScrollableResults names = session.createQuery(
+			    "select pn.person.personId, pn.givenName, pn.middleName, pn.familyName, pn.familyName2 "
+			            + "from PersonName pn, Patient p where pn.person.personId = p.patientId "
+			            + "and pn.voided = false and p.voided = false "
+			            + "order by pn.person.personId, pn.preferred desc, pn.personNameId").scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				while (names.next()) {
+					Object[] row = names.get();
+					loader.addName((Integer) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+				}
+			}
+			finally {
+				names.close();
+			}
+			
+			ScrollableResults identifiers = session.createQuery(
+			    "select pi.patient.patientId, pi.identifier from PatientIdentifier pi "
+			            + "where pi.voided = false and pi.patient.voided = false").scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				while (identifiers.next()) {
+					Object[] row = identifiers.get();
+					loader.addIdentifier((Integer) row[0], (String) row[1]);
+				}
+			}
+			finally {
+				identifiers.close();
+			}
+			
+			loaded = loader.finish();
+		}
+		finally {
+			if (!loaded)
+				loader.cancel();
+		}
+		
+		if (log.isDebugEnabled())
+			log.debug("Loaded patient search index in " + (System.currentTimeMillis() - startTime) + "ms: "
+			        + patientSearchIndex + (loaded ? "" : ", discarded because the index was cleared meanwhile"));
+		return loaded;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientDAO#patientIterator(java.lang.Integer)
+	 */
+	public Iterator<Patient> patientIterator(Integer pageSize) throws DAOException {
+		return new KeysetIterator<Patient>(sessionFactory, Patient.class, pageSize, "identifiers");
+	}
 }
@@ -46,6 +46,9 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Expression;
 import org.hibernate.criterion.ProjectionList;
@@ -81,11 +84,14 @@ import org.openmrs.api.ObsService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.PatientSetService;
 import org.openmrs.api.PatientSetService.Modifier;
+import org.openmrs.api.PatientSetService.PatientDataHandler;
 import org.openmrs.api.PatientSetService.PatientLocationMethod;
 import org.openmrs.api.PatientSetService.TimeModifier;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.DAOException;
 import org.openmrs.api.db.PatientSetDAO;
+import org.openmrs.util.CompressedIntegerSet;
+import org.openmrs.util.OpenmrsConstants;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -459,12 +465,13 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 	@SuppressWarnings("unchecked")
 	public Cohort getAllPatients() {
 		
-		Query query = sessionFactory.getCurrentSession().createQuery("select patientId from Patient p where p.voided = 0");
-		
-		Set<Integer> ids = new HashSet<Integer>();
-		ids.addAll(query.list());
+		// ordering by id lets the member bitmap be filled by appending
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "select patientId from Patient p where p.voided = 0 order by patientId");
 		
-		return new Cohort("All patients", "", ids);
+		Cohort ret = new Cohort("All patients", "", (Integer[]) null);
+		ret.getMemberIds().addAll(query.list());
+		return ret;
 	}
 	
 	/**
@@ -1040,72 +1047,81 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return ret;
 	}
 	
-	@SuppressWarnings("unchecked")
 	/**
 	 * fromDate and toDate are both inclusive
 	 * TODO: finish this. 
 	 */
 	public Map<Integer, List<Obs>> getObservations(Cohort patients, Concept concept, Date fromDate, Date toDate)
 	        throws DAOException {
-		Map<Integer, List<Obs>> ret = new HashMap<Integer, List<Obs>>();
-		
-		/*
-		Query query = sessionFactory.getCurrentSession().createQuery("select obs, obs.patientId " +
-										  "from Obs obs where obs.conceptId = :conceptId " +
-										  " and obs.patientId in :ids " +
-										  "order by obs.obsDatetime asc");
-		query.setInteger("conceptId", conceptId);
-		query.set
-		
-		List<Object[]> temp = query.list();
-		for (Object[] holder : temp) {
-			Obs obs = (Obs) holder[0];
-			Integer ptId = (Integer) holder[1];
-			List<Obs> forPatient = ret.get(ptId);
-			if (forPatient == null) {
-				forPatient = new ArrayList<Obs>();
-				ret.put(ptId, forPatient);
+		PatientDataCollector<List<Obs>> collector = new PatientDataCollector<List<Obs>>();
+		scrollObservations(patients, concept, fromDate, toDate, null, false, collector);
+		return collector.getData();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#streamObservations(org.openmrs.Cohort,
+	 *      org.openmrs.Concept, java.util.Date, java.util.Date, java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamObservations(Cohort patients, Concept concept, Date fromDate, Date toDate, Integer batchSize,
+	        PatientDataHandler<List<Obs>> handler) throws DAOException {
+		scrollObservations(patients, concept, fromDate, toDate, batchSize, true, handler);
+	}
+	
+	private void scrollObservations(Cohort patients, final Concept concept, Date fromDate, Date toDate,
+	        Integer batchSize, boolean evict, final PatientDataHandler<List<Obs>> handler) {
+		final Session session = sessionFactory.getCurrentSession();
+		scrollByPatient(patients, batchSize, evict ? session : null, new PatientBatchQuery() {
+			
+			public Criteria createCriteria(Collection<Integer> patientIds) {
+				Criteria criteria = session.createCriteria(Obs.class);
+				criteria.setCacheMode(CacheMode.IGNORE);
+				criteria.add(Restrictions.eq("concept", concept));
+				
+				// only add this where clause if patients were passed in
+				if (patientIds != null)
+					criteria.add(Restrictions.in("personId", patientIds));
+				
+				criteria.add(Restrictions.eq("voided", false));
+				criteria.addOrder(org.hibernate.criterion.Order.asc("personId"));
+				criteria.addOrder(org.hibernate.criterion.Order.desc("obsDatetime"));
+				log.debug("criteria: " + criteria);
+				return criteria;
 			}
-			forPatient.add(obs);
-		}
-		 */
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Obs.class);
-		criteria.setCacheMode(CacheMode.IGNORE);
-		
-		criteria.add(Restrictions.eq("concept", concept));
-		
-		// only add this where clause if patients were passed in
-		if (patients != null)
-			criteria.add(Restrictions.in("person.personId", patients.getMemberIds()));
-		
-		criteria.add(Restrictions.eq("voided", false));
-		criteria.addOrder(org.hibernate.criterion.Order.desc("obsDatetime"));
-		log.debug("criteria: " + criteria);
-		List<Obs> temp = criteria.list();
-		for (Obs obs : temp) {
-			Integer ptId = obs.getPersonId();
-			List<Obs> forPatient = ret.get(ptId);
-			if (forPatient == null) {
-				forPatient = new ArrayList<Obs>();
-				ret.put(ptId, forPatient);
+			
+			public Integer getPatientId(Object[] row) {
+				return ((Obs) row[0]).getPersonId();
 			}
-			forPatient.add(obs);
-		}
-		
-		return ret;
+			
+			public void handle(Integer patientId, List<Object[]> rows) {
+				List<Obs> forPatient = new ArrayList<Obs>(rows.size());
+				for (Object[] row : rows)
+					forPatient.add((Obs) row[0]);
+				handler.handle(patientId, forPatient);
+			}
+		});
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Map<Integer, List<List<Object>>> getObservationsValues(Cohort patients, Concept c, List<String> attributes,
 	        Integer limit, boolean showMostRecentFirst) {
-		Map<Integer, List<List<Object>>> ret = new HashMap<Integer, List<List<Object>>>();
-		
-		List<String> aliases = new Vector<String>();
+		PatientDataCollector<List<List<Object>>> collector = new PatientDataCollector<List<List<Object>>>();
+		streamObservationsValues(patients, c, attributes, limit, showMostRecentFirst, null, collector);
+		return collector.getData();
+	}
+	
+	/**
+	 * Rows are projections rather than Obs, so only the referenced concepts, locations and people
+	 * are added to the session however many patients are fetched.
+	 * 
+	 * @see org.openmrs.api.db.PatientSetDAO#streamObservationsValues(org.openmrs.Cohort,
+	 *      org.openmrs.Concept, java.util.List, java.lang.Integer, boolean, java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamObservationsValues(Cohort patients, final Concept c, List<String> attributes, final Integer limit,
+	        final boolean showMostRecentFirst, Integer batchSize, final PatientDataHandler<List<List<Object>>> handler) {
+		final List<String> aliases = new Vector<String>();
 		Boolean conditional = false;
 		
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria("org.openmrs.Obs", "obs");
-		criteria.setCacheMode(CacheMode.IGNORE);
-		
 		List<String> columns = new Vector<String>();
 		
 		for (String attribute : attributes) {
@@ -1140,7 +1156,6 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			
 			for (String className : classNames) { // if aliasing is necessary
 				if (!aliases.contains(className)) { // if we haven't aliased this already
-					criteria.createAlias(className, className.split("\\.")[1]);
 					aliases.add(className);
 				}
 			}
@@ -1151,7 +1166,7 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		String aliasName = "obs";
 		
 		// set up the query
-		ProjectionList projections = Projections.projectionList();
+		final ProjectionList projections = Projections.projectionList();
 		projections.add(Projections.property("obs.personId"));
 		for (String col : columns) {
 			if (col.contains("."))
@@ -1159,71 +1174,66 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 			else
 				projections.add(Projections.property(aliasName + "." + col));
 		}
-		criteria.setProjection(projections);
-		
-		// only restrict on patient ids if some were passed in
-		if (patients != null)
-			criteria.add(Restrictions.in("obs.personId", patients.getMemberIds()));
-		
-		criteria.add(Expression.eq("obs.concept", c));
-		criteria.add(Expression.eq("obs.voided", false));
-		
-		if (showMostRecentFirst)
-			criteria.addOrder(org.hibernate.criterion.Order.desc("obs.obsDatetime"));
-		else
-			criteria.addOrder(org.hibernate.criterion.Order.asc("obs.obsDatetime"));
 		
-		long start = System.currentTimeMillis();
-		List<Object[]> rows = criteria.list();
-		log.debug("Took: " + (System.currentTimeMillis() - start) + " ms to run the patient/obs query");
-		
-		// set up the return map
-		for (Object[] rowArray : rows) {
-			//log.debug("row[0]: " + row[0] + " row[1]: " + row[1] + (row.length > 2 ? " row[2]: " + row[2] : ""));
-			Integer ptId = (Integer) rowArray[0];
+		final boolean isConditional = conditional;
+		final Session session = sessionFactory.getCurrentSession();
+		scrollByPatient(patients, batchSize, null, new PatientBatchQuery() {
 			
-			List<List<Object>> oldArr = ret.get(ptId);
-			
-			// if we have already fetched all of the results the user wants 
-			if (limit != null && limit > 0 && oldArr != null && oldArr.size() >= limit) {
-				// the user provided a limit value and this patient already has more than
-				// that number of values.
-				// do nothing with this row
-			} else {
-				Boolean tmpConditional = conditional.booleanValue();
+			public Criteria createCriteria(Collection<Integer> patientIds) {
+				Criteria criteria = session.createCriteria("org.openmrs.Obs", "obs");
+				criteria.setCacheMode(CacheMode.IGNORE);
+				for (String className : aliases)
+					criteria.createAlias(className, className.split("\\.")[1]);
+				criteria.setProjection(projections);
 				
-				// get all columns
-				int index = 1;
-				List<Object> row = new Vector<Object>();
-				while (index < rowArray.length) {
-					Object value = rowArray[index++];
-					if (tmpConditional) {
-						if (index == 2 && value != null) // skip null first value if we must
-							row.add(value);
-						else
-							row.add(rowArray[index]);
-						tmpConditional = false;
-						index++; // increment counter for next column.  (Skips over value_concept)
-					} else
-						row.add(value == null ? "" : value);
-				}
+				// only restrict on patient ids if some were passed in
+				if (patientIds != null)
+					criteria.add(Restrictions.in("obs.personId", patientIds));
 				
-				// if we haven't seen a different row for this patient already:
-				if (oldArr == null) {
-					List<List<Object>> arr = new Vector<List<Object>>();
-					arr.add(row);
-					ret.put(ptId, arr);
-				}
-				// if we have seen a row for this patient already
-				else {
-					oldArr.add(row);
-					ret.put(ptId, oldArr);
+				criteria.add(Expression.eq("obs.concept", c));
+				criteria.add(Expression.eq("obs.voided", false));
+				
+				criteria.addOrder(org.hibernate.criterion.Order.asc("obs.personId"));
+				if (showMostRecentFirst)
+					criteria.addOrder(org.hibernate.criterion.Order.desc("obs.obsDatetime"));
+				else
+					criteria.addOrder(org.hibernate.criterion.Order.asc("obs.obsDatetime"));
+				return criteria;
+			}
+			
+			public Integer getPatientId(Object[] row) {
+				return (Integer) row[0];
+			}
+			
+			public void handle(Integer patientId, List<Object[]> rows) {
+				List<List<Object>> forPatient = new Vector<List<Object>>();
+				for (Object[] rowArray : rows) {
+					// if we have already fetched all of the results the user wants
+					if (limit != null && limit > 0 && forPatient.size() >= limit)
+						break;
+					
+					Boolean tmpConditional = isConditional;
+					
+					// get all columns
+					int index = 1;
+					List<Object> row = new Vector<Object>();
+					while (index < rowArray.length) {
+						Object value = rowArray[index++];
+						if (tmpConditional) {
+							if (index == 2 && value != null) // skip null first value if we must
+								row.add(value);
+							else
+								row.add(rowArray[index]);
+							tmpConditional = false;
+							index++; // increment counter for next column.  (Skips over value_concept)
+						} else
+							row.add(value == null ? "" : value);
+					}
+					forPatient.add(row);
 				}
+				handler.handle(patientId, forPatient);
 			}
-		}
-		
-		return ret;
-		
+		});
 	}
 	
 	// TODO this should be in some sort of central place...but where?
@@ -1246,36 +1256,57 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return columns;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Map<Integer, Encounter> getEncountersByType(Cohort patients, List<EncounterType> encTypes) {
-		Map<Integer, Encounter> ret = new HashMap<Integer, Encounter>();
-		
-		// default query
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Encounter.class);
-		criteria.setCacheMode(CacheMode.IGNORE);
-		
-		// this "where clause" is only necessary if patients were passed in
-		if (patients != null && patients.size() > 0)
-			criteria.add(Restrictions.in("patient.personId", patients.getMemberIds()));
-		
-		criteria.add(Restrictions.eq("voided", false));
-		
-		if (encTypes != null && encTypes.size() > 0)
-			criteria.add(Restrictions.in("encounterType", encTypes));
-		
-		criteria.addOrder(org.hibernate.criterion.Order.desc("patient.personId"));
-		criteria.addOrder(org.hibernate.criterion.Order.desc("encounterDatetime"));
-		
-		List<Encounter> encounters = criteria.list();
-		
-		// set up the return map
-		for (Encounter enc : encounters) {
-			Integer ptId = enc.getPatientId();
-			if (!ret.containsKey(ptId))
-				ret.put(ptId, enc);
-		}
+		PatientDataCollector<Encounter> collector = new PatientDataCollector<Encounter>();
+		scrollEncountersByType(patients, encTypes, null, false, collector);
+		return collector.getData();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.PatientSetDAO#streamEncountersByType(org.openmrs.Cohort,
+	 *      java.util.List, java.lang.Integer, org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamEncountersByType(Cohort patients, List<EncounterType> encTypes, Integer batchSize,
+	        PatientDataHandler<Encounter> handler) {
+		scrollEncountersByType(patients, encTypes, batchSize, true, handler);
+	}
+	
+	private void scrollEncountersByType(Cohort patients, final List<EncounterType> encTypes, Integer batchSize,
+	        boolean evict, final PatientDataHandler<Encounter> handler) {
+		// an empty cohort has always meant "all patients" here
+		if (patients != null && patients.size() == 0)
+			patients = null;
 		
-		return ret;
+		final Session session = sessionFactory.getCurrentSession();
+		scrollByPatient(patients, batchSize, evict ? session : null, new PatientBatchQuery() {
+			
+			public Criteria createCriteria(Collection<Integer> patientIds) {
+				Criteria criteria = session.createCriteria(Encounter.class);
+				criteria.setCacheMode(CacheMode.IGNORE);
+				
+				// this "where clause" is only necessary if patients were passed in
+				if (patientIds != null)
+					criteria.add(Restrictions.in("patient.personId", patientIds));
+				
+				criteria.add(Restrictions.eq("voided", false));
+				
+				if (encTypes != null && encTypes.size() > 0)
+					criteria.add(Restrictions.in("encounterType", encTypes));
+				
+				criteria.addOrder(org.hibernate.criterion.Order.asc("patient.personId"));
+				criteria.addOrder(org.hibernate.criterion.Order.desc("encounterDatetime"));
+				return criteria;
+			}
+			
+			public Integer getPatientId(Object[] row) {
+				return ((Encounter) row[0]).getPatientId();
+			}
+			
+			public void handle(Integer patientId, List<Object[]> rows) {
+				// rows are most recent first
+				handler.handle(patientId, (Encounter) rows.get(0)[0]);
+			}
+		});
 	}
 	
 	/**
@@ -2221,4 +2252,122 @@ public class HibernatePatientSetDAO implements PatientSetDAO {
 		return new Cohort("Batch of " + size + " patients starting at " + start, "", ids);
 	}
 	
+	/**
+	 * @param batchSize the requested batch size, may be null
+	 * @return the given batch size, or the {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE}
+	 *         global property if none was given
+	 */
+	private int getBatchSize(Integer batchSize) {
+		if (batchSize != null && batchSize > 0)
+			return batchSize;
+		String gp = Context.getAdministrationService().getGlobalProperty(OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE);
+		try {
+			if (gp != null && Integer.valueOf(gp.trim()) > 0)
+				return Integer.valueOf(gp.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Invalid value for global property " + OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE + ": " + gp);
+		}
+		return OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE_DEFAULT_VALUE;
+	}
+	
+	/**
+	 * Runs the given query once per batch of at most batchSize patient ids, in ascending patient id
+	 * order, and hands the rows of each patient to the query as soon as they have all been read. If
+	 * patients is null, the query is run once without restricting on patient ids.
+	 * 
+	 * @param patients the patients to fetch data for, or null for all patients
+	 * @param batchSize the number of patient ids per query, or null for the global property value
+	 * @param session if not null, the entities in each patient's rows are evicted from this
+	 *            session once they have been handled
+	 * @param query the query to run for each batch
+	 */
+	private void scrollByPatient(Cohort patients, Integer batchSize, Session session, PatientBatchQuery query) {
+		if (patients == null) {
+			scrollBatch(null, session, query);
+			return;
+		}
+		int size = getBatchSize(batchSize);
+		List<Integer> batch = new ArrayList<Integer>(Math.min(size, patients.size()));
+		for (Integer patientId : CompressedIntegerSet.valueOf(patients.getMemberIds())) {
+			batch.add(patientId);
+			if (batch.size() == size) {
+				scrollBatch(batch, session, query);
+				batch.clear();
+			}
+		}
+		if (batch.size() > 0)
+			scrollBatch(batch, session, query);
+	}
+	
+	private void scrollBatch(Collection<Integer> patientIds, Session session, PatientBatchQuery query) {
+		ScrollableResults results = query.createCriteria(patientIds).scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			Integer currentPatientId = null;
+			List<Object[]> rows = new ArrayList<Object[]>();
+			while (results.next()) {
+				Object[] row = results.get();
+				Integer patientId = query.getPatientId(row);
+				if (currentPatientId != null && !currentPatientId.equals(patientId)) {
+					handlePatientRows(currentPatientId, rows, session, query);
+					rows = new ArrayList<Object[]>();
+				}
+				currentPatientId = patientId;
+				rows.add(row);
+			}
+			if (currentPatientId != null)
+				handlePatientRows(currentPatientId, rows, session, query);
+		}
+		finally {
+			results.close();
+		}
+	}
+	
+	private void handlePatientRows(Integer patientId, List<Object[]> rows, Session session, PatientBatchQuery query) {
+		query.handle(patientId, rows);
+		if (session != null) {
+			for (Object[] row : rows)
+				session.evict(row[0]);
+		}
+	}
+	
+	/**
+	 * A query run by {@link HibernatePatientSetDAO#scrollByPatient} for each batch of patients.
+	 * Queries must be ordered by patient id first.
+	 */
+	private interface PatientBatchQuery {
+		
+		/**
+		 * @param patientIds the patient ids to restrict to, or null for all patients
+		 * @return the criteria to scroll through
+		 */
+		public Criteria createCriteria(Collection<Integer> patientIds);
+		
+		/**
+		 * @return the id of the patient the given result row belongs to
+		 */
+		public Integer getPatientId(Object[] row);
+		
+		/**
+		 * Called once per patient with all of that patient's result rows
+		 */
+		public void handle(Integer patientId, List<Object[]> rows);
+	}
+	
+	/**
+	 * Collects streamed per-patient data into a map, for the methods that return everything at
+	 * once
+	 */
+	private static class PatientDataCollector<T> implements PatientDataHandler<T> {
+		
+		private Map<Integer, T> data = new HashMap<Integer, T>();
+		
+		public void handle(Integer patientId, T value) {
+			data.put(patientId, value);
+		}
+		
+		public Map<Integer, T> getData() {
+			return data;
+		}
+	}
 }
@@ -0,0 +1,226 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.FetchMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Expression;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.metadata.ClassMetadata;
+
+/**
+ * Iterates over every row of a mapped class in ascending id order, reading a page of
+ * <code>pageSize</code> objects at a time. Each page is found by its ids being greater than the
+ * last id of the page before, so reading the next page costs the same no matter how far along
+ * the iteration is. The given associations are fetched with the page, and a page is evicted from
+ * the session once the iteration has moved past it, the last page once {@link #hasNext()} returns
+ * false. <br/>
+ * <br/>
+ * This is meant for reading, e.g. exports and index rebuilds: changes made to the objects after
+ * their page has been passed are not saved, and {@link #remove()} is not supported.
+ * 
+ * @param <T> the mapped class to iterate over
+ * @since 1.9
+ */
+public class KeysetIterator<T> implements Iterator<T> {
+	
+	/**
+	 * The number of objects read per page when no page size is given
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+	
+	private final SessionFactory sessionFactory;
+	
+	private final Class<T> mappedClass;
+	
+	private final int pageSize;
+	
+	private final String[] fetchPaths;
+	
+	private List<T> page = Collections.emptyList();
+	
+	private int position = 0;
+	
+	private Serializable lastId = null;
+	
+	private boolean lastPage = false;
+	
+	/**
+	 * @param sessionFactory the session factory whose current session the pages are read with
+	 * @param mappedClass the mapped class to iterate over
+	 * @param pageSize the number of objects to read per page, or null for {@link #DEFAULT_PAGE_SIZE}
+	 * @param fetchPaths the associations to fetch along with each page
+	 */
+	public KeysetIterator(SessionFactory sessionFactory, Class<T> mappedClass, Integer pageSize, String... fetchPaths) {
+		this.sessionFactory = sessionFactory;
+		this.mappedClass = mappedClass;
+		this.pageSize = (pageSize != null && pageSize > 0) ? pageSize : DEFAULT_PAGE_SIZE;
+		this.fetchPaths = fetchPaths;
+	}
+	
+	/**
+	 * @see java.util.Iterator#hasNext()
+	 * @should iterate over all rows in ascending id order
+	 * @should evict the pages the iteration has moved past
+	 * @should fetch the given associations with each page
+	 * @should evict the last page once the iteration is over
+	 */
+	public boolean hasNext() {
+		if (position < page.size())
+			return true;
+		
+		Session session = sessionFactory.getCurrentSession();
+		for (T object : page)
+			session.evict(object);
+		page = Collections.emptyList();
+		position = 0;
+		
+		// rows deleted between reading the ids of a page and its objects make the page come back
+		// short, so only a short page of ids means the end has been reached
+		while (page.isEmpty() && !lastPage) {
+			List<Serializable> ids = getIds(session, mappedClass, null, lastId, pageSize);
+			lastPage = ids.size() < pageSize;
+			if (ids.isEmpty())
+				break;
+			lastId = ids.get(ids.size() - 1);
+			page = getObjects(session, mappedClass, ids, fetchPaths);
+		}
+		return !page.isEmpty();
+	}
+	
+	/**
+	 * @see java.util.Iterator#next()
+	 */
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return page.get(position++);
+	}
+	
+	/**
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * Reads the objects of the given class with the lowest ids greater than <code>afterId</code>
+	 * 
+	 * @param session the session to read with
+	 * @param mappedClass the mapped class to read
+	 * @param afterId the id to start after, or null to start at the lowest id
+	 * @param maxResults the maximum number of objects to read
+	 * @param fetchPaths the associations to fetch along with the objects
+	 * @return the objects in ascending id order
+	 * @see #getPage(Session, Class, Criterion, Serializable, int, String...)
+	 */
+	public static <T> List<T> getPage(Session session, Class<T> mappedClass, Serializable afterId, int maxResults,
+	        String... fetchPaths) {
+		return getPage(session, mappedClass, null, afterId, maxResults, fetchPaths);
+	}
+	
+	/**
+	 * Reads the objects of the given class that match <code>restriction</code> and have the
+	 * lowest ids greater than <code>afterId</code>. The ids are paged on first, because a row limit
+	 * doesn't mix with fetching a collection, and each association is then fetched by a query of
+	 * its own so that fetching several collections doesn't multiply the rows read.
+	 * 
+	 * @param session the session to read with
+	 * @param mappedClass the mapped class to read
+	 * @param restriction the restriction the objects must match, or null to read all of them
+	 * @param afterId the id to start after, or null to start at the lowest id
+	 * @param maxResults the maximum number of objects to read
+	 * @param fetchPaths the associations to fetch along with the objects
+	 * @return the objects in ascending id order
+	 */
+	public static <T> List<T> getPage(Session session, Class<T> mappedClass, Criterion restriction, Serializable afterId,
+	        int maxResults, String... fetchPaths) {
+		List<Serializable> ids = getIds(session, mappedClass, restriction, afterId, maxResults);
+		return getObjects(session, mappedClass, ids, fetchPaths);
+	}
+	
+	/**
+	 * Reads the lowest ids greater than <code>afterId</code> of the objects of the given class
+	 * that match <code>restriction</code>
+	 * 
+	 * @return the ids in ascending order
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Serializable> getIds(Session session, Class<?> mappedClass, Criterion restriction,
+	        Serializable afterId, int maxResults) {
+		String idProperty = session.getSessionFactory().getClassMetadata(mappedClass).getIdentifierPropertyName();
+		
+		Criteria idCriteria = session.createCriteria(mappedClass);
+		if (restriction != null)
+			idCriteria.add(restriction);
+		if (afterId != null)
+			idCriteria.add(Expression.gt(idProperty, afterId));
+		idCriteria.setProjection(Projections.property(idProperty)).addOrder(Order.asc(idProperty));
+		idCriteria.setMaxResults(maxResults);
+		return idCriteria.list();
+	}
+	
+	/**
+	 * Reads the objects of the given class with the given ids, leaving out the ones that no longer
+	 * exist
+	 * 
+	 * @return the objects in the order of <code>ids</code>
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> getObjects(Session session, Class<T> mappedClass, List<Serializable> ids,
+	        String... fetchPaths) {
+		if (ids.isEmpty())
+			return Collections.emptyList();
+		
+		ClassMetadata metadata = session.getSessionFactory().getClassMetadata(mappedClass);
+		String idProperty = metadata.getIdentifierPropertyName();
+		
+		// the fetched rows are not in id order, and repeat an object once per fetched child
+		Map<Serializable, T> objectsById = new HashMap<Serializable, T>();
+		int queries = Math.max(1, fetchPaths.length);
+		for (int i = 0; i < queries; i++) {
+			Criteria criteria = session.createCriteria(mappedClass);
+			criteria.add(Expression.in(idProperty, ids));
+			if (i < fetchPaths.length)
+				criteria.setFetchMode(fetchPaths[i], FetchMode.JOIN);
+			criteria.setCacheMode(CacheMode.IGNORE);
+			for (T object : (List<T>) criteria.list())
+				objectsById.put(metadata.getIdentifier(object, EntityMode.POJO), object);
+		}
+		
+		List<T> page = new ArrayList<T>(ids.size());
+		for (Serializable id : ids) {
+			T object = objectsById.get(id);
+			if (object != null)
+				page.add(object);
+		}
+		return page;
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hibernate.CallbackException;
+import org.hibernate.collection.PersistentCollection;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.UserContext;
+
+/**
+ * Calls {@link UserContext#privilegesChanged()} when a role, a privilege or the roles of a user are
+ * saved or deleted, right away and once more when the transaction ends.
+ * 
+ * @since 1.9
+ */
+public class RolePrivilegeInterceptor extends CacheInvalidatingInterceptor<Boolean> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// the other collections and properties of a user, like its user properties, don't change privileges
+	private static final String USER_ROLES = User.class.getName() + ".roles";
+	
+	/**
+	 * The expanded privileges are all thrown away at once, so there is a single key. Besides roles
+	 * and privileges, the collections of a role and the roles of a user have the key.
+	 * 
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#getKeys(java.lang.Object)
+	 * @should return a key for roles and privileges
+	 * @should not return a key for users
+	 * @should not return keys for other objects
+	 */
+	@Override
+	protected Collection<Boolean> getKeys(Object entity) {
+		if (entity instanceof Role || entity instanceof Privilege)
+			return Collections.singleton(Boolean.TRUE);
+		
+		if (entity instanceof PersistentCollection) {
+			PersistentCollection collection = (PersistentCollection) entity;
+			if (collection.getOwner() instanceof Role || USER_ROLES.equals(collection.getRole()))
+				return Collections.singleton(Boolean.TRUE);
+		}
+		
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidate(java.lang.Object)
+	 */
+	@Override
+	protected void invalidate(Boolean key) {
+		UserContext.privilegesChanged();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidateAll()
+	 */
+	@Override
+	public void invalidateAll() {
+		UserContext.privilegesChanged();
+	}
+	
+	/**
+	 * The roles of a user and the privileges of a role are collections, which can change without
+	 * their owner being dirty
+	 * 
+	 * @see org.hibernate.EmptyInterceptor#onCollectionUpdate(java.lang.Object, java.io.Serializable)
+	 * @should mark privileges as changed when the privileges of a role change
+	 * @should mark privileges as changed when the roles of a user change
+	 * @should not mark privileges as changed when the properties of a user change
+	 */
+	@Override
+	public void onCollectionUpdate(Object collection, Serializable key) throws CallbackException {
+		changed(collection);
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onCollectionRecreate(java.lang.Object,
+	 *      java.io.Serializable)
+	 */
+	@Override
+	public void onCollectionRecreate(Object collection, Serializable key) throws CallbackException {
+		onCollectionUpdate(collection, key);
+	}
+	
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onCollectionRemove(java.lang.Object, java.io.Serializable)
+	 */
+	@Override
+	public void onCollectionRemove(Object collection, Serializable key) throws CallbackException {
+		onCollectionUpdate(collection, key);
+	}
+}
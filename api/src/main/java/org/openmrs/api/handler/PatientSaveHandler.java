@@ -20,11 +20,16 @@ import org.openmrs.PatientIdentifier;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
 import org.openmrs.aop.RequiredDataAdvice;
+import org.openmrs.api.context.Context;
+import org.openmrs.patient.PatientSearchIndex;
 
 /**
  * This class deals with {@link Patient} objects when they are saved via a save* method in an
  * Openmrs Service. This handler is automatically called by the {@link RequiredDataAdvice} AOP
  * class. <br/>
+ * <br/>
+ * It also queues the patient to be reindexed by the {@link PatientSearchIndex} once the save is
+ * committed.
  * 
  * @see RequiredDataHandler
  * @see SaveHandler
@@ -37,6 +42,7 @@ public class PatientSaveHandler implements SaveHandler<Patient> {
 	/**
 	 * @see org.openmrs.api.handler.SaveHandler#handle(org.openmrs.OpenmrsObject, org.openmrs.User,
 	 *      java.util.Date, java.lang.String)
+	 * @should reindex the patient when the transaction commits
 	 */
 	public void handle(Patient patient, User creator, Date dateCreated, String other) {
 		if (patient.getIdentifiers() != null) {
@@ -47,5 +53,8 @@ public class PatientSaveHandler implements SaveHandler<Patient> {
 					pIdentifier.setPatient(patient);
 			}
 		}
+		
+		for (PatientSearchIndex index : Context.getRegisteredComponents(PatientSearchIndex.class))
+			index.reindexAfterCommit(patient);
 	}
 }
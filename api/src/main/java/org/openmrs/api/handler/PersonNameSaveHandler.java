@@ -18,11 +18,14 @@ import java.util.Date;
 import org.openmrs.PersonName;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
+import org.openmrs.api.context.Context;
+import org.openmrs.patient.PatientSearchIndex;
 
 /**
  * This is called every time a {@link PersonName} object is saved. The current implemention just
  * trims out the whitespace from the beginning and end of the given/middle/familyname/familyName2
- * attributes
+ * attributes, and queues the person of the name to be reindexed by the {@link PatientSearchIndex}
+ * once the save is committed
  */
 @Handler(supports = PersonName.class)
 public class PersonNameSaveHandler implements SaveHandler<PersonName> {
@@ -30,6 +33,7 @@ public class PersonNameSaveHandler implements SaveHandler<PersonName> {
 	/**
 	 * @see org.openmrs.api.handler.SaveHandler#handle(org.openmrs.OpenmrsObject, org.openmrs.User,
 	 *      java.util.Date, java.lang.String)
+	 * @should reindex the person when the transaction commits
 	 */
 	public void handle(PersonName personName, User creator, Date dateCreated, String other) {
 		if (personName.getGivenName() != null) {
@@ -44,6 +48,10 @@ public class PersonNameSaveHandler implements SaveHandler<PersonName> {
 		if (personName.getFamilyName2() != null) {
 			personName.setFamilyName2(personName.getFamilyName2().trim());
 		}
+		
+		if (personName.getPerson() != null)
+			for (PatientSearchIndex index : Context.getRegisteredComponents(PatientSearchIndex.class))
+				index.reindexAfterCommit(personName.getPerson());
 	}
 	
 }
@@ -31,6 +31,8 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -66,6 +68,8 @@ import org.openmrs.util.LocaleUtility;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 /**
@@ -88,6 +92,33 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 */
 	private GlobalLocaleList globalLocaleList;
 	
+	/**
+	 * Global property values by name, filled from the database the first time any property is
+	 * asked for and kept up to date by {@link #globalPropertyChanged(GlobalProperty)} and
+	 * {@link #globalPropertyDeleted(String)}. Properties that do not exist are cached too.
+	 */
+	private final Map<String, CachedGlobalProperty> globalPropertyCache = new ConcurrentHashMap<String, CachedGlobalProperty>();
+	
+	private volatile boolean globalPropertyCacheFilled = false;
+	
+	// bumped by every change, so that values read from the database before it are not cached
+	private final AtomicInteger globalPropertyCacheVersion = new AtomicInteger();
+	
+	/**
+	 * The value of a global property as read from the database, along with the value last parsed
+	 * from it by {@link AdministrationServiceImpl#getGlobalPropertyValue(String, Object)}
+	 */
+	private static class CachedGlobalProperty {
+		
+		private final String value;
+		
+		private volatile Object typedValue;
+		
+		public CachedGlobalProperty(String value) {
+			this.value = value;
+		}
+	}
+	
 	/**
 	 * Default empty constructor
 	 */
@@ -638,7 +669,73 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (propertyName == null)
 			return null;
 		
-		return dao.getGlobalProperty(propertyName);
+		return getCachedGlobalProperty(propertyName).value;
+	}
+	
+	/**
+	 * Gets the cached value of the given global property, reading it from the database if it is not
+	 * cached yet
+	 * 
+	 * @param propertyName the name of the property
+	 * @return the cached value, which holds null if the property does not exist
+	 */
+	private CachedGlobalProperty getCachedGlobalProperty(String propertyName) {
+		CachedGlobalProperty cached = globalPropertyCache.get(propertyName);
+		if (cached != null)
+			return cached;
+		
+		int version = globalPropertyCacheVersion.get();
+		if (!globalPropertyCacheFilled) {
+			// most properties are read sooner or later, so load them all at once
+			Map<String, CachedGlobalProperty> all = new HashMap<String, CachedGlobalProperty>();
+			for (Map.Entry<String, String> gp : dao.getAllGlobalPropertyValues().entrySet())
+				all.put(gp.getKey(), new CachedGlobalProperty(gp.getValue()));
+			if (version == globalPropertyCacheVersion.get()) {
+				globalPropertyCache.putAll(all);
+				globalPropertyCacheFilled = true;
+			}
+			cached = all.get(propertyName);
+			if (cached != null)
+				return cached;
+		}
+		
+		cached = new CachedGlobalProperty(dao.getGlobalProperty(propertyName));
+		if (version == globalPropertyCacheVersion.get())
+			globalPropertyCache.put(propertyName, cached);
+		return cached;
+	}
+	
+	/**
+	 * Drops the given global property from the cache, now and again when the current transaction
+	 * ends so that a value read by another thread before this change is committed or rolled back
+	 * is not kept either
+	 * 
+	 * @param propertyName the name of the property that changed
+	 */
+	private void evictGlobalProperty(final String propertyName) {
+		globalPropertyCacheVersion.incrementAndGet();
+		globalPropertyCache.remove(propertyName);
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					globalPropertyCacheVersion.incrementAndGet();
+					globalPropertyCache.remove(propertyName);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Empties the global property cache. Needs to be called when the global_property table is
+	 * changed without going through this service, e.g. by sql.
+	 */
+	public void clearGlobalPropertyCache() {
+		globalPropertyCacheVersion.incrementAndGet();
+		globalPropertyCacheFilled = false;
+		globalPropertyCache.clear();
 	}
 	
 	/**
@@ -798,6 +895,10 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (sql == null || sql.trim().equals(""))
 			return null;
 		
+		// the sql might change global properties behind the back of the cache
+		if (!selectOnly)
+			clearGlobalPropertyCache();
+		
 		return dao.executeSQL(sql, selectOnly);
 	}
 	
@@ -1036,6 +1137,8 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyChanged(org.openmrs.GlobalProperty)
 	 */
 	public void globalPropertyChanged(GlobalProperty newValue) {
+		evictGlobalProperty(newValue.getProperty());
+		
 		if (newValue.getProperty().equals(OpenmrsConstants.GLOBAL_PROPERTY_LOCALE_ALLOWED_LIST)) {
 			// reset the calculated locale values
 			presentationLocales = null;
@@ -1046,15 +1149,15 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 	 * @see org.openmrs.api.GlobalPropertyListener#globalPropertyDeleted(java.lang.String)
 	 */
 	public void globalPropertyDeleted(String propertyName) {
-		// TODO Auto-generated method stub
-		
+		evictGlobalProperty(propertyName);
 	}
 	
 	/**
 	 * @see org.openmrs.api.GlobalPropertyListener#supportsPropertyName(java.lang.String)
 	 */
 	public boolean supportsPropertyName(String propertyName) {
-		return propertyName.equals(OpenmrsConstants.GLOBAL_PROPERTY_LOCALE_ALLOWED_LIST);
+		// every property can be in the global property cache
+		return true;
 	}
 	
 	/**
@@ -1073,12 +1176,23 @@ public class AdministrationServiceImpl extends BaseOpenmrsService implements Adm
 		if (defaultValue == null)
 			throw new IllegalArgumentException("The defaultValue argument cannot be null");
 		
-		String propVal = getGlobalProperty(propertyName);
+		if (propertyName == null)
+			return defaultValue;
+		
+		CachedGlobalProperty cached = getCachedGlobalProperty(propertyName);
+		String propVal = cached.value;
 		if (!StringUtils.hasLength(propVal))
 			return defaultValue;
 		
+		// reuse the value parsed by an earlier call asking for the same type
+		Object typedValue = cached.typedValue;
+		if (typedValue != null && typedValue.getClass().equals(defaultValue.getClass()))
+			return (T) typedValue;
+		
 		try {
-			return (T) defaultValue.getClass().getDeclaredConstructor(String.class).newInstance(propVal);
+			typedValue = defaultValue.getClass().getDeclaredConstructor(String.class).newInstance(propVal);
+			cached.typedValue = typedValue;
+			return (T) typedValue;
 		}
 		catch (InstantiationException e) {
 			throw new APIException(defaultValue.getClass().getName() + " is not able to be instantiated with value: "
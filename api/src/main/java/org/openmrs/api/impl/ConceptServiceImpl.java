@@ -15,6 +15,10 @@ package org.openmrs.api.impl;
 
 import static org.apache.commons.lang.StringUtils.contains;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -23,12 +27,19 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.collections.CollectionUtils;
@@ -61,6 +72,8 @@ import org.openmrs.api.ConceptsLockedException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ConceptDAO;
 import org.openmrs.api.db.DAOException;
+import org.openmrs.concept.ConceptDictionaryFormat;
+import org.openmrs.concept.ConceptDictionaryWriter;
 import org.openmrs.scheduler.SchedulerException;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.Task;
@@ -99,6 +112,20 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 	 */
 	private Task conceptWordUpdateTask;
 	
+	/**
+	 * The number of concepts read per batch by {@link #rebuildConceptIndex(Integer, Integer,
+	 * ConceptIndexRebuildListener)} when no batch size is given
+	 */
+	private static final int DEFAULT_INDEX_BATCH_SIZE = 500;
+	
+	/**
+	 * The number of concepts read per page by
+	 * {@link #exportConceptDictionary(OutputStream, String, Date, boolean, boolean)}
+	 */
+	private static final int EXPORT_PAGE_SIZE = 500;
+	
+	private List<ConceptDictionaryFormat> conceptDictionaryFormats = new ArrayList<ConceptDictionaryFormat>();
+	
 	/**
 	 * @see org.openmrs.api.ConceptService#setConceptDAO(org.openmrs.api.db.ConceptDAO)
 	 */
@@ -106,6 +133,15 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		this.dao = dao;
 	}
 	
+	/**
+	 * Sets the formats the concept dictionary can be exported in
+	 * 
+	 * @param conceptDictionaryFormats the formats
+	 */
+	public void setConceptDictionaryFormats(List<ConceptDictionaryFormat> conceptDictionaryFormats) {
+		this.conceptDictionaryFormats = conceptDictionaryFormats;
+	}
+	
 	/**
 	 * @deprecated use {@link #saveConcept(Concept)}
 	 */
@@ -1796,6 +1832,110 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		
 	}
 	
+	/**
+	 * @see ConceptService#rebuildConceptIndex(Integer, Integer, ConceptIndexRebuildListener)
+	 */
+	@Override
+	public Integer rebuildConceptIndex(Integer threads, Integer batchSize, ConceptIndexRebuildListener listener)
+	        throws APIException {
+		checkIfLocked();
+		int poolSize = (threads != null && threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+		int size = (batchSize != null && batchSize > 0) ? batchSize : DEFAULT_INDEX_BATCH_SIZE;
+		int totalConcepts = dao.getCountOfAllConcepts();
+		
+		// looked up here because the workers have no user context
+		List<String> stopWords = getConceptStopWords(Context.getLocale());
+		
+		// the new words are written next to the old ones, which are only deleted once every
+		// concept has been indexed
+		Integer lastOldWordId = dao.getMaxConceptWordId();
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+		LinkedList<Future<List<ConceptWord>>> pending = new LinkedList<Future<List<ConceptWord>>>();
+		LinkedList<Integer> pendingSizes = new LinkedList<Integer>();
+		int conceptsIndexed = 0;
+		boolean completed = false;
+		try {
+			// read the next batch while the workers make the words of the previous ones, and keep
+			// at most one batch per worker waiting to be written
+			List<Concept> batch = dao.getDetachedConceptsWithNames(null, size);
+			while (!batch.isEmpty()) {
+				pending.add(executor.submit(new ConceptWordMaker(batch, stopWords)));
+				pendingSizes.add(batch.size());
+				if (pending.size() > poolSize)
+					conceptsIndexed = writeConceptWords(pending, pendingSizes, conceptsIndexed, totalConcepts, listener);
+				batch = dao.getDetachedConceptsWithNames(batch.get(batch.size() - 1).getConceptId(), size);
+			}
+			while (!pending.isEmpty())
+				conceptsIndexed = writeConceptWords(pending, pendingSizes, conceptsIndexed, totalConcepts, listener);
+			
+			if (lastOldWordId != null)
+				dao.deleteConceptWords(null, lastOldWordId);
+			completed = true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted while rebuilding the concept index", e);
+		}
+		catch (ExecutionException e) {
+			throw new APIException("Unable to make the concept words", e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+			// the transaction is rolled back as well, but the caller may still commit it
+			if (!completed) {
+				try {
+					dao.deleteConceptWords(lastOldWordId == null ? null : lastOldWordId + 1, null);
+				}
+				catch (Exception e) {
+					log.warn("Unable to remove the words of the unfinished concept index", e);
+				}
+			}
+		}
+		
+		return conceptsIndexed;
+	}
+	
+	/**
+	 * Writes the words of the oldest pending batch and tells the listener
+	 * 
+	 * @return the number of concepts indexed after this batch
+	 */
+	private int writeConceptWords(LinkedList<Future<List<ConceptWord>>> pending, LinkedList<Integer> pendingSizes,
+	        int conceptsIndexed, int totalConcepts, ConceptIndexRebuildListener listener) throws InterruptedException,
+	        ExecutionException {
+		dao.saveConceptWords(pending.removeFirst().get());
+		conceptsIndexed += pendingSizes.removeFirst();
+		if (listener != null && !listener.conceptsIndexed(conceptsIndexed, totalConcepts))
+			throw new APIException("The concept index rebuild was cancelled");
+		return conceptsIndexed;
+	}
+	
+	/**
+	 * Makes and weighs the words of a batch of detached concepts, without using the session
+	 */
+	private class ConceptWordMaker implements Callable<List<ConceptWord>> {
+		
+		private final List<Concept> concepts;
+		
+		private final List<String> stopWords;
+		
+		public ConceptWordMaker(List<Concept> concepts, List<String> stopWords) {
+			this.concepts = concepts;
+			this.stopWords = stopWords;
+		}
+		
+		public List<ConceptWord> call() {
+			List<ConceptWord> words = new ArrayList<ConceptWord>();
+			for (Concept concept : concepts) {
+				for (ConceptWord word : ConceptWord.makeConceptWords(concept, stopWords)) {
+					word.setWeight(dao.weighConceptWord(word));
+					words.add(word);
+				}
+			}
+			return words;
+		}
+	}
+	
 	/**
 	 * Convenience method that creates a list of ConceptSearchResults from the specified list of
 	 * ConceptWords
@@ -1863,4 +2003,79 @@ public class ConceptServiceImpl extends BaseOpenmrsService implements ConceptSer
 		
 		return getConcepts(phrase, locales, includeRetired, null, null, null, null, null, null, null);
 	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptDictionaryFormats()
+	 */
+	public List<ConceptDictionaryFormat> getConceptDictionaryFormats() {
+		return Collections.unmodifiableList(conceptDictionaryFormats);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#getConceptDictionaryFormat(java.lang.String)
+	 */
+	public ConceptDictionaryFormat getConceptDictionaryFormat(String name) {
+		for (ConceptDictionaryFormat format : conceptDictionaryFormats) {
+			if (format.getName().equalsIgnoreCase(name))
+				return format;
+		}
+		return null;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ConceptService#exportConceptDictionary(java.io.OutputStream,
+	 *      java.lang.String, java.util.Date, boolean, boolean)
+	 */
+	public Integer exportConceptDictionary(OutputStream out, String format, Date changedSince, boolean includeRetired,
+	        boolean gzip) throws APIException {
+		ConceptDictionaryFormat dictionaryFormat = getConceptDictionaryFormat(format);
+		if (dictionaryFormat == null)
+			throw new APIException("Unknown concept dictionary format: " + format);
+		
+		int exported = 0;
+		try {
+			GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out) : null;
+			Writer writer = new OutputStreamWriter(gzip ? gzipOut : out, "UTF-8");
+			ConceptDictionaryWriter dictionaryWriter = dictionaryFormat.newWriter(writer, Context.getLocale());
+			
+			List<Concept> page = dao.getConceptsForExport(null, changedSince, includeRetired, EXPORT_PAGE_SIZE);
+			while (!page.isEmpty()) {
+				for (Concept concept : page)
+					dictionaryWriter.writeConcept(concept);
+				exported += page.size();
+				
+				Integer lastConceptId = page.get(page.size() - 1).getConceptId();
+				evictExportedConcepts(page);
+				page = dao.getConceptsForExport(lastConceptId, changedSince, includeRetired, EXPORT_PAGE_SIZE);
+			}
+			
+			dictionaryWriter.finish();
+			writer.flush();
+			if (gzipOut != null)
+				gzipOut.finish();
+		}
+		catch (IOException e) {
+			throw new APIException("Unable to export the concept dictionary", e);
+		}
+		
+		return exported;
+	}
+	
+	/**
+	 * Evicts the given concepts from the session, along with the concepts their answers and set
+	 * members refer to, so that the session doesn't grow with the export
+	 */
+	private void evictExportedConcepts(List<Concept> concepts) {
+		for (Concept concept : concepts) {
+			for (ConceptAnswer answer : concept.getAnswers(true)) {
+				if (answer.getAnswerConcept() != null)
+					Context.evictFromSession(answer.getAnswerConcept());
+			}
+			for (ConceptSet set : concept.getConceptSets()) {
+				if (set.getConcept() != null)
+					Context.evictFromSession(set.getConcept());
+			}
+			Context.evictFromSession(concept);
+		}
+	}
 }
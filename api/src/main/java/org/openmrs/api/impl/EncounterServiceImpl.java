@@ -16,10 +16,13 @@ package org.openmrs.api.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
@@ -32,6 +35,7 @@ import org.openmrs.User;
 import org.openmrs.Visit;
 import org.openmrs.VisitType;
 import org.openmrs.api.APIException;
+import org.openmrs.api.BatchSaveResult;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.OrderService;
@@ -40,6 +44,7 @@ import org.openmrs.api.db.EncounterDAO;
 import org.openmrs.util.OpenmrsUtil;
 import org.openmrs.util.PrivilegeConstants;
 import org.openmrs.validator.EncounterValidator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.validation.BindException;
 import org.springframework.validation.Errors;
 import org.springframework.validation.ObjectError;
@@ -55,7 +60,7 @@ import org.springframework.validation.ObjectError;
  */
 public class EncounterServiceImpl extends BaseOpenmrsService implements EncounterService {
 	
-	// private Log log = LogFactory.getLog(this.getClass());
+	private Log log = LogFactory.getLog(this.getClass());
 	
 	private EncounterDAO dao;
 	
@@ -81,96 +86,184 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 	 * @see org.openmrs.api.EncounterService#saveEncounter(org.openmrs.Encounter)
 	 */
 	public Encounter saveEncounter(Encounter encounter) throws APIException {
-		Errors errors = new BindException(encounter, "encounter");
-		new EncounterValidator().validate(encounter, errors);
-		if (errors.hasErrors()) {
-			StringBuilder sb = new StringBuilder(Context.getMessageSourceService().getMessage("error.foundValidationErrors")
-			        + ": [");
-			boolean isFirst = true;
-			for (ObjectError error : errors.getAllErrors()) {
-				if (isFirst) {
-					sb.append(Context.getMessageSourceService().getMessage(error.getCode()));
-					isFirst = false;
-				} else
-					sb.append(", ").append(Context.getMessageSourceService().getMessage(error.getCode()));
-			}
-			throw new APIException(sb.toString() + "]");
-		}
+		String validationErrors = getValidationErrors(encounter);
+		if (validationErrors != null)
+			throw new APIException(validationErrors);
 		
-		boolean isNewEncounter = false;
-		Date newDate = encounter.getEncounterDatetime();
-		Date originalDate = null;
-		Location newLocation = encounter.getLocation();
-		Location originalLocation = null;
 		// check permissions
 		if (encounter.getEncounterId() == null) {
-			isNewEncounter = true;
 			Context.requirePrivilege(PrivilegeConstants.ADD_ENCOUNTERS);
 		} else {
 			Context.requirePrivilege(PrivilegeConstants.EDIT_ENCOUNTERS);
+			applyChangesToObsAndOrders(encounter);
 		}
 		
-		// This must be done after setting dateCreated etc on the obs because
-		// of the way the ORM tools flush things and check for nullity
-		// This also must be done before the save encounter so we can use the
-		// orig date
-		// after the save
-		if (!isNewEncounter) {
-			// fetch the datetime from the database prior to saving for this
-			// encounter
-			// to see if it has changed and change all obs after saving if so
-			originalDate = dao.getSavedEncounterDatetime(encounter);
-			if (encounter.getLocation() != null)
-				originalLocation = dao.getSavedEncounterLocation(encounter);
-			// Our data model duplicates the patient column to allow for
-			// observations to
-			// not have to look up the parent Encounter to find the patient
-			// Therefore, encounter.patient must always equal
-			// encounter.observations[0-n].patient
-			
-			// If we are changing encounter.encounterDatetime, then we need to
-			// also apply that
-			// to Obs that inherited their obsDatetime from the encounter in the
-			// first place
+		// do the actual saving to the database
+		dao.saveEncounter(encounter);
+		
+		return encounter;
+	}
+	
+	/**
+	 * @see org.openmrs.api.EncounterService#saveEncounters(java.util.List)
+	 */
+	public BatchSaveResult<Encounter> saveEncounters(List<Encounter> encounters) throws APIException {
+		BatchSaveResult<Encounter> result = new BatchSaveResult<Encounter>();
+		boolean canAdd = Context.hasPrivilege(PrivilegeConstants.ADD_ENCOUNTERS);
+		boolean canEdit = Context.hasPrivilege(PrivilegeConstants.EDIT_ENCOUNTERS);
+		
+		// validate every encounter before saving any of them, so the native queries used by the
+		// fixups don't flush the session once per encounter
+		List<Encounter> toSave = new ArrayList<Encounter>(encounters.size());
+		for (int i = 0; i < encounters.size(); i++) {
+			Encounter encounter = encounters.get(i);
+			String error = getValidationErrors(encounter);
+			if (error == null && encounter.getEncounterId() == null && !canAdd)
+				error = "Privilege required: " + PrivilegeConstants.ADD_ENCOUNTERS;
+			else if (error == null && encounter.getEncounterId() != null && !canEdit)
+				error = "Privilege required: " + PrivilegeConstants.EDIT_ENCOUNTERS;
 			
-			Patient p = encounter.getPatient();
-			for (Obs obs : encounter.getAllObs(true)) {
-				// if the date was changed
-				if (OpenmrsUtil.compare(originalDate, newDate) != 0) {
-					
-					// if the obs datetime is the same as the
-					// original encounter datetime, fix it
-					if (OpenmrsUtil.compare(obs.getObsDatetime(), originalDate) == 0) {
-						obs.setObsDatetime(newDate);
-					}
-					
-				}
+			if (error == null) {
+				toSave.add(encounter);
+			} else {
+				result.addError(i, error);
+				// the changes to a rejected existing encounter must not be flushed with the others,
+				// its obs and orders are evicted with it through the cascade
+				if (encounter.getEncounterId() != null)
+					Context.evictFromSession(encounter);
+			}
+		}
+		
+		for (Encounter encounter : toSave)
+			if (encounter.getEncounterId() != null)
+				applyChangesToObsAndOrders(encounter);
+		
+		dao.saveEncounters(toSave);
+		
+		for (Encounter encounter : toSave)
+			result.addSaved(encounter);
+		
+		return result;
+	}
+	
+	/**
+	 * @see org.openmrs.api.EncounterService#importEncounters(java.util.List, java.lang.Integer)
+	 */
+	public BatchSaveResult<Encounter> importEncounters(List<Encounter> encounters, Integer chunkSize)
+	        throws APIException {
+		if (chunkSize == null || chunkSize < 1)
+			chunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+		
+		BatchSaveResult<Encounter> result = new BatchSaveResult<Encounter>();
+		boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+		for (int from = 0; from < encounters.size(); from += chunkSize) {
+			List<Encounter> chunk = encounters.subList(from, Math.min(from + chunkSize, encounters.size()));
+			try {
+				// go through the service proxy so each chunk gets its own transaction when there is
+				// no surrounding one
+				result.addAll(Context.getEncounterService().saveEncounters(new ArrayList<Encounter>(chunk)), from);
+			}
+			catch (RuntimeException e) {
+				// the failed chunk marked the surrounding transaction for rollback, so nothing
+				// saved so far will be kept either
+				if (inTransaction)
+					throw e;
+				log.warn("Unable to save encounters " + from + " to " + (from + chunk.size() - 1), e);
+				for (int i = 0; i < chunk.size(); i++)
+					result.addError(from + i, e.getMessage());
+			}
+			Context.clearSession();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Validates the given encounter
+	 * 
+	 * @param encounter the encounter to validate
+	 * @return a message listing the validation errors, or null if the encounter is valid
+	 */
+	private String getValidationErrors(Encounter encounter) {
+		Errors errors = new BindException(encounter, "encounter");
+		new EncounterValidator().validate(encounter, errors);
+		if (!errors.hasErrors())
+			return null;
+		
+		StringBuilder sb = new StringBuilder(Context.getMessageSourceService().getMessage("error.foundValidationErrors")
+		        + ": [");
+		boolean isFirst = true;
+		for (ObjectError error : errors.getAllErrors()) {
+			if (isFirst) {
+				sb.append(Context.getMessageSourceService().getMessage(error.getCode()));
+				isFirst = false;
+			} else
+				sb.append(", ").append(Context.getMessageSourceService().getMessage(error.getCode()));
+		}
+		return sb.toString() + "]";
+	}
+	
+	/**
+	 * Applies changes to the datetime, location and patient of an existing encounter to the obs
+	 * and orders it contains. This must be done before the encounter is saved so that the original
+	 * values can still be read from the database.
+	 * 
+	 * @param encounter an encounter that has already been saved once
+	 */
+	private void applyChangesToObsAndOrders(Encounter encounter) {
+		Date newDate = encounter.getEncounterDatetime();
+		Location newLocation = encounter.getLocation();
+		Location originalLocation = null;
+		
+		// fetch the datetime from the database prior to saving for this
+		// encounter
+		// to see if it has changed and change all obs after saving if so
+		Date originalDate = dao.getSavedEncounterDatetime(encounter);
+		if (encounter.getLocation() != null)
+			originalLocation = dao.getSavedEncounterLocation(encounter);
+		// Our data model duplicates the patient column to allow for
+		// observations to
+		// not have to look up the parent Encounter to find the patient
+		// Therefore, encounter.patient must always equal
+		// encounter.observations[0-n].patient
+		
+		// If we are changing encounter.encounterDatetime, then we need to
+		// also apply that
+		// to Obs that inherited their obsDatetime from the encounter in the
+		// first place
+		
+		Patient p = encounter.getPatient();
+		for (Obs obs : encounter.getAllObs(true)) {
+			// if the date was changed
+			if (OpenmrsUtil.compare(originalDate, newDate) != 0) {
 				
-				if (!OpenmrsUtil.nullSafeEquals(newLocation, originalLocation)) {
-					if (obs.getLocation().equals(originalLocation)) {
-						obs.setLocation(newLocation);
-					}
+				// if the obs datetime is the same as the
+				// original encounter datetime, fix it
+				if (OpenmrsUtil.compare(obs.getObsDatetime(), originalDate) == 0) {
+					obs.setObsDatetime(newDate);
 				}
 				
-				// if the Person in the obs doesn't match the Patient in the
-				// encounter, fix it
-				if (!obs.getPerson().getPersonId().equals(p.getPatientId())) {
-					obs.setPerson(p);
-				}
 			}
 			
-			// same goes for Orders
-			for (Order o : encounter.getOrders()) {
-				if (!p.equals(o.getPatient())) {
-					o.setPatient(p);
+			if (!OpenmrsUtil.nullSafeEquals(newLocation, originalLocation)) {
+				if (obs.getLocation().equals(originalLocation)) {
+					obs.setLocation(newLocation);
 				}
 			}
+			
+			// if the Person in the obs doesn't match the Patient in the
+			// encounter, fix it
+			if (!obs.getPerson().getPersonId().equals(p.getPatientId())) {
+				obs.setPerson(p);
+			}
 		}
 		
-		// do the actual saving to the database
-		dao.saveEncounter(encounter);
-		
-		return encounter;
+		// same goes for Orders
+		for (Order o : encounter.getOrders()) {
+			if (!p.equals(o.getPatient())) {
+				o.setPatient(p);
+			}
+		}
 	}
 	
 	/**
@@ -616,4 +709,11 @@ public class EncounterServiceImpl extends BaseOpenmrsService implements Encounte
 	public List<Encounter> getEncountersByVisit(Visit visit) {
 		return dao.getEncountersByVisit(visit);
 	}
+	
+	/**
+	 * @see org.openmrs.api.EncounterService#encounterIterator(java.lang.Integer)
+	 */
+	public Iterator<Encounter> encounterIterator(Integer pageSize) throws APIException {
+		return dao.encounterIterator(pageSize);
+	}
 }
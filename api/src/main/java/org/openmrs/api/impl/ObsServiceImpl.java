@@ -13,8 +13,12 @@
  */
 package org.openmrs.api.impl;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,13 +36,18 @@ import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.aop.RequiredDataAdvice;
 import org.openmrs.api.APIException;
+import org.openmrs.api.ConceptService;
 import org.openmrs.api.EncounterService;
+import org.openmrs.api.LocationService;
 import org.openmrs.api.ObsService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.ObsDAO;
 import org.openmrs.api.handler.SaveHandler;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.MostRecentObsCache;
+import org.openmrs.obs.ObsStatistics;
+import org.openmrs.obs.ObsTimeSeries;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsConstants.PERSON_TYPE;
@@ -62,6 +71,8 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 	 */
 	private static Map<String, ComplexObsHandler> handlers = null;
 	
+	private MostRecentObsCache mostRecentObsCache;
+	
 	/**
 	 * Default empty constructor for this obs service
 	 */
@@ -75,6 +86,14 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		this.dao = dao;
 	}
 	
+	/**
+	 * @param mostRecentObsCache the cache used by {@link #getMostRecentObs(Person, List)}, null to
+	 *            always look the obs up in the database
+	 */
+	public void setMostRecentObsCache(MostRecentObsCache mostRecentObsCache) {
+		this.mostRecentObsCache = mostRecentObsCache;
+	}
+	
 	/**
 	 * Clean up after this class. Set the static var to null so that the classloader can reclaim the
 	 * space.
@@ -551,6 +570,58 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		return getObservations(whom, null, questions, null, null, null, null, null, null, null, null, false);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#getMostRecentObs(org.openmrs.Person, java.util.List)
+	 */
+	public Map<Concept, Obs> getMostRecentObs(Person who, List<Concept> questions) throws APIException {
+		Map<Concept, Obs> ret = new LinkedHashMap<Concept, Obs>();
+		if (who == null || who.getPersonId() == null || questions == null)
+			return ret;
+		
+		List<Integer> conceptIds = new ArrayList<Integer>();
+		for (Concept question : questions) {
+			if (question != null)
+				conceptIds.add(question.getConceptId());
+		}
+		Map<Integer, Integer> cachedObsIds = Collections.emptyMap();
+		if (mostRecentObsCache != null)
+			cachedObsIds = mostRecentObsCache.get(who.getPersonId(), conceptIds);
+		
+		List<Person> whom = new Vector<Person>();
+		whom.add(who);
+		List<String> sort = new Vector<String>();
+		sort.add("obsDatetime");
+		sort.add("obsId");
+		for (Concept question : questions) {
+			if (question == null)
+				continue;
+			
+			Obs obs = null;
+			boolean found = false;
+			if (cachedObsIds.containsKey(question.getConceptId())) {
+				Integer obsId = cachedObsIds.get(question.getConceptId());
+				if (obsId != null)
+					obs = dao.getObs(obsId);
+				// an obs removed behind the cache's back is looked up again
+				found = obsId == null || (obs != null && !obs.isVoided());
+			}
+			if (!found) {
+				long dataVersion = mostRecentObsCache == null ? 0 : mostRecentObsCache.getDataVersion();
+				List<Concept> oneQuestion = new Vector<Concept>();
+				oneQuestion.add(question);
+				List<Obs> mostRecent = dao.getObservations(whom, null, oneQuestion, null, null, null, sort, 1, null, null,
+				    null, false);
+				obs = mostRecent.isEmpty() ? null : mostRecent.get(0);
+				if (mostRecentObsCache != null)
+					mostRecentObsCache.put(who.getPersonId(), question.getConceptId(), obs == null ? null : obs
+					        .getObsId(), dataVersion);
+			}
+			if (obs != null)
+				ret.put(question, obs);
+		}
+		return ret;
+	}
+	
 	/**
 	 * @see org.openmrs.api.ObsService#getLastNObservations(java.lang.Integer, org.openmrs.Person,
 	 *      org.openmrs.Concept, boolean includeVoided)
@@ -822,4 +893,157 @@ public class ObsServiceImpl extends BaseOpenmrsService implements ObsService {
 		handlers.remove(key);
 	}
 	
+	/**
+	 * @see org.openmrs.api.ObsService#obsIterator(java.lang.Integer)
+	 */
+	public Iterator<Obs> obsIterator(Integer pageSize) throws APIException {
+		return dao.obsIterator(pageSize);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsStatistics(org.openmrs.Concept, java.util.List,
+	 *      java.util.Date, java.util.Date, java.lang.Double, java.lang.Double, double[],
+	 *      java.lang.Integer)
+	 */
+	public ObsStatistics getNumericObsStatistics(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate, Double minValue, Double maxValue, double[] percentiles, Integer histogramBins)
+	        throws APIException {
+		List<Object[]> rows = dao.getNumericObsAggregates(question, null, locations, fromDate, toDate, minValue,
+		    maxValue);
+		ObsStatistics stats = newObsStatistics(rows.get(0), 0);
+		long count = stats.getCount();
+		if (count == 0)
+			return stats;
+		
+		if (percentiles != null) {
+			for (double fraction : percentiles) {
+				if (fraction < 0 || fraction > 1)
+					throw new IllegalArgumentException("Percentiles must be between 0 and 1, not " + fraction);
+				int position = (int) Math.round(fraction * (count - 1));
+				stats.setPercentile(fraction, dao.getNumericObsValueAt(question, locations, fromDate, toDate,
+				    minValue, maxValue, position));
+			}
+		}
+		
+		if (histogramBins != null) {
+			if (histogramBins < 1)
+				throw new IllegalArgumentException("A histogram needs at least one bin, not " + histogramBins);
+			long[] counts = new long[histogramBins];
+			double width = (stats.getMax() - stats.getMin()) / histogramBins;
+			if (width == 0) {
+				counts[0] = count;
+			} else {
+				Map<Integer, Long> bins = dao.getNumericObsHistogram(question, locations, fromDate, toDate, minValue,
+				    maxValue, stats.getMin(), width);
+				for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+					// the maximum, and values rounded past it, belong to the last bin
+					int index = Math.max(0, Math.min(histogramBins - 1, bin.getKey()));
+					counts[index] += bin.getValue();
+				}
+			}
+			stats.setHistogram(stats.getMin(), width, counts);
+		}
+		
+		return stats;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsStatisticsByGroup(org.openmrs.Concept,
+	 *      org.openmrs.api.ObsService.ObsGrouping, java.util.List, java.util.Date, java.util.Date)
+	 */
+	public Map<Object, ObsStatistics> getNumericObsStatisticsByGroup(Concept question, ObsGrouping groupBy,
+	        List<Location> locations, Date fromDate, Date toDate) throws APIException {
+		if (groupBy == null)
+			throw new IllegalArgumentException("groupBy is required");
+		
+		Map<Object, ObsStatistics> ret = new LinkedHashMap<Object, ObsStatistics>();
+		List<Object[]> rows = dao.getNumericObsAggregates(question, groupBy, locations, fromDate, toDate, null, null);
+		if (groupBy == ObsGrouping.LOCATION) {
+			LocationService ls = Context.getLocationService();
+			for (Object[] row : rows)
+				ret.put(row[0] == null ? null : ls.getLocation((Integer) row[0]), newObsStatistics(row, 1));
+		} else {
+			Calendar calendar = Calendar.getInstance();
+			for (Object[] row : rows) {
+				calendar.clear();
+				calendar.set(((Number) row[0]).intValue(), ((Number) row[1]).intValue() - 1, 1);
+				ret.put(calendar.getTime(), newObsStatistics(row, 2));
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Creates the statistics from a row of count, minimum, maximum, mean and sum of squares
+	 * 
+	 * @param row the row
+	 * @param offset the index of the count in the row
+	 */
+	private ObsStatistics newObsStatistics(Object[] row, int offset) {
+		ObsStatistics stats = new ObsStatistics();
+		long count = ((Number) row[offset]).longValue();
+		stats.setCount(count);
+		if (count == 0)
+			return stats;
+		
+		double mean = ((Number) row[offset + 3]).doubleValue();
+		stats.setMin(((Number) row[offset + 1]).doubleValue());
+		stats.setMax(((Number) row[offset + 2]).doubleValue());
+		stats.setMean(mean);
+		if (count > 1) {
+			double sumOfSquares = ((Number) row[offset + 4]).doubleValue();
+			// rounding can make the variance of equal values slightly negative
+			double variance = Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1));
+			stats.setStandardDeviation(Math.sqrt(variance));
+		}
+		return stats;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getCodedObsFrequencies(org.openmrs.Concept, java.util.List,
+	 *      java.util.Date, java.util.Date)
+	 */
+	public Map<Concept, Long> getCodedObsFrequencies(Concept question, List<Location> locations, Date fromDate,
+	        Date toDate) throws APIException {
+		ConceptService cs = Context.getConceptService();
+		Map<Concept, Long> ret = new LinkedHashMap<Concept, Long>();
+		for (Map.Entry<Integer, Long> entry : dao.getCodedObsCounts(question, locations, fromDate, toDate).entrySet()) {
+			Integer answerId = entry.getKey();
+			ret.put(answerId == null ? null : cs.getConcept(answerId), entry.getValue());
+		}
+		return ret;
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsOutsideRange(org.openmrs.Concept, double, double,
+	 *      java.util.List, java.util.Date, java.util.Date, java.lang.Integer)
+	 */
+	public List<Obs> getNumericObsOutsideRange(Concept question, double lowerLimit, double upperLimit,
+	        List<Location> locations, Date fromDate, Date toDate, Integer maxResults) throws APIException {
+		return dao.getNumericObsOutsideRange(question, lowerLimit, upperLimit, locations, fromDate, toDate,
+		    maxResults);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getNumericObsTimeSeries(org.openmrs.Person,
+	 *      org.openmrs.Concept, java.util.Date, java.util.Date)
+	 */
+	public ObsTimeSeries getNumericObsTimeSeries(Person who, Concept question, Date fromDate, Date toDate)
+	        throws APIException {
+		List<Object[]> rows = dao.getNumericObsTimeSeries(who, question, fromDate, toDate);
+		Date[] dates = new Date[rows.size()];
+		double[] values = new double[rows.size()];
+		for (int i = 0; i < dates.length; i++) {
+			dates[i] = (Date) rows.get(i)[0];
+			values[i] = ((Number) rows.get(i)[1]).doubleValue();
+		}
+		return new ObsTimeSeries(dates, values);
+	}
+	
+	/**
+	 * @see org.openmrs.api.ObsService#getLastObsChange(org.openmrs.Person, org.openmrs.Concept)
+	 */
+	public Date getLastObsChange(Person who, Concept question) throws APIException {
+		return dao.getLastObsChange(who, question);
+	}
 }
@@ -18,12 +18,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -61,7 +65,10 @@ import org.openmrs.api.UserService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.PatientDAO;
 import org.openmrs.order.OrderUtil;
+import org.openmrs.patient.DuplicatePatientDetector;
+import org.openmrs.patient.DuplicatePatientMatch;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResults;
 import org.openmrs.patient.impl.LuhnIdentifierValidator;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.PrivilegeConstants;
@@ -636,6 +643,36 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		return dao.getDuplicatePatientsByAttributes(attributes);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientService#getLikelyDuplicatePatients(Double, Integer, boolean,
+	 *      Integer)
+	 */
+	public List<DuplicatePatientMatch> getLikelyDuplicatePatients(Double minimumScore, Integer birthdateWindowDays,
+	        boolean includeVoided, Integer maxResults) throws APIException {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		if (minimumScore != null)
+			detector.setMinimumScore(minimumScore);
+		if (birthdateWindowDays != null)
+			detector.setBirthdateWindowDays(birthdateWindowDays);
+		detector.setMaxResults(maxResults);
+		dao.addDuplicatePatientCandidates(detector, includeVoided);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return detector.findDuplicates(executor);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new APIException("Interrupted while looking for duplicate patients", e);
+		}
+		catch (ExecutionException e) {
+			throw new APIException("Unable to score the duplicate patient candidates", e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
 	/**
 	 * generate a relationship hash for use in mergePatients; follows the convention:
 	 * [relationshipType][A|B][relativeId]
@@ -1411,18 +1448,9 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 	 * @return the value of min search characters
 	 */
 	private int getMinSearchCharacters() {
-		int minSearchCharacters = OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS;
-		String minSearchCharactersStr = Context.getAdministrationService().getGlobalProperty(
-		    OpenmrsConstants.GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS);
-		
-		try {
-			minSearchCharacters = Integer.valueOf(minSearchCharactersStr);
-		}
-		catch (NumberFormatException e) {
-			//do nothing
-		}
-		
-		return minSearchCharacters;
+		return Context.getAdministrationService().getGlobalPropertyValue(
+		    OpenmrsConstants.GLOBAL_PROPERTY_MIN_SEARCH_CHARACTERS,
+		    OpenmrsConstants.GLOBAL_PROPERTY_DEFAULT_MIN_SEARCH_CHARACTERS);
 	}
 	
 	/**
@@ -1444,6 +1472,24 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		}
 	}
 	
+	/**
+	 * @see PatientService#searchPatients(String, Integer, Integer)
+	 */
+	@Override
+	public PatientSearchResults searchPatients(String query, Integer start, Integer length) throws APIException {
+		if (StringUtils.isBlank(query))
+			return new PatientSearchResults(0, new LinkedHashMap<Integer, Integer>());
+		
+		// if there is a number in the query string
+		if (query.matches(".*\\d+.*")) {
+			log.debug("[Identifier search] Query: " + query);
+			return dao.searchPatients(null, query, start, length);
+		} else {
+			// there is no number in the string, search on name
+			return dao.searchPatients(query, null, start, length);
+		}
+	}
+	
 	/**
 	 * @see PatientService#getPatients(String, String, List, boolean, Integer, Integer)
 	 */
@@ -1455,4 +1501,11 @@ public class PatientServiceImpl extends BaseOpenmrsService implements PatientSer
 		
 		return dao.getPatients(name, identifier, identifierTypes, matchIdentifierExactly, start, length);
 	}
+	
+	/**
+	 * @see org.openmrs.api.PatientService#patientIterator(java.lang.Integer)
+	 */
+	public Iterator<Patient> patientIterator(Integer pageSize) throws APIException {
+		return dao.patientIterator(pageSize);
+	}
 }
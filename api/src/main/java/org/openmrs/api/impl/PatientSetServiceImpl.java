@@ -339,6 +339,46 @@ public class PatientSetServiceImpl implements PatientSetService {
 		return getPatientSetDAO().getEncountersByType(patients, types);
 	}
 	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamObservations(org.openmrs.Cohort,
+	 *      org.openmrs.Concept, java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamObservations(Cohort patients, Concept concept, Integer batchSize,
+	        PatientDataHandler<List<Obs>> handler) {
+		if (patients != null && patients.size() == 0)
+			return;
+		getPatientSetDAO().streamObservations(patients, concept, null, null, batchSize, handler);
+	}
+	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamObservationsValues(org.openmrs.Cohort,
+	 *      org.openmrs.Concept, java.util.List, java.lang.Integer, boolean, java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamObservationsValues(Cohort patients, Concept c, List<String> attributes, Integer limit,
+	        boolean showMostRecentFirst, Integer batchSize, PatientDataHandler<List<List<Object>>> handler) {
+		if (attributes == null)
+			attributes = new Vector<String>();
+		
+		// add null for the actual obs value
+		if (attributes.size() < 1 || attributes.get(0) != null)
+			attributes.add(0, null);
+		
+		getPatientSetDAO().streamObservationsValues(patients, c, attributes, limit, showMostRecentFirst, batchSize,
+		    handler);
+	}
+	
+	/**
+	 * @see org.openmrs.api.PatientSetService#streamEncountersByType(org.openmrs.Cohort,
+	 *      java.util.List, java.lang.Integer,
+	 *      org.openmrs.api.PatientSetService.PatientDataHandler)
+	 */
+	public void streamEncountersByType(Cohort patients, List<EncounterType> encTypes, Integer batchSize,
+	        PatientDataHandler<Encounter> handler) {
+		getPatientSetDAO().streamEncountersByType(patients, encTypes, batchSize, handler);
+	}
+	
 	public Map<Integer, Encounter> getEncounters(Cohort patients) {
 		return getPatientSetDAO().getEncounters(patients);
 	}
@@ -13,7 +13,11 @@
  */
 package org.openmrs.arden;
 
+import java.util.Map;
+
+import org.openmrs.Cohort;
 import org.openmrs.api.APIException;
+import org.openmrs.logic.result.Result;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional
@@ -38,4 +42,34 @@ public interface ArdenService {
 	 */
 	public void compile(String ardenRuleDefinition, String outFolder) throws APIException;
 	
+	/**
+	 * Evaluates an mlm for a whole cohort at once, so that the logic data sources can fetch the data
+	 * of all patients together instead of one patient at a time. The mlm is evaluated by the rule
+	 * class deployed under its name, as generated by {@link #compile(String, String)} and put on the
+	 * classpath. The time of each evaluation is added to the statistics of that class, see
+	 * {@link #getEvaluationStats(String)}.
+	 * 
+	 * @param name the name of the mlm, which is also the name of its rule class
+	 * @param patients the patients to evaluate the mlm for
+	 * @param parameters the parameters passed to the rule, may be null
+	 * @return the results by patient id
+	 * @throws APIException if the rule class of the mlm is not deployed or cannot be evaluated
+	 * @should fail if the rule class of the mlm is not deployed
+	 * @should record the evaluation in the statistics of the deployed rule class
+	 * @since 1.9
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, Result> evaluateMlm(String name, Cohort patients, Map<String, Object> parameters)
+	        throws APIException;
+	
+	/**
+	 * @param name the name of the mlm
+	 * @return the evaluation statistics of the rule class currently deployed for the mlm, or null if
+	 *         that class is not deployed or has not been evaluated yet
+	 * @should return null for an mlm that has not been evaluated
+	 * @since 1.9
+	 */
+	@Transactional(readOnly = true)
+	public MlmEvaluationStats getEvaluationStats(String name);
+	
 }
@@ -0,0 +1,109 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.arden;
+
+/**
+ * Latency statistics of the evaluations of the rule class of one mlm
+ * 
+ * @see ArdenService#evaluateMlm(String, org.openmrs.Cohort, java.util.Map)
+ * @since 1.9
+ */
+public class MlmEvaluationStats {
+	
+	private long evaluations;
+	
+	private long failures;
+	
+	private long patients;
+	
+	private long totalTime;
+	
+	private long maxTime;
+	
+	/**
+	 * Records one evaluation
+	 * 
+	 * @param patientCount the number of patients evaluated
+	 * @param time the time taken in milliseconds
+	 * @param failed whether the evaluation failed
+	 * @should add the evaluation to the totals
+	 */
+	public synchronized void addEvaluation(int patientCount, long time, boolean failed) {
+		evaluations++;
+		if (failed)
+			failures++;
+		patients += patientCount;
+		totalTime += time;
+		if (time > maxTime)
+			maxTime = time;
+	}
+	
+	/**
+	 * @return the number of evaluations
+	 */
+	public synchronized long getEvaluations() {
+		return evaluations;
+	}
+	
+	/**
+	 * @return the number of evaluations which failed
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * @return the number of patients over all evaluations
+	 */
+	public synchronized long getPatients() {
+		return patients;
+	}
+	
+	/**
+	 * @return the time of all evaluations in milliseconds
+	 */
+	public synchronized long getTotalTime() {
+		return totalTime;
+	}
+	
+	/**
+	 * @return the time of the slowest evaluation in milliseconds
+	 */
+	public synchronized long getMaxTime() {
+		return maxTime;
+	}
+	
+	/**
+	 * @return the mean time of an evaluation in milliseconds, 0 if there were none
+	 */
+	public synchronized double getMeanTime() {
+		return evaluations == 0 ? 0 : (double) totalTime / evaluations;
+	}
+	
+	/**
+	 * @return the mean time per patient in milliseconds, 0 if there were none
+	 */
+	public synchronized double getMeanTimePerPatient() {
+		return patients == 0 ? 0 : (double) totalTime / patients;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "evaluations=" + evaluations + ", failures=" + failures + ", patients=" + patients + ", mean="
+		        + getMeanTime() + "ms, max=" + maxTime + "ms";
+	}
+}
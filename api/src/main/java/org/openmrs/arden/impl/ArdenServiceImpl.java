@@ -20,12 +20,17 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.arden.ArdenBaseLexer;
@@ -33,6 +38,12 @@ import org.openmrs.arden.ArdenBaseParser;
 import org.openmrs.arden.ArdenBaseTreeParser;
 import org.openmrs.arden.ArdenService;
 import org.openmrs.arden.MLMObject;
+import org.openmrs.arden.MlmEvaluationStats;
+import org.openmrs.logic.LogicException;
+import org.openmrs.logic.LogicService;
+import org.openmrs.logic.Rule;
+import org.openmrs.logic.result.Result;
+import org.openmrs.util.OpenmrsClassLoader;
 
 import antlr.BaseAST;
 
@@ -46,6 +57,13 @@ public class ArdenServiceImpl implements ArdenService {
 	
 	private final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The evaluation statistics by rule class, a class deployed again with a new class loader starts
+	 * over
+	 */
+	private final Map<Class<?>, MlmEvaluationStats> evaluationStats = Collections
+	        .synchronizedMap(new WeakHashMap<Class<?>, MlmEvaluationStats>());
+	
 	public ArdenServiceImpl() {
 	}
 	
@@ -98,371 +116,34 @@ public class ArdenServiceImpl implements ArdenService {
 	}
 	
 	/**
+	 * Translates a mlm into a java rule class in the output folder
+	 * 
 	 * @param s
 	 * @param fn
 	 */
 	private boolean parseFile(InputStream s, String fn, String outFolder) throws Exception {
 		boolean retVal = true;
 		try {
-			Date Today = new Date();
-			String cfn;
-			
-			String packagePrefix = Context.getAdministrationService().getGlobalProperty("logic.default.packageName");
-			if (StringUtils.isEmpty(packagePrefix))
-				packagePrefix = "org.openmrs.logic.rule";
-			
-			MLMObject ardObj = new MLMObject(Context.getLocale(), null);
-			
-			// Create a scanner that reads from the input stream passed to us
-			ArdenBaseLexer lexer = new ArdenBaseLexer(s);
-			
-			// Create a parser that reads from the scanner
-			ArdenBaseParser parser = new ArdenBaseParser(lexer);
-			
-			// start parsing at the compilation unit rule
-			parser.startRule();
-			BaseAST t = (BaseAST) parser.getAST();
+			ParsedMlm parsed = parse(s);
+			String cfn = parsed.getName();
 			
-			if (log.isDebugEnabled())
-				log.debug(t.toStringTree()); // prints maintenance
+			// write the whole class first, so that no half written file is left behind
+			Writer source = new StringWriter();
+			retVal = writeRuleSource(parsed, fn, source);
+			if (retVal) {
+				String packageFolderName = getPackagePrefix().replace('.', File.separatorChar);
+				File packageFolder = new File(outFolder, packageFolderName);
+				if (!packageFolder.exists())
+					packageFolder.mkdirs();
 				
-			ArdenBaseTreeParser treeParser = new ArdenBaseTreeParser();
-			
-			String maintenance = treeParser.maintenance(t, ardObj);
-			
-			cfn = ardObj.getClassName();
-			
-			String packageFolderName = packagePrefix.replace('.', File.separatorChar);
-			File packageFolder = new File(outFolder, packageFolderName);
-			if (!packageFolder.exists())
-				packageFolder.mkdirs();
-			
-			// make sure that the file is stored in the correct folder based on the package
-			OutputStream os = new FileOutputStream(new File(packageFolder, cfn + ".java"));
-			
-			Writer w = new OutputStreamWriter(os);
-			log.info("Writing to file - " + cfn + ".java");
-			
-			w.write("/********************************************************************" + "\n Translated from - " + fn
-			        + " on " + Today.toString() + "\n\n");
-			w.write(maintenance);
-			
-			t = (BaseAST) t.getNextSibling(); // Move to library
-			
-			if (log.isDebugEnabled())
-				log.debug(t.toStringTree()); // prints library
+				// make sure that the file is stored in the correct folder based on the package
+				OutputStream os = new FileOutputStream(new File(packageFolder, cfn + ".java"));
 				
-			String library = treeParser.library(t, ardObj);
-			w.write(library);
-			w.write("\n********************************************************************/\n");
-			w.write("package " + packagePrefix + ";\n\n");
-			w.write("import java.util.ArrayList;\n");
-			w.write("import java.util.HashMap;\n");
-			w.write("import java.util.List;\n");
-			w.write("import java.util.Map;\n");
-			w.write("import java.util.Set;\n");
-			
-			w.write("import org.apache.commons.logging.Log;\n");
-			w.write("import org.apache.commons.logging.LogFactory;\n");
-			w.write("import org.openmrs.Patient;\n");
-			w.write("import org.openmrs.api.context.Context;\n");
-			w.write("import org.openmrs.arden.MlmRule;\n");
-			w.write("import org.openmrs.logic.LogicContext;\n");
-			w.write("import org.openmrs.logic.LogicCriteriaImpl;\n");
-			w.write("import org.openmrs.logic.LogicException;\n");
-			w.write("import org.openmrs.logic.LogicService;\n");
-			w.write("import org.openmrs.logic.result.Result;\n");
-			w.write("import org.openmrs.logic.result.Result.Datatype;\n");
-			w.write("import org.openmrs.logic.rule.RuleParameterInfo;\n");
-			w.write("import org.openmrs.logic.Duration;\n");
-			w.write("import java.util.StringTokenizer;\n\n");
-			w.write("import org.openmrs.api.ConceptService;\n");
-			w.write("import java.text.SimpleDateFormat;\n");
-			
-			String classname = ardObj.getClassName();
-			w.write("public class " + classname + " implements MlmRule{\n\n"); // Start of class
-			w.write("\tprivate Patient patient;\n\tprivate String firstname;\n");
-			w.write("\tprivate ArrayList<String> actions;\n");
-			w.write("\tprivate HashMap<String, String> userVarMap;\n\n");
-			w.write("\tprivate HashMap <String, Result> resultLookup;\n\n");
-			
-			w.write("\tprivate Log log = LogFactory.getLog(this.getClass());\n");
-			w.write("\tprivate LogicService logicService = Context.getLogicService();\n\n");
-			
-			w.flush();
-			
-			/**************************************************************************************
-			 * Implement the other interface methods
-			 */
-			
-			String str = "";
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDuration()*/\n\t"
-			        + "public int getDuration() {\n\t\treturn 60*30;   // 30 minutes\n\t}\n\n");
-			
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDatatype(String)*/\n\t"
-			        + "public Datatype getDatatype(String token) {\n\t" + "\treturn Datatype.TEXT;\n\t}\n\n");
-			
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getParameterList()*/\n\t"
-			        + "public Set<RuleParameterInfo> getParameterList() {\n\t\treturn null;\n\t}\n\n");
-			
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDependencies()*/\n\t"
-			        + "public String[] getDependencies() {\n\t\treturn new String[] { };\n\t}\n\n");
-			
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getTTL()*/\n\t"
-			        + "public int getTTL() {\n\t\treturn 0; //60 * 30; // 30 minutes\n\t}\n\n");
-			
-			w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDatatype(String)*/\n\t"
-			        + "public Datatype getDefaultDatatype() {\n\t\treturn Datatype.CODED;\n\t}\n\n");
-			
-			str = ardObj.getAuthor();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAuthor()*/\n" + "\tpublic String getAuthor(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getCitations();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getCitations()*/\n" + "\tpublic String getCitations(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getDate();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getDate()*/\n" + "\tpublic String getDate(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			str = ardObj.getExplanation();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getExplanation()*/\n" + "\tpublic String getExplanation(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getInstitution();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getInstitution()*/\n" + "\tpublic String getInstitution(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			str = ardObj.getKeywords();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getKeywords()*/\n" + "\tpublic String getKeywords(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			str = ardObj.getLinks();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getLinks()*/\n" + "\tpublic String getLinks(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getPurpose();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getPurpose()*/\n" + "\tpublic String getPurpose(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			str = ardObj.getSpecialist();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getSpecialist()*/\n" + "\tpublic String getSpecialist(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getTitle();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getTitle()*/\n" + "\tpublic String getTitle(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			double d = ardObj.getVersion();
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getVersion()*/\n" + "\tpublic Double getVersion(){\n"
-			        + "\t\treturn " + d + ";\n" + "\t}\n\n");
-			str = ardObj.getType();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getType()*/\n" + "\tpublic String getType(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			
-			/**************************************************************************************/
-			
-			t = (BaseAST) t.getNextSibling(); // Move to Knowledge
-			log.debug(t.toStringTree()); // prints knowledge
-			@SuppressWarnings("unused")
-			String knowledge_text = treeParser.knowledge_text(t, ardObj);
-			
-			/************************************************** Write Knowledge dependent section **********************************************/
-			Integer p = ardObj.getPriority();
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getPriority()*/\n" + "\tpublic Integer getPriority(){\n"
-			        + "\t\treturn " + p + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getData();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getData()*/\n" + "\tpublic String getData(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getLogic();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getLogic()*/\n" + "\tpublic String getLogic(){\n" + "\t\treturn "
-			        + str + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getAction();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAction()*/\n" + "\tpublic String getAction(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			Integer ageMin = ardObj.getAgeMin();
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMin()*/\n" + "\tpublic Integer getAgeMin(){\n"
-			        + "\t\treturn " + ageMin + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getAgeMinUnits();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMinUnits()*/\n" + "\tpublic String getAgeMinUnits(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			Integer ageMax = ardObj.getAgeMax();
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMax()*/\n" + "\tpublic Integer getAgeMax(){\n"
-			        + "\t\treturn " + ageMax + ";\n" + "\t}\n\n");
-			
-			str = ardObj.getAgeMaxUnits();
-			if (str != null && str.length() == 0) {
-				str = null;
-			}
-			if (str != null) {
-				str = "\"" + str + "\"";
-			}
-			w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMaxUnits()*/\n" + "\tpublic String getAgeMaxUnits(){\n"
-			        + "\t\treturn " + str + ";\n" + "\t}\n\n");
-			
-			w.write("\tprivate static boolean containsIgnoreCase(Result key,List<Result> lst){\n");
-			w.write("\t\tfor(Result element:lst){\n");
-			w.write("\t\t\tif(key != null&&key.toString().equalsIgnoreCase(element.toString())){\n");
-			w.write("\t\t\t\treturn true;\n");
-			w.write("\t\t\t}\n");
-			w.write("\t\t}\n");
-			w.write("\t\treturn false;\n");
-			w.write("\t}\n");
-			
-			w.write("\tprivate static String toProperCase(String str){\n\n");
-			
-			w.write("\t\tif(str == null || str.length()<1){\n");
-			w.write("\t\t\treturn str;\n");
-			w.write("\t\t}\n\n");
-			
-			w.write("\t\tStringBuffer resultString = new StringBuffer();\n");
-			w.write("\t\tString delimiter = \" \";\n");
-			
-			w.write("\t\tStringTokenizer tokenizer = new StringTokenizer(str,delimiter,true);\n");
-			
-			w.write("\t\tString currToken = null;\n\n");
-			
-			w.write("\t\twhile(tokenizer.hasMoreTokens()){\n");
-			w.write("\t\t\tcurrToken = tokenizer.nextToken();\n");
-			
-			w.write("\t\t\tif(!currToken.equals(delimiter)){\n");
-			w.write("\t\t\t\tif(currToken.length()>0){\n");
-			w.write("\t\t\t\t\tcurrToken = currToken.substring(0, 1).toUpperCase()\n");
-			w.write("\t\t\t\t\t+ currToken.substring(1).toLowerCase();\n");
-			w.write("\t\t\t\t}\n");
-			w.write("\t\t\t}\n");
-			
-			w.write("\t\t\tresultString.append(currToken);\n");
-			w.write("\t\t}\n");
-			
-			w.write("\t\treturn resultString.toString();\n");
-			w.write("\t}\n");
-			
-			/**
-			 * *************************************************************************************
-			 * *********************************************
-			 */
-			
-			// Move back to knowledge tree to actually start converting data
-			// logic action
-			t = (BaseAST) parser.getAST();
-			t = (BaseAST) t.getNextSibling().getNextSibling(); // Move to
-			// Knowledge
-			log.debug(t.toStringTree()); // prints knowledge
-			@SuppressWarnings("unused")
-			String knowledge = treeParser.knowledge(t, ardObj);
-			
-			/** *********************************************************************************** */
-			
-			ardObj.PrintEvaluateList("data"); // To Debug
-			retVal = ardObj.WriteEvaluate(w, classname);
-			if (retVal) {
-				ardObj.WriteAction(w);
-				w.append("}"); // end class
-				w.flush();
+				Writer w = new OutputStreamWriter(os);
+				log.info("Writing to file - " + cfn + ".java");
+				w.write(source.toString());
 				w.close();
-			} else { //delete the compiled file so far
-				w.flush();
-				w.close();
-				boolean success = (new File("src/api/org/openmrs/logic/rule/" + cfn + ".java")).delete();
-				if (!success) {
-					System.out.println("Incomplete compiled file " + cfn + ".java cannot be deleted!");
-				}
-				
 			}
-			
 		}
 		catch (Exception e) {
 			log.error(e);
@@ -473,6 +154,372 @@ public class ArdenServiceImpl implements ArdenService {
 		return retVal;
 	}
 	
+	/**
+	 * Parses a mlm and runs all passes of the tree parser over it, without writing anything
+	 * 
+	 * @param s the mlm
+	 * @return the parsed mlm
+	 */
+	private ParsedMlm parse(InputStream s) throws Exception {
+		MLMObject ardObj = new MLMObject(Context.getLocale(), null);
+		
+		// Create a scanner that reads from the input stream passed to us
+		ArdenBaseLexer lexer = new ArdenBaseLexer(s);
+		
+		// Create a parser that reads from the scanner
+		ArdenBaseParser parser = new ArdenBaseParser(lexer);
+		
+		// start parsing at the compilation unit rule
+		parser.startRule();
+		BaseAST t = (BaseAST) parser.getAST();
+		
+		if (log.isDebugEnabled())
+			log.debug(t.toStringTree()); // prints maintenance
+		
+		ArdenBaseTreeParser treeParser = new ArdenBaseTreeParser();
+		
+		String maintenance = treeParser.maintenance(t, ardObj);
+		
+		t = (BaseAST) t.getNextSibling(); // Move to library
+		
+		if (log.isDebugEnabled())
+			log.debug(t.toStringTree()); // prints library
+		
+		String library = treeParser.library(t, ardObj);
+		
+		t = (BaseAST) t.getNextSibling(); // Move to Knowledge
+		log.debug(t.toStringTree()); // prints knowledge
+		treeParser.knowledge_text(t, ardObj);
+		
+		// Move back to knowledge tree to actually start converting data
+		// logic action
+		t = (BaseAST) parser.getAST();
+		t = (BaseAST) t.getNextSibling().getNextSibling(); // Move to
+		// Knowledge
+		treeParser.knowledge(t, ardObj);
+		
+		return new ParsedMlm(ardObj, maintenance, library);
+	}
+	
+	/**
+	 * Writes the java rule class of a parsed mlm
+	 * 
+	 * @param parsed the parsed mlm
+	 * @param fn the name of the file the mlm was read from
+	 * @param w the writer to write the class to
+	 * @return false if the logic of the mlm could not be written
+	 */
+	private boolean writeRuleSource(ParsedMlm parsed, String fn, Writer w) throws Exception {
+		boolean retVal = true;
+		Date Today = new Date();
+		String packagePrefix = getPackagePrefix();
+		MLMObject ardObj = parsed.mlm;
+		
+		w.write("/********************************************************************" + "\n Translated from - " + fn
+		        + " on " + Today.toString() + "\n\n");
+		w.write(parsed.maintenance);
+		
+		w.write(parsed.library);
+		w.write("\n********************************************************************/\n");
+		w.write("package " + packagePrefix + ";\n\n");
+		w.write("import java.util.ArrayList;\n");
+		w.write("import java.util.HashMap;\n");
+		w.write("import java.util.List;\n");
+		w.write("import java.util.Map;\n");
+		w.write("import java.util.Set;\n");
+		
+		w.write("import org.apache.commons.logging.Log;\n");
+		w.write("import org.apache.commons.logging.LogFactory;\n");
+		w.write("import org.openmrs.Patient;\n");
+		w.write("import org.openmrs.api.context.Context;\n");
+		w.write("import org.openmrs.arden.MlmRule;\n");
+		w.write("import org.openmrs.logic.LogicContext;\n");
+		w.write("import org.openmrs.logic.LogicCriteriaImpl;\n");
+		w.write("import org.openmrs.logic.LogicException;\n");
+		w.write("import org.openmrs.logic.LogicService;\n");
+		w.write("import org.openmrs.logic.result.Result;\n");
+		w.write("import org.openmrs.logic.result.Result.Datatype;\n");
+		w.write("import org.openmrs.logic.rule.RuleParameterInfo;\n");
+		w.write("import org.openmrs.logic.Duration;\n");
+		w.write("import java.util.StringTokenizer;\n\n");
+		w.write("import org.openmrs.api.ConceptService;\n");
+		w.write("import java.text.SimpleDateFormat;\n");
+		
+		String classname = ardObj.getClassName();
+		w.write("public class " + classname + " implements MlmRule{\n\n"); // Start of class
+		w.write("\tprivate Patient patient;\n\tprivate String firstname;\n");
+		w.write("\tprivate ArrayList<String> actions;\n");
+		w.write("\tprivate HashMap<String, String> userVarMap;\n\n");
+		w.write("\tprivate HashMap <String, Result> resultLookup;\n\n");
+		
+		w.write("\tprivate Log log = LogFactory.getLog(this.getClass());\n");
+		w.write("\tprivate LogicService logicService = Context.getLogicService();\n\n");
+		
+		w.flush();
+		
+		/**************************************************************************************
+		 * Implement the other interface methods
+		 */
+		
+		String str = "";
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDuration()*/\n\t"
+		        + "public int getDuration() {\n\t\treturn 60*30;   // 30 minutes\n\t}\n\n");
+		
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDatatype(String)*/\n\t"
+		        + "public Datatype getDatatype(String token) {\n\t" + "\treturn Datatype.TEXT;\n\t}\n\n");
+		
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getParameterList()*/\n\t"
+		        + "public Set<RuleParameterInfo> getParameterList() {\n\t\treturn null;\n\t}\n\n");
+		
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDependencies()*/\n\t"
+		        + "public String[] getDependencies() {\n\t\treturn new String[] { };\n\t}\n\n");
+		
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getTTL()*/\n\t"
+		        + "public int getTTL() {\n\t\treturn 0; //60 * 30; // 30 minutes\n\t}\n\n");
+		
+		w.write("\t/*** @see org.openmrs.logic.rule.Rule#getDatatype(String)*/\n\t"
+		        + "public Datatype getDefaultDatatype() {\n\t\treturn Datatype.CODED;\n\t}\n\n");
+		
+		str = ardObj.getAuthor();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAuthor()*/\n" + "\tpublic String getAuthor(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getCitations();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getCitations()*/\n" + "\tpublic String getCitations(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getDate();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getDate()*/\n" + "\tpublic String getDate(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		str = ardObj.getExplanation();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getExplanation()*/\n" + "\tpublic String getExplanation(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getInstitution();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getInstitution()*/\n" + "\tpublic String getInstitution(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		str = ardObj.getKeywords();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getKeywords()*/\n" + "\tpublic String getKeywords(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		str = ardObj.getLinks();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getLinks()*/\n" + "\tpublic String getLinks(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getPurpose();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getPurpose()*/\n" + "\tpublic String getPurpose(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		str = ardObj.getSpecialist();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getSpecialist()*/\n" + "\tpublic String getSpecialist(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getTitle();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getTitle()*/\n" + "\tpublic String getTitle(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		double d = ardObj.getVersion();
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getVersion()*/\n" + "\tpublic Double getVersion(){\n"
+		        + "\t\treturn " + d + ";\n" + "\t}\n\n");
+		str = ardObj.getType();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getType()*/\n" + "\tpublic String getType(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		
+		/**************************************************************************************/
+		
+		
+		/************************************************** Write Knowledge dependent section **********************************************/
+		Integer p = ardObj.getPriority();
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getPriority()*/\n" + "\tpublic Integer getPriority(){\n"
+		        + "\t\treturn " + p + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getData();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getData()*/\n" + "\tpublic String getData(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getLogic();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getLogic()*/\n" + "\tpublic String getLogic(){\n" + "\t\treturn "
+		        + str + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getAction();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAction()*/\n" + "\tpublic String getAction(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		Integer ageMin = ardObj.getAgeMin();
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMin()*/\n" + "\tpublic Integer getAgeMin(){\n"
+		        + "\t\treturn " + ageMin + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getAgeMinUnits();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMinUnits()*/\n" + "\tpublic String getAgeMinUnits(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		Integer ageMax = ardObj.getAgeMax();
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMax()*/\n" + "\tpublic Integer getAgeMax(){\n"
+		        + "\t\treturn " + ageMax + ";\n" + "\t}\n\n");
+		
+		str = ardObj.getAgeMaxUnits();
+		if (str != null && str.length() == 0) {
+			str = null;
+		}
+		if (str != null) {
+			str = "\"" + str + "\"";
+		}
+		w.write("\t/*** @see org.openmrs.arden.MlmRule#getAgeMaxUnits()*/\n" + "\tpublic String getAgeMaxUnits(){\n"
+		        + "\t\treturn " + str + ";\n" + "\t}\n\n");
+		
+		w.write("\tprivate static boolean containsIgnoreCase(Result key,List<Result> lst){\n");
+		w.write("\t\tfor(Result element:lst){\n");
+		w.write("\t\t\tif(key != null&&key.toString().equalsIgnoreCase(element.toString())){\n");
+		w.write("\t\t\t\treturn true;\n");
+		w.write("\t\t\t}\n");
+		w.write("\t\t}\n");
+		w.write("\t\treturn false;\n");
+		w.write("\t}\n");
+		
+		w.write("\tprivate static String toProperCase(String str){\n\n");
+		
+		w.write("\t\tif(str == null || str.length()<1){\n");
+		w.write("\t\t\treturn str;\n");
+		w.write("\t\t}\n\n");
+		
+		w.write("\t\tStringBuffer resultString = new StringBuffer();\n");
+		w.write("\t\tString delimiter = \" \";\n");
+		
+		w.write("\t\tStringTokenizer tokenizer = new StringTokenizer(str,delimiter,true);\n");
+		
+		w.write("\t\tString currToken = null;\n\n");
+		
+		w.write("\t\twhile(tokenizer.hasMoreTokens()){\n");
+		w.write("\t\t\tcurrToken = tokenizer.nextToken();\n");
+		
+		w.write("\t\t\tif(!currToken.equals(delimiter)){\n");
+		w.write("\t\t\t\tif(currToken.length()>0){\n");
+		w.write("\t\t\t\t\tcurrToken = currToken.substring(0, 1).toUpperCase()\n");
+		w.write("\t\t\t\t\t+ currToken.substring(1).toLowerCase();\n");
+		w.write("\t\t\t\t}\n");
+		w.write("\t\t\t}\n");
+		
+		w.write("\t\t\tresultString.append(currToken);\n");
+		w.write("\t\t}\n");
+		
+		w.write("\t\treturn resultString.toString();\n");
+		w.write("\t}\n");
+		
+		/**
+		 * *************************************************************************************
+		 * *********************************************
+		 */
+		
+		
+		/** *********************************************************************************** */
+		
+		ardObj.PrintEvaluateList("data"); // To Debug
+		retVal = ardObj.WriteEvaluate(w, classname);
+		if (retVal) {
+			ardObj.WriteAction(w);
+			w.append("}"); // end class
+			w.flush();
+		}
+		return retVal;
+	}
+	
+	/**
+	 * @return the package of the java rule classes
+	 */
+	private String getPackagePrefix() {
+		String packagePrefix = Context.getAdministrationService().getGlobalProperty("logic.default.packageName");
+		if (StringUtils.isEmpty(packagePrefix))
+			packagePrefix = "org.openmrs.logic.rule";
+		return packagePrefix;
+	}
+	
 	/**
 	 * @see org.openmrs.arden.ArdenService#compile(java.lang.String, java.lang.String)
 	 */
@@ -485,4 +532,111 @@ public class ArdenServiceImpl implements ArdenService {
 			throw new APIException("Unable to compile the arden arden rule definition");
 		}
 	}
+	
+	/**
+	 * @see org.openmrs.arden.ArdenService#evaluateMlm(java.lang.String, org.openmrs.Cohort,
+	 *      java.util.Map)
+	 */
+	public Map<Integer, Result> evaluateMlm(String name, Cohort patients, Map<String, Object> parameters)
+	        throws APIException {
+		Class<?> ruleClass = getRuleClass(name);
+		if (ruleClass == null)
+			throw new APIException("The rule class of the mlm " + name + " is not deployed");
+		
+		MlmEvaluationStats stats;
+		synchronized (evaluationStats) {
+			stats = evaluationStats.get(ruleClass);
+			if (stats == null) {
+				stats = new MlmEvaluationStats();
+				evaluationStats.put(ruleClass, stats);
+			}
+		}
+		
+		long start = System.currentTimeMillis();
+		boolean failed = true;
+		try {
+			loadRule(name, ruleClass);
+			Map<Integer, Result> results = Context.getLogicService().eval(patients, name, parameters);
+			failed = false;
+			return results;
+		}
+		catch (LogicException e) {
+			throw new APIException("Unable to evaluate the mlm " + name, e);
+		}
+		finally {
+			stats.addEvaluation(patients.size(), System.currentTimeMillis() - start, failed);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.arden.ArdenService#getEvaluationStats(java.lang.String)
+	 */
+	public MlmEvaluationStats getEvaluationStats(String name) {
+		Class<?> ruleClass = getRuleClass(name);
+		return ruleClass == null ? null : evaluationStats.get(ruleClass);
+	}
+	
+	/**
+	 * Looks up the deployed rule class of the given mlm. The class is looked up on every call, so a
+	 * class that is deployed again with a new class loader replaces the old one.
+	 * 
+	 * @param name the name of the mlm
+	 * @return the rule class, or null if it is not deployed
+	 */
+	private Class<?> getRuleClass(String name) {
+		try {
+			return OpenmrsClassLoader.getInstance().loadClass(getPackagePrefix() + "." + name);
+		}
+		catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Registers the given rule class with the logic service under the name of the mlm, unless an
+	 * instance of that class is registered already
+	 * 
+	 * @param name the name of the mlm
+	 * @param ruleClass the deployed rule class of the mlm
+	 */
+	private synchronized void loadRule(String name, Class<?> ruleClass) throws APIException {
+		LogicService logicService = Context.getLogicService();
+		boolean registered = logicService.getTokens().contains(name);
+		if (registered && ruleClass.equals(logicService.getRule(name).getClass()))
+			return;
+		
+		Rule rule;
+		try {
+			rule = (Rule) ruleClass.newInstance();
+		}
+		catch (Exception e) {
+			throw new APIException("Unable to create the rule " + ruleClass.getName() + " of the mlm " + name, e);
+		}
+		if (registered)
+			logicService.updateRule(name, rule);
+		else
+			logicService.addRule(name, rule);
+	}
+	
+	/**
+	 * A parsed mlm with its translated maintenance and library categories
+	 */
+	private static class ParsedMlm {
+		
+		private final MLMObject mlm;
+		
+		private final String maintenance;
+		
+		private final String library;
+		
+		public ParsedMlm(MLMObject mlm, String maintenance, String library) {
+			this.mlm = mlm;
+			this.maintenance = maintenance;
+			this.library = library;
+		}
+		
+		public String getName() {
+			return mlm.getClassName();
+		}
+	}
 }
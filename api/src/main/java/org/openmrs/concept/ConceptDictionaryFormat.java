@@ -0,0 +1,55 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import org.openmrs.api.ConceptService;
+
+/**
+ * A file format the concept dictionary can be exported in by
+ * {@link ConceptService#exportConceptDictionary(java.io.OutputStream, String, java.util.Date, boolean, boolean)}
+ * . Formats are registered with the concept service in the spring application context.
+ * 
+ * @since 1.9
+ */
+public interface ConceptDictionaryFormat {
+	
+	/**
+	 * @return the name the format is chosen by, e.g. "csv"
+	 */
+	public String getName();
+	
+	/**
+	 * @return the content type of an export in this format, e.g. "text/csv"
+	 */
+	public String getContentType();
+	
+	/**
+	 * @return the extension of files in this format, without the dot
+	 */
+	public String getFileExtension();
+	
+	/**
+	 * Starts a new export in this format
+	 * 
+	 * @param out where to write the export to
+	 * @param locale the locale to prefer names and descriptions in
+	 * @return the writer to write the concepts with
+	 * @throws IOException
+	 */
+	public ConceptDictionaryWriter newWriter(Writer out, Locale locale) throws IOException;
+}
@@ -0,0 +1,42 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.IOException;
+
+import org.openmrs.Concept;
+
+/**
+ * Writes the concepts of one export in a {@link ConceptDictionaryFormat}
+ * 
+ * @since 1.9
+ */
+public interface ConceptDictionaryWriter {
+	
+	/**
+	 * Writes the given concept
+	 * 
+	 * @param concept the concept to write
+	 * @throws IOException
+	 */
+	public void writeConcept(Concept concept) throws IOException;
+	
+	/**
+	 * Finishes the export and flushes everything written so far. The underlying writer is left
+	 * open.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException;
+}
@@ -0,0 +1,143 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptAnswer;
+import org.openmrs.ConceptDescription;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptSet;
+import org.openmrs.User;
+import org.openmrs.util.CsvWriter;
+
+/**
+ * Exports the concept dictionary as comma separated values, one row per concept, with the names of
+ * the answers and set members of a concept on separate lines of one field
+ * 
+ * @since 1.9
+ */
+public class CsvConceptDictionaryFormat implements ConceptDictionaryFormat {
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getName()
+	 */
+	public String getName() {
+		return "csv";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getContentType()
+	 */
+	public String getContentType() {
+		return "text/csv";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getFileExtension()
+	 */
+	public String getFileExtension() {
+		return "csv";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#newWriter(java.io.Writer, java.util.Locale)
+	 * @should write a header row and one row per concept
+	 */
+	public ConceptDictionaryWriter newWriter(Writer out, Locale locale) throws IOException {
+		CsvWriter csv = new CsvWriter(out);
+		csv.writeRow("Concept Id", "Name", "Description", "Synonyms", "Answers", "Set Members", "Class", "Datatype",
+		    "Changed By", "Creator");
+		return new RowWriter(csv, locale);
+	}
+	
+	/**
+	 * Writes the rows of one export
+	 */
+	private static class RowWriter implements ConceptDictionaryWriter {
+		
+		private final CsvWriter csv;
+		
+		private final Locale locale;
+		
+		private final StringBuilder lines = new StringBuilder();
+		
+		public RowWriter(CsvWriter csv, Locale locale) {
+			this.csv = csv;
+			this.locale = locale;
+		}
+		
+		/**
+		 * @see org.openmrs.concept.ConceptDictionaryWriter#writeConcept(org.openmrs.Concept)
+		 */
+		public void writeConcept(Concept concept) throws IOException {
+			csv.writeValue(concept.getConceptId());
+			
+			ConceptName name = concept.getName(locale);
+			csv.writeValue(name == null ? "" : name.getName());
+			ConceptDescription description = concept.getDescription(locale);
+			csv.writeValue(description == null || description.getDescription() == null ? "" : description
+			        .getDescription());
+			
+			lines.setLength(0);
+			for (ConceptName synonym : concept.getNames())
+				addLine(synonym.getName());
+			csv.writeValue(lines);
+			
+			lines.setLength(0);
+			for (ConceptAnswer answer : concept.getAnswers(false)) {
+				if (answer.getAnswerConcept() != null)
+					addLine(String.valueOf(answer.getAnswerConcept().getName()));
+				else if (answer.getAnswerDrug() != null)
+					addLine(answer.getAnswerDrug().getFullName(locale));
+			}
+			csv.writeValue(lines);
+			
+			lines.setLength(0);
+			for (ConceptSet set : concept.getConceptSets()) {
+				if (set.getConcept() != null)
+					addLine(String.valueOf(set.getConcept().getName()));
+			}
+			csv.writeValue(lines);
+			
+			csv.writeValue(concept.getConceptClass() == null ? "" : concept.getConceptClass().getName());
+			csv.writeValue(concept.getDatatype() == null ? "" : concept.getDatatype().getName());
+			csv.writeValue(getPersonName(concept.getChangedBy()));
+			csv.writeValue(getPersonName(concept.getCreator()));
+			csv.endRow();
+		}
+		
+		/**
+		 * @see org.openmrs.concept.ConceptDictionaryWriter#finish()
+		 */
+		public void finish() throws IOException {
+			csv.flush();
+		}
+		
+		private void addLine(String line) {
+			if (lines.length() > 0)
+				lines.append('\n');
+			lines.append(line);
+		}
+		
+		private String getPersonName(User user) {
+			if (user == null || user.getPersonName() == null)
+				return "";
+			return user.getPersonName().toString();
+		}
+	}
+}
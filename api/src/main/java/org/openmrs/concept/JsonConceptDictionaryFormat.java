@@ -0,0 +1,166 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptAnswer;
+import org.openmrs.ConceptDescription;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptSet;
+import org.openmrs.util.JsonWriter;
+
+/**
+ * Exports the concept dictionary as a JSON document of the form
+ * <code>{"concepts": [...]}</code>. Unlike the csv format every name, description and mapping of
+ * a concept is written with its locale or source, and answers and set members are referred to by
+ * concept id and uuid, so the export can be loaded by another site.
+ * 
+ * @since 1.9
+ */
+public class JsonConceptDictionaryFormat implements ConceptDictionaryFormat {
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getName()
+	 */
+	public String getName() {
+		return "json";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getContentType()
+	 */
+	public String getContentType() {
+		return "application/json";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#getFileExtension()
+	 */
+	public String getFileExtension() {
+		return "json";
+	}
+	
+	/**
+	 * @see org.openmrs.concept.ConceptDictionaryFormat#newWriter(java.io.Writer, java.util.Locale)
+	 * @should write the concepts as an array of objects
+	 */
+	public ConceptDictionaryWriter newWriter(Writer out, Locale locale) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject().name("concepts").beginArray();
+		return new ObjectWriter(json);
+	}
+	
+	/**
+	 * Writes the concept objects of one export
+	 */
+	private static class ObjectWriter implements ConceptDictionaryWriter {
+		
+		private final JsonWriter json;
+		
+		private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+		
+		public ObjectWriter(JsonWriter json) {
+			this.json = json;
+		}
+		
+		/**
+		 * @see org.openmrs.concept.ConceptDictionaryWriter#writeConcept(org.openmrs.Concept)
+		 */
+		public void writeConcept(Concept concept) throws IOException {
+			json.beginObject();
+			json.name("conceptId").value(concept.getConceptId());
+			json.name("uuid").value(concept.getUuid());
+			json.name("retired").value(concept.isRetired());
+			json.name("conceptClass").value(concept.getConceptClass() == null ? null : concept.getConceptClass().getName());
+			json.name("datatype").value(concept.getDatatype() == null ? null : concept.getDatatype().getName());
+			json.name("set").value(concept.isSet());
+			json.name("dateCreated").value(format(concept.getDateCreated()));
+			json.name("dateChanged").value(format(concept.getDateChanged()));
+			
+			json.name("names").beginArray();
+			for (ConceptName name : concept.getNames()) {
+				json.beginObject();
+				json.name("name").value(name.getName());
+				json.name("locale").value(name.getLocale() == null ? null : name.getLocale().toString());
+				json.name("type").value(name.getConceptNameType() == null ? null : name.getConceptNameType().toString());
+				json.name("localePreferred").value(name.isLocalePreferred());
+				json.endObject();
+			}
+			json.endArray();
+			
+			json.name("descriptions").beginArray();
+			for (ConceptDescription description : concept.getDescriptions()) {
+				json.beginObject();
+				json.name("description").value(description.getDescription());
+				json.name("locale").value(description.getLocale() == null ? null : description.getLocale().toString());
+				json.endObject();
+			}
+			json.endArray();
+			
+			json.name("answers").beginArray();
+			for (ConceptAnswer answer : concept.getAnswers(false)) {
+				json.beginObject();
+				if (answer.getAnswerConcept() != null) {
+					json.name("conceptId").value(answer.getAnswerConcept().getConceptId());
+					json.name("uuid").value(answer.getAnswerConcept().getUuid());
+				}
+				if (answer.getAnswerDrug() != null)
+					json.name("drugId").value(answer.getAnswerDrug().getDrugId());
+				json.endObject();
+			}
+			json.endArray();
+			
+			json.name("setMembers").beginArray();
+			for (ConceptSet set : concept.getConceptSets()) {
+				if (set.getConcept() != null) {
+					json.beginObject();
+					json.name("conceptId").value(set.getConcept().getConceptId());
+					json.name("uuid").value(set.getConcept().getUuid());
+					json.endObject();
+				}
+			}
+			json.endArray();
+			
+			json.name("mappings").beginArray();
+			for (ConceptMap mapping : concept.getConceptMappings()) {
+				json.beginObject();
+				json.name("source").value(mapping.getSource() == null ? null : mapping.getSource().getName());
+				json.name("code").value(mapping.getSourceCode());
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+		}
+		
+		/**
+		 * @see org.openmrs.concept.ConceptDictionaryWriter#finish()
+		 */
+		public void finish() throws IOException {
+			json.endArray().endObject();
+			json.flush();
+		}
+		
+		private String format(Date date) {
+			return date == null ? null : dateFormat.format(date);
+		}
+	}
+}
@@ -13,9 +13,23 @@
  */
 package org.openmrs.hl7;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.util.OpenmrsConstants;
 import org.springframework.transaction.annotation.Transactional;
 
 import ca.uhn.hl7v2.HL7Exception;
@@ -24,7 +38,13 @@ import ca.uhn.hl7v2.HL7Exception;
  * Processes message in the HL7 inbound queue. Messages are moved into either the archive or error
  * table depending on success or failure of the processing. You may, however, set a global property
  * that causes the processor to ignore messages regarding unknown patients from a non-local HL7
- * source. (i.e. those messages neither go to the archive or the error table.)
+ * source. (i.e. those messages neither go to the archive or the error table.)<br/>
+ * <br/>
+ * The queue is processed by the number of worker threads given in the
+ * {@link OpenmrsConstants#GP_HL7_PROCESSOR_THREADS} global property. Queue entries are read in
+ * batches and handed to a worker picked from the first patient identifier of their PID segment,
+ * so that messages about the same patient are always processed one after the other, in queue
+ * order.
  * 
  * @version 1.0
  */
@@ -35,10 +55,18 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	
 	private static Boolean isRunning = false; // allow only one running
 	
-	private static Integer count = 0;
-	
 	// processor per JVM
 	
+	/**
+	 * The number of queue entries read at a time
+	 */
+	private static final int BATCH_SIZE = 100;
+	
+	/**
+	 * How long to wait for the workers to stop once the queue has been processed
+	 */
+	private static final int WORKER_SHUTDOWN_SECONDS = 30;
+	
 	/**
 	 * Empty constructor (requires context to be set using <code>setContext(Context)</code> method
 	 * before any other calls are made)
@@ -64,17 +92,6 @@ public class HL7InQueueProcessor /* implements Runnable */{
 			log.error("Unable to process hl7 in queue", e);
 		}
 		
-		if (++count > 25) {
-			// clean up memory after processing each queue entry (otherwise, the
-			// memory-intensive process may crash or eat up all our memory)
-			try {
-				Context.getHL7Service().garbageCollect();
-			}
-			catch (Exception e) {
-				log.error("Exception while performing garbagecollect in hl7 inbound processor", e);
-			}
-		}
-		
 	}
 	
 	/**
@@ -96,6 +113,9 @@ public class HL7InQueueProcessor /* implements Runnable */{
 	
 	/**
 	 * Starts up a thread to process all existing HL7InQueue entries
+	 * 
+	 * @should process the entries of one patient in queue order
+	 * @should stop the worker threads when done
 	 */
 	public void processHL7InQueue() throws HL7Exception {
 		synchronized (isRunning) {
@@ -107,9 +127,7 @@ public class HL7InQueueProcessor /* implements Runnable */{
 		}
 		try {
 			log.debug("Start processing hl7 in queue");
-			while (processNextHL7InQueue()) {
-				// loop until queue is empty
-			}
+			processHL7InQueue(getThreadCount());
 			log.debug("Done processing hl7 in queue");
 		}
 		finally {
@@ -117,4 +135,195 @@ public class HL7InQueueProcessor /* implements Runnable */{
 		}
 	}
 	
+	/**
+	 * @return the number of worker threads set in the global property, at least 1
+	 */
+	private int getThreadCount() {
+		String value = Context.getAdministrationService().getGlobalProperty(OpenmrsConstants.GP_HL7_PROCESSOR_THREADS,
+		    "1");
+		try {
+			return Math.max(1, Integer.parseInt(value.trim()));
+		}
+		catch (NumberFormatException e) {
+			log.warn("Invalid value for global property '" + OpenmrsConstants.GP_HL7_PROCESSOR_THREADS + "': " + value);
+			return 1;
+		}
+	}
+	
+	/**
+	 * Processes the queue until it is empty. Each worker has a queue of its own, and the worker for
+	 * an entry is picked by hashing the first patient identifier of the message, so the entries of
+	 * one patient are processed in order while different patients are processed in parallel.
+	 * 
+	 * @param threads the number of workers
+	 */
+	private void processHL7InQueue(int threads) {
+		List<ExecutorService> workers = new ArrayList<ExecutorService>(threads);
+		ThreadFactory threadFactory = new WorkerThreadFactory(Context.getUserContext());
+		for (int i = 0; i < threads; i++)
+			workers.add(Executors.newSingleThreadExecutor(threadFactory));
+		
+		HL7Service hl7Service = Context.getHL7Service();
+		long startTime = System.currentTimeMillis();
+		int processed = 0;
+		List<Future<Boolean>> previousBatch = Collections.emptyList();
+		try {
+			List<HL7InQueue> batch = hl7Service.getPendingHL7InQueues(null, BATCH_SIZE);
+			while (!batch.isEmpty()) {
+				List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(batch.size());
+				for (HL7InQueue hl7InQueue : batch) {
+					String patientIdentifier = HL7Util.getFirstPatientIdentifier(hl7InQueue.getHL7Data());
+					int hash = patientIdentifier == null ? hl7InQueue.getHL7InQueueId() : patientIdentifier.hashCode();
+					ExecutorService worker = workers.get((hash & Integer.MAX_VALUE) % threads);
+					futures.add(worker.submit(new QueueEntryProcessor(hl7InQueue.getHL7InQueueId())));
+				}
+				Integer lastId = batch.get(batch.size() - 1).getHL7InQueueId();
+				
+				// the workers go on with this batch while we wait for the previous one
+				processed += waitFor(previousBatch);
+				previousBatch = futures;
+				Context.clearSession();
+				batch = hl7Service.getPendingHL7InQueues(lastId, BATCH_SIZE);
+			}
+			processed += waitFor(previousBatch);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted while processing the hl7 in queue");
+		}
+		finally {
+			for (ExecutorService worker : workers)
+				worker.shutdownNow();
+			awaitTermination(workers);
+		}
+		
+		long elapsed = System.currentTimeMillis() - startTime;
+		if (processed > 0 && log.isInfoEnabled())
+			log.info("Processed " + processed + " hl7 in queue entries with " + threads + " threads in " + elapsed
+			        + "ms (" + (processed * 1000L / Math.max(1, elapsed)) + " messages/sec)");
+	}
+	
+	/**
+	 * Waits until the given workers have stopped
+	 */
+	private void awaitTermination(List<ExecutorService> workers) {
+		try {
+			for (ExecutorService worker : workers) {
+				if (!worker.awaitTermination(WORKER_SHUTDOWN_SECONDS, TimeUnit.SECONDS))
+					log.warn("An hl7 in queue worker did not stop within " + WORKER_SHUTDOWN_SECONDS + " seconds");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Processes one queue entry on a worker thread. The entry is loaded again in the session of the
+	 * worker, and that session is cleared afterwards so that it does not grow with every message.
+	 * 
+	 * @param hl7InQueueId the id of the queue entry
+	 * @return false if the entry was already gone from the queue
+	 */
+	protected boolean processQueueEntry(Integer hl7InQueueId) {
+		try {
+			HL7InQueue hl7InQueue = Context.getHL7Service().getHL7InQueue(hl7InQueueId);
+			if (hl7InQueue == null)
+				return false;
+			processHL7InQueue(hl7InQueue);
+			return true;
+		}
+		finally {
+			Context.clearSession();
+		}
+	}
+	
+	/**
+	 * Waits until the given queue entries have been processed
+	 * 
+	 * @return the number of entries that were processed
+	 */
+	private int waitFor(List<Future<Boolean>> futures) throws InterruptedException {
+		int processed = 0;
+		for (Future<Boolean> future : futures) {
+			try {
+				if (future.get())
+					processed++;
+			}
+			catch (ExecutionException e) {
+				log.error("Unable to process hl7 in queue", e.getCause());
+			}
+		}
+		return processed;
+	}
+	
+	/**
+	 * Processes one queue entry on a worker thread
+	 * 
+	 * @see HL7InQueueProcessor#processQueueEntry(Integer)
+	 */
+	private class QueueEntryProcessor implements Callable<Boolean> {
+		
+		private Integer hl7InQueueId;
+		
+		public QueueEntryProcessor(Integer hl7InQueueId) {
+			this.hl7InQueueId = hl7InQueueId;
+		}
+		
+		/**
+		 * @return false if the entry was already gone from the queue
+		 */
+		public Boolean call() throws Exception {
+			return processQueueEntry(hl7InQueueId);
+		}
+	}
+	
+	/**
+	 * Creates the worker threads, each with an open session. When the processing was started by a
+	 * daemon thread, such as the scheduled task, the workers are daemon threads as well. Otherwise
+	 * each worker gets a user context of its own, authenticated as the user who started the
+	 * processing, because user contexts are not thread safe.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		
+		private final UserContext userContext;
+		
+		private int count = 0;
+		
+		/**
+		 * @param userContext the user context of the thread that started the processing, ignored
+		 *            if that is a daemon thread
+		 */
+		public WorkerThreadFactory(UserContext userContext) {
+			this.userContext = userContext;
+		}
+		
+		/**
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		public synchronized Thread newThread(final Runnable runnable) {
+			Thread thread;
+			if (Daemon.isDaemonThread()) {
+				thread = Daemon.newDaemonThread(runnable);
+			} else {
+				thread = new Thread(new Runnable() {
+					
+					public void run() {
+						Context.openSession();
+						try {
+							Context.setUserContext(new UserContext(userContext));
+							runnable.run();
+						}
+						finally {
+							Context.closeSession();
+						}
+					}
+				});
+			}
+			thread.setName("HL7 in queue worker " + (++count));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+	
 }
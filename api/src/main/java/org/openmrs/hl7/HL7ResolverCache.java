@@ -0,0 +1,230 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Remembers what the identifiers found in hl7 messages resolved to, so that the same concept
+ * code, patient, provider, enterer or location is only looked up in the database once instead of
+ * once per segment of every message. Only the ids of the resolved objects are kept, never the
+ * objects themselves, so entries can be shared by every thread and session processing messages.<br/>
+ * <br/>
+ * Each {@link Region} holds at most {@link #getCapacity()} entries, dropping the least recently
+ * used ones. A region is emptied whenever one of the objects it depends on is saved or deleted,
+ * see {@link org.openmrs.hl7.db.hibernate.HL7ResolverCacheInterceptor}. Identifiers that could
+ * not be resolved are remembered as well, as null values.
+ * 
+ * @since 1.9
+ */
+public class HL7ResolverCache {
+	
+	/**
+	 * The kinds of lookups that are cached
+	 */
+	public enum Region {
+		/**
+		 * Concept ids by code and coding system
+		 */
+		CONCEPT_MAPPING,
+		/**
+		 * Person ids by the list of identifiers of a PID or NK1 segment
+		 */
+		PERSON_IDENTIFIERS,
+		/**
+		 * Person ids by the XCN of a provider
+		 */
+		PROVIDER,
+		/**
+		 * User ids by the XCN of an enterer
+		 */
+		USER,
+		/**
+		 * Location ids by PL
+		 */
+		LOCATION
+	}
+	
+	/**
+	 * The default maximum number of entries per region
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+	
+	private final Map<Region, Map<String, Integer>> regions = new EnumMap<Region, Map<String, Integer>>(Region.class);
+	
+	private final Map<Region, AtomicLong> hits = new EnumMap<Region, AtomicLong>(Region.class);
+	
+	private final Map<Region, AtomicLong> misses = new EnumMap<Region, AtomicLong>(Region.class);
+	
+	// bumped by every clear, so that lookups started before it do not put back stale ids
+	private final Map<Region, AtomicLong> generations = new EnumMap<Region, AtomicLong>(Region.class);
+	
+	private volatile int capacity = DEFAULT_CAPACITY;
+	
+	public HL7ResolverCache() {
+		for (Region region : Region.values()) {
+			regions.put(region, new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+				
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+					return size() > capacity;
+				}
+			});
+			hits.put(region, new AtomicLong());
+			misses.put(region, new AtomicLong());
+			generations.put(region, new AtomicLong());
+		}
+	}
+	
+	/**
+	 * Computes what an identifier found in a message resolves to
+	 */
+	public interface Resolver {
+		
+		/**
+		 * @return the id the identifier resolves to, null if it cannot be resolved
+		 */
+		public Integer resolve() throws HL7Exception;
+	}
+	
+	/**
+	 * Returns the cached id for the given key, or resolves it and caches the result. Exceptions
+	 * thrown by the resolver are passed on and nothing is cached for them.
+	 * 
+	 * @param region the kind of lookup
+	 * @param key the identifier found in the message
+	 * @param resolver computes the id if it is not cached
+	 * @return the id, null if the key cannot be resolved
+	 * @throws HL7Exception if the resolver fails
+	 * @should only call the resolver the first time a key is asked for
+	 * @should cache keys that cannot be resolved
+	 * @should count hits and misses
+	 * @should drop the least recently used entries beyond the capacity
+	 * @should not cache anything if the capacity is zero
+	 */
+	public Integer get(Region region, String key, Resolver resolver) throws HL7Exception {
+		Map<String, Integer> entries = regions.get(region);
+		long generation;
+		synchronized (entries) {
+			if (entries.containsKey(key)) {
+				hits.get(region).incrementAndGet();
+				return entries.get(key);
+			}
+			generation = generations.get(region).get();
+		}
+		misses.get(region).incrementAndGet();
+		
+		// resolved outside of the lock, two threads may both look up the same key
+		Integer id = resolver.resolve();
+		if (capacity > 0) {
+			synchronized (entries) {
+				if (generation == generations.get(region).get())
+					entries.put(key, id);
+			}
+		}
+		return id;
+	}
+	
+	/**
+	 * Empties the given region
+	 * 
+	 * @param region the region to empty
+	 */
+	public void clear(Region region) {
+		Map<String, Integer> entries = regions.get(region);
+		synchronized (entries) {
+			entries.clear();
+			generations.get(region).incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Empties every region and resets the hit and miss counts
+	 */
+	public void clearAll() {
+		for (Region region : Region.values()) {
+			clear(region);
+			hits.get(region).set(0);
+			misses.get(region).set(0);
+		}
+	}
+	
+	/**
+	 * @param region the kind of lookup
+	 * @return the number of lookups that were answered from the cache
+	 */
+	public long getHits(Region region) {
+		return hits.get(region).get();
+	}
+	
+	/**
+	 * @param region the kind of lookup
+	 * @return the number of lookups that had to go to the database
+	 */
+	public long getMisses(Region region) {
+		return misses.get(region).get();
+	}
+	
+	/**
+	 * @param region the kind of lookup
+	 * @return the fraction of lookups answered from the cache, 0 if there were none
+	 */
+	public double getHitRate(Region region) {
+		long hitCount = getHits(region);
+		long total = hitCount + getMisses(region);
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+	
+	/**
+	 * @return the maximum number of entries kept per region
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Sets the maximum number of entries kept per region. A capacity of 0 turns the cache off.
+	 * 
+	 * @param capacity the capacity to set
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+		if (capacity <= 0) {
+			for (Region region : Region.values())
+				clear(region);
+		}
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("HL7ResolverCache[");
+		for (Region region : Region.values()) {
+			if (region.ordinal() > 0)
+				sb.append(", ");
+			sb.append(region).append(": ").append(getHits(region)).append(" hits, ").append(getMisses(region)).append(
+			    " misses");
+		}
+		return sb.append("]").toString();
+	}
+}
@@ -279,6 +279,22 @@ public interface HL7Service extends OpenmrsService {
 	@Authorized(HL7Constants.PRIV_VIEW_HL7_IN_QUEUE)
 	public HL7InQueue getNextHL7InQueue() throws APIException;
 	
+	/**
+	 * Get the pending queue items that come after the given one, oldest first. Used to walk the
+	 * queue in batches without skipping over entries when earlier ones are removed meanwhile.
+	 * 
+	 * @param afterHL7InQueueId only return queue items with a greater id, null to start at the
+	 *            beginning of the queue
+	 * @param maxResults the maximum number of queue items to return
+	 * @return the pending queue items, in id order
+	 * @since 1.9
+	 * @should return pending queue items after the given id in id order
+	 * @should not return queue items that are not pending
+	 */
+	@Transactional(readOnly = true)
+	@Authorized(HL7Constants.PRIV_VIEW_HL7_IN_QUEUE)
+	public List<HL7InQueue> getPendingHL7InQueues(Integer afterHL7InQueueId, int maxResults) throws APIException;
+	
 	/**
 	 * Completely delete the hl7 in queue item from the database.
 	 * 
@@ -282,4 +282,35 @@ public class HL7Util {
 		//TODO Should take care of the case where the user is using removable media, this might explode
 		return OpenmrsUtil.getDirectoryInApplicationDataDirectory(archiveDir);
 	}
+	
+	/**
+	 * Finds the first patient identifier of the PID segment of an unparsed message, without going
+	 * through the HAPI parser. The separators are taken from the MSH segment. This is meant for
+	 * cheaply telling apart messages about different patients, e.g. to route them, not for looking
+	 * up the patient.
+	 * 
+	 * @param hl7Message the message text
+	 * @return the first repetition of PID-3 as it appears in the message, or null if there is none
+	 * @should return the first patient identifier of the PID segment
+	 * @should return null if the message has no PID segment
+	 * @should use the separators given in the MSH segment
+	 */
+	public static String getFirstPatientIdentifier(String hl7Message) {
+		if (hl7Message == null || !hl7Message.startsWith("MSH") || hl7Message.length() < 8)
+			return null;
+		
+		char fieldSeparator = hl7Message.charAt(3);
+		char repetitionSeparator = hl7Message.charAt(5);
+		String pidStart = "PID" + fieldSeparator;
+		for (String segment : hl7Message.split("[\\r\\n]+")) {
+			if (segment.startsWith(pidStart)) {
+				String[] fields = StringUtils.splitPreserveAllTokens(segment, fieldSeparator);
+				if (fields.length < 4)
+					return null;
+				String identifier = StringUtils.substringBefore(fields[3], String.valueOf(repetitionSeparator));
+				return StringUtils.isBlank(identifier) ? null : identifier;
+			}
+		}
+		return null;
+	}
 }
@@ -78,6 +78,11 @@ public interface HL7DAO {
 	 */
 	public HL7InQueue getNextHL7InQueue() throws DAOException;
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#getPendingHL7InQueues(java.lang.Integer, int)
+	 */
+	public List<HL7InQueue> getPendingHL7InQueues(Integer afterHL7InQueueId, int maxResults) throws DAOException;
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
@@ -0,0 +1,90 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7.db.hibernate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openmrs.Concept;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptSource;
+import org.openmrs.Location;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.User;
+import org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor;
+import org.openmrs.hl7.HL7ResolverCache;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+
+/**
+ * Empties the regions of the {@link HL7ResolverCache} that depend on an object when that object is
+ * saved or deleted, right away and once more when the transaction ends.
+ * 
+ * @since 1.9
+ */
+public class HL7ResolverCacheInterceptor extends CacheInvalidatingInterceptor<Region> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private HL7ResolverCache resolverCache;
+	
+	/**
+	 * @param resolverCache the cache to keep up to date
+	 */
+	public void setResolverCache(HL7ResolverCache resolverCache) {
+		this.resolverCache = resolverCache;
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#getKeys(java.lang.Object)
+	 * @should return the regions that depend on the object
+	 */
+	@Override
+	protected Collection<Region> getKeys(Object entity) {
+		if (resolverCache == null)
+			return Collections.emptySet();
+		if (entity instanceof Concept || entity instanceof ConceptMap || entity instanceof ConceptSource)
+			return Collections.singleton(Region.CONCEPT_MAPPING);
+		// a person also resolves providers, by name
+		if (entity instanceof Person || entity instanceof PatientIdentifier || entity instanceof PatientIdentifierType)
+			return Arrays.asList(Region.PERSON_IDENTIFIERS, Region.PROVIDER);
+		if (entity instanceof PersonName)
+			return Collections.singleton(Region.PROVIDER);
+		if (entity instanceof User)
+			return Collections.singleton(Region.USER);
+		if (entity instanceof Location)
+			return Collections.singleton(Region.LOCATION);
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidate(java.lang.Object)
+	 */
+	@Override
+	protected void invalidate(Region region) {
+		resolverCache.clear(region);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidateAll()
+	 */
+	@Override
+	public void invalidateAll() {
+		if (resolverCache != null)
+			resolverCache.clearAll();
+	}
+}
@@ -193,6 +193,18 @@ public class HibernateHL7DAO implements HL7DAO {
 		return (HL7InQueue) query.uniqueResult();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.db.HL7DAO#getPendingHL7InQueues(java.lang.Integer, int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<HL7InQueue> getPendingHL7InQueues(Integer afterHL7InQueueId, int maxResults) throws DAOException {
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "from HL7InQueue as hiq where hiq.messageState = :state and hiq.HL7InQueueId > :afterId order by HL7InQueueId")
+		        .setParameter("state", HL7Constants.HL7_STATUS_PENDING, Hibernate.INTEGER).setInteger("afterId",
+		            afterHL7InQueueId == null ? Integer.MIN_VALUE : afterHL7InQueueId).setMaxResults(maxResults);
+		return query.list();
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.db.HL7DAO#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 */
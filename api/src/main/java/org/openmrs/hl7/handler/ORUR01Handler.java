@@ -44,6 +44,9 @@ import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InQueueProcessor;
+import org.openmrs.hl7.HL7ResolverCache;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+import org.openmrs.hl7.HL7ResolverCache.Resolver;
 import org.openmrs.hl7.HL7Service;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
@@ -97,6 +100,17 @@ public class ORUR01Handler implements Application {
 	
 	private Log log = LogFactory.getLog(ORUR01Handler.class);
 	
+	private HL7ResolverCache resolverCache;
+	
+	/**
+	 * Used by spring to inject the cache for concept mappings
+	 * 
+	 * @param resolverCache the cache to use, or null to always look up mappings in the database
+	 */
+	public void setResolverCache(HL7ResolverCache resolverCache) {
+		this.resolverCache = resolverCache;
+	}
+	
 	/**
 	 * Always returns true, assuming that the router calling this handler will only call this
 	 * handler with ORU_R01 messages.
@@ -229,6 +243,9 @@ public class ORUR01Handler implements Application {
 		if (ignoreOBRConceptId.length() > 0)
 			ignoredConcepts.add(new Concept(Integer.valueOf(ignoreOBRConceptId)));
 		
+		// only looked up if an existing encounter is backfilled
+		User enterer = null;
+		
 		ORU_R01_PATIENT_RESULT patientResult = oru.getPATIENT_RESULT();
 		int numObr = patientResult.getORDER_OBSERVATIONReps();
 		for (int i = 0; i < numObr; i++) {
@@ -292,7 +309,9 @@ public class ORUR01Handler implements Application {
 						// if we're backfilling an encounter, don't use
 						// the creator/dateCreated from the encounter
 						if (encounter.getEncounterId() != null) {
-							obs.setCreator(getEnterer(orc));
+							if (enterer == null)
+								enterer = getEnterer(orc);
+							obs.setCreator(enterer);
 							obs.setDateCreated(new Date());
 						}
 						
@@ -890,7 +909,7 @@ public class ORUR01Handler implements Application {
 	 * @should return a Concept if given local coding system
 	 * @should return a mapped Concept if given a valid mapping
 	 */
-	protected Concept getConcept(String hl7ConceptId, String codingSystem, String uid) throws HL7Exception {
+	protected Concept getConcept(final String hl7ConceptId, final String codingSystem, String uid) throws HL7Exception {
 		if (HL7Constants.HL7_LOCAL_CONCEPT.equals(codingSystem)) {
 			// the concept is local
 			try {
@@ -903,7 +922,23 @@ public class ORUR01Handler implements Application {
 			}
 		} else {
 			// the concept is not local, look it up in our mapping
-			Concept concept = Context.getConceptService().getConceptByMapping(hl7ConceptId, codingSystem);
+			Concept concept = null;
+			if (resolverCache == null) {
+				concept = Context.getConceptService().getConceptByMapping(hl7ConceptId, codingSystem);
+			} else {
+				final Concept[] found = new Concept[1];
+				Integer conceptId = resolverCache.get(Region.CONCEPT_MAPPING, codingSystem + "|" + hl7ConceptId,
+				    new Resolver() {
+					
+					    public Integer resolve() throws HL7Exception {
+						    found[0] = Context.getConceptService().getConceptByMapping(hl7ConceptId, codingSystem);
+						    return found[0] == null ? null : found[0].getConceptId();
+					    }
+				    });
+				concept = found[0];
+				if (concept == null && conceptId != null)
+					concept = Context.getConceptService().getConcept(conceptId);
+			}
 			if (concept == null)
 				log.error("Unable to find concept with code: " + hl7ConceptId + " and mapping: " + codingSystem
 				        + " in hl7 message with uid: " + uid);
@@ -50,6 +50,9 @@ import org.openmrs.hl7.HL7Constants;
 import org.openmrs.hl7.HL7InArchive;
 import org.openmrs.hl7.HL7InError;
 import org.openmrs.hl7.HL7InQueue;
+import org.openmrs.hl7.HL7ResolverCache;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+import org.openmrs.hl7.HL7ResolverCache.Resolver;
 import org.openmrs.hl7.HL7Service;
 import org.openmrs.hl7.HL7Source;
 import org.openmrs.hl7.HL7Util;
@@ -94,6 +97,8 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	
 	private MessageTypeRouter router;
 	
+	private HL7ResolverCache resolverCache;
+	
 	/**
 	 * Private constructor to only support on singleton instance.
 	 * 
@@ -121,6 +126,29 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		this.dao = dao;
 	}
 	
+	/**
+	 * Used by spring to inject the cache for the resolve* methods
+	 * 
+	 * @param resolverCache the cache to use, or null to always look up in the database
+	 */
+	public void setResolverCache(HL7ResolverCache resolverCache) {
+		this.resolverCache = resolverCache;
+	}
+	
+	/**
+	 * Looks up the given key in the resolver cache, if there is one
+	 * 
+	 * @param region the kind of lookup
+	 * @param resolver computes the id if it is not cached
+	 * @param keyParts the components of the hl7 field being resolved
+	 * @return the id, null if the field cannot be resolved
+	 */
+	private Integer getCachedId(Region region, Resolver resolver, String... keyParts) throws HL7Exception {
+		if (resolverCache == null)
+			return resolver.resolve();
+		return resolverCache.get(region, StringUtils.join(keyParts, '|'), resolver);
+	}
+	
 	/**
 	 * Used by spring to inject the parser
 	 * 
@@ -339,6 +367,13 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 		return dao.getNextHL7InQueue();
 	}
 	
+	/**
+	 * @see org.openmrs.hl7.HL7Service#getPendingHL7InQueues(java.lang.Integer, int)
+	 */
+	public List<HL7InQueue> getPendingHL7InQueues(Integer afterHL7InQueueId, int maxResults) throws APIException {
+		return dao.getPendingHL7InQueues(afterHL7InQueueId, maxResults);
+	}
+	
 	/**
 	 * @see org.openmrs.hl7.HL7Service#deleteHL7InQueue(org.openmrs.hl7.HL7InQueue)
 	 * @deprecated
@@ -508,7 +543,19 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 * @return Internal ID # of the specified user, or null if that user can't be found or is
 	 *         ambiguous
 	 */
-	public Integer resolveUserId(XCN xcn) throws HL7Exception {
+	public Integer resolveUserId(final XCN xcn) throws HL7Exception {
+		return getCachedId(Region.USER, new Resolver() {
+			
+			public Integer resolve() throws HL7Exception {
+				return findUserId(xcn);
+			}
+		}, xcn.getIDNumber().getValue(), xcn.getFamilyName().getSurname().getValue(), xcn.getGivenName().getValue());
+	}
+	
+	/**
+	 * Uncached implementation of {@link #resolveUserId(XCN)}
+	 */
+	private Integer findUserId(XCN xcn) throws HL7Exception {
 		// TODO: properly handle family and given names. For now I'm treating
 		// givenName+familyName as a username.
 		String idNumber = xcn.getIDNumber().getValue();
@@ -562,7 +609,19 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	/**
 	 * @see org.openmrs.hl7.HL7Service#resolvePersonId(ca.uhn.hl7v2.model.v25.datatype.XCN)
 	 */
-	public Integer resolvePersonId(XCN xcn) throws HL7Exception {
+	public Integer resolvePersonId(final XCN xcn) throws HL7Exception {
+		return getCachedId(Region.PROVIDER, new Resolver() {
+			
+			public Integer resolve() throws HL7Exception {
+				return findPersonId(xcn);
+			}
+		}, xcn.getIDNumber().getValue(), xcn.getFamilyName().getSurname().getValue(), xcn.getGivenName().getValue());
+	}
+	
+	/**
+	 * Uncached implementation of {@link #resolvePersonId(XCN)}
+	 */
+	private Integer findPersonId(XCN xcn) throws HL7Exception {
 		String idNumber = xcn.getIDNumber().getValue();
 		String familyName = xcn.getFamilyName().getSurname().getValue();
 		String givenName = xcn.getGivenName().getValue();
@@ -595,7 +654,19 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 * @return internal identifier of the specified location, or null if it is not found or
 	 *         ambiguous
 	 */
-	public Integer resolveLocationId(PL pl) throws HL7Exception {
+	public Integer resolveLocationId(final PL pl) throws HL7Exception {
+		return getCachedId(Region.LOCATION, new Resolver() {
+			
+			public Integer resolve() throws HL7Exception {
+				return findLocationId(pl);
+			}
+		}, pl.getPointOfCare().getValue(), pl.getFacility().getUniversalID().getValue());
+	}
+	
+	/**
+	 * Uncached implementation of {@link #resolveLocationId(PL)}
+	 */
+	private Integer findLocationId(PL pl) throws HL7Exception {
 		// TODO: Get rid of hack that allows first component to be an integer
 		// location.location_id
 		String pointOfCare = pl.getPointOfCare().getValue();
@@ -649,7 +720,36 @@ public class HL7ServiceImpl extends BaseOpenmrsService implements HL7Service {
 	 *         if the patient is not found
 	 * @throws HL7Exception
 	 */
-	public Person resolvePersonFromIdentifiers(CX[] identifiers) throws HL7Exception {
+	public Person resolvePersonFromIdentifiers(final CX[] identifiers) throws HL7Exception {
+		// give up if no identifiers exist
+		if (identifiers.length < 1)
+			throw new HL7Exception("Missing patient identifier in PID segment");
+		
+		String[] keyParts = new String[identifiers.length * 2];
+		for (int i = 0; i < identifiers.length; i++) {
+			keyParts[i * 2] = identifiers[i].getIDNumber().getValue();
+			keyParts[i * 2 + 1] = identifiers[i].getAssigningAuthority().getNamespaceID().getValue();
+		}
+		
+		// only the id is cached, the person is loaded again on a cache hit
+		final Person[] found = new Person[1];
+		Integer personId = getCachedId(Region.PERSON_IDENTIFIERS, new Resolver() {
+			
+			public Integer resolve() throws HL7Exception {
+				found[0] = findPersonFromIdentifiers(identifiers);
+				return found[0] == null ? null : found[0].getPersonId();
+			}
+		}, keyParts);
+		
+		if (found[0] != null || personId == null)
+			return found[0];
+		return Context.getPersonService().getPerson(personId);
+	}
+	
+	/**
+	 * Uncached implementation of {@link #resolvePersonFromIdentifiers(CX[])}
+	 */
+	private Person findPersonFromIdentifiers(CX[] identifiers) throws HL7Exception {
 		// TODO: Properly handle assigning authority. If specified it's
 		// currently treated as PatientIdentifierType.name
 		// TODO: Throw exceptions instead of returning null in some cases
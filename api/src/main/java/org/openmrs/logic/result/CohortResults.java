@@ -0,0 +1,658 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic.result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openmrs.Cohort;
+import org.openmrs.Concept;
+import org.openmrs.logic.Duration;
+import org.openmrs.logic.LogicException;
+import org.openmrs.logic.LogicTransform;
+import org.openmrs.logic.op.Operator;
+
+/**
+ * The results of one token for every patient of a cohort, kept in columns instead of one
+ * {@link Result} list per patient. A data source is read once for the whole cohort (see
+ * {@link org.openmrs.logic.datasource.LogicDataSource#read(org.openmrs.logic.LogicContext, Cohort, org.openmrs.logic.LogicCriteria)}
+ * ), the values it returns are sorted by result date once, and the operators of a criteria
+ * (last, first, within, greater than, ...) are then applied to all patients at once, without
+ * building intermediate results for each patient. Only {@link #toResults()} turns the columns back
+ * into a result per patient.<br/>
+ * <br/>
+ * Example:
+ * 
+ * <pre>
+ * Map&lt;Integer, Result&gt; cd4 = dataSource.read(context, cohort, criteria);
+ * Cohort lowCd4 = CohortResults.fromResults(cohort, cd4, context.getIndexDate()).last().lt(200).getCohort();
+ * </pre>
+ * 
+ * Instances are immutable, every operator returns a new instance that shares the values with this
+ * one.
+ * 
+ * @since 1.9
+ */
+public class CohortResults {
+	
+	// the result date of values that have none
+	private static final long NO_DATE = Long.MIN_VALUE;
+	
+	// orders values by result date, values without one first
+	private static final Comparator<Result> RESULT_DATE_COMPARATOR = new Comparator<Result>() {
+		
+		public int compare(Result r1, Result r2) {
+			long d1 = getTime(r1);
+			long d2 = getTime(r2);
+			return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+		}
+	};
+	
+	// the patients in ascending order
+	private final int[] patientIds;
+	
+	// the values of patientIds[i] are values[offsets[i]] to values[offsets[i + 1] - 1]
+	private final int[] offsets;
+	
+	// the single values of all patients, ordered by result date for each patient
+	private final Result[] values;
+	
+	// the result date of each value, NO_DATE if it has none
+	private final long[] dates;
+	
+	// the effective value of "today" for within()
+	private final Date indexDate;
+	
+	private CohortResults(int[] patientIds, int[] offsets, Result[] values, long[] dates, Date indexDate) {
+		this.patientIds = patientIds;
+		this.offsets = offsets;
+		this.values = values;
+		this.dates = dates;
+		this.indexDate = indexDate;
+	}
+	
+	/**
+	 * Puts the results read for a cohort into columns
+	 * 
+	 * @param cohort the patients the results were read for, patients without results are kept with
+	 *            no values. May be null to only keep the patients that have results
+	 * @param results the result of each patient, lists of results are split into their members
+	 * @param indexDate the effective value of "today", null for now
+	 * @return the results in columns
+	 * @should keep the members of the cohort that have no results
+	 * @should order the values of each patient by result date
+	 */
+	public static CohortResults fromResults(Cohort cohort, Map<Integer, Result> results, Date indexDate) {
+		Set<Integer> ids = new TreeSet<Integer>(results.keySet());
+		if (cohort != null)
+			ids.addAll(cohort.getMemberIds());
+		
+		int[] patientIds = new int[ids.size()];
+		int[] offsets = new int[ids.size() + 1];
+		List<Result> values = new ArrayList<Result>(results.size());
+		int i = 0;
+		for (Integer patientId : ids) {
+			patientIds[i] = patientId;
+			offsets[i] = values.size();
+			Result result = results.get(patientId);
+			if (result != null && !result.isNull()) {
+				if (result.isEmpty()) {
+					values.add(result);
+				} else {
+					for (Result member : result) {
+						if (member != null && !member.isNull())
+							values.add(member);
+					}
+				}
+			}
+			i++;
+		}
+		offsets[i] = values.size();
+		
+		Result[] valueArray = values.toArray(new Result[values.size()]);
+		long[] dates = new long[valueArray.length];
+		for (i = 0; i < patientIds.length; i++) {
+			if (offsets[i + 1] - offsets[i] > 1)
+				Arrays.sort(valueArray, offsets[i], offsets[i + 1], RESULT_DATE_COMPARATOR);
+		}
+		for (i = 0; i < valueArray.length; i++)
+			dates[i] = getTime(valueArray[i]);
+		
+		return new CohortResults(patientIds, offsets, valueArray, dates, indexDate == null ? new Date() : indexDate);
+	}
+	
+	/**
+	 * @see #fromResults(Cohort, Map, Date)
+	 */
+	public static CohortResults fromResults(Map<Integer, Result> results) {
+		return fromResults(null, results, null);
+	}
+	
+	private static long getTime(Result value) {
+		Date date = value.getResultDate();
+		return date == null ? NO_DATE : date.getTime();
+	}
+	
+	/**
+	 * Decides which values are kept by {@link CohortResults#select(ValueTest)}
+	 */
+	private interface ValueTest {
+		
+		public boolean accept(Result value, long date);
+	}
+	
+	/**
+	 * @return the values of all patients that pass the test
+	 */
+	private CohortResults select(ValueTest test) {
+		int[] newOffsets = new int[offsets.length];
+		Result[] newValues = new Result[values.length];
+		long[] newDates = new long[values.length];
+		int n = 0;
+		for (int i = 0; i < patientIds.length; i++) {
+			newOffsets[i] = n;
+			for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+				if (test.accept(values[j], dates[j])) {
+					newValues[n] = values[j];
+					newDates[n] = dates[j];
+					n++;
+				}
+			}
+		}
+		newOffsets[patientIds.length] = n;
+		return new CohortResults(patientIds, newOffsets, Arrays.copyOf(newValues, n), Arrays.copyOf(newDates, n),
+		        indexDate);
+	}
+	
+	/**
+	 * @return up to count values of each patient, the latest ones if fromEnd is true
+	 */
+	private CohortResults slice(int count, boolean fromEnd) {
+		int[] newOffsets = new int[offsets.length];
+		int n = 0;
+		for (int i = 0; i < patientIds.length; i++) {
+			newOffsets[i] = n;
+			n += Math.min(count, offsets[i + 1] - offsets[i]);
+		}
+		newOffsets[patientIds.length] = n;
+		
+		Result[] newValues = new Result[n];
+		long[] newDates = new long[n];
+		for (int i = 0; i < patientIds.length; i++) {
+			int length = newOffsets[i + 1] - newOffsets[i];
+			int from = fromEnd ? offsets[i + 1] - length : offsets[i];
+			System.arraycopy(values, from, newValues, newOffsets[i], length);
+			System.arraycopy(dates, from, newDates, newOffsets[i], length);
+		}
+		return new CohortResults(patientIds, newOffsets, newValues, newDates, indexDate);
+	}
+	
+	/**
+	 * @return one value per patient, created by the given aggregate from the values of the patient
+	 */
+	private CohortResults aggregate(Aggregate aggregate) {
+		int[] newOffsets = new int[offsets.length];
+		Result[] newValues = new Result[patientIds.length];
+		long[] newDates = new long[patientIds.length];
+		for (int i = 0; i < patientIds.length; i++) {
+			newOffsets[i] = i;
+			newValues[i] = aggregate.compute(offsets[i], offsets[i + 1]);
+			newDates[i] = indexDate.getTime();
+		}
+		newOffsets[patientIds.length] = patientIds.length;
+		return new CohortResults(patientIds, newOffsets, newValues, newDates, indexDate);
+	}
+	
+	/**
+	 * Computes the single value of a patient for {@link CohortResults#aggregate(Aggregate)}
+	 */
+	private interface Aggregate {
+		
+		public Result compute(int from, int to);
+	}
+	
+	/**
+	 * @return the latest value of each patient
+	 * @should keep the latest value of each patient
+	 */
+	public CohortResults last() {
+		return last(1);
+	}
+	
+	/**
+	 * @param count the maximum number of values to keep per patient
+	 * @return the latest values of each patient
+	 */
+	public CohortResults last(int count) {
+		return slice(count, true);
+	}
+	
+	/**
+	 * @return the earliest value of each patient
+	 * @should keep the earliest value of each patient
+	 */
+	public CohortResults first() {
+		return first(1);
+	}
+	
+	/**
+	 * @param count the maximum number of values to keep per patient
+	 * @return the earliest values of each patient
+	 */
+	public CohortResults first(int count) {
+		return slice(count, false);
+	}
+	
+	/**
+	 * @return the values of each patient without the ones equal to an earlier one
+	 */
+	public CohortResults distinct() {
+		int[] newOffsets = new int[offsets.length];
+		Result[] newValues = new Result[values.length];
+		long[] newDates = new long[values.length];
+		int n = 0;
+		for (int i = 0; i < patientIds.length; i++) {
+			newOffsets[i] = n;
+			for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+				boolean seen = false;
+				for (int k = newOffsets[i]; k < n && !seen; k++)
+					seen = newValues[k].equals(values[j]);
+				if (!seen) {
+					newValues[n] = values[j];
+					newDates[n] = dates[j];
+					n++;
+				}
+			}
+		}
+		newOffsets[patientIds.length] = n;
+		return new CohortResults(patientIds, newOffsets, Arrays.copyOf(newValues, n), Arrays.copyOf(newDates, n),
+		        indexDate);
+	}
+	
+	/**
+	 * @return a result per patient with the number of values of the patient
+	 * @should count the values of each patient
+	 */
+	public CohortResults count() {
+		return aggregate(new Aggregate() {
+			
+			public Result compute(int from, int to) {
+				return new Result(indexDate, to - from, null);
+			}
+		});
+	}
+	
+	/**
+	 * @return a result per patient with the average of the numeric values of the patient, an empty
+	 *         result for patients without numeric values
+	 * @should ignore values without a numeric value
+	 */
+	public CohortResults average() {
+		return aggregate(new Aggregate() {
+			
+			public Result compute(int from, int to) {
+				double sum = 0;
+				int count = 0;
+				for (int j = from; j < to; j++) {
+					Double number = values[j].toNumber();
+					if (number != null) {
+						sum += number;
+						count++;
+					}
+				}
+				if (count == 0)
+					return Result.emptyResult();
+				return new Result(indexDate, sum / count, null);
+			}
+		});
+	}
+	
+	/**
+	 * @param exists true to tell whether each patient has values, false to tell whether they have
+	 *            none
+	 * @return a boolean result per patient
+	 */
+	private CohortResults exists(final boolean exists) {
+		return aggregate(new Aggregate() {
+			
+			public Result compute(int from, int to) {
+				return new Result(indexDate, (to > from) == exists, null);
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a numeric value greater than the given one
+	 * @should keep only the values greater than the given number
+	 */
+	public CohortResults gt(final double value) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				Double number = r.toNumber();
+				return number != null && number > value;
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a numeric value greater than or equal to the given one
+	 */
+	public CohortResults gte(final double value) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				Double number = r.toNumber();
+				return number != null && number >= value;
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a numeric value less than the given one
+	 */
+	public CohortResults lt(final double value) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				Double number = r.toNumber();
+				return number != null && number < value;
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a numeric value less than or equal to the given one
+	 */
+	public CohortResults lte(final double value) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				Double number = r.toNumber();
+				return number != null && number <= value;
+			}
+		});
+	}
+	
+	/**
+	 * @param value a number, date, concept, boolean or text
+	 * @return the values whose value of the same type equals the given one
+	 */
+	public CohortResults equalTo(final Object value) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				return valueEquals(r, value);
+			}
+		});
+	}
+	
+	private static boolean valueEquals(Result r, Object value) {
+		if (value instanceof Number) {
+			Double number = r.toNumber();
+			return number != null && number.doubleValue() == ((Number) value).doubleValue();
+		} else if (value instanceof Concept) {
+			return value.equals(r.toConcept());
+		} else if (value instanceof Date) {
+			return value.equals(r.toDatetime());
+		} else if (value instanceof Boolean) {
+			return value.equals(r.toBoolean());
+		} else if (value instanceof Result) {
+			return r.equals(value);
+		}
+		return value != null && value.toString().equals(r.toString());
+	}
+	
+	/**
+	 * @param values the values to look for
+	 * @return the values that equal one of the given ones
+	 * @see #equalTo(Object)
+	 */
+	public CohortResults in(final Collection<?> values) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				for (Object value : values) {
+					if (valueEquals(r, value))
+						return true;
+				}
+				return false;
+			}
+		});
+	}
+	
+	/**
+	 * @param concept the answer to look for
+	 * @return the coded values with the given concept as answer
+	 */
+	public CohortResults contains(final Concept concept) {
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long date) {
+				return r.containsConcept(concept.getConceptId());
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a result date before the given date
+	 */
+	public CohortResults before(Date date) {
+		final long time = date.getTime();
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long resultDate) {
+				return resultDate != NO_DATE && resultDate < time;
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a result date after the given date
+	 */
+	public CohortResults after(Date date) {
+		final long time = date.getTime();
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long resultDate) {
+				return resultDate != NO_DATE && resultDate > time;
+			}
+		});
+	}
+	
+	/**
+	 * @return the values with a result date on or before the given date, which becomes the index
+	 *         date of the returned results
+	 */
+	public CohortResults asOf(Date date) {
+		final long time = date.getTime();
+		CohortResults selected = select(new ValueTest() {
+			
+			public boolean accept(Result r, long resultDate) {
+				return resultDate != NO_DATE && resultDate <= time;
+			}
+		});
+		return new CohortResults(selected.patientIds, selected.offsets, selected.values, selected.dates, date);
+	}
+	
+	/**
+	 * @param duration how far back from the index date to look
+	 * @return the values with a result date between the index date minus the duration and the
+	 *         index date
+	 * @should keep only the values within the duration before the index date
+	 */
+	public CohortResults within(Duration duration) {
+		final long to = indexDate.getTime();
+		final long from = to - (long) (duration.getDurationInDays() * 86400000d);
+		return select(new ValueTest() {
+			
+			public boolean accept(Result r, long resultDate) {
+				return resultDate != NO_DATE && resultDate >= from && resultDate <= to;
+			}
+		});
+	}
+	
+	/**
+	 * Applies a comparison operator of a criteria to the values of all patients
+	 * 
+	 * @param operator one of the comparison operators of {@link Operator}
+	 * @param operand the right operand: a number, date, concept, text, collection or
+	 *            {@link Duration}
+	 * @return the values that satisfy the comparison
+	 * @throws LogicException if the operator or operand is not supported
+	 * @should apply the operator named by the criteria
+	 * @should fail for an unsupported operator
+	 */
+	public CohortResults apply(Operator operator, Object operand) throws LogicException {
+		if (operator == Operator.GT || operator == Operator.GTE || operator == Operator.LT || operator == Operator.LTE) {
+			if (operand instanceof Date) {
+				// comparing dates is done on the date values
+				final long time = ((Date) operand).getTime();
+				final Operator op = operator;
+				return select(new ValueTest() {
+					
+					public boolean accept(Result r, long date) {
+						Date value = r.toDatetime();
+						if (value == null)
+							return false;
+						long t = value.getTime();
+						return op == Operator.GT ? t > time : op == Operator.GTE ? t >= time : op == Operator.LT ? t < time
+						        : t <= time;
+					}
+				});
+			}
+			double number = toDouble(operator, operand);
+			if (operator == Operator.GT)
+				return gt(number);
+			else if (operator == Operator.GTE)
+				return gte(number);
+			else if (operator == Operator.LT)
+				return lt(number);
+			return lte(number);
+		} else if (operator == Operator.EQUALS) {
+			return equalTo(operand);
+		} else if (operator == Operator.IN && operand instanceof Collection) {
+			return in((Collection<?>) operand);
+		} else if (operator == Operator.CONTAINS && operand instanceof Concept) {
+			return contains((Concept) operand);
+		} else if (operator == Operator.BEFORE && operand instanceof Date) {
+			return before((Date) operand);
+		} else if (operator == Operator.AFTER && operand instanceof Date) {
+			return after((Date) operand);
+		} else if (operator == Operator.ASOF && operand instanceof Date) {
+			return asOf((Date) operand);
+		} else if (operator == Operator.WITHIN && operand instanceof Duration) {
+			return within((Duration) operand);
+		}
+		throw new LogicException("Cannot apply " + operator + " to " + operand + " for a whole cohort");
+	}
+	
+	private static double toDouble(Operator operator, Object operand) throws LogicException {
+		if (operand instanceof Number)
+			return ((Number) operand).doubleValue();
+		try {
+			return Double.parseDouble(String.valueOf(operand));
+		}
+		catch (NumberFormatException e) {
+			throw new LogicException("Cannot apply " + operator + " to " + operand + " for a whole cohort");
+		}
+	}
+	
+	/**
+	 * Applies the transform of a criteria to the values of all patients
+	 * 
+	 * @param transform the transform, may be null
+	 * @return the transformed values
+	 * @throws LogicException if the transform operator is not supported
+	 */
+	public CohortResults apply(LogicTransform transform) throws LogicException {
+		if (transform == null || transform.getTransformOperator() == null)
+			return this;
+		Operator operator = transform.getTransformOperator();
+		int count = transform.getNumResults() == null ? 1 : transform.getNumResults();
+		if (operator == Operator.LAST)
+			return last(count);
+		else if (operator == Operator.FIRST)
+			return first(count);
+		else if (operator == Operator.DISTINCT)
+			return distinct();
+		else if (operator == Operator.COUNT)
+			return count();
+		else if (operator == Operator.AVERAGE)
+			return average();
+		else if (operator == Operator.EXISTS)
+			return exists(true);
+		else if (operator == Operator.NOT_EXISTS)
+			return exists(false);
+		throw new LogicException("Cannot apply " + operator + " for a whole cohort");
+	}
+	
+	/**
+	 * @return the number of patients, including the ones without values
+	 */
+	public int size() {
+		return patientIds.length;
+	}
+	
+	/**
+	 * @return the patients that have at least one value that is true, see
+	 *         {@link Result#toBoolean()}
+	 * @should return the patients with a value that is true
+	 */
+	public Cohort getCohort() {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i < patientIds.length; i++) {
+			for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+				if (values[j].toBoolean()) {
+					ids.add(patientIds[i]);
+					break;
+				}
+			}
+		}
+		return new Cohort(ids);
+	}
+	
+	/**
+	 * Builds the result of each patient: the empty result for patients without values, the value
+	 * itself for patients with one and a list of the values, ordered by result date, for patients
+	 * with more
+	 * 
+	 * @return the result of each patient
+	 * @should return the empty result for patients without values
+	 */
+	public Map<Integer, Result> toResults() {
+		Map<Integer, Result> results = new HashMap<Integer, Result>((int) (patientIds.length / 0.75f) + 1);
+		for (int i = 0; i < patientIds.length; i++) {
+			int from = offsets[i];
+			int to = offsets[i + 1];
+			Result result;
+			if (from == to)
+				result = Result.emptyResult();
+			else if (to - from == 1)
+				result = values[from];
+			else
+				result = new Result(Arrays.asList(values).subList(from, to));
+			results.put(patientIds[i], result);
+		}
+		return results;
+	}
+}
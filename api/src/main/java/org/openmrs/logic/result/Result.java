@@ -294,6 +294,8 @@ public class Result extends ArrayList<Result> {
 	 */
 	public Result(Date resultDate, Datatype datatype, Boolean valueBoolean, Concept valueCoded, Date valueDatetime,
 	    Double valueNumeric, String valueText, Object object) {
+		// a single value never gets members, so do not allocate room for them
+		super(0);
 		this.resultDatetime = resultDate;
 		this.valueNumeric = valueNumeric;
 		this.valueDatetime = valueDatetime;
@@ -38,12 +38,14 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.GlobalProperty;
 import org.openmrs.Privilege;
 import org.openmrs.api.AdministrationService;
+import org.openmrs.aop.RequiredDataAdvice;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.Daemon;
 import org.openmrs.module.Extension.MEDIA_TYPE;
 import org.openmrs.util.DatabaseUpdateException;
 import org.openmrs.util.DatabaseUpdater;
+import org.openmrs.util.HandlerUtil;
 import org.openmrs.util.InputRequiredException;
 import org.openmrs.util.OpenmrsClassLoader;
 import org.openmrs.util.OpenmrsConstants;
@@ -548,6 +550,7 @@ public class ModuleFactory {
 				
 				// effectively mark this module as started successfully
 				getStartedModulesMap().put(moduleId, module);
+				clearCachedHandlers();
 				
 				try {
 					// save the state of this module for future restarts
@@ -855,6 +858,7 @@ public class ModuleFactory {
 			}
 			
 			getStartedModulesMap().remove(moduleId);
+			clearCachedHandlers();
 			
 			if (skipOverStartedProperty == false && !Context.isRefreshingContext()) {
 				saveGlobalProperty(moduleId + ".started", "false", getGlobalPropertyStartedDescription(moduleId));
@@ -1253,6 +1257,15 @@ public class ModuleFactory {
 		
 	}
 	
+	/**
+	 * Forgets the handlers and the classes handled by {@link RequiredDataAdvice} so far, a module
+	 * that is started or stopped may add or remove both
+	 */
+	private static void clearCachedHandlers() {
+		HandlerUtil.clearCachedHandlers();
+		RequiredDataAdvice.clearCachedChildCollections();
+	}
+	
 	/**
 	 * Returns the description for the [moduleId].started global property
 	 * 
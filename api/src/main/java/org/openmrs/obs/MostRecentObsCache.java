@@ -0,0 +1,210 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which obs is the most recent one of a person for a question concept, so that pages
+ * showing the latest weight, height or other values of a patient do not have to load all of the
+ * patient's obs every time. Only ids are kept, never the obs themselves, so entries can be shared
+ * by every thread and session. Concepts a person has no obs for are remembered as well, as null
+ * obs ids.<br/>
+ * <br/>
+ * The entries of at most {@link #getCapacity()} persons are kept, dropping the least recently used
+ * ones. The entries of a person are thrown away whenever one of their obs or encounters is saved or
+ * deleted, see {@link org.openmrs.obs.db.hibernate.MostRecentObsCacheInterceptor}.
+ * 
+ * @see org.openmrs.api.ObsService#getMostRecentObs(org.openmrs.Person, java.util.List)
+ * @since 1.9
+ */
+public class MostRecentObsCache {
+	
+	/**
+	 * The default maximum number of persons whose entries are kept
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+	
+	// obs ids by concept id, by person id
+	private final Map<Integer, Map<Integer, Integer>> persons = new LinkedHashMap<Integer, Map<Integer, Integer>>(16,
+	        0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Map<Integer, Integer>> eldest) {
+			return size() > capacity;
+		}
+	};
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	// bumped whenever obs change, so that ids looked up before it are not put back
+	private final AtomicLong dataVersion = new AtomicLong();
+	
+	private volatile int capacity = DEFAULT_CAPACITY;
+	
+	/**
+	 * The version of the obs the cached ids are looked up from. Read it before looking up an obs
+	 * and pass it to {@link #put(Integer, Integer, Integer, long)}.
+	 * 
+	 * @return the current data version
+	 */
+	public long getDataVersion() {
+		return dataVersion.get();
+	}
+	
+	/**
+	 * Returns the cached obs ids of the given person for those of the given concepts that are
+	 * cached. Concepts that are not cached have no key in the returned map, concepts the person has
+	 * no obs for are mapped to null.
+	 * 
+	 * @param personId the person whose obs are asked for
+	 * @param conceptIds the question concepts
+	 * @return the most recent obs ids by concept id
+	 * @should return cached ids and nulls only for the cached concepts
+	 * @should count hits and misses
+	 */
+	public Map<Integer, Integer> get(Integer personId, Collection<Integer> conceptIds) {
+		Map<Integer, Integer> ret = new HashMap<Integer, Integer>();
+		synchronized (persons) {
+			Map<Integer, Integer> obsIds = persons.get(personId);
+			if (obsIds != null) {
+				for (Integer conceptId : conceptIds) {
+					if (obsIds.containsKey(conceptId))
+						ret.put(conceptId, obsIds.get(conceptId));
+				}
+			}
+		}
+		hits.addAndGet(ret.size());
+		misses.addAndGet(conceptIds.size() - ret.size());
+		return ret;
+	}
+	
+	/**
+	 * Caches the most recent obs id of a person for a concept, unless obs have changed since the
+	 * given version
+	 * 
+	 * @param personId the person the obs belongs to
+	 * @param conceptId the question concept
+	 * @param obsId the most recent obs id, null if the person has no obs for the concept
+	 * @param dataVersion the value {@link #getDataVersion()} had before the obs was looked up
+	 * @should not cache ids looked up before the obs changed
+	 * @should drop the least recently used persons beyond the capacity
+	 */
+	public void put(Integer personId, Integer conceptId, Integer obsId, long dataVersion) {
+		if (capacity <= 0 || personId == null || conceptId == null)
+			return;
+		synchronized (persons) {
+			if (dataVersion != this.dataVersion.get())
+				return;
+			Map<Integer, Integer> obsIds = persons.get(personId);
+			if (obsIds == null) {
+				obsIds = new HashMap<Integer, Integer>();
+				persons.put(personId, obsIds);
+			}
+			obsIds.put(conceptId, obsId);
+		}
+	}
+	
+	/**
+	 * Throws away the entries of the given person because their obs have changed
+	 * 
+	 * @param personId the person whose obs changed, null if it is not known whose obs changed
+	 * @should only throw away the entries of the given person
+	 */
+	public void personChanged(Integer personId) {
+		synchronized (persons) {
+			dataVersion.incrementAndGet();
+			if (personId == null)
+				persons.clear();
+			else
+				persons.remove(personId);
+		}
+	}
+	
+	/**
+	 * Throws every entry away and resets the hit and miss counts
+	 */
+	public void clear() {
+		personChanged(null);
+		hits.set(0);
+		misses.set(0);
+	}
+	
+	/**
+	 * @return the number of persons whose entries are currently cached
+	 */
+	public int getSize() {
+		synchronized (persons) {
+			return persons.size();
+		}
+	}
+	
+	/**
+	 * @return the number of concepts that were answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of concepts that had to be looked up in the database
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * @return the fraction of concepts answered from the cache, 0 if there were none
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+	
+	/**
+	 * @return the maximum number of persons whose entries are kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Sets the maximum number of persons whose entries are kept. A capacity of 0 turns the cache
+	 * off.
+	 * 
+	 * @param capacity the capacity to set
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+		if (capacity <= 0)
+			personChanged(null);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MostRecentObsCache[" + getSize() + " persons, " + getHits() + " hits, " + getMisses() + " misses]";
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Summary statistics of the numeric values of a set of obs, as computed by the database. Besides
+ * the count, minimum, maximum, mean and standard deviation it may hold requested percentiles and a
+ * histogram of the values in bins of equal width.
+ * 
+ * @see org.openmrs.api.ObsService#getNumericObsStatistics(org.openmrs.Concept, java.util.List,
+ *      java.util.Date, java.util.Date, Double, Double, double[], Integer)
+ * @since 1.9
+ */
+public class ObsStatistics {
+	
+	private long count;
+	
+	private Double min;
+	
+	private Double max;
+	
+	private Double mean;
+	
+	private Double standardDeviation;
+	
+	private SortedMap<Double, Double> percentiles = new TreeMap<Double, Double>();
+	
+	private Double histogramStart;
+	
+	private Double histogramBinWidth;
+	
+	private long[] histogramCounts;
+	
+	/**
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @param count the number of values
+	 */
+	public void setCount(long count) {
+		this.count = count;
+	}
+	
+	/**
+	 * @return the smallest value, or null if there are no values
+	 */
+	public Double getMin() {
+		return min;
+	}
+	
+	/**
+	 * @param min the smallest value
+	 */
+	public void setMin(Double min) {
+		this.min = min;
+	}
+	
+	/**
+	 * @return the largest value, or null if there are no values
+	 */
+	public Double getMax() {
+		return max;
+	}
+	
+	/**
+	 * @param max the largest value
+	 */
+	public void setMax(Double max) {
+		this.max = max;
+	}
+	
+	/**
+	 * @return the mean of the values, or null if there are no values
+	 */
+	public Double getMean() {
+		return mean;
+	}
+	
+	/**
+	 * @param mean the mean of the values
+	 */
+	public void setMean(Double mean) {
+		this.mean = mean;
+	}
+	
+	/**
+	 * @return the sample standard deviation of the values, or null if there are fewer than two
+	 */
+	public Double getStandardDeviation() {
+		return standardDeviation;
+	}
+	
+	/**
+	 * @param standardDeviation the sample standard deviation of the values
+	 */
+	public void setStandardDeviation(Double standardDeviation) {
+		this.standardDeviation = standardDeviation;
+	}
+	
+	/**
+	 * @return the computed percentiles, values by fraction between 0 and 1
+	 */
+	public Map<Double, Double> getPercentiles() {
+		return Collections.unmodifiableMap(percentiles);
+	}
+	
+	/**
+	 * @param fraction a fraction between 0 and 1, e.g. 0.5 for the median
+	 * @return the value at the given fraction, or null if it was not computed
+	 */
+	public Double getPercentile(double fraction) {
+		return percentiles.get(fraction);
+	}
+	
+	/**
+	 * @param fraction a fraction between 0 and 1
+	 * @param value the value at the given fraction
+	 */
+	public void setPercentile(double fraction, Double value) {
+		percentiles.put(fraction, value);
+	}
+	
+	/**
+	 * @return the lower bound of the first histogram bin, or null if no histogram was computed
+	 */
+	public Double getHistogramStart() {
+		return histogramStart;
+	}
+	
+	/**
+	 * @return the width of each histogram bin, or null if no histogram was computed
+	 */
+	public Double getHistogramBinWidth() {
+		return histogramBinWidth;
+	}
+	
+	/**
+	 * @return the number of values in each histogram bin, or null if no histogram was computed
+	 */
+	public long[] getHistogramCounts() {
+		return histogramCounts;
+	}
+	
+	/**
+	 * Sets the histogram. Bin <code>i</code> holds the values from
+	 * <code>start + i * binWidth</code> up to but not including the next bin's lower bound, except
+	 * for the last bin which also holds the maximum.
+	 * 
+	 * @param start the lower bound of the first bin
+	 * @param binWidth the width of each bin
+	 * @param counts the number of values in each bin
+	 */
+	public void setHistogram(Double start, Double binWidth, long[] counts) {
+		this.histogramStart = start;
+		this.histogramBinWidth = binWidth;
+		this.histogramCounts = counts;
+	}
+}
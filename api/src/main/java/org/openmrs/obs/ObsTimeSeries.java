@@ -0,0 +1,63 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Date;
+
+/**
+ * The dates and numeric values of a person's obs for a question concept, in ascending date order,
+ * read straight from the obs table without loading the obs themselves. Meant for drawing graphs.
+ * 
+ * @see org.openmrs.api.ObsService#getNumericObsTimeSeries(org.openmrs.Person, org.openmrs.Concept,
+ *      java.util.Date, java.util.Date)
+ * @since 1.9
+ */
+public class ObsTimeSeries {
+	
+	private final Date[] dates;
+	
+	private final double[] values;
+	
+	/**
+	 * @param dates the obs datetimes
+	 * @param values the values, in the same order as the dates
+	 */
+	public ObsTimeSeries(Date[] dates, double[] values) {
+		if (dates.length != values.length)
+			throw new IllegalArgumentException("There must be as many values as dates");
+		this.dates = dates;
+		this.values = values;
+	}
+	
+	/**
+	 * @return the number of values
+	 */
+	public int size() {
+		return dates.length;
+	}
+	
+	/**
+	 * @return the obs datetimes, in ascending order
+	 */
+	public Date[] getDates() {
+		return dates;
+	}
+	
+	/**
+	 * @return the values, in the same order as the dates
+	 */
+	public double[] getValues() {
+		return values;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs.db.hibernate;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Person;
+import org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor;
+import org.openmrs.obs.MostRecentObsCache;
+
+/**
+ * Throws away the entries of a person in the {@link MostRecentObsCache} when one of their obs or
+ * encounters, or the person itself, is saved or deleted, right away and once more when the
+ * transaction ends.
+ * 
+ * @since 1.9
+ */
+public class MostRecentObsCacheInterceptor extends CacheInvalidatingInterceptor<Integer> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private MostRecentObsCache mostRecentObsCache;
+	
+	/**
+	 * @param mostRecentObsCache the cache to keep up to date
+	 */
+	public void setMostRecentObsCache(MostRecentObsCache mostRecentObsCache) {
+		this.mostRecentObsCache = mostRecentObsCache;
+	}
+	
+	/**
+	 * @return the id of the person the object belongs to if it is an obs, an encounter or a person,
+	 *         a null id if the person is not known
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#getKeys(java.lang.Object)
+	 * @should return the person whose obs is saved
+	 * @should not return keys for other objects
+	 */
+	@Override
+	protected Collection<Integer> getKeys(Object entity) {
+		if (mostRecentObsCache == null)
+			return Collections.emptySet();
+		
+		Person person;
+		if (entity instanceof Obs)
+			person = ((Obs) entity).getPerson();
+		else if (entity instanceof Encounter)
+			person = ((Encounter) entity).getPatient();
+		else if (entity instanceof Person && ((Person) entity).getPersonId() != null)
+			person = (Person) entity;
+		else
+			return Collections.emptySet();
+		
+		return Collections.singleton(person == null ? null : person.getPersonId());
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidate(java.lang.Object)
+	 */
+	@Override
+	protected void invalidate(Integer personId) {
+		mostRecentObsCache.personChanged(personId);
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidateAll()
+	 */
+	@Override
+	public void invalidateAll() {
+		if (mostRecentObsCache != null)
+			mostRecentObsCache.clear();
+	}
+}
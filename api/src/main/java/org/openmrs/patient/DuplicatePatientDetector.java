@@ -0,0 +1,378 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Finds patients that are probably the same person without comparing every patient with every
+ * other one. Patients are first put in blocks of the same gender and the same soundex key of their
+ * family name, and again in blocks of the same gender and soundex key of their given name, so that
+ * a typo in one of the names does not hide a duplicate. Within a block, patients are sorted by
+ * birthdate and each one is only compared with the ones born within the birthdate window after it.
+ * The blocks are scored in parallel. <br/>
+ * <br/>
+ * The score of a pair is between 0 and 1: {@value #FAMILY_NAME_WEIGHT} of it comes from the family
+ * names, {@value #GIVEN_NAME_WEIGHT} from the given names and {@value #BIRTHDATE_WEIGHT} from the
+ * birthdates. Names score for being the same, sounding alike or being a few typos apart, and
+ * birthdates for being close. Patients without a birthdate are only compared with the other patients of blocks
+ * smaller than {@link #MAX_BLOCK_SIZE_WITHOUT_BIRTHDATE}, and their birthdates count for half. <br/>
+ * <br/>
+ * A detector is filled with {@link #addPatient(Integer, String, Date, boolean, String, String)}
+ * and then run once with {@link #findDuplicates(ExecutorService)}. It is not thread safe.
+ * 
+ * @since 1.9
+ */
+public class DuplicatePatientDetector {
+	
+	public static final double FAMILY_NAME_WEIGHT = 0.4;
+	
+	public static final double GIVEN_NAME_WEIGHT = 0.3;
+	
+	public static final double BIRTHDATE_WEIGHT = 0.3;
+	
+	public static final double DEFAULT_MINIMUM_SCORE = 0.8;
+	
+	public static final int DEFAULT_BIRTHDATE_WINDOW_DAYS = 365;
+	
+	public static final int MAX_BLOCK_SIZE_WITHOUT_BIRTHDATE = 1000;
+	
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	/**
+	 * The birthday of a patient without a birthdate, so that they are sorted last
+	 */
+	private static final long UNKNOWN = Long.MAX_VALUE;
+	
+	/**
+	 * Orders the patients of a block by birthdate, patients without one last
+	 */
+	private static final Comparator<Candidate> BY_BIRTHDAY = new Comparator<Candidate>() {
+		
+		public int compare(Candidate a, Candidate b) {
+			return a.birthday < b.birthday ? -1 : a.birthday == b.birthday ? 0 : 1;
+		}
+	};
+	
+	private final Map<String, List<Candidate>> blocks = new HashMap<String, List<Candidate>>();
+	
+	private double minimumScore = DEFAULT_MINIMUM_SCORE;
+	
+	private int birthdateWindowDays = DEFAULT_BIRTHDATE_WINDOW_DAYS;
+	
+	private Integer maxResults;
+	
+	private int candidates = 0;
+	
+	/**
+	 * @param minimumScore the score a pair needs to be returned
+	 */
+	public void setMinimumScore(double minimumScore) {
+		this.minimumScore = minimumScore;
+	}
+	
+	/**
+	 * @return the score a pair needs to be returned
+	 */
+	public double getMinimumScore() {
+		return minimumScore;
+	}
+	
+	/**
+	 * @param birthdateWindowDays the number of days two birthdates can be apart for the patients
+	 *            to be compared
+	 */
+	public void setBirthdateWindowDays(int birthdateWindowDays) {
+		this.birthdateWindowDays = birthdateWindowDays;
+	}
+	
+	/**
+	 * @return the number of days two birthdates can be apart for the patients to be compared
+	 */
+	public int getBirthdateWindowDays() {
+		return birthdateWindowDays;
+	}
+	
+	/**
+	 * @param maxResults the number of pairs to return at most, null to return them all
+	 */
+	public void setMaxResults(Integer maxResults) {
+		this.maxResults = maxResults;
+	}
+	
+	/**
+	 * @return the number of pairs to return at most, null to return them all
+	 */
+	public Integer getMaxResults() {
+		return maxResults;
+	}
+	
+	/**
+	 * @return the number of names added so far
+	 */
+	public int getCandidateCount() {
+		return candidates;
+	}
+	
+	/**
+	 * Adds a name of a patient. A patient with several names can be added once per name, a pair of
+	 * patients then gets the score of their closest names.
+	 * 
+	 * @param patientId the patient id
+	 * @param gender the gender, may be null
+	 * @param birthdate the birthdate, may be null
+	 * @param birthdateEstimated whether the birthdate is estimated
+	 * @param givenName the given name, may be null
+	 * @param familyName the family name, may be null
+	 */
+	public void addPatient(Integer patientId, String gender, Date birthdate, boolean birthdateEstimated,
+	        String givenName, String familyName) {
+		Candidate candidate = new Candidate(patientId, gender, birthdate, birthdateEstimated, givenName, familyName);
+		if (candidate.familyKey == null && candidate.givenKey == null)
+			return;
+		
+		candidates++;
+		String genderKey = candidate.gender == null ? "?" : candidate.gender;
+		if (candidate.familyKey != null)
+			addToBlock("F" + genderKey + candidate.familyKey, candidate);
+		if (candidate.givenKey != null)
+			addToBlock("G" + genderKey + candidate.givenKey, candidate);
+	}
+	
+	/**
+	 * Scores the patients of every block and returns the pairs scoring at least the minimum score,
+	 * up to the maximum number of results
+	 * 
+	 * @param executor runs the scoring of the blocks
+	 * @return the likely duplicates, best score first
+	 * @throws InterruptedException if interrupted while waiting for the blocks to be scored
+	 * @throws ExecutionException if the scoring of a block failed
+	 * @should find patients with similar names close birthdates and the same gender
+	 * @should not pair patients of different genders
+	 * @should not pair patients born further apart than the birthdate window
+	 * @should return each pair once with the score of its closest names
+	 * @should not pair a patient with itself
+	 * @should return the best pairs up to the maximum number of results
+	 */
+	public List<DuplicatePatientMatch> findDuplicates(ExecutorService executor) throws InterruptedException,
+	        ExecutionException {
+		// small blocks are grouped so that each task has enough work
+		List<Future<List<DuplicatePatientMatch>>> futures = new ArrayList<Future<List<DuplicatePatientMatch>>>();
+		List<List<Candidate>> batch = new ArrayList<List<Candidate>>();
+		int batchSize = 0;
+		for (List<Candidate> block : blocks.values()) {
+			if (block.size() < 2)
+				continue;
+			batch.add(block);
+			batchSize += block.size();
+			if (batchSize >= 1000) {
+				futures.add(executor.submit(new BlockScorer(batch)));
+				batch = new ArrayList<List<Candidate>>();
+				batchSize = 0;
+			}
+		}
+		if (!batch.isEmpty())
+			futures.add(executor.submit(new BlockScorer(batch)));
+		
+		Map<String, DuplicatePatientMatch> best = new HashMap<String, DuplicatePatientMatch>();
+		for (Future<List<DuplicatePatientMatch>> future : futures) {
+			for (DuplicatePatientMatch match : future.get()) {
+				String key = match.getPatientId() + "-" + match.getDuplicatePatientId();
+				DuplicatePatientMatch other = best.get(key);
+				if (other == null || other.getScore() < match.getScore())
+					best.put(key, match);
+			}
+		}
+		
+		List<DuplicatePatientMatch> matches = new ArrayList<DuplicatePatientMatch>(best.values());
+		Collections.sort(matches);
+		if (maxResults != null && matches.size() > maxResults)
+			matches = new ArrayList<DuplicatePatientMatch>(matches.subList(0, maxResults));
+		return matches;
+	}
+	
+	/**
+	 * Scores a pair of names
+	 * 
+	 * @return the score between 0 and 1
+	 */
+	double score(Candidate a, Candidate b) {
+		double score = FAMILY_NAME_WEIGHT * nameScore(a.familyName, a.familyKey, b.familyName, b.familyKey);
+		score += GIVEN_NAME_WEIGHT * nameScore(a.givenName, a.givenKey, b.givenName, b.givenKey);
+		
+		if (a.birthday == UNKNOWN || b.birthday == UNKNOWN) {
+			score += BIRTHDATE_WEIGHT / 2;
+		} else {
+			long days = Math.abs(a.birthday - b.birthday);
+			if (days <= birthdateWindowDays) {
+				double birthdateScore = birthdateWindowDays == 0 ? 1 : 1 - 0.5 * days / birthdateWindowDays;
+				if (a.birthdateEstimated || b.birthdateEstimated)
+					birthdateScore = Math.max(birthdateScore, 0.75);
+				score += BIRTHDATE_WEIGHT * birthdateScore;
+			}
+		}
+		return score;
+	}
+	
+	/**
+	 * Scores two normalized names: 1 if they are the same, 0.8 if they sound alike, up to 0.9 if
+	 * they are only a few typos apart and 0.5 for an initial against a name starting with it
+	 */
+	static double nameScore(String nameA, String keyA, String nameB, String keyB) {
+		if (nameA == null || nameB == null)
+			return 0;
+		if (nameA.equals(nameB))
+			return 1;
+		// an initial against a full name
+		if ((nameA.length() == 1 || nameB.length() == 1))
+			return nameA.charAt(0) == nameB.charAt(0) ? 0.5 : 0;
+		
+		double score = keyA != null && keyA.equals(keyB) ? 0.8 : 0;
+		double similarity = 1 - (double) editDistance(nameA, nameB) / Math.max(nameA.length(), nameB.length());
+		if (similarity >= 0.75)
+			score = Math.max(score, 0.9 * similarity);
+		return score;
+	}
+	
+	/**
+	 * @return the number of letters to insert, delete or replace to turn one word into the other
+	 */
+	static int editDistance(String a, String b) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int replace = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+	
+	private void addToBlock(String key, Candidate candidate) {
+		List<Candidate> block = blocks.get(key);
+		if (block == null) {
+			block = new ArrayList<Candidate>(2);
+			blocks.put(key, block);
+		}
+		block.add(candidate);
+	}
+	
+	/**
+	 * Lower cases a name and removes its accents and everything else that is not a letter
+	 */
+	private static String normalizeName(String name) {
+		StringBuilder sb = new StringBuilder();
+		for (String word : PatientSearchIndex.tokenize(name))
+			for (char c : word.toCharArray())
+				if (Character.isLetter(c))
+					sb.append(c);
+		return sb.length() == 0 ? null : sb.toString();
+	}
+	
+	/**
+	 * Scores all the pairs of a group of blocks
+	 */
+	private class BlockScorer implements Callable<List<DuplicatePatientMatch>> {
+		
+		private final List<List<Candidate>> blocksToScore;
+		
+		BlockScorer(List<List<Candidate>> blocksToScore) {
+			this.blocksToScore = blocksToScore;
+		}
+		
+		public List<DuplicatePatientMatch> call() {
+			List<DuplicatePatientMatch> matches = new ArrayList<DuplicatePatientMatch>();
+			for (List<Candidate> block : blocksToScore) {
+				Collections.sort(block, BY_BIRTHDAY);
+				int known = 0;
+				while (known < block.size() && block.get(known).birthday != UNKNOWN)
+					known++;
+				
+				for (int i = 0; i < known; i++)
+					for (int j = i + 1; j < known && block.get(j).birthday - block.get(i).birthday <= birthdateWindowDays; j++)
+						compare(block.get(i), block.get(j), matches);
+				
+				// a patient without a birthdate could be any other patient of the block
+				if (block.size() <= MAX_BLOCK_SIZE_WITHOUT_BIRTHDATE)
+					for (int i = known; i < block.size(); i++)
+						for (int j = 0; j < i; j++)
+							compare(block.get(i), block.get(j), matches);
+			}
+			return matches;
+		}
+		
+		private void compare(Candidate a, Candidate b, List<DuplicatePatientMatch> matches) {
+			if (a.patientId.equals(b.patientId))
+				return;
+			double score = score(a, b);
+			if (score >= minimumScore)
+				matches.add(a.patientId < b.patientId ? new DuplicatePatientMatch(a.patientId, b.patientId, score)
+				        : new DuplicatePatientMatch(b.patientId, a.patientId, score));
+		}
+	}
+	
+	/**
+	 * One name of a patient with the keys it is compared on
+	 */
+	static class Candidate {
+		
+		private final Integer patientId;
+		
+		private final String gender;
+		
+		/**
+		 * The birthdate in days since 1970, or {@link DuplicatePatientDetector#UNKNOWN}
+		 */
+		private final long birthday;
+		
+		private final boolean birthdateEstimated;
+		
+		private final String givenName;
+		
+		private final String givenKey;
+		
+		private final String familyName;
+		
+		private final String familyKey;
+		
+		Candidate(Integer patientId, String gender, Date birthdate, boolean birthdateEstimated, String givenName,
+		    String familyName) {
+			this.patientId = patientId;
+			this.gender = gender == null || gender.trim().length() == 0 ? null : gender.trim().toUpperCase();
+			this.birthday = birthdate == null ? UNKNOWN : birthdate.getTime() / MILLIS_PER_DAY;
+			this.birthdateEstimated = birthdateEstimated;
+			this.givenName = normalizeName(givenName);
+			this.givenKey = this.givenName == null ? null : PatientSearchIndex.soundex(this.givenName);
+			this.familyName = normalizeName(familyName);
+			this.familyKey = this.familyName == null ? null : PatientSearchIndex.soundex(this.familyName);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+/**
+ * A pair of patients that are likely to be the same person, as found by the
+ * {@link DuplicatePatientDetector}. The patient with the lower id comes first. Matches are ordered
+ * by descending score, then by patient ids.
+ * 
+ * @since 1.9
+ */
+public class DuplicatePatientMatch implements Comparable<DuplicatePatientMatch> {
+	
+	private final Integer patientId;
+	
+	private final Integer duplicatePatientId;
+	
+	private final double score;
+	
+	/**
+	 * @param patientId the id of the first patient
+	 * @param duplicatePatientId the id of the patient that is likely to be the same person
+	 * @param score how alike the two patients are, between 0 and 1
+	 */
+	public DuplicatePatientMatch(Integer patientId, Integer duplicatePatientId, double score) {
+		this.patientId = patientId;
+		this.duplicatePatientId = duplicatePatientId;
+		this.score = score;
+	}
+	
+	/**
+	 * @return the id of the first patient
+	 */
+	public Integer getPatientId() {
+		return patientId;
+	}
+	
+	/**
+	 * @return the id of the patient that is likely to be the same person
+	 */
+	public Integer getDuplicatePatientId() {
+		return duplicatePatientId;
+	}
+	
+	/**
+	 * @return how alike the two patients are, between 0 and 1
+	 */
+	public double getScore() {
+		return score;
+	}
+	
+	/**
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	public int compareTo(DuplicatePatientMatch other) {
+		int c = Double.compare(other.score, score);
+		if (c == 0)
+			c = patientId.compareTo(other.patientId);
+		return c != 0 ? c : duplicatePatientId.compareTo(other.duplicatePatientId);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "DuplicatePatientMatch[" + patientId + ", " + duplicatePatientId + ", score=" + score + "]";
+	}
+}
@@ -0,0 +1,752 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * An in-memory index of the names and identifiers of all non voided patients, used by the patient
+ * DAO to answer patient searches without running a LIKE query over the person_name and
+ * patient_identifier tables. <br/>
+ * <br/>
+ * Names are split into lower case tokens with their accents removed, which are kept in a sorted
+ * map so that a prefix match is a single range lookup, and each token is also indexed by its
+ * soundex key so that names that sound alike are found too. Identifiers are indexed in a
+ * normalized form without separators or leading zeros, so that "0412-7", "412-7" and "4127" all
+ * find the same patient. <br/>
+ * <br/>
+ * The index is loaded from the database by the DAO on the first search (see {@link #newLoader()})
+ * and then kept up to date by the save handlers of {@link Patient} and {@link PersonName}, which
+ * call {@link #reindexAfterCommit(Person)} so that changes only become visible once they are
+ * committed. Changes made while the index is being loaded are recorded by the running loaders and
+ * replayed on top of what they read when they finish. <br/>
+ * <br/>
+ * This class is thread safe.
+ * 
+ * @since 1.9
+ */
+public class PatientSearchIndex {
+	
+	/**
+	 * The rank of a query word that is equal to a word of the patient's names, or of a query that
+	 * is equal to one of the patient's identifiers
+	 */
+	public static final int RANK_EXACT = 3;
+	
+	/**
+	 * The rank of a query word that is the start of a word of the patient's names
+	 */
+	public static final int RANK_PREFIX = 2;
+	
+	/**
+	 * The rank of a query word that has the same soundex key as a word of the patient's names
+	 */
+	public static final int RANK_SOUNDS_LIKE = 1;
+	
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+	
+	private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s,]+");
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private Contents contents = new Contents();
+	
+	private boolean loaded = false;
+	
+	/**
+	 * Incremented every time the index is cleared, so that a load that was running at the time is
+	 * not kept
+	 */
+	private final AtomicLong generation = new AtomicLong();
+	
+	/**
+	 * The loaders that have not finished yet, which record the changes made to the index meanwhile
+	 */
+	private final Set<Loader> loaders = new HashSet<Loader>();
+	
+	/**
+	 * @return true if the index has been loaded from the database and can answer searches
+	 */
+	public boolean isLoaded() {
+		lock.readLock().lock();
+		try {
+			return loaded;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Starts loading the index. The names and identifiers given to the returned loader replace the
+	 * current contents of the index when {@link Loader#finish()} is called, together with the
+	 * changes made to the index in the meantime. A loader that is not finished has to be
+	 * {@link Loader#cancel() cancelled}.
+	 * 
+	 * @return a new loader
+	 */
+	public Loader newLoader() {
+		lock.writeLock().lock();
+		try {
+			Loader loader = new Loader(generation.get());
+			loaders.add(loader);
+			return loader;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds the patients with a name matching all the words of the given query. A word that is
+	 * shorter than <code>minChars</code> has to be equal to a word of a name, longer words can
+	 * also be the start of a word or sound like a word.
+	 * 
+	 * @param query the name to search for
+	 * @param minChars the minimum number of characters for a word to match as a prefix
+	 * @return the rank of each matching patient keyed by patient id, best match first
+	 * @should find patients by the start of any part of their name
+	 * @should require every word of the query to match
+	 * @should find names that sound alike after the better matches
+	 * @should only match short words exactly
+	 * @should ignore case and accents
+	 */
+	public Map<Integer, Integer> searchNames(String query, int minChars) {
+		Set<String> words = tokenize(query);
+		if (words.isEmpty())
+			return Collections.emptyMap();
+		
+		lock.readLock().lock();
+		try {
+			Map<Integer, Integer> ranks = null;
+			for (String word : words) {
+				Map<Integer, Integer> wordRanks = contents.matchWord(word, word.length() >= minChars);
+				if (ranks == null) {
+					ranks = wordRanks;
+				} else {
+					ranks.keySet().retainAll(wordRanks.keySet());
+					for (Map.Entry<Integer, Integer> e : ranks.entrySet())
+						e.setValue(e.getValue() + wordRanks.get(e.getKey()));
+				}
+				if (ranks.isEmpty())
+					break;
+			}
+			return contents.sort(ranks);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Finds the patients with an identifier that is the same as the given one once both are
+	 * normalized
+	 * 
+	 * @param identifier the identifier to search for
+	 * @return the rank of each matching patient keyed by patient id, in name order
+	 * @should find patients ignoring separators case and leading zeros
+	 */
+	public Map<Integer, Integer> searchIdentifier(String identifier) {
+		String key = normalizeIdentifier(identifier);
+		if (key == null)
+			return Collections.emptyMap();
+		
+		lock.readLock().lock();
+		try {
+			Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+			Set<Integer> patientIds = contents.identifiers.get(key);
+			if (patientIds != null)
+				for (Integer patientId : patientIds)
+					ranks.put(patientId, RANK_EXACT);
+			return contents.sort(ranks);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Updates the index with the current state of the given person once the current transaction
+	 * commits, or right away if there is no transaction. A voided person is removed from the
+	 * index, a patient is put with its names and identifiers, and the names of any other person
+	 * are updated if it is already in the index.
+	 * 
+	 * @param person the saved person
+	 * @should update the index when the transaction commits
+	 */
+	public void reindexAfterCommit(Person person) {
+		afterCommit(person, false);
+	}
+	
+	/**
+	 * Removes the given person from the index once the current transaction commits, or right away
+	 * if there is no transaction
+	 * 
+	 * @param person the deleted person
+	 */
+	public void removeAfterCommit(Person person) {
+		afterCommit(person, true);
+	}
+	
+	/**
+	 * @return true if the current transaction changed patients that will only be reindexed when it
+	 *         commits
+	 */
+	public boolean hasPendingChanges() {
+		return TransactionSynchronizationManager.hasResource(this);
+	}
+	
+	/**
+	 * Updates the index with the current state of the given person
+	 * 
+	 * @param person the person
+	 * @see #reindexAfterCommit(Person)
+	 */
+	public void reindex(Person person) {
+		if (person == null || person.getPersonId() == null)
+			return;
+		
+		if (person.isVoided()) {
+			remove(person.getPersonId());
+			return;
+		}
+		
+		// a load that starts after this check reads the committed person from the database
+		if (!isTracking())
+			return;
+		
+		boolean patient = person instanceof Patient;
+		Entry entry = new Entry(person.getPersonId());
+		for (PersonName name : person.getNames())
+			if (!name.isVoided())
+				entry.addName(name.getGivenName(), name.getMiddleName(), name.getFamilyName(), name.getFamilyName2());
+		entry.setSortName(person.getPersonName());
+		if (patient)
+			for (PatientIdentifier identifier : ((Patient) person).getIdentifiers())
+				if (!identifier.isVoided())
+					entry.addIdentifier(identifier.getIdentifier());
+		
+		apply(new Change(person.getPersonId(), entry, patient));
+	}
+	
+	/**
+	 * Removes a patient from the index
+	 * 
+	 * @param patientId the patient id
+	 */
+	public void remove(Integer patientId) {
+		apply(new Change(patientId, null, true));
+	}
+	
+	/**
+	 * Empties the index, it will be loaded again on the next search
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			generation.incrementAndGet();
+			contents = new Contents();
+			loaded = false;
+			loaders.clear();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return the number of patients in the index
+	 */
+	public int getSize() {
+		lock.readLock().lock();
+		try {
+			return contents.entries.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatientSearchIndex[loaded=" + isLoaded() + ", size=" + getSize() + "]";
+	}
+	
+	/**
+	 * @return true if the index is loaded or being loaded, so that changes have to be applied to it
+	 */
+	private boolean isTracking() {
+		lock.readLock().lock();
+		try {
+			return loaded || !loaders.isEmpty();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Applies a change to the index if it is loaded, and records it in the running loaders so that
+	 * they replay it on what they read
+	 * 
+	 * @param change the change
+	 */
+	private void apply(Change change) {
+		lock.writeLock().lock();
+		try {
+			if (loaded)
+				change.applyTo(contents);
+			for (Loader loader : loaders)
+				loader.changes.add(change);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void afterCommit(Person person, boolean remove) {
+		if (person == null)
+			return;
+		
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			if (remove)
+				remove(person.getPersonId());
+			else
+				reindex(person);
+			return;
+		}
+		
+		Map<Person, Boolean> pending = (Map<Person, Boolean>) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			final Map<Person, Boolean> persons = new IdentityHashMap<Person, Boolean>();
+			TransactionSynchronizationManager.bindResource(this, persons);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCommit() {
+					for (Map.Entry<Person, Boolean> e : persons.entrySet()) {
+						if (e.getValue())
+							remove(e.getKey().getPersonId());
+						else
+							reindex(e.getKey());
+					}
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(PatientSearchIndex.this);
+				}
+			});
+			pending = persons;
+		}
+		
+		if (remove || !pending.containsKey(person))
+			pending.put(person, remove);
+	}
+	
+	/**
+	 * Splits a name into lower case words without accents
+	 * 
+	 * @param name the name, may be null
+	 * @return the words of the name
+	 */
+	static Set<String> tokenize(String name) {
+		Set<String> words = new LinkedHashSet<String>();
+		if (name == null)
+			return words;
+		
+		String normalized = DIACRITICS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+		for (String word : WORD_SEPARATORS.split(normalized.toLowerCase()))
+			if (word.length() > 0)
+				words.add(word);
+		return words;
+	}
+	
+	/**
+	 * Removes everything but letters and digits from an identifier, upper cases it and strips its
+	 * leading zeros
+	 * 
+	 * @param identifier the identifier, may be null
+	 * @return the normalized identifier or null if nothing is left of it
+	 * @should remove separators and leading zeros
+	 */
+	static String normalizeIdentifier(String identifier) {
+		if (identifier == null)
+			return null;
+		
+		StringBuilder sb = new StringBuilder(identifier.length());
+		for (char c : identifier.toUpperCase().toCharArray())
+			if (Character.isLetterOrDigit(c) && (c != '0' || sb.length() > 0))
+				sb.append(c);
+		if (sb.length() == 0)
+			return identifier.indexOf('0') >= 0 ? "0" : null;
+		return sb.toString();
+	}
+	
+	/**
+	 * Computes the American soundex code of a word
+	 * 
+	 * @param word a lower case word
+	 * @return the soundex code or null if the word does not start with a letter from a to z
+	 * @should compute the soundex code
+	 */
+	static String soundex(String word) {
+		if (word.length() == 0 || word.charAt(0) < 'a' || word.charAt(0) > 'z')
+			return null;
+		
+		final String codes = "01230120022455012623010202";
+		StringBuilder sb = new StringBuilder(4);
+		sb.append(Character.toUpperCase(word.charAt(0)));
+		char last = codes.charAt(word.charAt(0) - 'a');
+		for (int i = 1; i < word.length() && sb.length() < 4; i++) {
+			char c = word.charAt(i);
+			if (c < 'a' || c > 'z')
+				continue;
+			char code = codes.charAt(c - 'a');
+			if (code != '0' && code != last)
+				sb.append(code);
+			// h and w don't separate letters with the same code, vowels do
+			if (c != 'h' && c != 'w')
+				last = code;
+		}
+		while (sb.length() < 4)
+			sb.append('0');
+		return sb.toString();
+	}
+	
+	/**
+	 * Collects the names and identifiers read from the database while loading the index
+	 */
+	public class Loader {
+		
+		private final long startGeneration;
+		
+		private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+		
+		private final List<Change> changes = new ArrayList<Change>();
+		
+		private Loader(long startGeneration) {
+			this.startGeneration = startGeneration;
+		}
+		
+		/**
+		 * Adds a name of a patient. The first name added for a patient is used to order the search
+		 * results, so preferred names should be added first.
+		 * 
+		 * @param patientId the patient id
+		 * @param givenName the given name, may be null
+		 * @param middleName the middle name, may be null
+		 * @param familyName the family name, may be null
+		 * @param familyName2 the second family name, may be null
+		 */
+		public void addName(Integer patientId, String givenName, String middleName, String familyName, String familyName2) {
+			Entry entry = getEntry(patientId);
+			entry.addName(givenName, middleName, familyName, familyName2);
+			if (entry.sortName == null)
+				entry.sortName = sortName(givenName, middleName, familyName);
+		}
+		
+		/**
+		 * Adds an identifier of a patient
+		 * 
+		 * @param patientId the patient id
+		 * @param identifier the identifier
+		 */
+		public void addIdentifier(Integer patientId, String identifier) {
+			getEntry(patientId).addIdentifier(identifier);
+		}
+		
+		/**
+		 * Replaces the contents of the index with what was added to this loader and the changes made
+		 * to the index since the loader was created
+		 * 
+		 * @return false if the index was cleared since the loader was created, in which case nothing
+		 *         is replaced
+		 * @should keep the changes made while loading
+		 * @should not replace the contents of an index cleared while loading
+		 */
+		public boolean finish() {
+			Contents loadedContents = new Contents();
+			for (Entry entry : entries.values())
+				loadedContents.add(entry);
+			
+			lock.writeLock().lock();
+			try {
+				if (!loaders.remove(this) || generation.get() != startGeneration)
+					return false;
+				for (Change change : changes)
+					change.applyTo(loadedContents);
+				contents = loadedContents;
+				loaded = true;
+				return true;
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+		
+		/**
+		 * Stops recording the changes made to the index, for a load that is given up before it is
+		 * finished
+		 */
+		public void cancel() {
+			lock.writeLock().lock();
+			try {
+				loaders.remove(this);
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+		}
+		
+		private Entry getEntry(Integer patientId) {
+			Entry entry = entries.get(patientId);
+			if (entry == null) {
+				entry = new Entry(patientId);
+				entries.put(patientId, entry);
+			}
+			return entry;
+		}
+	}
+	
+	private static String sortName(String givenName, String middleName, String familyName) {
+		StringBuilder sb = new StringBuilder();
+		for (String part : new String[] { givenName, middleName, familyName })
+			sb.append(part == null ? "" : part.toLowerCase()).append(' ');
+		return sb.toString();
+	}
+	
+	/**
+	 * The words and identifiers of one patient
+	 */
+	private static class Entry {
+		
+		private final Integer patientId;
+		
+		private final Set<String> words = new HashSet<String>();
+		
+		private final Set<String> identifiers = new HashSet<String>();
+		
+		private String sortName;
+		
+		Entry(Integer patientId) {
+			this.patientId = patientId;
+		}
+		
+		void addName(String... parts) {
+			for (String part : parts)
+				words.addAll(tokenize(part));
+		}
+		
+		void addIdentifier(String identifier) {
+			String key = normalizeIdentifier(identifier);
+			if (key != null)
+				identifiers.add(key);
+		}
+		
+		void setSortName(PersonName name) {
+			sortName = name == null ? "" : sortName(name.getGivenName(), name.getMiddleName(), name.getFamilyName());
+		}
+	}
+	
+	/**
+	 * A reindexed or removed person, kept so that it can be applied both to the loaded index and to
+	 * the contents a loader is building
+	 */
+	private static class Change {
+		
+		private final Integer personId;
+		
+		/**
+		 * The new names and identifiers of the person, null if it is removed
+		 */
+		private final Entry entry;
+		
+		/**
+		 * Whether the person is a patient, the names of other persons are only updated if they are
+		 * already in the index and keep their identifiers
+		 */
+		private final boolean patient;
+		
+		Change(Integer personId, Entry entry, boolean patient) {
+			this.personId = personId;
+			this.entry = entry;
+			this.patient = patient;
+		}
+		
+		void applyTo(Contents contents) {
+			Entry existing = contents.entries.get(personId);
+			if (entry == null) {
+				contents.remove(personId);
+				return;
+			}
+			if (!patient && existing == null)
+				return;
+			
+			Entry updated = entry;
+			if (!patient) {
+				// copied since the same change is applied to several contents
+				updated = new Entry(personId);
+				updated.words.addAll(entry.words);
+				updated.identifiers.addAll(existing.identifiers);
+				updated.sortName = entry.sortName;
+			}
+			contents.remove(personId);
+			contents.add(updated);
+		}
+	}
+	
+	/**
+	 * The lookup maps of the index, replaced as a whole when the index is loaded
+	 */
+	private static class Contents {
+		
+		private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+		
+		private final TreeMap<String, Set<Integer>> words = new TreeMap<String, Set<Integer>>();
+		
+		private final Map<String, Set<Integer>> soundexKeys = new HashMap<String, Set<Integer>>();
+		
+		private final Map<String, Set<Integer>> identifiers = new HashMap<String, Set<Integer>>();
+		
+		void add(Entry entry) {
+			entries.put(entry.patientId, entry);
+			for (String word : entry.words) {
+				addTo(words, word, entry.patientId);
+				String key = soundex(word);
+				if (key != null)
+					addTo(soundexKeys, key, entry.patientId);
+			}
+			for (String identifier : entry.identifiers)
+				addTo(identifiers, identifier, entry.patientId);
+		}
+		
+		void remove(Integer patientId) {
+			Entry entry = entries.remove(patientId);
+			if (entry == null)
+				return;
+			for (String word : entry.words) {
+				removeFrom(words, word, patientId);
+				String key = soundex(word);
+				if (key != null)
+					removeFrom(soundexKeys, key, patientId);
+			}
+			for (String identifier : entry.identifiers)
+				removeFrom(identifiers, identifier, patientId);
+		}
+		
+		/**
+		 * @return the best rank of the given word for each patient it matches
+		 */
+		Map<Integer, Integer> matchWord(String word, boolean matchPrefix) {
+			Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+			if (!matchPrefix) {
+				Set<Integer> patientIds = words.get(word);
+				if (patientIds != null)
+					for (Integer patientId : patientIds)
+						ranks.put(patientId, RANK_EXACT);
+				return ranks;
+			}
+			
+			for (Map.Entry<String, Set<Integer>> e : words.subMap(word, word + Character.MAX_VALUE).entrySet()) {
+				int rank = e.getKey().equals(word) ? RANK_EXACT : RANK_PREFIX;
+				for (Integer patientId : e.getValue()) {
+					Integer current = ranks.get(patientId);
+					if (current == null || current < rank)
+						ranks.put(patientId, rank);
+				}
+			}
+			
+			String key = soundex(word);
+			Set<Integer> soundsLike = key == null ? null : soundexKeys.get(key);
+			if (soundsLike != null)
+				for (Integer patientId : soundsLike)
+					if (!ranks.containsKey(patientId))
+						ranks.put(patientId, RANK_SOUNDS_LIKE);
+			return ranks;
+		}
+		
+		/**
+		 * Orders matches by descending rank, then by name and patient id so that results are
+		 * stable between calls
+		 */
+		Map<Integer, Integer> sort(final Map<Integer, Integer> ranks) {
+			List<Integer> patientIds = new ArrayList<Integer>(ranks.keySet());
+			Collections.sort(patientIds, new Comparator<Integer>() {
+				
+				public int compare(Integer a, Integer b) {
+					int c = ranks.get(b) - ranks.get(a);
+					if (c == 0)
+						c = sortName(a).compareTo(sortName(b));
+					return c != 0 ? c : a - b;
+				}
+			});
+			
+			Map<Integer, Integer> sorted = new LinkedHashMap<Integer, Integer>();
+			for (Integer patientId : patientIds)
+				sorted.put(patientId, ranks.get(patientId));
+			return sorted;
+		}
+		
+		private String sortName(Integer patientId) {
+			String sortName = entries.get(patientId).sortName;
+			return sortName == null ? "" : sortName;
+		}
+		
+		private static void addTo(Map<String, Set<Integer>> map, String key, Integer patientId) {
+			Set<Integer> patientIds = map.get(key);
+			if (patientIds == null) {
+				patientIds = new HashSet<Integer>();
+				map.put(key, patientIds);
+			}
+			patientIds.add(patientId);
+		}
+		
+		private static void removeFrom(Map<String, Set<Integer>> map, String key, Integer patientId) {
+			Set<Integer> patientIds = map.get(key);
+			if (patientIds != null) {
+				patientIds.remove(patientId);
+				if (patientIds.isEmpty())
+					map.remove(key);
+			}
+		}
+	}
+}
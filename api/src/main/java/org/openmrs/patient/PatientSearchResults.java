@@ -0,0 +1,87 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmrs.api.PatientService;
+
+/**
+ * One page of the results of a patient search, together with the total number of matches.
+ * Patients are identified by their ids, in the order in which they were ranked, so that callers
+ * only need to load the patients they actually show.
+ * 
+ * @see PatientService#searchPatients(String, Integer, Integer)
+ * @since 1.9
+ */
+public class PatientSearchResults {
+	
+	private final int count;
+	
+	private final Map<Integer, Integer> ranks;
+	
+	/**
+	 * @param count the total number of matching patients
+	 * @param ranks the match rank of the patients of this page keyed by patient id, in result
+	 *            order
+	 */
+	public PatientSearchResults(int count, Map<Integer, Integer> ranks) {
+		this.count = count;
+		this.ranks = Collections.unmodifiableMap(new LinkedHashMap<Integer, Integer>(ranks));
+	}
+	
+	/**
+	 * @return the total number of matching patients, which can be more than the number of patients
+	 *         of this page
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the ids of the patients of this page, best match first
+	 */
+	public List<Integer> getPatientIds() {
+		return new ArrayList<Integer>(ranks.keySet());
+	}
+	
+	/**
+	 * @return the match rank of the patients of this page keyed by patient id, best match first.
+	 *         The rank is 0 when the search was not ranked.
+	 * @see PatientSearchIndex#RANK_EXACT
+	 */
+	public Map<Integer, Integer> getRanks() {
+		return ranks;
+	}
+	
+	/**
+	 * @param patientId the patient id
+	 * @return the match rank of the given patient or null if it is not on this page
+	 */
+	public Integer getRank(Integer patientId) {
+		return ranks.get(patientId);
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PatientSearchResults[count=" + count + ", ranks=" + ranks + "]";
+	}
+}
@@ -53,6 +53,9 @@ public class EvaluationContext {
 	
 	private Cohort baseCohort;
 	
+	// false once a base cohort other than all patients has been set
+	private boolean baseCohortAllPatients = true;
+	
 	private Map<Parameterizable, Map<Parameter, Object>> parameterValues = new HashMap<Parameterizable, Map<Parameter, Object>>();
 	
 	private transient Map<String, Object> cache = new HashMap<String, Object>();
@@ -407,5 +410,14 @@ public class EvaluationContext {
 	public void setBaseCohort(Cohort baseCohort) {
 		clearCache();
 		this.baseCohort = baseCohort;
+		this.baseCohortAllPatients = baseCohort == null;
+	}
+	
+	/**
+	 * @return true if the base cohort has not been set, so that it is all patients
+	 * @since 1.9
+	 */
+	public boolean isBaseCohortAllPatients() {
+		return baseCohortAllPatients;
 	}
 }
@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Cohort;
+import org.openmrs.api.context.Context;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Iterates over the rows of a data set one batch of patients at a time, so that only the objects
+ * fetched for one batch are held at once. The objects of a batch are evicted from the hibernate
+ * session before the next batch is fetched. Each call to {@link DataSet#iterator()} fetches the
+ * data again.
+ * 
+ * @param <E> the type of the objects the rows are made from
+ * @since 1.9
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public abstract class PatientBatchIterator<E> implements Iterator<Map<String, Object>> {
+	
+	private static final Log log = LogFactory.getLog(PatientBatchIterator.class);
+	
+	private final List<Integer> patientIds;
+	
+	private final int batchSize;
+	
+	private int nextBatchStart = 0;
+	
+	private List<E> batch = Collections.emptyList();
+	
+	private Iterator<E> batchIterator = batch.iterator();
+	
+	/**
+	 * @param patients the patients to fetch rows for
+	 * @param batchSize the number of patients fetched at a time, or null to use the
+	 *            {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 */
+	public PatientBatchIterator(Cohort patients, Integer batchSize) {
+		this.patientIds = new ArrayList<Integer>(patients.getMemberIds());
+		this.batchSize = batchSize != null && batchSize > 0 ? batchSize : getDefaultBatchSize();
+	}
+	
+	/**
+	 * Fetches the objects of the given batch of patients
+	 * 
+	 * @param patients the patients of the batch
+	 * @return the objects to make rows from
+	 */
+	protected abstract List<E> fetch(Cohort patients);
+	
+	/**
+	 * @param element one of the fetched objects
+	 * @return the row for it, keyed by the column keys of the data set definition
+	 */
+	protected abstract Map<String, Object> toRow(E element);
+	
+	/**
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public boolean hasNext() {
+		while (!batchIterator.hasNext()) {
+			evictBatch();
+			if (nextBatchStart >= patientIds.size())
+				return false;
+			
+			int batchEnd = Math.min(nextBatchStart + batchSize, patientIds.size());
+			batch = fetch(new Cohort(patientIds.subList(nextBatchStart, batchEnd)));
+			batchIterator = batch.iterator();
+			nextBatchStart = batchEnd;
+		}
+		return true;
+	}
+	
+	/**
+	 * @see java.util.Iterator#next()
+	 */
+	public Map<String, Object> next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return toRow(batchIterator.next());
+	}
+	
+	/**
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	private void evictBatch() {
+		for (E element : batch)
+			Context.evictFromSession(element);
+		batch = Collections.emptyList();
+	}
+	
+	/**
+	 * @return the value of the {@link OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 */
+	private static int getDefaultBatchSize() {
+		String gp = Context.getAdministrationService().getGlobalProperty(OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE);
+		try {
+			if (gp != null && Integer.valueOf(gp.trim()) > 0)
+				return Integer.valueOf(gp.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Invalid value for global property " + OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE + ": " + gp);
+		}
+		return OpenmrsConstants.GP_PATIENT_SET_BATCH_SIZE_DEFAULT_VALUE;
+	}
+}
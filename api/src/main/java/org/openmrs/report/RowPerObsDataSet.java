@@ -13,17 +13,23 @@
  */
 package org.openmrs.report;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.openmrs.Cohort;
+import org.openmrs.Concept;
 import org.openmrs.Obs;
 import org.openmrs.api.context.Context;
 
 /**
- * A dataset with one-row-per-obs.
+ * A dataset with one-row-per-obs. The obs are either given as a list with {@link #setData(List)},
+ * or streamed for the patients given with {@link #setPatients(Cohort)}: the obs are then fetched
+ * one batch of patients at a time while the rows are iterated over, so that large data sets can
+ * be rendered without holding all of their obs.
  * 
  * @see RowPerObsDataSetDefinition
  * @deprecated see reportingcompatibility module
@@ -37,9 +43,34 @@ public class RowPerObsDataSet implements DataSet<Object> {
 	
 	private List<Obs> data;
 	
+	private Cohort patients;
+	
+	private Integer batchSize;
+	
 	public RowPerObsDataSet() {
 	}
 	
+	/**
+	 * @param obs an obs of this data set
+	 * @return the row for the obs
+	 */
+	private static Map<String, Object> toRow(Obs obs) {
+		Locale locale = Context.getLocale();
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("patientId", obs.getPersonId());
+		ret.put("question", obs.getConcept().getName(locale, false));
+		ret.put("questionConceptId", obs.getConcept().getConceptId());
+		ret.put("answer", obs.getValueAsString(locale));
+		if (obs.getValueCoded() != null)
+			ret.put("answerConceptId", obs.getValueCoded());
+		ret.put("obsDatetime", obs.getObsDatetime());
+		if (obs.getEncounter() != null)
+			ret.put("encounterId", obs.getEncounter().getEncounterId());
+		if (obs.getObsGroup() != null)
+			ret.put("obsGroupId", obs.getObsGroup().getObsId());
+		return ret;
+	}
+	
 	/**
 	 * This is wrapped around (List<Obs>).iterator() This implementation is NOT thread-safe, so do
 	 * not access the wrapped iterator.
@@ -63,21 +94,7 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		 * @see java.util.Iterator#next()
 		 */
 		public Map<String, Object> next() {
-			Locale locale = Context.getLocale();
-			Obs obs = iter.next();
-			Map<String, Object> ret = new HashMap<String, Object>();
-			ret.put("patientId", obs.getPersonId());
-			ret.put("question", obs.getConcept().getName(locale, false));
-			ret.put("questionConceptId", obs.getConcept().getConceptId());
-			ret.put("answer", obs.getValueAsString(locale));
-			if (obs.getValueCoded() != null)
-				ret.put("answerConceptId", obs.getValueCoded());
-			ret.put("obsDatetime", obs.getObsDatetime());
-			if (obs.getEncounter() != null)
-				ret.put("encounterId", obs.getEncounter().getEncounterId());
-			if (obs.getObsGroup() != null)
-				ret.put("obsGroupId", obs.getObsGroup().getObsId());
-			return ret;
+			return toRow(iter.next());
 		}
 		
 		/**
@@ -89,18 +106,51 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		
 	}
 	
+	/**
+	 * Fetches the obs matching the definition one batch of patients at a time
+	 */
+	class StreamingIterator extends PatientBatchIterator<Obs> {
+		
+		public StreamingIterator() {
+			super(patients, batchSize);
+		}
+		
+		/**
+		 * @see org.openmrs.report.PatientBatchIterator#fetch(org.openmrs.Cohort)
+		 */
+		@Override
+		protected List<Obs> fetch(Cohort batch) {
+			return Context.getObsService().getObservations(batch, new ArrayList<Concept>(definition.getQuestions()),
+			    definition.getFromDate(), definition.getToDate());
+		}
+		
+		/**
+		 * @see org.openmrs.report.PatientBatchIterator#toRow(java.lang.Object)
+		 */
+		@Override
+		protected Map<String, Object> toRow(Obs obs) {
+			return RowPerObsDataSet.toRow(obs);
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.report.DataSet#iterator()
+	 * @should stream the obs of the patients one batch at a time
 	 */
 	public Iterator<Map<String, Object>> iterator() {
+		if (data == null && patients != null)
+			return new StreamingIterator();
 		Iterator<Map<String, Object>> ret = new HelperIterator(data.iterator());
 		return ret;
 	}
 	
 	/**
-	 * @return the data
+	 * @return the data, fetched all at once if this data set is streamed
 	 */
 	public List<Obs> getData() {
+		if (data == null && patients != null)
+			return Context.getObsService().getObservations(patients, new ArrayList<Concept>(definition.getQuestions()),
+			    definition.getFromDate(), definition.getToDate());
 		return data;
 	}
 	
@@ -111,6 +161,41 @@ public class RowPerObsDataSet implements DataSet<Object> {
 		this.data = data;
 	}
 	
+	/**
+	 * @return the patients whose obs are streamed, null if the data was given as a list
+	 * @since 1.9
+	 */
+	public Cohort getPatients() {
+		return patients;
+	}
+	
+	/**
+	 * Makes this data set stream the obs of the given patients that match the definition
+	 * 
+	 * @param patients the patients to stream the obs of
+	 * @since 1.9
+	 */
+	public void setPatients(Cohort patients) {
+		this.patients = patients;
+	}
+	
+	/**
+	 * @return the number of patients whose obs are fetched at a time, null for the default
+	 * @since 1.9
+	 */
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of patients whose obs are fetched at a time, null for the
+	 *            {@link org.openmrs.util.OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global property
+	 * @since 1.9
+	 */
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+	
 	/**
 	 * @return the definition
 	 */
@@ -13,14 +13,9 @@
  */
 package org.openmrs.report;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
-import org.openmrs.Concept;
-import org.openmrs.Obs;
 import org.openmrs.api.context.Context;
 
 /**
@@ -60,10 +55,11 @@ public class RowPerObsDataSetProvider implements DataSetProvider {
 		RowPerObsDataSet ret = new RowPerObsDataSet();
 		ret.setDefinition(definition);
 		ret.setEvaluationContext(evalContext);
-		List<Concept> concepts = new ArrayList<Concept>(definition.getQuestions());
-		List<Obs> list = Context.getObsService().getObservations(patients, concepts, definition.getFromDate(),
-		    definition.getToDate());
-		ret.setData(list);
+		
+		// the obs are fetched in batches of patients while the data set is iterated over
+		if (patients == null)
+			patients = Context.getPatientSetService().getAllPatients();
+		ret.setPatients(patients);
 		return ret;
 	}
 	
@@ -13,16 +13,22 @@
  */
 package org.openmrs.report;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import org.openmrs.Cohort;
 import org.openmrs.PatientProgram;
+import org.openmrs.Program;
 import org.openmrs.api.context.Context;
 
 /**
+ * A dataset with one row per program enrollment. Like {@link RowPerObsDataSet}, the enrollments
+ * are either given as a list or streamed for the patients given with {@link #setPatients(Cohort)}.
+ * 
  * @deprecated see reportingcompatibility module
  */
 @Deprecated
@@ -34,9 +40,29 @@ public class RowPerProgramEnrollmentDataSet implements DataSet<Object> {
 	
 	private List<PatientProgram> data;
 	
+	private Cohort patients;
+	
+	private Integer batchSize;
+	
 	public RowPerProgramEnrollmentDataSet() {
 	}
 	
+	/**
+	 * @param pp an enrollment of this data set
+	 * @return the row for the enrollment
+	 */
+	private static Map<String, Object> toRow(PatientProgram pp) {
+		Locale locale = Context.getLocale();
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("patientId", pp.getPatient().getPatientId());
+		ret.put("programName", pp.getProgram().getConcept().getName(locale, false).getName());
+		ret.put("programId", pp.getProgram().getProgramId());
+		ret.put("enrollmentDate", pp.getDateEnrolled());
+		ret.put("completionDate", pp.getDateCompleted());
+		ret.put("patientProgramId", pp.getPatientProgramId());
+		return ret;
+	}
+	
 	/**
 	 * This is wrapped around (List<Obs>).iterator() This implementation is NOT thread-safe, so do
 	 * not access the wrapped iterator.
@@ -54,16 +80,7 @@ public class RowPerProgramEnrollmentDataSet implements DataSet<Object> {
 		}
 		
 		public Map<String, Object> next() {
-			Locale locale = Context.getLocale();
-			PatientProgram pp = iter.next();
-			Map<String, Object> ret = new HashMap<String, Object>();
-			ret.put("patientId", pp.getPatient().getPatientId());
-			ret.put("programName", pp.getProgram().getConcept().getName(locale, false).getName());
-			ret.put("programId", pp.getProgram().getProgramId());
-			ret.put("enrollmentDate", pp.getDateEnrolled());
-			ret.put("completionDate", pp.getDateCompleted());
-			ret.put("patientProgramId", pp.getPatientProgramId());
-			return ret;
+			return toRow(iter.next());
 		}
 		
 		public void remove() {
@@ -76,7 +93,33 @@ public class RowPerProgramEnrollmentDataSet implements DataSet<Object> {
 		return definition;
 	}
 	
+	/**
+	 * Fetches the enrollments in the programs of the definition one batch of patients at a time
+	 */
+	class StreamingIterator extends PatientBatchIterator<PatientProgram> {
+		
+		public StreamingIterator() {
+			super(patients, batchSize);
+		}
+		
+		@Override
+		protected List<PatientProgram> fetch(Cohort batch) {
+			return Context.getProgramWorkflowService().getPatientPrograms(batch,
+			    new ArrayList<Program>(definition.getPrograms()));
+		}
+		
+		@Override
+		protected Map<String, Object> toRow(PatientProgram pp) {
+			return RowPerProgramEnrollmentDataSet.toRow(pp);
+		}
+	}
+	
+	/**
+	 * @should stream the enrollments of the patients one batch at a time
+	 */
 	public Iterator<Map<String, Object>> iterator() {
+		if (data == null && patients != null)
+			return new StreamingIterator();
 		return new HelperIterator(data.iterator());
 	}
 	
@@ -84,10 +127,52 @@ public class RowPerProgramEnrollmentDataSet implements DataSet<Object> {
 		return evaluationContext;
 	}
 	
+	/**
+	 * @return the data, fetched all at once if this data set is streamed
+	 */
 	public List<PatientProgram> getData() {
+		if (data == null && patients != null)
+			return Context.getProgramWorkflowService().getPatientPrograms(patients,
+			    new ArrayList<Program>(definition.getPrograms()));
 		return data;
 	}
 	
+	/**
+	 * @return the patients whose enrollments are streamed, null if the data was given as a list
+	 * @since 1.9
+	 */
+	public Cohort getPatients() {
+		return patients;
+	}
+	
+	/**
+	 * Makes this data set stream the enrollments of the given patients
+	 * 
+	 * @param patients the patients to stream the enrollments of
+	 * @since 1.9
+	 */
+	public void setPatients(Cohort patients) {
+		this.patients = patients;
+	}
+	
+	/**
+	 * @return the number of patients whose enrollments are fetched at a time, null for the default
+	 * @since 1.9
+	 */
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of patients whose enrollments are fetched at a time, null for
+	 *            the {@link org.openmrs.util.OpenmrsConstants#GP_PATIENT_SET_BATCH_SIZE} global
+	 *            property
+	 * @since 1.9
+	 */
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+	
 	public void setData(List<PatientProgram> data) {
 		this.data = data;
 	}
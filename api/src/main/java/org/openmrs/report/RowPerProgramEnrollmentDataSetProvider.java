@@ -13,14 +13,9 @@
  */
 package org.openmrs.report;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
-import org.openmrs.PatientProgram;
-import org.openmrs.Program;
 import org.openmrs.api.context.Context;
 
 /**
@@ -60,9 +55,11 @@ public class RowPerProgramEnrollmentDataSetProvider implements DataSetProvider {
 		RowPerProgramEnrollmentDataSet ret = new RowPerProgramEnrollmentDataSet();
 		ret.setDefinition(definition);
 		ret.setEvaluationContext(evalContext);
-		List<Program> programs = new ArrayList<Program>(definition.getPrograms());
-		List<PatientProgram> list = Context.getProgramWorkflowService().getPatientPrograms(patients, programs);
-		ret.setData(list);
+		
+		// the enrollments are fetched in batches of patients while the data set is iterated over
+		if (patients == null)
+			patients = Context.getPatientSetService().getAllPatients();
+		ret.setPatients(patients);
 		return ret;
 	}
 	
@@ -51,6 +51,8 @@ public class CsvReportRenderer extends DelimitedTextReportRenderer {
 	public String escape(String text) {
 		if (text == null)
 			return null;
+		else if (text.indexOf('"') < 0)
+			return text;
 		else
 			return text.replaceAll("\"", "\\\"");
 	}
@@ -38,6 +38,12 @@ import org.openmrs.report.ReportSchema;
 @Deprecated
 public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 	
+	/**
+	 * The number of data rows after which the rendered rows are flushed to the writer, so that
+	 * large data sets reach the output while they are being rendered
+	 */
+	public static final int FLUSH_INTERVAL = 1000;
+	
 	public abstract String getFilenameExtension();
 	
 	public abstract String getBeforeColumnDelimiter();
@@ -84,6 +90,7 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 	
 	/**
 	 * @see org.openmrs.report.ReportRenderer#render(ReportData, String, Writer)
+	 * @should render every row of a streamed data set
 	 */
 	@SuppressWarnings("unchecked")
 	public void render(ReportData results, String argument, Writer writer) throws IOException, RenderingException {
@@ -99,7 +106,9 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 		}
 		writer.write(getAfterRowDelimiter());
 		
-		// data rows
+		// data rows, read from the data set one at a time
+		boolean isCohortDataSet = dataset instanceof CohortDataSet;
+		int rowCount = 0;
 		for (Iterator<Map<String, Object>> i = dataset.iterator(); i.hasNext();) {
 			writer.write(getBeforeRowDelimiter());
 			Map<String, Object> map = i.next();
@@ -107,7 +116,7 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 				Object colValue = map.get(colKey);
 				writer.write(getBeforeColumnDelimiter());
 				if (colValue != null)
-					if (dataset instanceof CohortDataSet) {
+					if (isCohortDataSet) {
 						writer.write(escape(Integer.toString(((Cohort) colValue).size())));
 					} else {
 						writer.write(escape(colValue.toString()));
@@ -115,6 +124,9 @@ public abstract class DelimitedTextReportRenderer implements ReportRenderer {
 				writer.write(getAfterColumnDelimiter());
 			}
 			writer.write(getAfterRowDelimiter());
+			
+			if (++rowCount % FLUSH_INTERVAL == 0)
+				writer.flush();
 		}
 		
 		writer.flush();
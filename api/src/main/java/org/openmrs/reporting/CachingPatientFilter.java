@@ -13,6 +13,10 @@
  */
 package org.openmrs.reporting;
 
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
@@ -43,28 +47,77 @@ public abstract class CachingPatientFilter extends AbstractPatientFilter impleme
 	public abstract String getCacheKey();
 	
 	/**
-	 * TODO Auto generated method comment
+	 * Relative dates like "within the last 30 days" resolve to a different time every millisecond,
+	 * so {@link #getCacheKey()} implementations resolve them against this date instead. The key of
+	 * a filter then stays the same for the whole day.
+	 * 
+	 * @return the start of today
+	 * @should return the start of today
+	 */
+	protected static Date getCacheKeyDate() {
+		Calendar c = Calendar.getInstance();
+		c.set(Calendar.HOUR_OF_DAY, 0);
+		c.set(Calendar.MINUTE, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MILLISECOND, 0);
+		return c.getTime();
+	}
+	
+	/**
+	 * Returns the cohort of this filter from the cache of the given context, or else from the
+	 * server-wide {@link CohortResultCache} if the context's base cohort is all patients, or else
+	 * evaluates it and caches it in both.
 	 * 
 	 * @param context
-	 * @return
+	 * @return the cohort of this filter with its current parameter values
 	 */
 	private Cohort getAndMaybeCache(EvaluationContext context) {
-		if (context == null) {
-			return filterImpl(null);
+		String key = null;
+		Cohort cached = null;
+		if (context != null) {
+			key = getCacheKey();
+			cached = (Cohort) context.getFromCache(key);
+			if (cached != null)
+				return cached;
+		}
+		
+		CohortResultCache sharedCache = null;
+		if (context == null || context.isBaseCohortAllPatients())
+			sharedCache = getSharedCache();
+		
+		if (sharedCache == null) {
+			cached = filterImpl(context);
 		} else {
-			String key = getCacheKey();
-			Cohort cached = (Cohort) context.getFromCache(key);
+			if (key == null)
+				key = getCacheKey();
+			cached = sharedCache.get(key);
 			if (cached == null) {
+				long dataVersion = sharedCache.getDataVersion();
 				cached = filterImpl(context);
-				context.addToCache(key, cached);
+				sharedCache.put(key, cached, dataVersion);
 			}
-			return cached;
 		}
+		
+		if (context != null)
+			context.addToCache(key, cached);
+		return cached;
+	}
+	
+	/**
+	 * @return the server-wide cohort cache, or null if none is registered
+	 */
+	private static CohortResultCache getSharedCache() {
+		List<CohortResultCache> caches = Context.getRegisteredComponents(CohortResultCache.class);
+		return caches.isEmpty() ? null : caches.get(0);
 	}
 	
 	/**
 	 * @see org.openmrs.reporting.PatientFilter#filter(org.openmrs.Cohort,
 	 *      org.openmrs.report.EvaluationContext)
+	 * @should reuse the cohort computed in another evaluation context
+	 * @should not share cohorts computed against a custom base cohort
+	 * @should compute the cohort again after patient data is saved
+	 * @should reuse the cohort of a filter with relative dates
 	 */
 	public Cohort filter(Cohort input, EvaluationContext context) {
 		Cohort cached = getAndMaybeCache(context);
@@ -0,0 +1,250 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmrs.Cohort;
+import org.openmrs.util.CompressedIntegerSet;
+
+/**
+ * Remembers the cohorts computed by {@link CachingPatientFilter}s, so that the same filter with the
+ * same parameter values is only evaluated once for every report, cohort builder search and data
+ * export that uses it, instead of once per {@link org.openmrs.report.EvaluationContext}. Only
+ * results computed against all patients are kept, since a filter may depend on the base cohort of
+ * its evaluation context.<br/>
+ * <br/>
+ * At most {@link #getCapacity()} cohorts are kept, dropping the least recently used ones, and each
+ * is kept for at most {@link #getTimeToLive()} milliseconds, since filters relative to today give
+ * different results from one day to the next. Every cohort is thrown away whenever patient data is
+ * saved or deleted, see {@link org.openmrs.reporting.db.hibernate.CohortResultCacheInterceptor}.
+ * The cohorts are copied on the way in and out, so callers may change the ones they get.
+ * 
+ * @since 1.9
+ * @deprecated see reportingcompatibility module
+ */
+@Deprecated
+public class CohortResultCache {
+	
+	/**
+	 * The default maximum number of cohorts kept
+	 */
+	public static final int DEFAULT_CAPACITY = 100;
+	
+	/**
+	 * The default number of milliseconds a cohort is kept for
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+	
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() > capacity) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	// bumped whenever patient data changes, so that cohorts computed before it are not put back
+	private final AtomicLong dataVersion = new AtomicLong();
+	
+	private volatile int capacity = DEFAULT_CAPACITY;
+	
+	private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+	
+	/**
+	 * A cached cohort and when it was computed
+	 */
+	private static class Entry {
+		
+		private final CompressedIntegerSet memberIds;
+		
+		private final long created;
+		
+		public Entry(CompressedIntegerSet memberIds, long created) {
+			this.memberIds = memberIds;
+			this.created = created;
+		}
+	}
+	
+	/**
+	 * The version of the patient data the cohorts are computed from. Read it before computing a
+	 * cohort and pass it to {@link #put(String, Cohort, long)}.
+	 * 
+	 * @return the current data version
+	 */
+	public long getDataVersion() {
+		return dataVersion.get();
+	}
+	
+	/**
+	 * @param key the cache key of a filter
+	 * @return a copy of the cohort cached for the key, or null if there is none or it has expired
+	 * @should return a copy of the cached cohort
+	 * @should not return cohorts older than the time to live
+	 * @should count hits and misses
+	 */
+	public Cohort get(String key) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && System.currentTimeMillis() - entry.created > timeToLive) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		
+		Cohort cohort = new Cohort();
+		cohort.setMemberIds(entry.memberIds.copy());
+		return cohort;
+	}
+	
+	/**
+	 * Caches a copy of the given cohort, unless the data has changed since the given version
+	 * 
+	 * @param key the cache key of a filter
+	 * @param cohort the cohort computed by the filter
+	 * @param dataVersion the value {@link #getDataVersion()} had before the cohort was computed
+	 * @should not cache cohorts computed before the data changed
+	 * @should drop the least recently used cohorts beyond the capacity
+	 */
+	public void put(String key, Cohort cohort, long dataVersion) {
+		if (capacity <= 0 || cohort == null)
+			return;
+		Entry entry = new Entry(new CompressedIntegerSet(cohort.getMemberIds()), System.currentTimeMillis());
+		synchronized (entries) {
+			if (dataVersion == this.dataVersion.get())
+				entries.put(key, entry);
+		}
+	}
+	
+	/**
+	 * Throws every cohort away because the patient data they were computed from has changed
+	 */
+	public void dataChanged() {
+		synchronized (entries) {
+			dataVersion.incrementAndGet();
+			entries.clear();
+		}
+	}
+	
+	/**
+	 * Throws every cohort away and resets the statistics
+	 */
+	public void clear() {
+		dataChanged();
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+	
+	/**
+	 * @return the number of cohorts currently cached
+	 */
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * @return the number of lookups that were answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of lookups that had to evaluate the filter
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * @return the number of cohorts dropped because of the capacity or the time to live
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/**
+	 * @return the fraction of lookups answered from the cache, 0 if there were none
+	 */
+	public double getHitRate() {
+		long hitCount = getHits();
+		long total = hitCount + getMisses();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+	
+	/**
+	 * @return the maximum number of cohorts kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Sets the maximum number of cohorts kept. A capacity of 0 turns the cache off.
+	 * 
+	 * @param capacity the capacity to set
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+		if (capacity <= 0)
+			dataChanged();
+	}
+	
+	/**
+	 * @return the number of milliseconds a cohort is kept for
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+	
+	/**
+	 * @param timeToLive the number of milliseconds a cohort is kept for
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CohortResultCache[" + getSize() + " cohorts, " + getHits() + " hits, " + getMisses() + " misses, "
+		        + getEvictions() + " evictions]";
+	}
+}
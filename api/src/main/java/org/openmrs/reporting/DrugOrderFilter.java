@@ -72,11 +72,11 @@ public class DrugOrderFilter extends CachingPatientFilter {
 		sb.append(getClass().getName()).append(".");
 		sb.append(getAnyOrAll()).append(".");
 		sb.append(
-		    OpenmrsUtil.fromDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.fromDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		sb.append(
-		    OpenmrsUtil.toDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.toDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		if (getDrugListToUse() != null)
 			for (Drug d : getDrugListToUse())
 				sb.append(d.getDrugId()).append(",");
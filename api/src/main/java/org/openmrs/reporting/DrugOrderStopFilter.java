@@ -63,11 +63,11 @@ public class DrugOrderStopFilter extends CachingPatientFilter {
 		sb.append(getStopDate()).append(".");
 		sb.append(getDiscontinued()).append(".");
 		sb.append(
-		    OpenmrsUtil.fromDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.fromDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		sb.append(
-		    OpenmrsUtil.toDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.toDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		if (drugList != null)
 			for (Drug d : drugList)
 				sb.append(d.getDrugId()).append(",");
@@ -68,11 +68,11 @@ public class EncounterPatientFilter extends CachingPatientFilter {
 		sb.append(getClass().getName()).append(".");
 		sb.append(getForm() == null ? null : getForm().getFormId()).append(".");
 		sb.append(
-		    OpenmrsUtil.fromDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.fromDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		sb.append(
-		    OpenmrsUtil.toDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.toDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		sb.append(getAtLeastCount()).append(".");
 		sb.append(getAtMostCount()).append(".");
 		sb.append(getLocation() == null ? null : getLocation().getLocationId()).append(".");
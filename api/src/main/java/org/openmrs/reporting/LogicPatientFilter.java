@@ -21,6 +21,7 @@ import org.openmrs.Cohort;
 import org.openmrs.api.context.Context;
 import org.openmrs.logic.LogicCriteria;
 import org.openmrs.logic.LogicException;
+import org.openmrs.logic.result.CohortResults;
 import org.openmrs.logic.result.Result;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.report.Parameter;
@@ -57,14 +58,10 @@ public class LogicPatientFilter extends AbstractPatientFilter implements Patient
 	 */
 	public Cohort filter(Cohort input, EvaluationContext context) {
 		try {
+			// the criteria is evaluated once for the whole cohort
 			Map<Integer, Result> results = Context.getLogicService().eval(input, criteria);
 			// Assume these results are booleans
-			Cohort matches = new Cohort();
-			for (Map.Entry<Integer, Result> e : results.entrySet()) {
-				if (e.getValue().latest().toBoolean())
-					matches.addMember(e.getKey());
-			}
-			return matches;
+			return CohortResults.fromResults(results).last().getCohort();
 		}
 		catch (LogicException ex) {
 			throw new RuntimeException(ex);
@@ -76,19 +73,7 @@ public class LogicPatientFilter extends AbstractPatientFilter implements Patient
 	 *      org.openmrs.report.EvaluationContext)
 	 */
 	public Cohort filterInverse(Cohort input, EvaluationContext context) {
-		try {
-			Map<Integer, Result> results = Context.getLogicService().eval(input, criteria);
-			// Assume these results are booleans
-			Cohort matches = new Cohort();
-			for (Map.Entry<Integer, Result> e : results.entrySet()) {
-				if (e.getValue().latest().toBoolean())
-					matches.addMember(e.getKey());
-			}
-			return Cohort.subtract(input, matches);
-		}
-		catch (LogicException ex) {
-			throw new RuntimeException(ex);
-		}
+		return Cohort.subtract(input, filter(input, context));
 	}
 	
 	/**
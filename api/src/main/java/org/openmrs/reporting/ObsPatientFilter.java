@@ -69,10 +69,10 @@ public class ObsPatientFilter extends CachingPatientFilter {
 		sb.append(getModifier()).append(".");
 		sb.append(getTimeModifier()).append(".");
 		sb.append(
-		    OpenmrsUtil.fromDateHelper(null, getWithinLastDays(), getWithinLastMonths(), getUntilDaysAgo(),
+		    OpenmrsUtil.fromDateHelper(getCacheKeyDate(), getWithinLastDays(), getWithinLastMonths(), getUntilDaysAgo(),
 		        getUntilMonthsAgo(), getSinceDate(), getUntilDate())).append(".");
 		sb.append(
-		    OpenmrsUtil.toDateHelper(null, getWithinLastDays(), getWithinLastMonths(), getUntilDaysAgo(),
+		    OpenmrsUtil.toDateHelper(getCacheKeyDate(), getWithinLastDays(), getWithinLastMonths(), getUntilDaysAgo(),
 		        getUntilMonthsAgo(), getSinceDate(), getUntilDate())).append(".");
 		sb.append(getValue());
 		return sb.toString();
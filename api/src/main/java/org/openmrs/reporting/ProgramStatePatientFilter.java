@@ -63,11 +63,11 @@ public class ProgramStatePatientFilter extends CachingPatientFilter {
 			sb.append(getProgram().getProgramId());
 		sb.append(".");
 		sb.append(
-		    OpenmrsUtil.fromDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.fromDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		sb.append(
-		    OpenmrsUtil.toDateHelper(null, withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo, sinceDate,
-		        untilDate)).append(".");
+		    OpenmrsUtil.toDateHelper(getCacheKeyDate(), withinLastDays, withinLastMonths, untilDaysAgo, untilMonthsAgo,
+		        sinceDate, untilDate)).append(".");
 		if (getStateList() != null)
 			for (ProgramWorkflowState s : getStateList())
 				sb.append(s.getProgramWorkflowStateId()).append(",");
@@ -36,10 +36,14 @@ public interface ReportObjectService extends OpenmrsService {
 	public void setReportObjectDAO(ReportObjectDAO dao);
 	
 	/**
-	 * Get all report objects stored in the system
+	 * Get all report objects stored in the system. The objects are decoded once and then shared
+	 * between callers until they are saved again, so they must not be changed. Use
+	 * {@link #getReportObject(Integer)} to get an object to change. Objects that refer to database
+	 * objects, like concepts, are decoded again for every call.
 	 * 
 	 * @return List<AbstractReportObject> of all report objects stored in the system
 	 * @throws APIException
+	 * @should not decode unchanged report objects again
 	 */
 	@Transactional(readOnly = true)
 	public List<AbstractReportObject> getAllReportObjects() throws APIException;
@@ -57,11 +61,13 @@ public interface ReportObjectService extends OpenmrsService {
 	/**
 	 * Get report objects by type that was stored. Report objects are basically just xml blobs, so
 	 * this parameter lets you specify which type of blob to get Current possibilities are
-	 * "Search History", Patient Search, Data Export, etc
+	 * "Search History", Patient Search, Data Export, etc. Like {@link #getAllReportObjects()}, the
+	 * objects are shared between callers and must not be changed.
 	 * 
 	 * @param reportObjectType String representing the type of the object
 	 * @return List<AbstractReportObject> of a specific type
 	 * @throws APIException
+	 * @should decode report objects again after they are saved
 	 */
 	@Transactional(readOnly = true)
 	public List<AbstractReportObject> getReportObjectsByType(String reportObjectType) throws APIException;
@@ -264,6 +270,8 @@ public interface ReportObjectService extends OpenmrsService {
 	 * @param name
 	 * @return PatientSearch by name. null if not found
 	 * @throws APIException
+	 * @should get the patient search with the given name
+	 * @should return null if there is no patient search with the given name
 	 */
 	@Transactional(readOnly = true)
 	public PatientSearch getPatientSearch(String name) throws APIException;
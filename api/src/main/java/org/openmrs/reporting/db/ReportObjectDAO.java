@@ -40,6 +40,17 @@ public interface ReportObjectDAO {
 	 */
 	public AbstractReportObject getReportObject(Integer reportObjId) throws DAOException;
 	
+	/**
+	 * Gets the oldest report object of the given type with the given name, decoding only that one
+	 * 
+	 * @param name the exact name of the report object
+	 * @param reportObjectType the type of the report object
+	 * @return the report object, or null if there is none
+	 * @throws DAOException
+	 * @since 1.9
+	 */
+	public AbstractReportObject getReportObjectByName(String name, String reportObjectType) throws DAOException;
+	
 	/**
 	 * Auto generated method comment
 	 * 
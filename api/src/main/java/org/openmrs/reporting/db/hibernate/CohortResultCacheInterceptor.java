@@ -0,0 +1,85 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.db.hibernate;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientProgram;
+import org.openmrs.PatientState;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonAttribute;
+import org.openmrs.Relationship;
+import org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor;
+import org.openmrs.reporting.CohortResultCache;
+
+/**
+ * Empties the {@link CohortResultCache} when patient data that filters are computed from is saved
+ * or deleted, right away and once more when the transaction ends.
+ * 
+ * @since 1.9
+ */
+public class CohortResultCacheInterceptor extends CacheInvalidatingInterceptor<Boolean> {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private CohortResultCache cohortResultCache;
+	
+	/**
+	 * @param cohortResultCache the cache to keep up to date
+	 */
+	public void setCohortResultCache(CohortResultCache cohortResultCache) {
+		this.cohortResultCache = cohortResultCache;
+	}
+	
+	/**
+	 * Any change to patient data empties the whole cache, so there is a single key
+	 * 
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#getKeys(java.lang.Object)
+	 * @should return a key for patient data
+	 * @should not return keys for other objects
+	 */
+	@Override
+	protected Collection<Boolean> getKeys(Object entity) {
+		if (cohortResultCache != null
+		        && (entity instanceof Obs || entity instanceof Encounter || entity instanceof PatientProgram
+		                || entity instanceof PatientState || entity instanceof Order || entity instanceof Person
+		                || entity instanceof PersonAttribute || entity instanceof PersonAddress
+		                || entity instanceof Relationship || entity instanceof PatientIdentifier))
+			return Collections.singleton(Boolean.TRUE);
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidate(java.lang.Object)
+	 */
+	@Override
+	protected void invalidate(Boolean key) {
+		cohortResultCache.dataChanged();
+	}
+	
+	/**
+	 * @see org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor#invalidateAll()
+	 */
+	@Override
+	public void invalidateAll() {
+		if (cohortResultCache != null)
+			cohortResultCache.dataChanged();
+	}
+}
@@ -15,8 +15,10 @@ package org.openmrs.reporting.db.hibernate;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -28,6 +30,7 @@ import org.openmrs.api.db.DAOException;
 import org.openmrs.reporting.AbstractReportObject;
 import org.openmrs.reporting.ReportObjectWrapper;
 import org.openmrs.reporting.db.ReportObjectDAO;
+import org.openmrs.util.OpenmrsUtil;
 
 /**
  * @deprecated see reportingcompatibility module
@@ -42,6 +45,34 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 	 */
 	private SessionFactory sessionFactory;
 	
+	/**
+	 * Report objects decoded for earlier lists, by id. Decoding the xml of a report object is slow,
+	 * so it is only done again when the xml stored for it has changed.
+	 */
+	private final Map<Integer, DecodedReportObject> decodedReportObjects = new ConcurrentHashMap<Integer, DecodedReportObject>();
+	
+	/**
+	 * A decoded report object and the xml and uuid it was decoded from
+	 */
+	private static class DecodedReportObject {
+		
+		private final String xml;
+		
+		private final String uuid;
+		
+		private final AbstractReportObject reportObject;
+		
+		public DecodedReportObject(ReportObjectWrapper wrappedObject, AbstractReportObject reportObject) {
+			this.xml = wrappedObject.getXml();
+			this.uuid = wrappedObject.getUuid();
+			this.reportObject = reportObject;
+		}
+		
+		public boolean isDecodedFrom(ReportObjectWrapper wrappedObject) {
+			return xml.equals(wrappedObject.getXml()) && OpenmrsUtil.nullSafeEquals(uuid, wrappedObject.getUuid());
+		}
+	}
+	
 	public HibernateReportObjectDAO() {
 	}
 	
@@ -66,11 +97,7 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 		    "from ReportObjectWrapper order by date_created, name").list();
 		for (ReportObjectWrapper wrappedObject : wrappedObjects) {
 			try {
-				AbstractReportObject reportObject = (AbstractReportObject) wrappedObject.getReportObject();
-				if (reportObject.getReportObjectId() == null) {
-					reportObject.setReportObjectId(wrappedObject.getReportObjectId());
-				}
-				reportObjects.add(reportObject);
+				reportObjects.add(getSharedReportObject(wrappedObject));
 			}
 			catch (Exception ex) {
 				log.error("Error retrieving report object with id=" + wrappedObject.getReportObjectId(), ex);
@@ -89,10 +116,65 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 		if (wrappedReportObject == null)
 			return null;
 		
-		AbstractReportObject reportObject = wrappedReportObject.getReportObject();
+		return decode(wrappedReportObject);
+	}
+	
+	/**
+	 * @see org.openmrs.reporting.db.ReportObjectDAO#getReportObjectByName(java.lang.String,
+	 *      java.lang.String)
+	 */
+	@SuppressWarnings("unchecked")
+	public AbstractReportObject getReportObjectByName(String name, String reportObjectType) throws DAOException {
+		Query query = sessionFactory.getCurrentSession().createQuery(
+		    "from ReportObjectWrapper ro where ro.name = :name and ro.type = :type order by date_created");
+		query.setString("name", name);
+		query.setString("type", reportObjectType);
+		List<ReportObjectWrapper> wrappedObjects = query.list();
+		for (ReportObjectWrapper wrappedObject : wrappedObjects) {
+			try {
+				return decode(wrappedObject);
+			}
+			catch (Exception e) {
+				log.warn("Unable to deserialize report object: " + wrappedObject.getName() + " (" + wrappedObject.getId()
+				        + ")");
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Decodes the xml of the given wrapper into a new report object
+	 * 
+	 * @param wrappedObject the stored report object
+	 * @return the decoded report object
+	 */
+	private AbstractReportObject decode(ReportObjectWrapper wrappedObject) {
+		AbstractReportObject reportObject = wrappedObject.getReportObject();
 		if (reportObject.getReportObjectId() == null)
-			reportObject.setReportObjectId(wrappedReportObject.getReportObjectId());
+			reportObject.setReportObjectId(wrappedObject.getReportObjectId());
+		return reportObject;
+	}
+	
+	/**
+	 * Returns the report object that was decoded earlier from the same xml, or decodes it. Report
+	 * objects that refer to database objects, like concepts or locations, are decoded every time,
+	 * because their property editors load those objects into the session of the caller.
+	 * 
+	 * @param wrappedObject the stored report object
+	 * @return the decoded report object, which may be shared with other callers
+	 */
+	private AbstractReportObject getSharedReportObject(ReportObjectWrapper wrappedObject) {
+		Integer id = wrappedObject.getReportObjectId();
+		DecodedReportObject decoded = decodedReportObjects.get(id);
+		if (decoded != null && decoded.isDecodedFrom(wrappedObject))
+			return decoded.reportObject;
 		
+		AbstractReportObject reportObject = decode(wrappedObject);
+		String xml = wrappedObject.getXml();
+		if (xml.contains("org.openmrs.propertyeditor."))
+			decodedReportObjects.remove(id);
+		else
+			decodedReportObjects.put(id, new DecodedReportObject(wrappedObject, reportObject));
 		return reportObject;
 	}
 	
@@ -108,6 +190,8 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 		wrappedReportObject.setCreator(user);
 		wrappedReportObject.setDateCreated(now);
 		sessionFactory.getCurrentSession().delete(wrappedReportObject);
+		if (reportObj.getReportObjectId() != null)
+			decodedReportObjects.remove(reportObj.getReportObjectId());
 	}
 	
 	/**
@@ -138,6 +222,7 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 		sessionFactory.getCurrentSession().saveOrUpdate(wrappedReportObject);
 		
 		reportObj.setReportObjectId(wrappedReportObject.getReportObjectId());
+		decodedReportObjects.remove(reportObj.getReportObjectId());
 		return reportObj;
 	}
 	
@@ -154,11 +239,7 @@ public class HibernateReportObjectDAO implements ReportObjectDAO {
 		List<ReportObjectWrapper> wrappedObjects = query.list();
 		for (ReportObjectWrapper wrappedObject : wrappedObjects) {
 			try {
-				AbstractReportObject reportObject = wrappedObject.getReportObject();
-				if (reportObject.getReportObjectId() == null) {
-					reportObject.setReportObjectId(wrappedObject.getReportObjectId());
-				}
-				reportObjects.add(reportObject);
+				reportObjects.add(getSharedReportObject(wrappedObject));
 			}
 			catch (Exception e) {
 				// Catch exceptions if there are exceptions deserializing any individual report object, and warn
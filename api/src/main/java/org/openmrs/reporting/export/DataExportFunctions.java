@@ -15,6 +15,7 @@ package org.openmrs.reporting.export;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -64,6 +65,11 @@ public class DataExportFunctions {
 	
 	public final Log log = LogFactory.getLog(this.getClass());
 	
+	/**
+	 * The default number of patients whose data is fetched and held at a time
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 5000;
+	
 	protected Integer patientId;
 	
 	protected Patient patient;
@@ -73,7 +79,13 @@ public class DataExportFunctions {
 	
 	protected boolean isAllPatients = false;
 	
-	private Integer patientCounter = 0; // used for garbage collection (Clean up every x patients)
+	// the whole cohort being exported, patientSet only holds the current batch of it
+	private Cohort wholePatientSet;
+	
+	// the ids of wholePatientSet in order, read the first time a batch is asked for
+	private List<Integer> wholePatientIds;
+	
+	private int batchSize = DEFAULT_BATCH_SIZE;
 	
 	protected String separator = "	";
 	
@@ -196,6 +208,9 @@ public class DataExportFunctions {
 		patientAttributeMap.clear();
 		patientAttributeMap = null;
 		
+		wholePatientSet = null;
+		wholePatientIds = null;
+		
 		patientSetService = null;
 		patientService = null;
 		conceptService = null;
@@ -247,21 +262,19 @@ public class DataExportFunctions {
 				map.remove(this.patientId);
 		}
 		
-		// reclaim some memory
-		garbageCollect();
-		
 		setPatient(null);
 		this.patientId = patientId;
 	}
 	
 	/**
-	 * Call the system garbage collecter. This method only calls every 500 patients
+	 * This used to call the system garbage collector every 500 patients. The data of the previous
+	 * batch of patients is now dropped by {@link #setPatientSetFromBatch(Integer)} instead, so this
+	 * does nothing anymore.
+	 * 
+	 * @deprecated memory is reclaimed per batch of patients
 	 */
+	@Deprecated
 	protected void garbageCollect() {
-		if (patientCounter++ % 500 == 0) {
-			System.gc();
-			System.gc();
-		}
 	}
 	
 	/**
@@ -272,10 +285,84 @@ public class DataExportFunctions {
 	}
 	
 	/**
+	 * Sets the whole cohort being exported. It can then be handed out in batches with
+	 * {@link #setPatientSetFromBatch(Integer)}.
+	 * 
 	 * @param patientSet The patientSet to set.
 	 */
 	public void setPatientSet(Cohort patientSet) {
 		this.patientSet = patientSet;
+		this.wholePatientSet = patientSet;
+		this.wholePatientIds = null;
+	}
+	
+	/**
+	 * Used by the export template to loop over the batches of the patient set, from 0 up to and
+	 * including the returned index
+	 * 
+	 * @return the index of the last batch of the patient set, or null if there is no patient set
+	 * @should return the index of the last batch
+	 * @should return zero for an empty patient set
+	 */
+	public Integer getPatientSetBatchCount() {
+		if (wholePatientSet == null)
+			return null;
+		
+		int size = wholePatientSet.size();
+		return size == 0 ? 0 : (size - 1) / batchSize;
+	}
+	
+	/**
+	 * Makes the patient set contain only the patients of the given batch of the whole patient set,
+	 * and drops the data fetched for the previous batch. The data of the columns is then fetched
+	 * for the patients of this batch only.
+	 * 
+	 * @param batchIndex the index of the batch, starting at 0
+	 * @should only put the patients of the given batch in the patient set
+	 * @should drop the data fetched for the previous batch
+	 */
+	public void setPatientSetFromBatch(Integer batchIndex) {
+		if (wholePatientSet == null)
+			return;
+		
+		if (wholePatientIds == null)
+			wholePatientIds = new ArrayList<Integer>(wholePatientSet.getMemberIds());
+		
+		int from = Math.min(batchIndex * batchSize, wholePatientIds.size());
+		int to = Math.min(from + batchSize, wholePatientIds.size());
+		patientSet = new Cohort(wholePatientIds.subList(from, to));
+		
+		if (batchIndex > 0) {
+			patientEncounterMap.clear();
+			patientIdentifierMap.clear();
+			patientFirstEncounterMap.clear();
+			conceptNameMap.clear();
+			conceptAttrObsMap.clear();
+			relationshipMap.clear();
+			programMap.clear();
+			drugOrderMap.clear();
+			currentDrugOrderMap.clear();
+			patientAttributeMap.clear();
+			personAttributeMap.clear();
+			setPatient(null);
+			
+			// the objects of the previous batch are no longer referenced
+			Context.clearSession();
+		}
+	}
+	
+	/**
+	 * @return the number of patients whose data is fetched and held at a time
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param batchSize the number of patients whose data is fetched and held at a time
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
 	}
 	
 	/**
@@ -332,12 +419,12 @@ public class DataExportFunctions {
 			ps = Context.getCohortService().getCohort(Integer.valueOf(key.substring(2)));
 		} else if (key.startsWith("F.")) {
 			PatientFilter pf = Context.getReportObjectService().getPatientFilterById(Integer.valueOf(key.substring(2)));
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(getWholePatientSet(), context);
 		} else if (key.startsWith("S.")) {
 			PatientSearchReportObject ro = (PatientSearchReportObject) Context.getReportObjectService().getReportObject(
 			    Integer.valueOf(key.substring(2)));
 			PatientFilter pf = OpenmrsUtil.toPatientFilter(ro.getPatientSearch(), null);
-			ps = pf.filter(getPatientSet(), context);
+			ps = pf.filter(getWholePatientSet(), context);
 		} else {
 			log.error("key = " + key);
 		}
@@ -1196,9 +1283,18 @@ public class DataExportFunctions {
 	 * @return PatientSet object with patients or null if it isn't needed
 	 */
 	public Cohort getPatientSetIfNotAllPatients() {
-		if (isAllPatients)
+		if (isAllPatients && (wholePatientSet == null || wholePatientSet.size() <= batchSize))
 			return null;
 		return getPatientSet();
 	}
 	
+	/**
+	 * Cohort memberships are computed once for the whole patient set rather than per batch
+	 * 
+	 * @return the whole patient set being exported
+	 */
+	private Cohort getWholePatientSet() {
+		return wholePatientSet == null ? getPatientSet() : wholePatientSet;
+	}
+	
 }
@@ -13,8 +13,13 @@
  */
 package org.openmrs.reporting.export;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -22,10 +27,11 @@ import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.log.CommonsLogLogChute;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.app.event.MethodExceptionEventHandler;
 import org.openmrs.Cohort;
@@ -42,7 +48,31 @@ import org.openmrs.util.OpenmrsUtil;
 @Deprecated
 public class DataExportUtil {
 	
-	private static Map<String, Object> dataExportKeys = new WeakHashMap<String, Object>();
+	private static Map<String, Object> dataExportKeys = Collections.synchronizedMap(new WeakHashMap<String, Object>());
+	
+	/**
+	 * The number of compiled export templates that are kept for reuse
+	 */
+	public static final int TEMPLATE_CACHE_SIZE = 20;
+	
+	/**
+	 * The size of the buffer the rows of an export are written through
+	 */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	
+	// shared by every export so that velocity's method introspection is only done once
+	private static RuntimeInstance velocityRuntime = null;
+	
+	// compiled templates by template string, least recently used ones are dropped
+	private static Map<String, Template> compiledTemplates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+			return size() > TEMPLATE_CACHE_SIZE;
+		}
+	};
 	
 	/**
 	 * Allows a module or some other service to add things to the available keys in the velocity
@@ -125,13 +155,20 @@ public class DataExportUtil {
 	}
 	
 	/**
-	 * Auto generated method comment
+	 * Generates a data export file given a data export (columns) and patient set (rows). The
+	 * template of the export is compiled once and reused by later runs of the same export, and the
+	 * patients are handed to the template in batches of {@link DataExportFunctions#getBatchSize()}
+	 * so that only the data of one batch is held in memory at a time. The rows are written to a
+	 * temporary file which replaces the generated file once the export is done, so several exports
+	 * can be generated at the same time.
 	 * 
 	 * @param dataExport
 	 * @param patientSet
 	 * @param functions
 	 * @param context
 	 * @throws Exception
+	 * @should write the same rows when the patients are exported in several batches
+	 * @should reuse the compiled template of an export
 	 */
 	public static void generateExport(DataExportReportObject dataExport, Cohort patientSet, DataExportFunctions functions,
 	        EvaluationContext context) throws Exception {
@@ -139,22 +176,6 @@ public class DataExportUtil {
 		// defining log file here to attempt to reduce memory consumption
 		Log log = LogFactory.getLog(DataExportUtil.class);
 		
-		VelocityEngine velocityEngine = new VelocityEngine();
-		
-		velocityEngine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
-		    "org.apache.velocity.runtime.log.CommonsLogLogChute");
-		velocityEngine.setProperty(CommonsLogLogChute.LOGCHUTE_COMMONS_LOG_NAME, "dataexport_velocity");
-		
-		try {
-			velocityEngine.init();
-		}
-		catch (Exception e) {
-			log.error("Error initializing Velocity engine", e);
-		}
-		
-		File file = getGeneratedFile(dataExport);
-		PrintWriter report = new PrintWriter(file);
-		
 		VelocityContext velocityContext = new VelocityContext();
 		
 		// Set up list of patients if one wasn't passed into this method
@@ -163,6 +184,9 @@ public class DataExportUtil {
 			functions.setAllPatients(dataExport.isAllPatients());
 		}
 		
+		// the template asks the functions for the batches of this cohort
+		functions.setPatientSet(patientSet);
+		
 		// add the error handler
 		EventCartridge ec = new EventCartridge();
 		ec.addEventHandler(new VelocityExceptionHandler());
@@ -177,7 +201,7 @@ public class DataExportUtil {
 		 * If we have any additional velocity objects that need to 
 		 * be added, do so here.
 		 */
-		if (dataExportKeys != null && dataExportKeys.size() != 0) {
+		synchronized (dataExportKeys) {
 			for (Map.Entry<String, Object> entry : dataExportKeys.entrySet()) {
 				velocityContext.put(entry.getKey(), entry.getValue());
 			}
@@ -199,8 +223,12 @@ public class DataExportUtil {
 		if (log.isDebugEnabled())
 			log.debug("Template: " + template.substring(0, template.length() < 3500 ? template.length() : 3500) + "...");
 		
+		File file = getGeneratedFile(dataExport);
+		File tempFile = File.createTempFile(file.getName() + "_", ".tmp", file.getParentFile());
+		PrintWriter report = new PrintWriter(new BufferedWriter(new FileWriter(tempFile), WRITE_BUFFER_SIZE));
+		
 		try {
-			velocityEngine.evaluate(velocityContext, report, DataExportUtil.class.getName(), template);
+			getCompiledTemplate(template).merge(velocityContext, report);
 		}
 		catch (Exception e) {
 			log.error("Error evaluating data export " + dataExport.getReportObjectId(), e);
@@ -212,29 +240,77 @@ public class DataExportUtil {
 			report.close();
 			velocityContext.remove("fn");
 			velocityContext.remove("patientSet");
-			velocityContext = null;
 			
-			// reset the ParserPool to something else now?
-			// using this to get to RuntimeInstance.init();
-			velocityEngine.init();
-			
-			velocityEngine = null;
-			
-			patientSet = null;
 			functions.clear();
-			functions = null;
-			template = null;
-			dataExport = null;
 			log.debug("Clearing hibernate session");
 			Context.clearSession();
 			
-			// clear out the excess objects
-			System.gc();
-			System.gc();
+			// replace the previously generated file
+			if (!tempFile.renameTo(file)) {
+				file.delete();
+				if (!tempFile.renameTo(file)) {
+					log.error("Unable to move the data export from " + tempFile + " to " + file);
+					tempFile.delete();
+				}
+			}
 		}
 		
 	}
 	
+	/**
+	 * Returns the compiled form of the given template, compiling it if it has not been used
+	 * recently. The returned template can be merged by several threads at once.
+	 * 
+	 * @param template the velocity template of a data export
+	 * @return the compiled template
+	 * @throws Exception if the template cannot be parsed
+	 */
+	private static Template getCompiledTemplate(String template) throws Exception {
+		synchronized (compiledTemplates) {
+			Template compiled = compiledTemplates.get(template);
+			if (compiled != null)
+				return compiled;
+		}
+		
+		// compiled outside of the lock, two threads may both compile the same template
+		RuntimeInstance runtime = getVelocityRuntime();
+		Template compiled = new Template();
+		compiled.setRuntimeServices(runtime);
+		compiled.setName(DataExportUtil.class.getName());
+		compiled.setData(runtime.parse(new StringReader(template), DataExportUtil.class.getName()));
+		compiled.initDocument();
+		
+		synchronized (compiledTemplates) {
+			compiledTemplates.put(template, compiled);
+		}
+		return compiled;
+	}
+	
+	/**
+	 * @return the velocity runtime shared by all data exports, initialized the first time it is
+	 *         asked for
+	 */
+	private static synchronized RuntimeInstance getVelocityRuntime() throws Exception {
+		if (velocityRuntime == null) {
+			RuntimeInstance runtime = new RuntimeInstance();
+			runtime.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+			    "org.apache.velocity.runtime.log.CommonsLogLogChute");
+			runtime.setProperty(CommonsLogLogChute.LOGCHUTE_COMMONS_LOG_NAME, "dataexport_velocity");
+			runtime.init();
+			velocityRuntime = runtime;
+		}
+		return velocityRuntime;
+	}
+	
+	/**
+	 * @return the number of compiled export templates currently kept for reuse
+	 */
+	public static int getCompiledTemplateCount() {
+		synchronized (compiledTemplates) {
+			return compiledTemplates.size();
+		}
+	}
+	
 	/**
 	 * Returns the path and name of the generated file
 	 * 
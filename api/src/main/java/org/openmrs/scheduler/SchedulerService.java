@@ -14,12 +14,14 @@
 package org.openmrs.scheduler;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.SortedMap;
 
 import org.openmrs.annotation.Authorized;
 import org.openmrs.annotation.Logging;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.util.OpenmrsMemento;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -137,6 +139,20 @@ public interface SchedulerService extends OpenmrsService {
 	@Logging(ignore = true)
 	public void saveTask(TaskDefinition task);
 	
+	/**
+	 * Sets the given properties on the task with the given name and saves it in a transaction of its
+	 * own, so that a long running task can report its progress while its own work is not yet
+	 * committed
+	 * 
+	 * @param name the name of the task
+	 * @param properties the properties to set on the task
+	 * @since 1.9
+	 */
+	@Authorized( { "Manage Scheduler" })
+	@Logging(ignore = true)
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public void saveTaskProperties(String name, Map<String, String> properties);
+	
 	/**
 	 * Return SchedulerConstants
 	 * 
@@ -56,6 +56,15 @@ public class TaskDefinition extends BaseOpenmrsMetadata {
 	// Relationships
 	private Map<String, String> properties;
 	
+	// Run metrics, kept up to date by the scheduler and not persisted
+	private Long lastExecutionDuration;
+	
+	private long totalExecutionDuration;
+	
+	private long executionCount;
+	
+	private long skippedExecutionCount;
+	
 	/**
 	 * Default no-arg public constructor
 	 */
@@ -170,6 +179,88 @@ public class TaskDefinition extends BaseOpenmrsMetadata {
 		this.lastExecutionTime = lastExecutionTime;
 	}
 	
+	/**
+	 * Gets how long the last execution of the task took. This is only known for tasks that ran
+	 * since the scheduler was started.
+	 * 
+	 * @return the duration in milliseconds, or null if the task has not run yet
+	 * @since 1.9
+	 */
+	public Long getLastExecutionDuration() {
+		return lastExecutionDuration;
+	}
+	
+	/**
+	 * Sets how long the last execution of the task took
+	 * 
+	 * @param lastExecutionDuration the duration in milliseconds
+	 * @since 1.9
+	 */
+	public void setLastExecutionDuration(Long lastExecutionDuration) {
+		this.lastExecutionDuration = lastExecutionDuration;
+	}
+	
+	/**
+	 * Gets how long all executions of the task since the scheduler was started took together
+	 * 
+	 * @return the total duration in milliseconds
+	 * @since 1.9
+	 */
+	public long getTotalExecutionDuration() {
+		return totalExecutionDuration;
+	}
+	
+	/**
+	 * Sets how long all executions of the task took together
+	 * 
+	 * @param totalExecutionDuration the total duration in milliseconds
+	 * @since 1.9
+	 */
+	public void setTotalExecutionDuration(long totalExecutionDuration) {
+		this.totalExecutionDuration = totalExecutionDuration;
+	}
+	
+	/**
+	 * Gets the number of times the task ran since the scheduler was started
+	 * 
+	 * @return the number of executions
+	 * @since 1.9
+	 */
+	public long getExecutionCount() {
+		return executionCount;
+	}
+	
+	/**
+	 * Sets the number of times the task ran
+	 * 
+	 * @param executionCount the number of executions
+	 * @since 1.9
+	 */
+	public void setExecutionCount(long executionCount) {
+		this.executionCount = executionCount;
+	}
+	
+	/**
+	 * Gets the number of times the task was due but did not run, because it was still running or
+	 * the scheduler fell behind
+	 * 
+	 * @return the number of skipped executions
+	 * @since 1.9
+	 */
+	public long getSkippedExecutionCount() {
+		return skippedExecutionCount;
+	}
+	
+	/**
+	 * Sets the number of times the task was due but did not run
+	 * 
+	 * @param skippedExecutionCount the number of skipped executions
+	 * @since 1.9
+	 */
+	public void setSkippedExecutionCount(long skippedExecutionCount) {
+		this.skippedExecutionCount = skippedExecutionCount;
+	}
+	
 	/**
 	 * Gets the number of seconds until task is executed again.
 	 * 
@@ -0,0 +1,578 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.scheduler.SchedulerConstants;
+import org.openmrs.scheduler.SchedulerException;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.SchedulerUtil;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.TaskFactory;
+import org.openmrs.scheduler.db.SchedulerDAO;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask.RunGuard;
+import org.openmrs.scheduler.timer.TimerSchedulerMemento;
+import org.openmrs.util.OpenmrsMemento;
+import org.springframework.orm.ObjectRetrievalFailureException;
+
+/**
+ * Scheduler service that runs all scheduled tasks on one bounded pool of threads instead of a
+ * {@link java.util.Timer} thread per task. It can be used in place of
+ * {@link org.openmrs.scheduler.timer.TimerSchedulerServiceImpl} by changing the
+ * schedulerServiceTarget bean in applicationContext-service.xml. <br/>
+ * <br/>
+ * At most {@link #getPoolSize()} tasks run at the same time, a task is never run again while it
+ * is still running, and the {@link MissedRunPolicy} decides what happens with the runs that were
+ * due in the meantime. The duration and number of the runs of every task are kept on its
+ * {@link TaskDefinition}.
+ * 
+ * @since 1.9
+ */
+public class ExecutorSchedulerServiceImpl extends BaseOpenmrsService implements SchedulerService {
+	
+	/**
+	 * The number of threads used when no pool size is configured
+	 */
+	public static final int DEFAULT_POOL_SIZE = 4;
+	
+	/**
+	 * Logger
+	 */
+	private Log log = LogFactory.getLog(getClass());
+	
+	/**
+	 * Global data access object context
+	 */
+	private SchedulerDAO schedulerDAO;
+	
+	private int poolSize = DEFAULT_POOL_SIZE;
+	
+	private MissedRunPolicy missedRunPolicy = MissedRunPolicy.SKIP;
+	
+	/**
+	 * Created when the first task is scheduled, and shut down with the service
+	 */
+	private ScheduledThreadPoolExecutor executor;
+	
+	/**
+	 * Scheduled tasks by task definition id
+	 */
+	private final Map<Integer, ExecutorSchedulerTask> scheduledTasks = new ConcurrentHashMap<Integer, ExecutorSchedulerTask>();
+	
+	/**
+	 * Guards by task definition id, shared by the old and new instances of rescheduled tasks
+	 */
+	private final ConcurrentHashMap<Integer, RunGuard> runGuards = new ConcurrentHashMap<Integer, RunGuard>();
+	
+	/**
+	 * Gets the scheduler data access object.
+	 */
+	public SchedulerDAO getSchedulerDAO() {
+		return this.schedulerDAO;
+	}
+	
+	/**
+	 * Sets the scheduler data access object.
+	 */
+	public void setSchedulerDAO(SchedulerDAO dao) {
+		this.schedulerDAO = dao;
+	}
+	
+	/**
+	 * @return the maximum number of tasks that run at the same time
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+	
+	/**
+	 * Sets the maximum number of tasks that run at the same time
+	 * 
+	 * @param poolSize the number of scheduler threads, at least 1
+	 */
+	public synchronized void setPoolSize(int poolSize) {
+		if (poolSize < 1)
+			throw new IllegalArgumentException("The pool size must be at least 1");
+		this.poolSize = poolSize;
+		if (executor != null)
+			executor.setCorePoolSize(poolSize);
+	}
+	
+	/**
+	 * @return what is done with runs that were missed
+	 */
+	public MissedRunPolicy getMissedRunPolicy() {
+		return missedRunPolicy;
+	}
+	
+	/**
+	 * Sets what is done with runs that were missed. Only applies to tasks scheduled afterwards.
+	 * 
+	 * @param missedRunPolicy the policy to set
+	 */
+	public void setMissedRunPolicy(MissedRunPolicy missedRunPolicy) {
+		this.missedRunPolicy = missedRunPolicy;
+	}
+	
+	/**
+	 * @return the executor that runs the tasks, created if needed
+	 */
+	private synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(poolSize, new ThreadFactory() {
+				
+				private final AtomicInteger threadNumber = new AtomicInteger();
+				
+				public Thread newThread(Runnable r) {
+					// daemon threads, so that the scheduler does not prolong the lifetime of the application
+					Thread thread = new Thread(r, "OpenMRS Scheduler " + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+	
+	/**
+	 * Start up hook for the scheduler and all of its scheduled tasks.
+	 */
+	public void onStartup() {
+		log.debug("Starting scheduler service ...");
+		
+		// Get all of the tasks in the database
+		Collection<TaskDefinition> taskDefinitions = getSchedulerDAO().getTasks();
+		
+		// Iterate through the tasks and start them if their startOnStartup flag is true
+		if (taskDefinitions != null) {
+			for (TaskDefinition taskDefinition : taskDefinitions) {
+				try {
+					if (taskDefinition.getStartOnStartup()) {
+						scheduleTask(taskDefinition);
+					}
+				}
+				catch (Throwable t) {
+					log.error("Failed to schedule task for class " + taskDefinition.getTaskClass(), t);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Shutdown hook for the scheduler and all of its scheduled tasks.
+	 */
+	public void onShutdown() {
+		log.debug("Gracefully shutting down scheduler service ...");
+		try {
+			shutdownAllTasks();
+		}
+		catch (APIException e) {
+			log.error("Failed to stop all tasks due to API exception", e);
+		}
+		finally {
+			// tasks that could not be loaded again by shutdownAllTasks are still cancelled here
+			for (ExecutorSchedulerTask schedulerTask : scheduledTasks.values())
+				schedulerTask.shutdown();
+			scheduledTasks.clear();
+			synchronized (this) {
+				if (executor != null) {
+					executor.shutdownNow();
+					executor = null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Shutdown all running tasks.
+	 */
+	public void shutdownAllTasks() {
+		for (TaskDefinition task : getScheduledTasks()) {
+			try {
+				shutdownTask(task);
+			}
+			catch (SchedulerException e) {
+				log.error("Failed to stop task " + task.getTaskClass() + " due to Scheduler exception", e);
+			}
+			catch (APIException e) {
+				log.error("Failed to stop task " + task.getTaskClass() + " due to API exception", e);
+			}
+		}
+	}
+	
+	/**
+	 * @param id the task definition id, may be null
+	 * @return the guard shared by all instances of the task definition
+	 */
+	private RunGuard getRunGuard(Integer id) {
+		if (id == null)
+			return new RunGuard();
+		RunGuard guard = runGuards.get(id);
+		if (guard == null) {
+			RunGuard newGuard = new RunGuard();
+			guard = runGuards.putIfAbsent(id, newGuard);
+			if (guard == null)
+				guard = newGuard;
+		}
+		return guard;
+	}
+	
+	/**
+	 * Schedule the given task according to its definition.
+	 * 
+	 * @param taskDefinition the task to be scheduled
+	 * @should run tasks that have no start time right away
+	 * @should not run more tasks at the same time than the pool size
+	 * @should record the duration and number of runs on the task definition
+	 * @should skip runs that are missed while the task is running if the policy is SKIP
+	 * @should run once right away after runs were missed if the policy is RUN_ONCE
+	 */
+	public Task scheduleTask(TaskDefinition taskDefinition) throws SchedulerException {
+		Task clientTask = null;
+		if (taskDefinition != null) {
+			
+			// Cancel the existing instance of the same task definition, it may still finish its current run
+			ExecutorSchedulerTask schedulerTask = null;
+			if (taskDefinition.getId() != null)
+				schedulerTask = scheduledTasks.remove(taskDefinition.getId());
+			if (schedulerTask != null) {
+				log.info("Shutting down the existing instance of this task to avoid conflicts!!");
+				schedulerTask.shutdown();
+			}
+			
+			try {
+				
+				// Create new task from task definition
+				clientTask = TaskFactory.getInstance().createInstance(taskDefinition);
+				
+				// if we were unable to get a class, just quit
+				if (clientTask != null) {
+					taskDefinition.setTaskInstance(clientTask);
+					
+					// the repeat interval is recorded in seconds
+					long repeatInterval = 0;
+					if (taskDefinition.getRepeatInterval() != null)
+						repeatInterval = taskDefinition.getRepeatInterval() * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND;
+					
+					Date firstTime;
+					if (taskDefinition.getStartTime() != null) {
+						// the start time is most likely in the past, so start at the next time the task is due
+						firstTime = SchedulerUtil.getNextExecution(taskDefinition);
+					} else if (repeatInterval > 0) {
+						log.info("Delaying start time by " + SchedulerConstants.SCHEDULER_DEFAULT_DELAY + " seconds");
+						firstTime = new Date(System.currentTimeMillis() + SchedulerConstants.SCHEDULER_DEFAULT_DELAY
+						        * SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND);
+					} else {
+						log.info("Starting one-shot task");
+						firstTime = new Date();
+					}
+					
+					// Update the task status in the database, which also gives new tasks their id
+					taskDefinition.setStarted(true);
+					saveTask(taskDefinition);
+					
+					schedulerTask = new ExecutorSchedulerTask(clientTask, taskDefinition, getExecutor(),
+					        getRunGuard(taskDefinition.getId()), repeatInterval, missedRunPolicy);
+					if (taskDefinition.getId() != null)
+						scheduledTasks.put(taskDefinition.getId(), schedulerTask);
+					
+					log.info("Starting task ... the task will execute for the first time at " + firstTime);
+					schedulerTask.start(firstTime);
+				}
+			}
+			catch (Exception e) {
+				log.error("Failed to schedule task " + taskDefinition.getName(), e);
+				throw new SchedulerException("Failed to schedule task", e);
+			}
+		}
+		return clientTask;
+	}
+	
+	/**
+	 * Stops a running task.
+	 * 
+	 * @param taskDefinition the task to be stopped
+	 * @see org.openmrs.scheduler.SchedulerService#shutdownTask(TaskDefinition)
+	 */
+	public void shutdownTask(TaskDefinition taskDefinition) throws SchedulerException {
+		if (taskDefinition != null) {
+			
+			// Remove the task from the scheduled tasks and cancel its next run
+			ExecutorSchedulerTask schedulerTask = null;
+			if (taskDefinition.getId() != null)
+				schedulerTask = scheduledTasks.remove(taskDefinition.getId());
+			if (schedulerTask != null) {
+				schedulerTask.shutdown();
+				synchronized (this) {
+					// drop the cancelled run from the queue right away
+					if (executor != null)
+						executor.purge();
+				}
+			}
+			
+			// Update task that has been started
+			taskDefinition.setStarted(false);
+			saveTask(taskDefinition);
+		}
+	}
+	
+	/**
+	 * Loop over all currently started tasks and cycle them. This should be done after the
+	 * classloader has been changed (e.g. during module start/stop)
+	 */
+	public void rescheduleAllTasks() throws SchedulerException {
+		for (TaskDefinition task : getScheduledTasks()) {
+			try {
+				rescheduleTask(task);
+			}
+			catch (SchedulerException e) {
+				log.error("Failed to restart task: " + task.getName(), e);
+			}
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#rescheduleTask(org.openmrs.scheduler.TaskDefinition)
+	 * @should not run a task while its previous instance is still running
+	 * @should not leave threads behind
+	 */
+	public Task rescheduleTask(TaskDefinition taskDefinition) throws SchedulerException {
+		shutdownTask(taskDefinition);
+		return scheduleTask(taskDefinition);
+	}
+	
+	/**
+	 * Tasks are registered by saving them, see {@link #saveTask(TaskDefinition)}
+	 * 
+	 * @see org.openmrs.scheduler.SchedulerService#registerTask(org.openmrs.scheduler.TaskDefinition)
+	 */
+	public void registerTask(TaskDefinition definition) {
+	}
+	
+	/**
+	 * Get all scheduled tasks.
+	 * 
+	 * @return all scheduled tasks
+	 */
+	public Collection<TaskDefinition> getScheduledTasks() {
+		List<TaskDefinition> list = new ArrayList<TaskDefinition>();
+		for (Integer id : scheduledTasks.keySet()) {
+			TaskDefinition task = getTask(id);
+			if (task != null)
+				list.add(task);
+		}
+		return list;
+	}
+	
+	/**
+	 * Get all registered tasks.
+	 * 
+	 * @return all registerd tasks
+	 */
+	public Collection<TaskDefinition> getRegisteredTasks() {
+		Collection<TaskDefinition> tasks = getSchedulerDAO().getTasks();
+		if (tasks != null) {
+			for (TaskDefinition task : tasks)
+				copyMetrics(task);
+		}
+		return tasks;
+	}
+	
+	/**
+	 * Get the task with the given identifier.
+	 * 
+	 * @param id the identifier of the task
+	 */
+	public TaskDefinition getTask(Integer id) {
+		if (log.isDebugEnabled())
+			log.debug("get task " + id);
+		return copyMetrics(getSchedulerDAO().getTask(id));
+	}
+	
+	/**
+	 * Get the task with the given name.
+	 * 
+	 * @param name name of the task
+	 */
+	public TaskDefinition getTaskByName(String name) {
+		if (log.isDebugEnabled())
+			log.debug("get task " + name);
+		TaskDefinition foundTask = null;
+		try {
+			foundTask = copyMetrics(getSchedulerDAO().getTaskByName(name));
+		}
+		catch (ObjectRetrievalFailureException orfe) {
+			log.warn("getTaskByName(" + name + ") failed, because: " + orfe);
+		}
+		return foundTask;
+	}
+	
+	/**
+	 * Sets the run metrics of the scheduled instance of the given task on it
+	 * 
+	 * @param task a task loaded from the database, may be null
+	 * @return the given task
+	 */
+	private TaskDefinition copyMetrics(TaskDefinition task) {
+		if (task != null && task.getId() != null) {
+			ExecutorSchedulerTask schedulerTask = scheduledTasks.get(task.getId());
+			if (schedulerTask != null)
+				schedulerTask.copyMetricsTo(task);
+		}
+		return task;
+	}
+	
+	/**
+	 * Save a task in the database.
+	 * 
+	 * @param task the <code>TaskDefinition</code> to save
+	 */
+	public void saveTask(TaskDefinition task) {
+		if (task.getId() != null) {
+			getSchedulerDAO().updateTask(task);
+		} else {
+			getSchedulerDAO().createTask(task);
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#saveTaskProperties(java.lang.String, java.util.Map)
+	 */
+	public void saveTaskProperties(String name, Map<String, String> properties) {
+		TaskDefinition task = getSchedulerDAO().getTaskByName(name);
+		for (Map.Entry<String, String> property : properties.entrySet())
+			task.setProperty(property.getKey(), property.getValue());
+		getSchedulerDAO().updateTask(task);
+	}
+	
+	/**
+	 * Delete the task with the given identifier.
+	 * 
+	 * @param id the identifier of the task
+	 */
+	public void deleteTask(Integer id) {
+		
+		// try to stop the task (ignore errors)
+		TaskDefinition task = getTask(id);
+		if (task.getStarted()) {
+			try {
+				shutdownTask(task);
+			}
+			catch (SchedulerException e) {
+				log.error("Failed to remove task " + task.getName(), e);
+			}
+		}
+		
+		// delete the task
+		getSchedulerDAO().deleteTask(id);
+		runGuards.remove(id);
+	}
+	
+	/**
+	 * Get system variables.
+	 */
+	public SortedMap<String, String> getSystemVariables() {
+		TreeMap<String, String> systemVariables = new TreeMap<String, String>();
+		systemVariables.put("SCHEDULER_MILLIS_PER_SECOND", String.valueOf(SchedulerConstants.SCHEDULER_MILLIS_PER_SECOND));
+		return systemVariables;
+	}
+	
+	/**
+	 * Saves and stops all active tasks
+	 * 
+	 * @return OpenmrsMemento
+	 */
+	public OpenmrsMemento saveToMemento() {
+		
+		Set<TaskDefinition> tasks = new HashSet<TaskDefinition>();
+		
+		for (TaskDefinition task : getScheduledTasks()) {
+			tasks.add(task);
+			try {
+				shutdownTask(task);
+			}
+			catch (SchedulerException e) {
+				// just swallow exceptions
+				log.debug("Failed to stop task while saving memento " + task.getName(), e);
+			}
+		}
+		
+		TimerSchedulerMemento memento = new TimerSchedulerMemento(tasks);
+		memento.saveErrorTasks();
+		
+		return memento;
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#restoreFromMemento(org.openmrs.util.OpenmrsMemento)
+	 */
+	@SuppressWarnings("unchecked")
+	public void restoreFromMemento(OpenmrsMemento memento) {
+		
+		if (memento != null && memento instanceof TimerSchedulerMemento) {
+			TimerSchedulerMemento timerMemento = (TimerSchedulerMemento) memento;
+			
+			Set<TaskDefinition> tasks = (HashSet<TaskDefinition>) timerMemento.getState();
+			
+			// try to start all of the tasks that were stopped right before this restore
+			for (TaskDefinition task : tasks) {
+				try {
+					scheduleTask(task);
+				}
+				catch (Exception e) {
+					// essentially swallow exceptions
+					log.debug("EXPECTED ERROR IF STOPPING THIS TASK'S MODULE: Unable to start task " + task, e);
+					
+					// save this errored task and try again next time we restore
+					timerMemento.addErrorTask(task);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#getStatus(java.lang.Integer)
+	 */
+	public String getStatus(Integer id) {
+		ExecutorSchedulerTask scheduledTask = id == null ? null : scheduledTasks.get(id);
+		if (scheduledTask != null) {
+			if (scheduledTask.isExecuting())
+				return "Currently executing";
+			Date nextTime = scheduledTask.getNextExecutionTime();
+			if (nextTime != null)
+				return "Scheduled to execute at " + nextTime;
+		}
+		return "Not Running";
+	}
+	
+}
@@ -0,0 +1,315 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.SchedulerUtil;
+import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * Runs a {@link Task} on the threads of the {@link ExecutorSchedulerServiceImpl}. Rather than
+ * being scheduled at a fixed rate, each run schedules the next one when it is done, so the same
+ * task never runs twice at the same time and runs that were missed in the meantime are handled
+ * according to the {@link MissedRunPolicy}.
+ * 
+ * @since 1.9
+ */
+public class ExecutorSchedulerTask implements Runnable {
+	
+	/** Logger */
+	private static Log log = LogFactory.getLog(ExecutorSchedulerTask.class);
+	
+	/** The task that will be executed by the scheduler */
+	private final Task task;
+	
+	private final TaskDefinition taskDefinition;
+	
+	private final ScheduledExecutorService executor;
+	
+	private final RunGuard runGuard;
+	
+	/** Milliseconds between runs, 0 for a task that only runs once */
+	private final long repeatInterval;
+	
+	private final MissedRunPolicy missedRunPolicy;
+	
+	private ScheduledFuture<?> future;
+	
+	/** The time the next run is due at, or null if none is pending */
+	private volatile Date nextExecutionTime;
+	
+	/** The time the current or next run was due at */
+	private volatile long scheduledTime;
+	
+	private volatile boolean executing = false;
+	
+	private volatile boolean cancelled = false;
+	
+	private volatile Long lastExecutionDuration;
+	
+	private final AtomicLong totalExecutionDuration = new AtomicLong();
+	
+	private final AtomicLong executionCount = new AtomicLong();
+	
+	private final AtomicLong skippedExecutionCount = new AtomicLong();
+	
+	/**
+	 * Keeps different instances of the same task definition from running at the same time, like
+	 * the old and the new instance while a task is rescheduled
+	 */
+	public static class RunGuard {
+		
+		private boolean running = false;
+		
+		private ExecutorSchedulerTask waiting;
+		
+		/**
+		 * @param schedulerTask the instance that is due
+		 * @param wait whether the instance should be run by {@link #finish()} if another one is
+		 *            running
+		 * @return true if the instance may run now
+		 */
+		synchronized boolean tryStart(ExecutorSchedulerTask schedulerTask, boolean wait) {
+			if (running) {
+				if (wait)
+					waiting = schedulerTask;
+				return false;
+			}
+			running = true;
+			return true;
+		}
+		
+		/**
+		 * @return the instance that was due while the finished one was running, if any
+		 */
+		synchronized ExecutorSchedulerTask finish() {
+			running = false;
+			ExecutorSchedulerTask next = waiting;
+			waiting = null;
+			return next;
+		}
+	}
+	
+	/**
+	 * Public constructor
+	 * 
+	 * @param task the task to run
+	 * @param taskDefinition the definition the task was created from
+	 * @param executor the executor to run the task on
+	 * @param runGuard the guard shared by all instances of the task definition
+	 * @param repeatInterval the milliseconds between runs, 0 to only run once
+	 * @param missedRunPolicy what to do with runs that were missed
+	 */
+	public ExecutorSchedulerTask(Task task, TaskDefinition taskDefinition, ScheduledExecutorService executor,
+	    RunGuard runGuard, long repeatInterval, MissedRunPolicy missedRunPolicy) {
+		this.task = task;
+		this.taskDefinition = taskDefinition;
+		this.executor = executor;
+		this.runGuard = runGuard;
+		this.repeatInterval = repeatInterval;
+		this.missedRunPolicy = missedRunPolicy;
+	}
+	
+	/**
+	 * Schedules the first run of the task
+	 * 
+	 * @param firstTime when the task should run first
+	 */
+	public void start(Date firstTime) {
+		scheduleAt(firstTime.getTime());
+	}
+	
+	/**
+	 * Runs the task if no other instance of its definition is running, and schedules the next
+	 * run.
+	 * 
+	 * @see java.lang.Runnable#run()
+	 * @should not hand the waiting instance to an executor that is shut down
+	 */
+	public void run() {
+		if (cancelled)
+			return;
+		nextExecutionTime = null;
+		
+		if (!runGuard.tryStart(this, missedRunPolicy == MissedRunPolicy.RUN_ONCE)) {
+			log.info("Not running task " + taskDefinition.getName() + " because it is still running");
+			skippedExecutionCount.incrementAndGet();
+			copyMetricsTo(taskDefinition);
+			if (missedRunPolicy == MissedRunPolicy.SKIP)
+				scheduleNext(System.currentTimeMillis());
+			return;
+		}
+		
+		long start = System.currentTimeMillis();
+		executing = true;
+		try {
+			execute();
+		}
+		finally {
+			executing = false;
+			long end = System.currentTimeMillis();
+			lastExecutionDuration = end - start;
+			totalExecutionDuration.addAndGet(end - start);
+			executionCount.incrementAndGet();
+			copyMetricsTo(taskDefinition);
+			
+			ExecutorSchedulerTask waiting = runGuard.finish();
+			// the executor rejects new runs once the scheduler is shut down
+			if (waiting != null && !waiting.cancelled && !executor.isShutdown())
+				executor.execute(waiting);
+			scheduleNext(end);
+		}
+	}
+	
+	/**
+	 * Executes the task as the daemon user and saves its last execution time
+	 */
+	private void execute() {
+		try {
+			// the pool threads outlive module restarts, so hand the task the current class loader
+			Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
+			Daemon.executeScheduledTask(task);
+			
+			if (!Context.isSessionOpen()) {
+				Context.openSession();
+			}
+			saveLastExecutionTime();
+		}
+		catch (Throwable t) {
+			// keep the scheduler thread alive whatever the task throws
+			log.error(
+			    "FATAL ERROR: Task [" + task.getClass() + "] failed due to exception [" + t.getClass().getName() + "]", t);
+			SchedulerUtil.sendSchedulerError(t);
+		}
+		finally {
+			if (Context.isSessionOpen()) {
+				Context.closeSession();
+			}
+		}
+	}
+	
+	/**
+	 * Save the last execution time in the TaskDefinition
+	 */
+	private void saveLastExecutionTime() {
+		try {
+			Context.addProxyPrivilege(PrivilegeConstants.MANAGE_SCHEDULER);
+			
+			// If a task does not extend AbstractTask, the developer might not have set the
+			// TaskDefinition on the Task
+			if (task.getTaskDefinition() != null) {
+				SchedulerService schedulerService = Context.getSchedulerService();
+				TaskDefinition definition = task.getTaskDefinition();
+				definition.setLastExecutionTime(new Date());
+				schedulerService.saveTask(definition);
+			} else {
+				log.warn("Unable to save the last execution time for task. Task.taskDefinition is null in "
+				        + task.getClass());
+			}
+		}
+		catch (Exception e) {
+			log.warn("Unable to save the last execution time for task ", e);
+		}
+		finally {
+			Context.removeProxyPrivilege(PrivilegeConstants.MANAGE_SCHEDULER);
+		}
+	}
+	
+	/**
+	 * Schedules the run after the one that was due at {@link #scheduledTime}, applying the
+	 * {@link MissedRunPolicy} to the runs that are already overdue
+	 * 
+	 * @param now the current time
+	 */
+	private void scheduleNext(long now) {
+		if (repeatInterval <= 0)
+			return;
+		
+		long next = scheduledTime + repeatInterval;
+		if (next <= now) {
+			long missed = (now - next) / repeatInterval + 1;
+			if (missedRunPolicy == MissedRunPolicy.RUN_ONCE) {
+				// run right away for the latest of the missed times
+				skippedExecutionCount.addAndGet(missed - 1);
+				next += (missed - 1) * repeatInterval;
+			} else {
+				skippedExecutionCount.addAndGet(missed);
+				next += missed * repeatInterval;
+			}
+			copyMetricsTo(taskDefinition);
+			log.info("Task " + taskDefinition.getName() + " missed " + missed + " run(s), next run at " + new Date(next));
+		}
+		scheduleAt(next);
+	}
+	
+	private synchronized void scheduleAt(long time) {
+		if (cancelled || executor.isShutdown())
+			return;
+		scheduledTime = time;
+		nextExecutionTime = new Date(time);
+		future = executor.schedule(this, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Copies the run metrics of the task onto the given definition
+	 * 
+	 * @param definition a copy of the definition of this task
+	 */
+	public void copyMetricsTo(TaskDefinition definition) {
+		definition.setLastExecutionDuration(lastExecutionDuration);
+		definition.setTotalExecutionDuration(totalExecutionDuration.get());
+		definition.setExecutionCount(executionCount.get());
+		definition.setSkippedExecutionCount(skippedExecutionCount.get());
+	}
+	
+	/**
+	 * @return true if the task is running right now
+	 */
+	public boolean isExecuting() {
+		return executing;
+	}
+	
+	/**
+	 * @return the time the next run is due at, or null if none is pending
+	 */
+	public Date getNextExecutionTime() {
+		return nextExecutionTime;
+	}
+	
+	/**
+	 * Cancels the pending run and invokes the task's shutdown() callback method. A run that already
+	 * started is allowed to finish.
+	 */
+	public synchronized void shutdown() {
+		cancelled = true;
+		nextExecutionTime = null;
+		if (future != null)
+			future.cancel(false);
+		task.shutdown();
+	}
+	
+}
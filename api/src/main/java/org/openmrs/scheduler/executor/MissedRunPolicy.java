@@ -0,0 +1,34 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+/**
+ * Decides what the {@link ExecutorSchedulerServiceImpl} does when a repeating task was due while it
+ * could not run, because the task was still running or all threads of the scheduler were busy.
+ * 
+ * @since 1.9
+ */
+public enum MissedRunPolicy {
+	
+	/**
+	 * Drop the missed runs and wait for the next time the task is due
+	 */
+	SKIP,
+	
+	/**
+	 * Run the task once as soon as possible, however many runs were missed, and then carry on with
+	 * the regular schedule
+	 */
+	RUN_ONCE
+}
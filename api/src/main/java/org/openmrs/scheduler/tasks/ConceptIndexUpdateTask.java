@@ -13,23 +13,36 @@
  */
 package org.openmrs.scheduler.tasks;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.Concept;
 import org.openmrs.api.APIException;
 import org.openmrs.api.ConceptService;
+import org.openmrs.api.ConceptService.ConceptIndexRebuildListener;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.ConceptServiceImpl;
 import org.openmrs.scheduler.SchedulerService;
 import org.openmrs.scheduler.TaskDefinition;
 
 /**
- * A utility class for updating concept words in a scheduled task.
+ * A utility class for updating concept words in a scheduled task. The whole index is rebuilt by
+ * {@link ConceptService#rebuildConceptIndex(Integer, Integer, ConceptIndexRebuildListener)}; the
+ * optional <code>threads</code> and <code>batchSize</code> task properties are passed on to it. While
+ * it runs, the <code>conceptsIndexed</code>, <code>totalConcepts</code> and
+ * <code>conceptsPerSecond</code> task properties are updated so that the progress shows up with the
+ * task in the scheduler.
  */
 public class ConceptIndexUpdateTask extends AbstractTask {
 	
 	private Log log = LogFactory.getLog(ConceptIndexUpdateTask.class);
 	
+	/**
+	 * The minimum number of milliseconds between two saves of the progress properties
+	 */
+	private static final long PROGRESS_INTERVAL = 5000;
+	
 	private boolean shouldExecute = true;
 	
 	/**
@@ -43,27 +56,18 @@ public class ConceptIndexUpdateTask extends AbstractTask {
 			
 			if (log.isDebugEnabled())
 				log.debug("Updating concept words ... ");
+			ProgressListener listener = new ProgressListener();
 			try {
-				ConceptService cs = Context.getConceptService();
-				Concept currentConcept = cs.getNextConcept(new Concept(0)); // assumes that all conceptIds are positive
-				int counter = 0;
-				while (currentConcept != null && shouldExecute) {
-					if (log.isDebugEnabled())
-						log.debug("updateConceptWords() : current concept: " + currentConcept);
-					cs.updateConceptIndex(currentConcept);
-					
-					// keep memory consumption low
-					if (counter++ > 200) {
-						Context.clearSession();
-						counter = 0;
-					}
-					
-					currentConcept = cs.getNextConcept(currentConcept);
-				}
+				Context.getConceptService().rebuildConceptIndex(getIntegerProperty("threads"),
+				    getIntegerProperty("batchSize"), listener);
 			}
 			catch (APIException e) {
-				log.error("ConceptWordUpdateTask failed, because:", e);
-				throw e;
+				if (!shouldExecute) {
+					log.info("ConceptWordUpdateTask was stopped, the previous concept index is kept");
+				} else {
+					log.error("ConceptWordUpdateTask failed, because:", e);
+					throw e;
+				}
 			}
 			finally {
 				isExecuting = false;
@@ -75,12 +79,87 @@ public class ConceptIndexUpdateTask extends AbstractTask {
 				//Otherwise it will always return false
 				if (conceptWordUpdateTaskDef.getStartOnStartup())
 					conceptWordUpdateTaskDef.setStartOnStartup(false);
+				listener.setProgressProperties(conceptWordUpdateTaskDef);
 				ss.saveTask(conceptWordUpdateTaskDef);
 				log.debug("Task set to stopped.");
 			}
 		}
 	}
 	
+	/**
+	 * @return the value of the given task property as an integer, or null if it is not set or not a
+	 *         number
+	 */
+	private Integer getIntegerProperty(String name) {
+		String value = taskDefinition == null ? null : taskDefinition.getProperty(name);
+		if (value == null || value.trim().length() == 0)
+			return null;
+		try {
+			return Integer.valueOf(value.trim());
+		}
+		catch (NumberFormatException e) {
+			log.warn("Ignoring the " + name + " property of the concept index task, it is not a number: " + value);
+			return null;
+		}
+	}
+	
+	/**
+	 * Keeps the rebuild going until the task is shut down and saves the progress on the task
+	 * definition every {@link #PROGRESS_INTERVAL} milliseconds
+	 */
+	private class ProgressListener implements ConceptIndexRebuildListener {
+		
+		private long startTime = System.currentTimeMillis();
+		
+		private long lastSaved = startTime;
+		
+		private int conceptsIndexed = 0;
+		
+		private int totalConcepts = 0;
+		
+		/**
+		 * @see ConceptIndexRebuildListener#conceptsIndexed(int, int)
+		 */
+		public boolean conceptsIndexed(int conceptsIndexed, int totalConcepts) {
+			this.conceptsIndexed = conceptsIndexed;
+			this.totalConcepts = totalConcepts;
+			long now = System.currentTimeMillis();
+			if (now - lastSaved >= PROGRESS_INTERVAL) {
+				lastSaved = now;
+				try {
+					Context.getSchedulerService().saveTaskProperties(ConceptServiceImpl.CONCEPT_WORD_UPDATE_TASK_NAME,
+					    getProgressProperties());
+				}
+				catch (Exception e) {
+					log.warn("Unable to save the progress of the concept index task", e);
+				}
+			}
+			if (log.isDebugEnabled())
+				log.debug("Indexed " + conceptsIndexed + " of " + totalConcepts + " concepts");
+			return shouldExecute;
+		}
+		
+		/**
+		 * @return the progress so far, keyed by task property name
+		 */
+		public Map<String, String> getProgressProperties() {
+			long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+			Map<String, String> properties = new HashMap<String, String>();
+			properties.put("conceptsIndexed", String.valueOf(conceptsIndexed));
+			properties.put("totalConcepts", String.valueOf(totalConcepts));
+			properties.put("conceptsPerSecond", String.valueOf(conceptsIndexed * 1000L / elapsed));
+			return properties;
+		}
+		
+		/**
+		 * Copies the progress so far onto the given task definition
+		 */
+		public void setProgressProperties(TaskDefinition task) {
+			for (Map.Entry<String, String> property : getProgressProperties().entrySet())
+				task.setProperty(property.getKey(), property.getValue());
+		}
+	}
+	
 	/**
 	 * @see org.openmrs.scheduler.Task#initialize(org.openmrs.scheduler.TaskDefinition)
 	 */
@@ -0,0 +1,171 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.tasks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.concept.ConceptDictionaryFormat;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Exports the concept dictionary to a file, e.g. for satellite sites to pick up and load. The
+ * export is configured with these task properties:
+ * <ul>
+ * <li><code>format</code>: the name of the concept dictionary format, csv by default</li>
+ * <li><code>gzip</code>: whether to gzip the file, true by default</li>
+ * <li><code>directory</code>: where to write the file, the <code>conceptDictionary</code> folder
+ * of the application data directory by default</li>
+ * <li><code>incremental</code>: if true, only the concepts changed since the last export are
+ * written, to a file named after the time of the export; otherwise the whole dictionary is written
+ * to <code>conceptDictionary.&lt;format&gt;</code>, replacing the previous export</li>
+ * </ul>
+ * The time of each export is saved in the <code>lastExportDate</code> task property. The file is
+ * written under a temporary name and renamed once complete, so a partial export is never picked
+ * up.
+ */
+public class ExportConceptDictionaryTask extends AbstractTask {
+	
+	private Log log = LogFactory.getLog(ExportConceptDictionaryTask.class);
+	
+	/**
+	 * The format of the <code>lastExportDate</code> task property
+	 */
+	private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+	
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (isExecuting)
+			return;
+		isExecuting = true;
+		try {
+			String formatName = getProperty("format", "csv");
+			ConceptDictionaryFormat format = Context.getConceptService().getConceptDictionaryFormat(formatName);
+			if (format == null)
+				throw new APIException("Unknown concept dictionary format: " + formatName);
+			boolean gzip = Boolean.valueOf(getProperty("gzip", "true"));
+			boolean incremental = Boolean.valueOf(getProperty("incremental", "false"));
+			
+			Date exportDate = new Date();
+			Date changedSince = incremental ? getLastExportDate() : null;
+			
+			String extension = "." + format.getFileExtension() + (gzip ? ".gz" : "");
+			String fileName = "conceptDictionary" + extension;
+			if (changedSince != null)
+				fileName = "conceptDictionary_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(exportDate) + extension;
+			
+			File directory = getDirectory();
+			File partialFile = new File(directory, fileName + ".part");
+			File file = new File(directory, fileName);
+			
+			int exported = export(partialFile, format.getName(), changedSince, gzip);
+			if (file.exists() && !file.delete())
+				throw new APIException("Unable to replace the previous concept dictionary export: " + file);
+			if (!partialFile.renameTo(file))
+				throw new APIException("Unable to rename the concept dictionary export to " + file);
+			log.info("Exported " + exported + " concepts to " + file);
+			
+			Map<String, String> properties = new HashMap<String, String>();
+			properties.put("lastExportDate", new SimpleDateFormat(DATE_FORMAT).format(exportDate));
+			if (taskDefinition != null) {
+				taskDefinition.setProperty("lastExportDate", properties.get("lastExportDate"));
+				Context.getSchedulerService().saveTaskProperties(taskDefinition.getName(), properties);
+			}
+		}
+		catch (IOException e) {
+			log.error("Unable to export the concept dictionary", e);
+		}
+		catch (APIException e) {
+			log.error("Unable to export the concept dictionary", e);
+		}
+		finally {
+			isExecuting = false;
+		}
+	}
+	
+	/**
+	 * Writes the export to the given file
+	 * 
+	 * @return the number of concepts exported
+	 */
+	private int export(File file, String format, Date changedSince, boolean gzip) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		boolean completed = false;
+		try {
+			int exported = Context.getConceptService().exportConceptDictionary(out, format, changedSince, true, gzip);
+			completed = true;
+			return exported;
+		}
+		finally {
+			out.close();
+			if (!completed && !file.delete())
+				log.warn("Unable to delete the incomplete concept dictionary export " + file);
+		}
+	}
+	
+	/**
+	 * @return the directory to write the export to
+	 */
+	private File getDirectory() {
+		String directory = getProperty("directory", null);
+		if (directory == null)
+			return OpenmrsUtil.getDirectoryInApplicationDataDirectory("conceptDictionary");
+		
+		File folder = new File(directory);
+		if (!folder.exists() && !folder.mkdirs())
+			throw new APIException("Unable to create the concept dictionary export directory " + folder);
+		return folder;
+	}
+	
+	/**
+	 * @return the time of the last export, or null if there was none
+	 */
+	private Date getLastExportDate() {
+		String lastExportDate = getProperty("lastExportDate", null);
+		if (lastExportDate == null)
+			return null;
+		try {
+			return new SimpleDateFormat(DATE_FORMAT).parse(lastExportDate);
+		}
+		catch (ParseException e) {
+			log.warn("Exporting the whole concept dictionary, the last export date is not valid: " + lastExportDate);
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the value of the given task property, or the default if it is not set
+	 */
+	private String getProperty(String name, String defaultValue) {
+		String value = taskDefinition == null ? null : taskDefinition.getProperty(name);
+		if (value == null || value.trim().length() == 0)
+			return defaultValue;
+		return value.trim();
+	}
+}
@@ -386,6 +386,16 @@ public class TimerSchedulerServiceImpl extends BaseOpenmrsService implements Sch
 		}
 	}
 	
+	/**
+	 * @see org.openmrs.scheduler.SchedulerService#saveTaskProperties(java.lang.String, java.util.Map)
+	 */
+	public void saveTaskProperties(String name, Map<String, String> properties) {
+		TaskDefinition task = getSchedulerDAO().getTaskByName(name);
+		for (Map.Entry<String, String> property : properties.entrySet())
+			task.setProperty(property.getKey(), property.getValue());
+		getSchedulerDAO().updateTask(task);
+	}
+	
 	/**
 	 * Delete the task with the given identifier.
 	 * 
@@ -0,0 +1,730 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted set of Integers stored as a compressed bitmap. Values are split on their high 16 bits
+ * into chunks; each chunk is stored either as a sorted array of its low 16 bits (when sparse) or
+ * as a 65536 bit bitmap (when dense). This keeps large sets of ids (e.g. the members of a
+ * {@link org.openmrs.Cohort}) at a few bytes per member instead of the ~40 bytes per member of a
+ * TreeSet&lt;Integer&gt;, and lets union/intersection/difference run chunk by chunk without boxing. <br/>
+ * <br/>
+ * Iteration is in ascending order. Null elements are not permitted. This class is not thread
+ * safe.
+ * 
+ * @since 1.9
+ */
+public class CompressedIntegerSet extends AbstractSet<Integer> implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Chunks holding more than this many values are stored as bitmaps rather than arrays
+	 */
+	private static final int MAX_ARRAY_SIZE = 4096;
+	
+	private static final int BITMAP_WORDS = 1024;
+	
+	private int[] keys;
+	
+	private Container[] containers;
+	
+	private int chunkCount;
+	
+	private int size;
+	
+	/**
+	 * Creates an empty set
+	 */
+	public CompressedIntegerSet() {
+		keys = new int[4];
+		containers = new Container[4];
+	}
+	
+	/**
+	 * Creates a set containing all of the given Integers
+	 * 
+	 * @param ids the ids to add, may be null
+	 */
+	public CompressedIntegerSet(Collection<Integer> ids) {
+		this();
+		if (ids != null)
+			addAll(ids);
+	}
+	
+	/**
+	 * Returns a new set containing the given collection. If the collection is already a
+	 * CompressedIntegerSet, it is returned as is.
+	 * 
+	 * @param ids the ids, may be null
+	 * @return a CompressedIntegerSet with the given ids
+	 * @should return the same instance if given a compressed integer set
+	 * @should copy any other collection
+	 */
+	public static CompressedIntegerSet valueOf(Collection<Integer> ids) {
+		if (ids instanceof CompressedIntegerSet)
+			return (CompressedIntegerSet) ids;
+		return new CompressedIntegerSet(ids);
+	}
+	
+	/**
+	 * Returns the union of two sets as a new set, treating null as the empty set
+	 * 
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set with every value found in either set
+	 * @should return all values in either set
+	 */
+	public static CompressedIntegerSet or(CompressedIntegerSet a, CompressedIntegerSet b) {
+		if (a == null)
+			return b == null ? new CompressedIntegerSet() : b.copy();
+		if (b == null)
+			return a.copy();
+		CompressedIntegerSet ret = new CompressedIntegerSet();
+		int i = 0, j = 0;
+		while (i < a.chunkCount || j < b.chunkCount) {
+			if (j >= b.chunkCount || (i < a.chunkCount && a.keys[i] < b.keys[j])) {
+				ret.appendChunk(a.keys[i], a.containers[i].copy());
+				i++;
+			} else if (i >= a.chunkCount || b.keys[j] < a.keys[i]) {
+				ret.appendChunk(b.keys[j], b.containers[j].copy());
+				j++;
+			} else {
+				ret.appendChunk(a.keys[i], or(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the intersection of two sets as a new set, treating null as the empty set
+	 * 
+	 * @param a the first set
+	 * @param b the second set
+	 * @return a new set with every value found in both sets
+	 * @should return only values in both sets
+	 */
+	public static CompressedIntegerSet and(CompressedIntegerSet a, CompressedIntegerSet b) {
+		CompressedIntegerSet ret = new CompressedIntegerSet();
+		if (a == null || b == null)
+			return ret;
+		int i = 0, j = 0;
+		while (i < a.chunkCount && j < b.chunkCount) {
+			if (a.keys[i] < b.keys[j]) {
+				i++;
+			} else if (b.keys[j] < a.keys[i]) {
+				j++;
+			} else {
+				ret.appendChunk(a.keys[i], and(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the values of a that are not in b as a new set, treating null as the empty set
+	 * 
+	 * @param a the original set
+	 * @param b the set to subtract
+	 * @return a new set with every value in a but not in b
+	 * @should return values in the first set but not the second
+	 */
+	public static CompressedIntegerSet andNot(CompressedIntegerSet a, CompressedIntegerSet b) {
+		if (a == null)
+			return new CompressedIntegerSet();
+		if (b == null)
+			return a.copy();
+		CompressedIntegerSet ret = new CompressedIntegerSet();
+		int j = 0;
+		for (int i = 0; i < a.chunkCount; i++) {
+			while (j < b.chunkCount && b.keys[j] < a.keys[i])
+				j++;
+			if (j < b.chunkCount && b.keys[j] == a.keys[i])
+				ret.appendChunk(a.keys[i], andNot(a.containers[i], b.containers[j]));
+			else
+				ret.appendChunk(a.keys[i], a.containers[i].copy());
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return a deep copy of this set
+	 */
+	public CompressedIntegerSet copy() {
+		CompressedIntegerSet ret = new CompressedIntegerSet();
+		ret.keys = Arrays.copyOf(keys, Math.max(chunkCount, 4));
+		ret.containers = new Container[ret.keys.length];
+		for (int i = 0; i < chunkCount; i++)
+			ret.containers[i] = containers[i].copy();
+		ret.chunkCount = chunkCount;
+		ret.size = size;
+		return ret;
+	}
+	
+	/**
+	 * @param value the value to test for
+	 * @return true if this set contains the given int
+	 * @should return true only for added values
+	 */
+	public boolean contains(int value) {
+		int i = indexOfKey(value >> 16);
+		return i >= 0 && containers[i].contains((char) value);
+	}
+	
+	/**
+	 * @param value the value to add
+	 * @return true if the set did not already contain the value
+	 * @should add negative and positive values
+	 * @should not add duplicate values
+	 */
+	public boolean add(int value) {
+		int key = value >> 16;
+		int i = indexOfKey(key);
+		if (i < 0) {
+			i = -i - 1;
+			insertChunk(i, key, new ArrayContainer());
+		}
+		int before = containers[i].cardinality();
+		containers[i] = containers[i].add((char) value);
+		if (containers[i].cardinality() == before)
+			return false;
+		size++;
+		return true;
+	}
+	
+	/**
+	 * @param value the value to remove
+	 * @return true if the set contained the value
+	 * @should remove values and drop empty chunks
+	 */
+	public boolean remove(int value) {
+		int i = indexOfKey(value >> 16);
+		if (i < 0)
+			return false;
+		int before = containers[i].cardinality();
+		containers[i] = containers[i].remove((char) value);
+		if (containers[i].cardinality() == before)
+			return false;
+		size--;
+		if (containers[i].cardinality() == 0)
+			removeChunk(i);
+		return true;
+	}
+	
+	/**
+	 * @param value the lower bound
+	 * @return the smallest value in this set that is greater than or equal to the given value, or
+	 *         null if there is none
+	 * @should return the next value at or above the given value
+	 */
+	public Integer ceiling(int value) {
+		int key = value >> 16;
+		int i = indexOfKey(key);
+		int low;
+		if (i >= 0) {
+			low = containers[i].nextValue(value & 0xFFFF);
+			if (low >= 0)
+				return (key << 16) | low;
+			i++;
+		} else {
+			i = -i - 1;
+		}
+		if (i >= chunkCount)
+			return null;
+		return (keys[i] << 16) | containers[i].nextValue(0);
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#add(java.lang.Object)
+	 */
+	@Override
+	public boolean add(Integer value) {
+		if (value == null)
+			throw new NullPointerException("CompressedIntegerSet does not permit null values");
+		return add(value.intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Integer && remove(((Integer) o).intValue());
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#addAll(java.util.Collection)
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Integer> c) {
+		if (c instanceof CompressedIntegerSet)
+			return replaceWith(or(this, (CompressedIntegerSet) c));
+		return super.addAll(c);
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#retainAll(java.util.Collection)
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		if (c instanceof CompressedIntegerSet)
+			return replaceWith(and(this, (CompressedIntegerSet) c));
+		return super.retainAll(c);
+	}
+	
+	/**
+	 * @see java.util.AbstractSet#removeAll(java.util.Collection)
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (c instanceof CompressedIntegerSet)
+			return replaceWith(andNot(this, (CompressedIntegerSet) c));
+		boolean changed = false;
+		for (Object o : c)
+			changed |= remove(o);
+		return changed;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#clear()
+	 */
+	@Override
+	public void clear() {
+		keys = new int[4];
+		containers = new Container[4];
+		chunkCount = 0;
+		size = 0;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#iterator()
+	 * @should iterate in ascending order
+	 * @should support removal through the iterator
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			
+			private Integer next = size == 0 ? null : ceiling(Integer.MIN_VALUE);
+			
+			private Integer last = null;
+			
+			public boolean hasNext() {
+				return next != null;
+			}
+			
+			public Integer next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				last = next;
+				next = last == Integer.MAX_VALUE ? null : ceiling(last + 1);
+				return last;
+			}
+			
+			public void remove() {
+				if (last == null)
+					throw new IllegalStateException();
+				CompressedIntegerSet.this.remove(last.intValue());
+				last = null;
+			}
+		};
+	}
+	
+	/**
+	 * Swaps in the contents of the result of a bulk operation. Callers only pass supersets or
+	 * subsets of this set, so a change in size is the same as a change in contents.
+	 */
+	private boolean replaceWith(CompressedIntegerSet other) {
+		boolean changed = other.size != size;
+		keys = other.keys;
+		containers = other.containers;
+		chunkCount = other.chunkCount;
+		size = other.size;
+		return changed;
+	}
+	
+	private int indexOfKey(int key) {
+		// values are usually added in ascending order, so check the last chunk first
+		if (chunkCount > 0 && keys[chunkCount - 1] == key)
+			return chunkCount - 1;
+		return Arrays.binarySearch(keys, 0, chunkCount, key);
+	}
+	
+	private void insertChunk(int index, int key, Container container) {
+		if (chunkCount == keys.length) {
+			keys = Arrays.copyOf(keys, chunkCount * 2);
+			containers = Arrays.copyOf(containers, chunkCount * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+		System.arraycopy(containers, index, containers, index + 1, chunkCount - index);
+		keys[index] = key;
+		containers[index] = container;
+		chunkCount++;
+	}
+	
+	private void removeChunk(int index) {
+		System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, chunkCount - index - 1);
+		chunkCount--;
+		containers[chunkCount] = null;
+	}
+	
+	/**
+	 * Appends a chunk whose key is greater than every existing key, ignoring empty chunks
+	 */
+	private void appendChunk(int key, Container container) {
+		if (container.cardinality() == 0)
+			return;
+		insertChunk(chunkCount, key, container);
+		size += container.cardinality();
+	}
+	
+	private static Container or(Container a, Container b) {
+		if (a instanceof ArrayContainer && b instanceof ArrayContainer
+		        && a.cardinality() + b.cardinality() <= MAX_ARRAY_SIZE)
+			return ((ArrayContainer) a).merge((ArrayContainer) b);
+		BitmapContainer ret = a.toBitmap();
+		ret.orWith(b);
+		return ret.normalize();
+	}
+	
+	private static Container and(Container a, Container b) {
+		if (a instanceof ArrayContainer)
+			return ((ArrayContainer) a).filter(b, true);
+		if (b instanceof ArrayContainer)
+			return ((ArrayContainer) b).filter(a, true);
+		BitmapContainer ret = a.toBitmap();
+		ret.andWith((BitmapContainer) b);
+		return ret.normalize();
+	}
+	
+	private static Container andNot(Container a, Container b) {
+		if (a instanceof ArrayContainer)
+			return ((ArrayContainer) a).filter(b, false);
+		BitmapContainer ret = a.toBitmap();
+		ret.andNotWith(b);
+		return ret.normalize();
+	}
+	
+	/**
+	 * Holds the low 16 bits of the values sharing one high 16 bit key
+	 */
+	private static abstract class Container implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		abstract Container add(char value);
+		
+		abstract Container remove(char value);
+		
+		abstract boolean contains(char value);
+		
+		abstract int cardinality();
+		
+		/**
+		 * @return the smallest value &gt;= from, or -1 if there is none
+		 */
+		abstract int nextValue(int from);
+		
+		abstract Container copy();
+		
+		/**
+		 * @return a bitmap with the same values, which may be modified without affecting this
+		 */
+		abstract BitmapContainer toBitmap();
+	}
+	
+	private static class ArrayContainer extends Container {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private char[] values;
+		
+		private int cardinality;
+		
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+		
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+		
+		Container add(char value) {
+			if (cardinality > 0 && cardinality < MAX_ARRAY_SIZE && values[cardinality - 1] < value) {
+				append(value);
+				return this;
+			}
+			int i = Arrays.binarySearch(values, 0, cardinality, value);
+			if (i >= 0)
+				return this;
+			if (cardinality == MAX_ARRAY_SIZE) {
+				BitmapContainer ret = toBitmap();
+				ret.add(value);
+				return ret;
+			}
+			i = -i - 1;
+			if (cardinality == values.length)
+				values = Arrays.copyOf(values, Math.min(cardinality * 2, MAX_ARRAY_SIZE));
+			System.arraycopy(values, i, values, i + 1, cardinality - i);
+			values[i] = value;
+			cardinality++;
+			return this;
+		}
+		
+		private void append(char value) {
+			if (cardinality == values.length)
+				values = Arrays.copyOf(values, Math.min(cardinality * 2, MAX_ARRAY_SIZE));
+			values[cardinality++] = value;
+		}
+		
+		Container remove(char value) {
+			int i = Arrays.binarySearch(values, 0, cardinality, value);
+			if (i >= 0) {
+				System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+				cardinality--;
+			}
+			return this;
+		}
+		
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+		
+		int cardinality() {
+			return cardinality;
+		}
+		
+		int nextValue(int from) {
+			int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+			if (i < 0)
+				i = -i - 1;
+			return i < cardinality ? values[i] : -1;
+		}
+		
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+		}
+		
+		BitmapContainer toBitmap() {
+			BitmapContainer ret = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++)
+				ret.add(values[i]);
+			return ret;
+		}
+		
+		/**
+		 * Merges two sorted arrays whose combined size fits in an array container
+		 */
+		ArrayContainer merge(ArrayContainer other) {
+			char[] merged = new char[cardinality + other.cardinality];
+			int i = 0, j = 0, k = 0;
+			while (i < cardinality && j < other.cardinality) {
+				char a = values[i], b = other.values[j];
+				if (a < b) {
+					merged[k++] = a;
+					i++;
+				} else if (b < a) {
+					merged[k++] = b;
+					j++;
+				} else {
+					merged[k++] = a;
+					i++;
+					j++;
+				}
+			}
+			while (i < cardinality)
+				merged[k++] = values[i++];
+			while (j < other.cardinality)
+				merged[k++] = other.values[j++];
+			return new ArrayContainer(merged, k);
+		}
+		
+		/**
+		 * @param other the container to test values against
+		 * @param keep if true, keep values found in other, otherwise keep those not found
+		 * @return a new container with the values that passed
+		 */
+		ArrayContainer filter(Container other, boolean keep) {
+			char[] ret = new char[cardinality];
+			int k = 0;
+			for (int i = 0; i < cardinality; i++) {
+				if (other.contains(values[i]) == keep)
+					ret[k++] = values[i];
+			}
+			return new ArrayContainer(ret, k);
+		}
+	}
+	
+	private static class BitmapContainer extends Container {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final long[] words;
+		
+		private int cardinality;
+		
+		BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+		
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+		
+		Container add(char value) {
+			long bit = 1L << value;
+			int i = value >>> 6;
+			if ((words[i] & bit) == 0) {
+				words[i] |= bit;
+				cardinality++;
+			}
+			return this;
+		}
+		
+		Container remove(char value) {
+			long bit = 1L << value;
+			int i = value >>> 6;
+			if ((words[i] & bit) != 0) {
+				words[i] &= ~bit;
+				cardinality--;
+			}
+			return cardinality <= MAX_ARRAY_SIZE ? toArray() : this;
+		}
+		
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+		
+		int cardinality() {
+			return cardinality;
+		}
+		
+		int nextValue(int from) {
+			int i = from >>> 6;
+			if (i >= BITMAP_WORDS)
+				return -1;
+			long word = words[i] & (-1L << from);
+			while (true) {
+				if (word != 0)
+					return i * 64 + Long.numberOfTrailingZeros(word);
+				if (++i == BITMAP_WORDS)
+					return -1;
+				word = words[i];
+			}
+		}
+		
+		Container copy() {
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+		
+		BitmapContainer toBitmap() {
+			return (BitmapContainer) copy();
+		}
+		
+		void orWith(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					words[i] |= o[i];
+				recount();
+			} else {
+				ArrayContainer a = (ArrayContainer) other;
+				for (int i = 0; i < a.cardinality; i++)
+					add(a.values[i]);
+			}
+		}
+		
+		void andWith(BitmapContainer other) {
+			for (int i = 0; i < BITMAP_WORDS; i++)
+				words[i] &= other.words[i];
+			recount();
+		}
+		
+		void andNotWith(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					words[i] &= ~o[i];
+				recount();
+			} else {
+				ArrayContainer a = (ArrayContainer) other;
+				for (int i = 0; i < a.cardinality; i++) {
+					long bit = 1L << a.values[i];
+					int w = a.values[i] >>> 6;
+					if ((words[w] & bit) != 0) {
+						words[w] &= ~bit;
+						cardinality--;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * @return this container, or an equivalent array container if this one has become sparse
+		 */
+		Container normalize() {
+			return cardinality <= MAX_ARRAY_SIZE ? toArray() : this;
+		}
+		
+		private ArrayContainer toArray() {
+			char[] values = new char[Math.max(cardinality, 4)];
+			int k = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[k++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, k);
+		}
+		
+		private void recount() {
+			int c = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++)
+				c += Long.bitCount(words[i]);
+			cardinality = c;
+		}
+	}
+}
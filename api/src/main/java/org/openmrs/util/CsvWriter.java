@@ -0,0 +1,104 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes comma separated values to a buffered {@link Writer}, one row at a time. Values are
+ * quoted only when they contain a comma, a quote or a line break, and null values are written as
+ * empty fields.
+ * 
+ * @since 1.9
+ */
+public class CsvWriter {
+	
+	private final Writer out;
+	
+	private boolean startOfRow = true;
+	
+	/**
+	 * @param out where to write the values to, it is wrapped in a {@link BufferedWriter} unless it
+	 *            already is one
+	 */
+	public CsvWriter(Writer out) {
+		this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out);
+	}
+	
+	/**
+	 * Writes one value of the current row
+	 * 
+	 * @param value the value to write, written with its toString()
+	 * @return this writer
+	 * @throws IOException
+	 * @should quote values that contain a separator, quote or line break
+	 * @should write null as an empty field
+	 */
+	public CsvWriter writeValue(Object value) throws IOException {
+		if (!startOfRow)
+			out.write(',');
+		startOfRow = false;
+		if (value == null)
+			return this;
+		
+		String text = value.toString();
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			out.write(text);
+		} else {
+			out.write('"');
+			out.write(text.replace("\"", "\"\""));
+			out.write('"');
+		}
+		return this;
+	}
+	
+	/**
+	 * Ends the current row
+	 * 
+	 * @throws IOException
+	 */
+	public void endRow() throws IOException {
+		out.write('\n');
+		startOfRow = true;
+	}
+	
+	/**
+	 * Writes the given values as one row
+	 * 
+	 * @param values the values of the row
+	 * @throws IOException
+	 * @should write the values separated by commas and end the row
+	 */
+	public void writeRow(Object... values) throws IOException {
+		for (Object value : values)
+			writeValue(value);
+		endRow();
+	}
+	
+	/**
+	 * @see Writer#flush()
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	/**
+	 * @see Writer#close()
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+}
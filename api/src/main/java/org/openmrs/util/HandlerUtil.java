@@ -17,6 +17,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,6 +36,40 @@ public class HandlerUtil {
 	
 	private static Log log = LogFactory.getLog(HandlerUtil.class);
 	
+	// the handlers found so far, by handler type and supported type
+	private static final ConcurrentHashMap<HandlerKey, List<?>> cachedHandlers = new ConcurrentHashMap<HandlerKey, List<?>>();
+	
+	// bumped by every clear, so that lookups started before it do not put back stale handlers
+	private static final AtomicInteger cachedHandlersVersion = new AtomicInteger();
+	
+	/**
+	 * Key of the {@link #cachedHandlers} map, the supported type may be null
+	 */
+	private static final class HandlerKey {
+		
+		private final Class<?> handlerType;
+		
+		private final Class<?> type;
+		
+		public HandlerKey(Class<?> handlerType, Class<?> type) {
+			this.handlerType = handlerType;
+			this.type = type;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof HandlerKey))
+				return false;
+			HandlerKey other = (HandlerKey) obj;
+			return handlerType == other.handlerType && type == other.type;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * handlerType.hashCode() + (type == null ? 0 : type.hashCode());
+		}
+	}
+	
 	/**
 	 * Retrieves a List of all registered components from the Context that are of the passed
 	 * handlerType and one or more of the following is true:
@@ -42,7 +78,10 @@ public class HandlerUtil {
 	 * <li>The passed type is null - this effectively returns all components of the passed
 	 * handlerType</li>
 	 * </ul>
-	 * The returned handlers are ordered in the list based upon the order property.
+	 * The returned handlers are ordered in the list based upon the order property. The handlers are
+	 * looked up once per handlerType and type and then kept until {@link #clearCachedHandlers()} is
+	 * called, which happens whenever the application context is refreshed or a module is started
+	 * or stopped.
 	 * 
 	 * @param handlerType Indicates the type of class to return
 	 * @param type Indicates the type that the given handlerType must support (or null for any)
@@ -50,8 +89,37 @@ public class HandlerUtil {
 	 * @should return a list of all classes that can handle the passed type
 	 * @should return classes registered in a module
 	 * @should return an empty list if no classes can handle the passed type
+	 * @should return the cached handlers the second time
+	 * @should look the handlers up again after the cache is cleared
 	 */
+	@SuppressWarnings("unchecked")
 	public static <H, T> List<H> getHandlersForType(Class<H> handlerType, Class<T> type) {
+		HandlerKey key = new HandlerKey(handlerType, type);
+		List<H> handlers = (List<H>) cachedHandlers.get(key);
+		if (handlers == null) {
+			int version = cachedHandlersVersion.get();
+			handlers = Collections.unmodifiableList(findHandlersForType(handlerType, type));
+			cachedHandlers.put(key, handlers);
+			if (version != cachedHandlersVersion.get())
+				cachedHandlers.remove(key);
+		}
+		return handlers;
+	}
+	
+	/**
+	 * Forgets the handlers found by {@link #getHandlersForType(Class, Class)} so far, this needs to
+	 * be called whenever handlers are added to or removed from the application context
+	 */
+	public static void clearCachedHandlers() {
+		cachedHandlersVersion.incrementAndGet();
+		cachedHandlers.clear();
+	}
+	
+	/**
+	 * Looks up the handlers for {@link #getHandlersForType(Class, Class)} in the application
+	 * context
+	 */
+	private static <H, T> List<H> findHandlersForType(Class<H> handlerType, Class<T> type) {
 		
 		List<H> handlers = new ArrayList<H>();
 		
@@ -0,0 +1,222 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+/**
+ * Writes a JSON document to a buffered {@link Writer} as it is built, so large documents never
+ * have to be held in memory. Objects and arrays are opened and closed explicitly, e.g.
+ * 
+ * <pre>
+ * json.beginObject().name(&quot;conceptId&quot;).value(5).name(&quot;names&quot;).beginArray().value(&quot;Cd4&quot;).endArray().endObject();
+ * </pre>
+ * 
+ * @since 1.9
+ */
+public class JsonWriter {
+	
+	private final Writer out;
+	
+	/**
+	 * Whether the object or array at each open level still has no members, innermost first
+	 */
+	private final LinkedList<Boolean> empty = new LinkedList<Boolean>();
+	
+	/**
+	 * Whether a name was just written, so the next value is a member value
+	 */
+	private boolean afterName = false;
+	
+	/**
+	 * @param out where to write the document to, it is wrapped in a {@link BufferedWriter} unless
+	 *            it already is one
+	 */
+	public JsonWriter(Writer out) {
+		this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out);
+	}
+	
+	/**
+	 * Opens an object
+	 * 
+	 * @return this writer
+	 * @throws IOException
+	 * @should separate the members of objects and arrays with commas
+	 */
+	public JsonWriter beginObject() throws IOException {
+		beforeValue();
+		out.write('{');
+		empty.addFirst(true);
+		return this;
+	}
+	
+	/**
+	 * Closes the innermost open object
+	 * 
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter endObject() throws IOException {
+		empty.removeFirst();
+		out.write('}');
+		return this;
+	}
+	
+	/**
+	 * Opens an array
+	 * 
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter beginArray() throws IOException {
+		beforeValue();
+		out.write('[');
+		empty.addFirst(true);
+		return this;
+	}
+	
+	/**
+	 * Closes the innermost open array
+	 * 
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter endArray() throws IOException {
+		empty.removeFirst();
+		out.write(']');
+		return this;
+	}
+	
+	/**
+	 * Writes the name of the next member of the innermost open object
+	 * 
+	 * @param name the member name
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter name(String name) throws IOException {
+		beforeValue();
+		writeString(name);
+		out.write(':');
+		afterName = true;
+		return this;
+	}
+	
+	/**
+	 * Writes a string value, or null
+	 * 
+	 * @param value the value to write
+	 * @return this writer
+	 * @throws IOException
+	 * @should escape quotes, backslashes and control characters
+	 */
+	public JsonWriter value(String value) throws IOException {
+		beforeValue();
+		if (value == null)
+			out.write("null");
+		else
+			writeString(value);
+		return this;
+	}
+	
+	/**
+	 * Writes a number value, or null
+	 * 
+	 * @param value the value to write
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter value(Number value) throws IOException {
+		beforeValue();
+		out.write(value == null ? "null" : value.toString());
+		return this;
+	}
+	
+	/**
+	 * Writes a boolean value, or null
+	 * 
+	 * @param value the value to write
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public JsonWriter value(Boolean value) throws IOException {
+		beforeValue();
+		out.write(value == null ? "null" : value.toString());
+		return this;
+	}
+	
+	/**
+	 * @see Writer#flush()
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	/**
+	 * @see Writer#close()
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+	
+	/**
+	 * Writes the separator before a value or member name, if one is needed
+	 */
+	private void beforeValue() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (!empty.isEmpty()) {
+			if (!empty.getFirst())
+				out.write(',');
+			empty.set(0, false);
+		}
+	}
+	
+	private void writeString(String text) throws IOException {
+		out.write('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '"':
+					out.write("\\\"");
+					break;
+				case '\\':
+					out.write("\\\\");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						String hex = Integer.toHexString(c);
+						out.write("\\u0000", 0, 6 - hex.length());
+						out.write(hex);
+					} else
+						out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
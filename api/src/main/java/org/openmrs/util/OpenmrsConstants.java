@@ -873,6 +873,32 @@ public final class OpenmrsConstants {
 	 */
 	public static final String GP_SEARCH_WIDGET_DELAY_INTERVAL = "searchWidget.searchDelayInterval";
 	
+	/**
+	 * Global property name for the number of patients fetched per query by the batched lookups in
+	 * the patient set service
+	 */
+	public static final String GP_PATIENT_SET_BATCH_SIZE = "patientSet.batchSize";
+	
+	public static final int GP_PATIENT_SET_BATCH_SIZE_DEFAULT_VALUE = 1000;
+	
+	/**
+	 * Global property name for whether concept searches are answered from an in-memory copy of the
+	 * concept word index instead of querying the concept_word table
+	 */
+	public static final String GP_CONCEPT_SEARCH_IN_MEMORY_INDEX = "concept.searchIndex.inMemory";
+	
+	/**
+	 * Global property name for whether patient searches are answered from an in-memory index of
+	 * patient names and identifiers instead of querying the person_name and patient_identifier
+	 * tables
+	 */
+	public static final String GP_PATIENT_SEARCH_IN_MEMORY_INDEX = "patient.searchIndex.inMemory";
+	
+	/**
+	 * Global property name for the number of worker threads used to process the hl7 inbound queue
+	 */
+	public static final String GP_HL7_PROCESSOR_THREADS = "hl7_processor.threads";
+	
 	/**
 	 * Encryption properties; both vector and key are required to utilize a two-way encryption
 	 */
@@ -1218,6 +1244,18 @@ public final class OpenmrsConstants {
 		                "400",
 		                "Specifies time interval in milliseconds when searching, between keyboard keyup event and triggering the search off, should be higher if most users are slow when typing so as to minimise the load on the server"));
 		
+		props.add(new GlobalProperty(GP_PATIENT_SET_BATCH_SIZE, String.valueOf(GP_PATIENT_SET_BATCH_SIZE_DEFAULT_VALUE),
+		        "The number of patients whose data is fetched per query when looking up obs and encounters for a cohort"));
+		
+		props.add(new GlobalProperty(GP_CONCEPT_SEARCH_IN_MEMORY_INDEX, "false",
+		        "Set to true to answer concept searches from an in-memory copy of the concept word index, which is built on the first search and kept up to date as concepts are saved"));
+		
+		props.add(new GlobalProperty(GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "false",
+		        "Set to true to answer patient searches from an in-memory index of patient names and identifiers, which is built on the first search and kept up to date as patients are saved. Names are also matched by how they sound, and identifiers are matched without their separators and leading zeros. Name searches only use the index when patientSearch.matchMode is START"));
+		
+		props.add(new GlobalProperty(GP_HL7_PROCESSOR_THREADS, "1",
+		        "The number of threads processing the hl7 inbound queue. Messages about the same patient are always processed one after the other, in the order they were received"));
+		
 		props.add(new GlobalProperty(GLOBAL_PROPERTY_DEFAULT_LOCATION_NAME, "Unknown Location",
 		        "The name of the location to use as a system default"));
 		props
@@ -13,6 +13,9 @@
  */
 package org.openmrs;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 
@@ -58,4 +61,21 @@ public class ConceptWordTest extends BaseContextSensitiveTest {
 		Set<ConceptWord> words = ConceptWord.makeConceptWords(concept);
 		Assert.assertEquals(3, words.size());
 	}
+	
+	/**
+	 * @see {@link ConceptWord#makeConceptWords(Concept,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should leave out the given stop words", method = "makeConceptWords(Concept,Collection)")
+	public void makeConceptWords_shouldLeaveOutTheGivenStopWords() throws Exception {
+		Concept concept = new Concept(1);
+		concept.addName(new ConceptName("count of the children", Locale.ENGLISH));
+		
+		Set<ConceptWord> words = ConceptWord.makeConceptWords(concept, Arrays.asList("OF", "THE"));
+		Set<String> values = new HashSet<String>();
+		for (ConceptWord word : words)
+			values.add(word.getWord());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("COUNT", "CHILDREN")), values);
+	}
+	
 }
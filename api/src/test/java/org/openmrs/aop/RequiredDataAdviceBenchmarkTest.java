@@ -0,0 +1,99 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.aop;
+
+import java.util.Date;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Encounter;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.handler.SaveHandler;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.util.HandlerUtil;
+
+/**
+ * Times {@link RequiredDataAdvice#recursivelyHandle(Class, OpenmrsObject, String)} on encounters
+ * with a growing number of obs, half of them in obs groups. The timings are logged at info level;
+ * the test itself only checks that every obs was handled. It is excluded from the default build,
+ * run it with <code>mvn test -Dtest=RequiredDataAdviceBenchmarkTest</code>.
+ */
+public class RequiredDataAdviceBenchmarkTest extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(RequiredDataAdviceBenchmarkTest.class);
+	
+	private static final int[] OBS_COUNTS = { 125, 250, 500, 1000 };
+	
+	private static final int ROUNDS = 5;
+	
+	/**
+	 * @return a new encounter with the given number of obs, every other obs is put in a group
+	 */
+	private Encounter createEncounter(int obsCount) {
+		Patient patient = Context.getPatientService().getPatient(2);
+		Concept concept = Context.getConceptService().getConcept(5089);
+		Location location = Context.getLocationService().getLocation(1);
+		Date now = new Date();
+		
+		Encounter encounter = new Encounter();
+		encounter.setPatient(patient);
+		encounter.setLocation(location);
+		encounter.setEncounterDatetime(now);
+		Obs group = null;
+		for (int i = 0; i < obsCount; i++) {
+			Obs obs = new Obs(patient, concept, now, location);
+			obs.setValueNumeric((double) i);
+			if (i % 2 == 0) {
+				group = new Obs(patient, concept, now, location);
+				encounter.addObs(group);
+			} else {
+				group.addGroupMember(obs);
+			}
+			encounter.addObs(obs);
+		}
+		return encounter;
+	}
+	
+	@Test
+	public void shouldHandleEveryObsOfTheEncounter() throws Exception {
+		User user = Context.getAuthenticatedUser();
+		for (int obsCount : OBS_COUNTS) {
+			long time = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				Encounter encounter = createEncounter(obsCount);
+				if (round == 0) {
+					HandlerUtil.clearCachedHandlers();
+					RequiredDataAdvice.clearCachedChildCollections();
+				}
+				
+				long start = System.currentTimeMillis();
+				RequiredDataAdvice.recursivelyHandle(SaveHandler.class, encounter, null);
+				time += System.currentTimeMillis() - start;
+				
+				for (Obs obs : encounter.getAllObs(true)) {
+					Assert.assertEquals(user, obs.getCreator());
+					Assert.assertNotNull(obs.getUuid());
+				}
+			}
+			log.info("Handling an encounter with " + obsCount + " obs took " + (time / ROUNDS) + "ms on average");
+		}
+	}
+}
@@ -578,4 +578,48 @@ public class AdministrationServiceTest extends BaseContextSensitiveTest {
 		props = adminService.getAllGlobalProperties();
 		Assert.assertEquals(2, props.size());
 	}
+	
+	/**
+	 * @see {@link AdministrationService#getGlobalProperty(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the new value after the property is saved", method = "getGlobalProperty(String)")
+	public void getGlobalProperty_shouldReturnTheNewValueAfterThePropertyIsSaved() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		GlobalProperty gp = adminService.getGlobalPropertyObject("another-global-property");
+		gp.setPropertyValue("newvalue");
+		adminService.saveGlobalProperty(gp);
+		
+		Assert.assertEquals("newvalue", adminService.getGlobalProperty("another-global-property"));
+	}
+	
+	/**
+	 * @see {@link AdministrationService#getGlobalProperty(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null after the property is purged", method = "getGlobalProperty(String)")
+	public void getGlobalProperty_shouldReturnNullAfterThePropertyIsPurged() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals("anothervalue", adminService.getGlobalProperty("another-global-property"));
+		
+		adminService.purgeGlobalProperty(adminService.getGlobalPropertyObject("another-global-property"));
+		
+		Assert.assertNull(adminService.getGlobalProperty("another-global-property"));
+	}
+	
+	/**
+	 * @see {@link AdministrationService#getGlobalPropertyValue(String,T)}
+	 */
+	@Test
+	@Verifies(value = "should return the new value after the property is saved", method = "getGlobalPropertyValue(String,T)")
+	public void getGlobalPropertyValue_shouldReturnTheNewValueAfterThePropertyIsSaved() throws Exception {
+		executeDataSet("org/openmrs/api/include/AdministrationServiceTest-globalproperties.xml");
+		Assert.assertEquals(1234, adminService.getGlobalPropertyValue("valid.integer", 4).intValue());
+		
+		adminService.saveGlobalProperty(new GlobalProperty("valid.integer", "4321"));
+		
+		Assert.assertEquals(4321, adminService.getGlobalPropertyValue("valid.integer", 4).intValue());
+	}
 }
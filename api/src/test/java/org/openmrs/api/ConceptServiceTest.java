@@ -20,6 +20,14 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -28,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import junit.framework.Assert;
 
@@ -58,6 +67,7 @@ import org.openmrs.Obs;
 import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.User;
+import org.openmrs.api.ConceptService.ConceptIndexRebuildListener;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.SkipBaseSetup;
@@ -1674,4 +1684,239 @@ public class ConceptServiceTest extends BaseContextSensitiveTest {
 		}
 	}
 	
+	/**
+	 * @see {@link ConceptService#getCountOfConcepts(String,List,boolean,List,List,List,List,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return the same count from the in-memory index as from the database", method = "getCountOfConcepts(String,List<Locale>,null,List<ConceptClass>,List<ConceptClass>,List<ConceptDatatype>,List<ConceptDatatype>,Concept)")
+	public void getCountOfConcepts_shouldReturnTheSameCountFromTheInMemoryIndexAsFromTheDatabase() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		List<ConceptClass> noClasses = Collections.emptyList();
+		List<ConceptDatatype> noDatatypes = Collections.emptyList();
+		List<ConceptClass> classes = Collections.singletonList(conceptService.getConceptClass(3));
+		List<ConceptDatatype> datatypes = Collections.singletonList(conceptService.getConceptDatatype(4));
+		String[] phrases = { "c", "cd4", "cd4 count", "count cd4", "no", "yes", "a b" };
+		for (Concept concept : conceptService.getAllConcepts())
+			conceptService.updateConceptIndex(concept);
+		
+		List<Integer> databaseCounts = new ArrayList<Integer>();
+		for (String phrase : phrases) {
+			List<Locale> locales = Collections.singletonList(Locale.ENGLISH);
+			databaseCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, noClasses,
+			    noDatatypes, noDatatypes, null));
+			databaseCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, classes, noClasses, noDatatypes,
+			    datatypes, null));
+			databaseCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, classes, datatypes,
+			    noDatatypes, null));
+			databaseCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, noClasses,
+			    noDatatypes, noDatatypes, conceptService.getConcept(21)));
+		}
+		
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_SEARCH_IN_MEMORY_INDEX, "true"));
+		
+		List<Integer> indexCounts = new ArrayList<Integer>();
+		for (String phrase : phrases) {
+			List<Locale> locales = Collections.singletonList(Locale.ENGLISH);
+			indexCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, noClasses, noDatatypes,
+			    noDatatypes, null));
+			indexCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, classes, noClasses, noDatatypes,
+			    datatypes, null));
+			indexCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, classes, datatypes,
+			    noDatatypes, null));
+			indexCounts.add(conceptService.getCountOfConcepts(phrase, locales, false, noClasses, noClasses, noDatatypes,
+			    noDatatypes, conceptService.getConcept(21)));
+		}
+		
+		Assert.assertTrue(databaseCounts.get(0) > 0);
+		Assert.assertEquals(databaseCounts, indexCounts);
+	}
+	
+	/**
+	 * Reads the concept_word table as a sorted list of concept id, word, locale and weight rows
+	 */
+	private List<String> getConceptWordRows() throws Exception {
+		Context.flushSession();
+		List<String> rows = new ArrayList<String>();
+		Statement statement = getConnection().createStatement();
+		ResultSet results = statement
+		        .executeQuery("select concept_id, word, locale, concept_name_id, weight from concept_word");
+		while (results.next())
+			rows.add(results.getInt(1) + " " + results.getString(2) + " " + results.getString(3) + " "
+			        + results.getInt(4) + " " + results.getDouble(5));
+		statement.close();
+		Collections.sort(rows);
+		return rows;
+	}
+	
+	/**
+	 * @see {@link ConceptService#rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)}
+	 */
+	@Test
+	@Verifies(value = "should rebuild the words of every concept", method = "rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)")
+	public void rebuildConceptIndex_shouldRebuildTheWordsOfEveryConcept() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		for (Concept concept : conceptService.getAllConcepts())
+			conceptService.updateConceptIndex(concept);
+		List<String> expected = getConceptWordRows();
+		Assert.assertTrue(expected.size() > 10);
+		
+		int conceptCount = conceptService.getAllConcepts().size();
+		Assert.assertEquals(conceptCount, conceptService.rebuildConceptIndex(2, 3, null).intValue());
+		Assert.assertEquals(expected, getConceptWordRows());
+	}
+	
+	/**
+	 * @see {@link ConceptService#rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)}
+	 */
+	@Test
+	@Verifies(value = "should report progress to the listener", method = "rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)")
+	public void rebuildConceptIndex_shouldReportProgressToTheListener() throws Exception {
+		final List<Integer> progress = new ArrayList<Integer>();
+		final int conceptCount = conceptService.getAllConcepts().size();
+		conceptService.rebuildConceptIndex(1, 2, new ConceptIndexRebuildListener() {
+			
+			public boolean conceptsIndexed(int conceptsIndexed, int totalConcepts) {
+				Assert.assertEquals(conceptCount, totalConcepts);
+				progress.add(conceptsIndexed);
+				return true;
+			}
+		});
+		
+		Assert.assertEquals((conceptCount + 1) / 2, progress.size());
+		for (int i = 0; i < progress.size() - 1; i++)
+			Assert.assertEquals(2 * (i + 1), progress.get(i).intValue());
+		Assert.assertEquals(conceptCount, progress.get(progress.size() - 1).intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)}
+	 */
+	@Test
+	@Verifies(value = "should keep the old index if the listener cancels the rebuild", method = "rebuildConceptIndex(Integer,Integer,ConceptIndexRebuildListener)")
+	public void rebuildConceptIndex_shouldKeepTheOldIndexIfTheListenerCancelsTheRebuild() throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		List<String> expected = getConceptWordRows();
+		Assert.assertFalse(expected.isEmpty());
+		
+		try {
+			conceptService.rebuildConceptIndex(1, 1, new ConceptIndexRebuildListener() {
+				
+				public boolean conceptsIndexed(int conceptsIndexed, int totalConcepts) {
+					return conceptsIndexed < 3;
+				}
+			});
+			Assert.fail("the rebuild should have been cancelled");
+		}
+		catch (APIException e) {
+			// expected
+		}
+		Assert.assertEquals(expected, getConceptWordRows());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptDictionaryFormat(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the csv and json formats", method = "getConceptDictionaryFormat(String)")
+	public void getConceptDictionaryFormat_shouldGetTheCsvAndJsonFormats() throws Exception {
+		assertEquals("csv", Context.getConceptService().getConceptDictionaryFormat("csv").getName());
+		assertEquals("json", Context.getConceptService().getConceptDictionaryFormat("JSON").getName());
+	}
+	
+	/**
+	 * @see {@link ConceptService#getConceptDictionaryFormat(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null for an unknown format", method = "getConceptDictionaryFormat(String)")
+	public void getConceptDictionaryFormat_shouldReturnNullForAnUnknownFormat() throws Exception {
+		assertNull(Context.getConceptService().getConceptDictionaryFormat("xls"));
+	}
+	
+	/**
+	 * @return the number of concepts in the database
+	 */
+	private int countConcepts(String where) {
+		List<List<Object>> rows = Context.getAdministrationService().executeSQL(
+		    "select count(*) from concept" + (where == null ? "" : " where " + where), true);
+		return ((Number) rows.get(0).get(0)).intValue();
+	}
+	
+	/**
+	 * @see {@link ConceptService#exportConceptDictionary(OutputStream,String,Date,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should export all concepts in the given format", method = "exportConceptDictionary(OutputStream,String,Date,boolean,boolean)")
+	public void exportConceptDictionary_shouldExportAllConceptsInTheGivenFormat() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Integer exported = Context.getConceptService().exportConceptDictionary(out, "json", null, true, false);
+		
+		assertEquals(countConcepts(null), exported.intValue());
+		String json = out.toString("UTF-8");
+		assertTrue(json.startsWith("{\"concepts\":[{\"conceptId\":3,"));
+		assertTrue(json.endsWith("]}"));
+		assertTrue(json.contains("{\"name\":\"COUGH SYRUP\",\"locale\":\"en\""));
+	}
+	
+	/**
+	 * @see {@link ConceptService#exportConceptDictionary(OutputStream,String,Date,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should only export concepts changed since the given date", method = "exportConceptDictionary(OutputStream,String,Date,boolean,boolean)")
+	public void exportConceptDictionary_shouldOnlyExportConceptsChangedSinceTheGivenDate() throws Exception {
+		Date start = new Date(System.currentTimeMillis() - 1000);
+		ConceptService cs = Context.getConceptService();
+		Concept concept = cs.getConcept(5089);
+		concept.setVersion("changed");
+		cs.saveConcept(concept);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Integer exported = cs.exportConceptDictionary(out, "csv", start, true, false);
+		
+		assertEquals(1, exported.intValue());
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertTrue(lines[0].startsWith("Concept Id,Name,"));
+		assertTrue(lines[1].startsWith("5089,"));
+	}
+	
+	/**
+	 * @see {@link ConceptService#exportConceptDictionary(OutputStream,String,Date,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should exclude retired concepts unless asked to include them", method = "exportConceptDictionary(OutputStream,String,Date,boolean,boolean)")
+	public void exportConceptDictionary_shouldExcludeRetiredConceptsUnlessAskedToIncludeThem() throws Exception {
+		int retired = countConcepts("retired = true");
+		assertTrue(retired > 0);
+		
+		Integer withoutRetired = Context.getConceptService().exportConceptDictionary(new ByteArrayOutputStream(), "csv",
+		    null, false, false);
+		Integer withRetired = Context.getConceptService().exportConceptDictionary(new ByteArrayOutputStream(), "csv",
+		    null, true, false);
+		
+		assertEquals(countConcepts("retired = false"), withoutRetired.intValue());
+		assertEquals(withoutRetired + retired, withRetired.intValue());
+	}
+	
+	/**
+	 * @see {@link ConceptService#exportConceptDictionary(OutputStream,String,Date,boolean,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should gzip the export if asked to", method = "exportConceptDictionary(OutputStream,String,Date,boolean,boolean)")
+	public void exportConceptDictionary_shouldGzipTheExportIfAskedTo() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Context.getConceptService().exportConceptDictionary(out, "csv", null, false, true);
+		
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(out
+		        .toByteArray())), "UTF-8"));
+		assertTrue(reader.readLine().startsWith("Concept Id,Name,"));
+	}
+	
+	/**
+	 * @see {@link ConceptService#exportConceptDictionary(OutputStream,String,Date,boolean,boolean)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail for an unknown format", method = "exportConceptDictionary(OutputStream,String,Date,boolean,boolean)")
+	public void exportConceptDictionary_shouldFailForAnUnknownFormat() throws Exception {
+		Context.getConceptService().exportConceptDictionary(new ByteArrayOutputStream(), "xls", null, false, false);
+	}
 }
@@ -24,10 +24,12 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -1496,4 +1498,205 @@ public class EncounterServiceTest extends BaseContextSensitiveTest {
 		List<Encounter> encs = Context.getEncounterService().getEncounters("qwerty", 0, 3, false);
 		Assert.assertEquals(3, encs.size());
 	}
+	
+	/**
+	 * Creates a new encounter that passes validation, for the batch save tests
+	 * 
+	 * @param patientId the patient the encounter is for
+	 * @return the new, unsaved encounter
+	 */
+	private Encounter newEncounter(Integer patientId) {
+		Encounter encounter = new Encounter();
+		encounter.setLocation(new Location(1));
+		encounter.setEncounterType(new EncounterType(1));
+		encounter.setEncounterDatetime(new Date());
+		encounter.setPatient(new Patient(patientId));
+		encounter.setProvider(new Person(1));
+		return encounter;
+	}
+	
+	/**
+	 * @see {@link EncounterService#saveEncounters(List)}
+	 */
+	@Test
+	@Verifies(value = "should save all valid encounters", method = "saveEncounters(List)")
+	public void saveEncounters_shouldSaveAllValidEncounters() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		for (int i = 0; i < 5; i++) {
+			Encounter encounter = newEncounter(3);
+			Obs obs = new Obs();
+			obs.setConcept(new Concept(1));
+			obs.setValueNumeric(50d + i);
+			encounter.addObs(obs);
+			encounters.add(encounter);
+		}
+		
+		BatchSaveResult<Encounter> result = es.saveEncounters(encounters);
+		
+		assertFalse(result.hasErrors());
+		assertEquals(encounters, result.getSaved());
+		for (Encounter encounter : encounters) {
+			assertNotNull(encounter.getEncounterId());
+			assertNotNull(encounter.getCreator());
+			Obs obs = encounter.getAllObs().iterator().next();
+			assertNotNull(obs.getObsId());
+			assertEquals(encounter.getEncounterDatetime(), obs.getObsDatetime());
+		}
+		Context.clearSession();
+		for (Encounter encounter : encounters)
+			assertNotNull(es.getEncounter(encounter.getEncounterId()));
+	}
+	
+	/**
+	 * @see {@link EncounterService#saveEncounters(List)}
+	 */
+	@Test
+	@Verifies(value = "should report invalid encounters by index and save the rest", method = "saveEncounters(List)")
+	public void saveEncounters_shouldReportInvalidEncountersByIndexAndSaveTheRest() throws Exception {
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		encounters.add(newEncounter(3));
+		Encounter invalid = newEncounter(3);
+		invalid.setPatient(null);
+		encounters.add(invalid);
+		encounters.add(newEncounter(3));
+		
+		BatchSaveResult<Encounter> result = Context.getEncounterService().saveEncounters(encounters);
+		
+		assertEquals(1, result.getErrors().size());
+		assertNotNull(result.getErrors().get(1));
+		assertEquals(2, result.getSaved().size());
+		assertNotNull(encounters.get(0).getEncounterId());
+		assertNull(invalid.getEncounterId());
+		assertNotNull(encounters.get(2).getEncounterId());
+	}
+	
+	/**
+	 * @see {@link EncounterService#saveEncounters(List)}
+	 */
+	@Test
+	@Verifies(value = "should cascade encounter datetime to obs of existing encounters", method = "saveEncounters(List)")
+	public void saveEncounters_shouldCascadeEncounterDatetimeToObsOfExistingEncounters() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		Encounter enc = es.getEncounter(1);
+		Date newDate = new Date();
+		enc.setEncounterDatetime(newDate);
+		
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		encounters.add(enc);
+		encounters.add(newEncounter(3));
+		BatchSaveResult<Encounter> result = es.saveEncounters(encounters);
+		
+		assertFalse(result.hasErrors());
+		for (Obs obs : enc.getAllObs()) {
+			// obs 3 had its own datetime, the others inherited the encounter's
+			if (obs.getObsId().equals(3))
+				assertNotSame(newDate, obs.getObsDatetime());
+			else
+				assertEquals(newDate, obs.getObsDatetime());
+		}
+	}
+	
+	/**
+	 * @see {@link EncounterService#saveEncounters(List)}
+	 */
+	@Test
+	@Verifies(value = "should not save the changes to a rejected existing encounter", method = "saveEncounters(List)")
+	public void saveEncounters_shouldNotSaveTheChangesToARejectedExistingEncounter() throws Exception {
+		EncounterService es = Context.getEncounterService();
+		Encounter rejected = es.getEncounter(3);
+		Date originalDate = rejected.getEncounterDatetime();
+		Obs obs = rejected.getAllObs().iterator().next();
+		String originalComment = obs.getComment();
+		rejected.setEncounterDatetime(new Date());
+		obs.setComment("not saved");
+		// the visit is for another patient
+		rejected.setVisit(Context.getVisitService().getVisit(4));
+		
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		encounters.add(rejected);
+		encounters.add(newEncounter(7));
+		BatchSaveResult<Encounter> result = es.saveEncounters(encounters);
+		
+		assertTrue(result.getErrors().containsKey(0));
+		assertEquals(1, result.getSaved().size());
+		Context.clearSession();
+		Encounter reloaded = es.getEncounter(3);
+		assertEquals(originalDate, reloaded.getEncounterDatetime());
+		assertNull(reloaded.getVisit());
+		assertEquals(originalComment, Context.getObsService().getObs(obs.getObsId()).getComment());
+	}
+	
+	/**
+	 * @see {@link EncounterService#importEncounters(List,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should save encounters across several chunks", method = "importEncounters(List,Integer)")
+	public void importEncounters_shouldSaveEncountersAcrossSeveralChunks() throws Exception {
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		for (int i = 0; i < 7; i++)
+			encounters.add(newEncounter(3));
+		
+		BatchSaveResult<Encounter> result = Context.getEncounterService().importEncounters(encounters, 3);
+		
+		assertFalse(result.hasErrors());
+		assertEquals(7, result.getSaved().size());
+		for (Encounter encounter : encounters)
+			assertNotNull(Context.getEncounterService().getEncounter(encounter.getEncounterId()));
+	}
+	
+	/**
+	 * @see {@link EncounterService#importEncounters(List,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should report errors with indexes into the whole list", method = "importEncounters(List,Integer)")
+	public void importEncounters_shouldReportErrorsWithIndexesIntoTheWholeList() throws Exception {
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		for (int i = 0; i < 7; i++)
+			encounters.add(newEncounter(3));
+		encounters.get(1).setPatient(null);
+		encounters.get(5).setPatient(null);
+		
+		BatchSaveResult<Encounter> result = Context.getEncounterService().importEncounters(encounters, 3);
+		
+		assertEquals(5, result.getSaved().size());
+		assertEquals(2, result.getErrors().size());
+		assertTrue(result.getErrors().containsKey(1));
+		assertTrue(result.getErrors().containsKey(5));
+	}
+	
+	/**
+	 * @see {@link EncounterService#importEncounters(List,Integer)}
+	 */
+	@Test(expected = ConstraintViolationException.class)
+	@Verifies(value = "should throw the error of a failed chunk when called inside a transaction", method = "importEncounters(List,Integer)")
+	public void importEncounters_shouldThrowTheErrorOfAFailedChunkWhenCalledInsideATransaction() throws Exception {
+		List<Encounter> encounters = new ArrayList<Encounter>();
+		for (int i = 0; i < 4; i++)
+			encounters.add(newEncounter(3));
+		// passes validation but fails at the database
+		encounters.get(3).setEncounterType(new EncounterType(9999));
+		
+		Context.getEncounterService().importEncounters(encounters, 3);
+	}
+	
+	/**
+	 * @see {@link EncounterService#encounterIterator(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should iterate over all encounters in ascending id order", method = "encounterIterator(Integer)")
+	public void encounterIterator_shouldIterateOverAllEncountersInAscendingIdOrder() throws Exception {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (List<Object> row : Context.getAdministrationService().executeSQL(
+		    "select encounter_id from encounter order by encounter_id", true))
+			expected.add(((Number) row.get(0)).intValue());
+		assertTrue(expected.size() > 2);
+		
+		List<Integer> actual = new ArrayList<Integer>();
+		Iterator<Encounter> iterator = Context.getEncounterService().encounterIterator(2);
+		while (iterator.hasNext())
+			actual.add(iterator.next().getEncounterId());
+		
+		assertEquals(expected, actual);
+	}
 }
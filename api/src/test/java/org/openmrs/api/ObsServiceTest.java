@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +53,8 @@ import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.ObsServiceImpl;
 import org.openmrs.obs.ComplexData;
 import org.openmrs.obs.ComplexObsHandler;
+import org.openmrs.obs.ObsStatistics;
+import org.openmrs.obs.ObsTimeSeries;
 import org.openmrs.obs.handler.BinaryDataHandler;
 import org.openmrs.obs.handler.ImageHandler;
 import org.openmrs.obs.handler.TextHandler;
@@ -1178,6 +1181,77 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		obsService.getObservationsByPersonAndConcept(null, new Concept(7));
 	}
 	
+	/**
+	 * @see {@link ObsService#getMostRecentObs(Person,List)}
+	 */
+	@Test
+	@Verifies(value = "should get the most recent obs for each concept", method = "getMostRecentObs(Person,List)")
+	public void getMostRecentObs_shouldGetTheMostRecentObsForEachConcept() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		Concept weight = cs.getConcept(5089);
+		Concept civilStatus = cs.getConcept(5497);
+		
+		Map<Concept, Obs> mostRecent = Context.getObsService().getMostRecentObs(new Person(7),
+		    Arrays.asList(civilStatus, weight));
+		
+		Assert.assertEquals(2, mostRecent.size());
+		Assert.assertEquals(civilStatus, mostRecent.keySet().iterator().next());
+		Assert.assertEquals(11, mostRecent.get(civilStatus).getObsId().intValue());
+		Assert.assertEquals(16, mostRecent.get(weight).getObsId().intValue());
+	}
+	
+	/**
+	 * @see {@link ObsService#getMostRecentObs(Person,List)}
+	 */
+	@Test
+	@Verifies(value = "should leave out concepts the person has no obs for", method = "getMostRecentObs(Person,List)")
+	public void getMostRecentObs_shouldLeaveOutConceptsThePersonHasNoObsFor() throws Exception {
+		ConceptService cs = Context.getConceptService();
+		Concept weight = cs.getConcept(5089);
+		Concept noObs = cs.getConcept(3);
+		
+		Map<Concept, Obs> mostRecent = Context.getObsService().getMostRecentObs(new Person(7),
+		    Arrays.asList(noObs, weight));
+		
+		Assert.assertEquals(1, mostRecent.size());
+		Assert.assertFalse(mostRecent.containsKey(noObs));
+		
+		// asking again is answered from the cache the same way
+		mostRecent = Context.getObsService().getMostRecentObs(new Person(7), Arrays.asList(noObs, weight));
+		Assert.assertEquals(1, mostRecent.size());
+		Assert.assertEquals(16, mostRecent.get(weight).getObsId().intValue());
+	}
+	
+	/**
+	 * @see {@link ObsService#getMostRecentObs(Person,List)}
+	 */
+	@Test
+	@Verifies(value = "should not return a cached obs after a newer one is saved", method = "getMostRecentObs(Person,List)")
+	public void getMostRecentObs_shouldNotReturnACachedObsAfterANewerOneIsSaved() throws Exception {
+		ObsService obsService = Context.getObsService();
+		Person person = Context.getPersonService().getPerson(7);
+		Concept weight = Context.getConceptService().getConcept(5089);
+		Assert.assertEquals(16, obsService.getMostRecentObs(person, Collections.singletonList(weight)).get(weight)
+		        .getObsId().intValue());
+		
+		Obs obs = new Obs(person, weight, new Date(), Context.getLocationService().getLocation(1));
+		obs.setValueNumeric(70d);
+		obsService.saveObs(obs, null);
+		
+		Assert.assertEquals(obs, obsService.getMostRecentObs(person, Collections.singletonList(weight)).get(weight));
+	}
+	
+	/**
+	 * @see {@link ObsService#getMostRecentObs(Person,List)}
+	 */
+	@Test
+	@Verifies(value = "should return an empty map for a null or unsaved person", method = "getMostRecentObs(Person,List)")
+	public void getMostRecentObs_shouldReturnAnEmptyMapForANullOrUnsavedPerson() throws Exception {
+		List<Concept> questions = Collections.singletonList(Context.getConceptService().getConcept(5089));
+		Assert.assertEquals(0, Context.getObsService().getMostRecentObs(null, questions).size());
+		Assert.assertEquals(0, Context.getObsService().getMostRecentObs(new Person(), questions).size());
+	}
+	
 	/**
 	 * @see ObsService#purgeObs(Obs)
 	 */
@@ -1514,4 +1588,251 @@ public class ObsServiceTest extends BaseContextSensitiveTest {
 		names.add(new ConceptName(2453));
 		Assert.assertEquals(0, Context.getObsService().getObservationCount(names, true).intValue());
 	}
+	
+	/**
+	 * @see {@link ObsService#obsIterator(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should iterate over all obs in ascending id order", method = "obsIterator(Integer)")
+	public void obsIterator_shouldIterateOverAllObsInAscendingIdOrder() throws Exception {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (List<Object> row : Context.getAdministrationService().executeSQL(
+		    "select obs_id from obs order by obs_id", true))
+			expected.add(((Number) row.get(0)).intValue());
+		assertTrue(expected.size() > 2);
+		
+		List<Integer> actual = new ArrayList<Integer>();
+		Iterator<Obs> iterator = Context.getObsService().obsIterator(2);
+		while (iterator.hasNext())
+			actual.add(iterator.next().getObsId());
+		
+		assertEquals(expected, actual);
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)}
+	 */
+	@Test
+	@Verifies(value = "should compute count min max mean and standard deviation", method = "getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)")
+	public void getNumericObsStatistics_shouldComputeCountMinMaxMeanAndStandardDeviation() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		// the values of concept 1 are 1, 1 and 2 up to 9, the voided 10 is left out
+		ObsStatistics stats = Context.getObsService().getNumericObsStatistics(new Concept(1), null, null, null, null,
+		    null, null, null);
+		assertEquals(10, stats.getCount());
+		assertEquals(1.0, stats.getMin(), 0);
+		assertEquals(9.0, stats.getMax(), 0);
+		assertEquals(4.6, stats.getMean(), 0.0001);
+		assertEquals(Math.sqrt(74.4 / 9), stats.getStandardDeviation(), 0.0001);
+		assertTrue(stats.getPercentiles().isEmpty());
+		assertNull(stats.getHistogramCounts());
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)}
+	 */
+	@Test
+	@Verifies(value = "should compute the requested percentiles", method = "getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)")
+	public void getNumericObsStatistics_shouldComputeTheRequestedPercentiles() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		ObsStatistics stats = Context.getObsService().getNumericObsStatistics(new Concept(1), null, null, null, null,
+		    null, new double[] { 0, 0.5, 1 }, null);
+		assertEquals(3, stats.getPercentiles().size());
+		assertEquals(1.0, stats.getPercentile(0), 0);
+		assertEquals(5.0, stats.getPercentile(0.5), 0);
+		assertEquals(9.0, stats.getPercentile(1), 0);
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)}
+	 */
+	@Test
+	@Verifies(value = "should compute a histogram with the given number of bins", method = "getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)")
+	public void getNumericObsStatistics_shouldComputeAHistogramWithTheGivenNumberOfBins() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		ObsStatistics stats = Context.getObsService().getNumericObsStatistics(new Concept(1), null, null, null, null,
+		    null, null, 4);
+		assertEquals(1.0, stats.getHistogramStart(), 0);
+		assertEquals(2.0, stats.getHistogramBinWidth(), 0);
+		assertEquals("[3, 2, 2, 3]", Arrays.toString(stats.getHistogramCounts()));
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)}
+	 */
+	@Test
+	@Verifies(value = "should only use values within the given limits", method = "getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)")
+	public void getNumericObsStatistics_shouldOnlyUseValuesWithinTheGivenLimits() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		ObsStatistics stats = Context.getObsService().getNumericObsStatistics(new Concept(1), null, null, null, 3.0,
+		    6.0, new double[] { 0 }, 2);
+		assertEquals(4, stats.getCount());
+		assertEquals(3.0, stats.getMin(), 0);
+		assertEquals(6.0, stats.getMax(), 0);
+		assertEquals(3.0, stats.getPercentile(0), 0);
+		assertEquals("[2, 2]", Arrays.toString(stats.getHistogramCounts()));
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return a zero count if there are no values", method = "getNumericObsStatistics(Concept,List,Date,Date,Double,Double,double[],Integer)")
+	public void getNumericObsStatistics_shouldReturnAZeroCountIfThereAreNoValues() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		Date fromDate = new SimpleDateFormat("yyyy-MM-dd").parse("2020-01-01");
+		ObsStatistics stats = Context.getObsService().getNumericObsStatistics(new Concept(1), null, fromDate, null,
+		    null, null, new double[] { 0.5 }, 10);
+		assertEquals(0, stats.getCount());
+		assertNull(stats.getMean());
+		assertNull(stats.getPercentile(0.5));
+		assertNull(stats.getHistogramCounts());
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatisticsByGroup(Concept,ObsGrouping,List,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should group the statistics by location", method = "getNumericObsStatisticsByGroup(Concept,ObsGrouping,List,Date,Date)")
+	public void getNumericObsStatisticsByGroup_shouldGroupTheStatisticsByLocation() throws Exception {
+		// the weights in the standard test dataset are 50 and 55 at location 1 and 61 at location 2
+		Map<Object, ObsStatistics> stats = Context.getObsService().getNumericObsStatisticsByGroup(new Concept(5089),
+		    ObsService.ObsGrouping.LOCATION, null, null, null);
+		assertEquals(2, stats.size());
+		ObsStatistics first = stats.get(new Location(1));
+		assertEquals(2, first.getCount());
+		assertEquals(52.5, first.getMean(), 0);
+		ObsStatistics second = stats.get(new Location(2));
+		assertEquals(1, second.getCount());
+		assertEquals(61.0, second.getMean(), 0);
+		assertNull(second.getStandardDeviation());
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsStatisticsByGroup(Concept,ObsGrouping,List,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should group the statistics by month", method = "getNumericObsStatisticsByGroup(Concept,ObsGrouping,List,Date,Date)")
+	public void getNumericObsStatisticsByGroup_shouldGroupTheStatisticsByMonth() throws Exception {
+		// the weights in the standard test dataset are 50 in July 2008 and 55 and 61 in August 2008
+		Map<Object, ObsStatistics> stats = Context.getObsService().getNumericObsStatisticsByGroup(new Concept(5089),
+		    ObsService.ObsGrouping.MONTH, null, null, null);
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		assertEquals(Arrays.asList(format.parse("2008-07-01"), format.parse("2008-08-01")), new ArrayList<Object>(
+		        stats.keySet()));
+		assertEquals(1, stats.get(format.parse("2008-07-01")).getCount());
+		assertEquals(58.0, stats.get(format.parse("2008-08-01")).getMean(), 0);
+	}
+	
+	/**
+	 * @see {@link ObsService#getCodedObsFrequencies(Concept,List,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should count the obs by coded answer", method = "getCodedObsFrequencies(Concept,List,Date,Date)")
+	public void getCodedObsFrequencies_shouldCountTheObsByCodedAnswer() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		Map<Concept, Long> frequencies = Context.getObsService().getCodedObsFrequencies(new Concept(21), null, null,
+		    null);
+		assertEquals(Long.valueOf(1), frequencies.get(new Concept(7)));
+	}
+	
+	/**
+	 * @see {@link ObsService#getCodedObsFrequencies(Concept,List,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should count the obs without a coded answer under null", method = "getCodedObsFrequencies(Concept,List,Date,Date)")
+	public void getCodedObsFrequencies_shouldCountTheObsWithoutACodedAnswerUnderNull() throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		// obs 15 of the standard test dataset has no answer
+		Map<Concept, Long> frequencies = Context.getObsService().getCodedObsFrequencies(new Concept(21), null, null,
+		    null);
+		assertEquals(2, frequencies.size());
+		assertEquals(Long.valueOf(1), frequencies.get(null));
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsOutsideRange(Concept,double,double,List,Date,Date,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should get the obs with values outside of the limits ordered by value", method = "getNumericObsOutsideRange(Concept,double,double,List,Date,Date,Integer)")
+	public void getNumericObsOutsideRange_shouldGetTheObsWithValuesOutsideOfTheLimitsOrderedByValue()
+	        throws Exception {
+		executeDataSet(INITIAL_OBS_XML);
+		
+		List<Integer> obsIds = new ArrayList<Integer>();
+		for (Obs o : Context.getObsService().getNumericObsOutsideRange(new Concept(1), 2, 8, null, null, null, null))
+			obsIds.add(o.getObsId());
+		assertEquals(Arrays.asList(1, 12, 9), obsIds);
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should get the dates and values of the obs in date order", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldGetTheDatesAndValuesOfTheObsInDateOrder() throws Exception {
+		ObsTimeSeries series = Context.getObsService().getNumericObsTimeSeries(new Person(7), new Concept(5089), null,
+		    null);
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		assertEquals(3, series.size());
+		assertEquals(format.parse("2008-07-01"), series.getDates()[0]);
+		assertEquals(format.parse("2008-08-19"), series.getDates()[2]);
+		assertEquals("[50.0, 55.0, 61.0]", Arrays.toString(series.getValues()));
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should only get obs within the given dates", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldOnlyGetObsWithinTheGivenDates() throws Exception {
+		DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		ObsTimeSeries series = Context.getObsService().getNumericObsTimeSeries(new Person(7), new Concept(5089),
+		    format.parse("2008-08-01"), format.parse("2008-08-19"));
+		assertEquals("[55.0]", Arrays.toString(series.getValues()));
+	}
+	
+	/**
+	 * @see {@link ObsService#getNumericObsTimeSeries(Person,Concept,Date,Date)}
+	 */
+	@Test
+	@Verifies(value = "should leave out voided obs", method = "getNumericObsTimeSeries(Person,Concept,Date,Date)")
+	public void getNumericObsTimeSeries_shouldLeaveOutVoidedObs() throws Exception {
+		ObsService os = Context.getObsService();
+		os.voidObs(os.getObs(10), "testing");
+		
+		ObsTimeSeries series = os.getNumericObsTimeSeries(new Person(7), new Concept(5089), null, null);
+		assertEquals("[50.0, 61.0]", Arrays.toString(series.getValues()));
+	}
+	
+	/**
+	 * @see {@link ObsService#getLastObsChange(Person,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should get the latest date an obs was created or voided", method = "getLastObsChange(Person,Concept)")
+	public void getLastObsChange_shouldGetTheLatestDateAnObsWasCreatedOrVoided() throws Exception {
+		ObsService os = Context.getObsService();
+		Date lastChange = os.getLastObsChange(new Person(7), new Concept(5089));
+		assertEquals(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse("2008-08-19 12:35:30"), lastChange);
+		
+		os.voidObs(os.getObs(7), "testing");
+		Context.flushSession();
+		assertTrue(os.getLastObsChange(new Person(7), new Concept(5089)).after(lastChange));
+	}
+	
+	/**
+	 * @see {@link ObsService#getLastObsChange(Person,Concept)}
+	 */
+	@Test
+	@Verifies(value = "should return null if the person has no obs for the concept", method = "getLastObsChange(Person,Concept)")
+	public void getLastObsChange_shouldReturnNullIfThePersonHasNoObsForTheConcept() throws Exception {
+		assertNull(Context.getObsService().getLastObsChange(new Person(2), new Concept(5089)));
+	}
 }
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
@@ -54,7 +55,10 @@ import org.openmrs.activelist.Allergy;
 import org.openmrs.activelist.Problem;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.PatientServiceImpl;
+import org.openmrs.patient.DuplicatePatientMatch;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchIndex;
+import org.openmrs.patient.PatientSearchResults;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.SkipBaseSetup;
 import org.openmrs.test.TestUtil;
@@ -82,6 +86,8 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 	
 	protected static final String FIND_PATIENTS_XML = "org/openmrs/api/include/PatientServiceTest-findPatients.xml";
 	
+	private static final String LIKELY_DUPLICATES_XML = "org/openmrs/api/include/PatientServiceTest-likelyDuplicates.xml";
+	
 	private static final String ACTIVE_LIST_INITIAL_XML = "org/openmrs/api/include/ActiveListTest.xml";
 	
 	private static final String PATIENT_RELATIONSHIPS_XML = "org/openmrs/api/include/PersonServiceTest-createRelationship.xml";
@@ -2382,4 +2388,155 @@ public class PatientServiceTest extends BaseContextSensitiveTest {
 		Context.getPatientService().savePatient(patient);
 		Assert.assertEquals(1, Context.getPatientService().getCountOfPatients("Hor").intValue());
 	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the count and a page of patients matching the given name", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldReturnTheCountAndAPageOfPatientsMatchingTheGivenName() throws Exception {
+		PatientSearchResults results = patientService.searchPatients("Test", 1, 2);
+		Assert.assertEquals(4, results.getCount());
+		Assert.assertEquals(2, results.getPatientIds().size());
+		
+		List<Integer> all = patientService.searchPatients("Test", 0, null).getPatientIds();
+		Assert.assertEquals(all.subList(1, 3), results.getPatientIds());
+	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return patients matching the given identifier", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldReturnPatientsMatchingTheGivenIdentifier() throws Exception {
+		PatientSearchResults results = patientService.searchPatients("12345K", null, null);
+		Assert.assertEquals(1, results.getCount());
+		Assert.assertEquals(6, results.getPatientIds().get(0).intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return empty results for a blank query", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldReturnEmptyResultsForABlankQuery() throws Exception {
+		PatientSearchResults results = patientService.searchPatients(" ", null, null);
+		Assert.assertEquals(0, results.getCount());
+		Assert.assertTrue(results.getPatientIds().isEmpty());
+	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should rank exact and prefix matches before names that sound alike when the index is enabled", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldRankExactAndPrefixMatchesBeforeNamesThatSoundAlikeWhenTheIndexIsEnabled()
+	        throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "true"));
+		
+		// not found by the database search, which only matches the start of names
+		Assert.assertEquals(0, patientService.getCountOfPatients("Colet").intValue());
+		
+		PatientSearchResults results = patientService.searchPatients("Colet", null, null);
+		Assert.assertEquals(1, results.getCount());
+		Assert.assertEquals(PatientSearchIndex.RANK_SOUNDS_LIKE, results.getRank(7).intValue());
+		
+		results = patientService.searchPatients("Horatio Hornb", null, null);
+		Assert.assertEquals(1, results.getCount());
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT + PatientSearchIndex.RANK_PREFIX, results.getRank(2).intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should match identifiers without separators when the index is enabled", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldMatchIdentifiersWithoutSeparatorsWhenTheIndexIsEnabled() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "true"));
+		
+		PatientSearchResults results = patientService.searchPatients("6ts4", null, null);
+		Assert.assertEquals(1, results.getCount());
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT, results.getRank(7).intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#searchPatients(String,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should not return voided identifiers when the index is enabled", method = "searchPatients(String,Integer,Integer)")
+	public void searchPatients_shouldNotReturnVoidedIdentifiersWhenTheIndexIsEnabled() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "true"));
+		
+		Assert.assertEquals(0, patientService.searchPatients("ABC123", null, null).getCount());
+		Assert.assertEquals(1, patientService.searchPatients("7TU-8", null, null).getCount());
+	}
+	
+	/**
+	 * @see {@link PatientService#getLikelyDuplicatePatients(Double,Integer,boolean,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should find patients whose names sound alike with close birthdates", method = "getLikelyDuplicatePatients(Double,Integer,boolean,Integer)")
+	public void getLikelyDuplicatePatients_shouldFindPatientsWhoseNamesSoundAlikeWithCloseBirthdates() throws Exception {
+		executeDataSet(LIKELY_DUPLICATES_XML);
+		
+		List<DuplicatePatientMatch> matches = patientService.getLikelyDuplicatePatients(null, null, false, null);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(7, matches.get(0).getPatientId().intValue());
+		Assert.assertEquals(1001, matches.get(0).getDuplicatePatientId().intValue());
+		
+		// the birthdates are a week apart
+		Assert.assertEquals(0, patientService.getLikelyDuplicatePatients(null, 3, false, null).size());
+	}
+	
+	/**
+	 * @see {@link PatientService#getLikelyDuplicatePatients(Double,Integer,boolean,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should not return voided patients unless asked to", method = "getLikelyDuplicatePatients(Double,Integer,boolean,Integer)")
+	public void getLikelyDuplicatePatients_shouldNotReturnVoidedPatientsUnlessAskedTo() throws Exception {
+		executeDataSet(LIKELY_DUPLICATES_XML);
+		
+		List<DuplicatePatientMatch> matches = patientService.getLikelyDuplicatePatients(null, null, true, null);
+		Assert.assertEquals(3, matches.size());
+		// same names and birthdate
+		Assert.assertEquals(7, matches.get(0).getPatientId().intValue());
+		Assert.assertEquals(1002, matches.get(0).getDuplicatePatientId().intValue());
+		Assert.assertEquals(1.0, matches.get(0).getScore(), 0.0001);
+	}
+	
+	/**
+	 * @see {@link PatientService#getLikelyDuplicatePatients(Double,Integer,boolean,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return at most the maximum number of pairs", method = "getLikelyDuplicatePatients(Double,Integer,boolean,Integer)")
+	public void getLikelyDuplicatePatients_shouldReturnAtMostTheMaximumNumberOfPairs() throws Exception {
+		executeDataSet(LIKELY_DUPLICATES_XML);
+		
+		List<DuplicatePatientMatch> matches = patientService.getLikelyDuplicatePatients(null, null, true, 1);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1002, matches.get(0).getDuplicatePatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link PatientService#patientIterator(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should iterate over all patients in ascending id order", method = "patientIterator(Integer)")
+	public void patientIterator_shouldIterateOverAllPatientsInAscendingIdOrder() throws Exception {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (List<Object> row : Context.getAdministrationService().executeSQL(
+		    "select patient_id from patient order by patient_id", true))
+			expected.add(((Number) row.get(0)).intValue());
+		assertTrue(expected.size() > 2);
+		
+		List<Integer> actual = new ArrayList<Integer>();
+		Iterator<Patient> iterator = Context.getPatientService().patientIterator(2);
+		while (iterator.hasNext())
+			actual.add(iterator.next().getPatientId());
+		
+		assertEquals(expected, actual);
+	}
 }
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.junit.Test;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
 import org.openmrs.DrugOrder;
+import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
 import org.openmrs.Form;
 import org.openmrs.Location;
@@ -45,6 +47,7 @@ import org.openmrs.Relationship;
 import org.openmrs.RelationshipType;
 import org.openmrs.api.PatientSetService.GroupMethod;
 import org.openmrs.api.PatientSetService.Modifier;
+import org.openmrs.api.PatientSetService.PatientDataHandler;
 import org.openmrs.api.PatientSetService.TimeModifier;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
@@ -382,4 +385,88 @@ public class PatientSetServiceTest extends BaseContextSensitiveTest {
 		Assert.assertEquals("Xanadu", ret.get(7));
 		Assert.assertEquals("Xanadu", ret.get(8));
 	}
+	
+	/**
+	 * @see {@link PatientSetService#streamObservations(Cohort,Concept,Integer,PatientDataHandler)}
+	 */
+	@Test
+	@Verifies(value = "should pass each patient's obs to the handler", method = "streamObservations(Cohort,Concept,Integer,PatientDataHandler)")
+	public void streamObservations_shouldPassEachPatientsObsToTheHandler() throws Exception {
+		final Map<Integer, List<Integer>> obsIds = new HashMap<Integer, List<Integer>>();
+		service.streamObservations(service.getAllPatients(), new Concept(5089), null, new PatientDataHandler<List<Obs>>() {
+			
+			public void handle(Integer patientId, List<Obs> data) {
+				List<Integer> ids = new ArrayList<Integer>();
+				for (Obs o : data)
+					ids.add(o.getObsId());
+				obsIds.put(patientId, ids);
+			}
+		});
+		Assert.assertEquals(1, obsIds.size());
+		TestUtil.assertCollectionContentsEquals(Arrays.asList(7, 10, 16), obsIds.get(7));
+	}
+	
+	/**
+	 * @see {@link PatientSetService#streamObservations(Cohort,Concept,Integer,PatientDataHandler)}
+	 */
+	@Test
+	@Verifies(value = "should query in batches of the given size", method = "streamObservations(Cohort,Concept,Integer,PatientDataHandler)")
+	public void streamObservations_shouldQueryInBatchesOfTheGivenSize() throws Exception {
+		Cohort cohort = service.getAllPatients();
+		Map<Integer, List<Obs>> expected = service.getObservations(cohort, new Concept(5089));
+		final Map<Integer, List<Obs>> actual = new HashMap<Integer, List<Obs>>();
+		service.streamObservations(cohort, new Concept(5089), 1, new PatientDataHandler<List<Obs>>() {
+			
+			public void handle(Integer patientId, List<Obs> data) {
+				Assert.assertFalse(actual.containsKey(patientId));
+				actual.put(patientId, data);
+			}
+		});
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (Integer patientId : expected.keySet())
+			Assert.assertEquals(expected.get(patientId).size(), actual.get(patientId).size());
+	}
+	
+	/**
+	 * @see {@link PatientSetService#streamObservationsValues(Cohort,Concept,List,Integer,boolean,Integer,PatientDataHandler)}
+	 */
+	@Test
+	@Verifies(value = "should pass the same values as getObservationsValues", method = "streamObservationsValues(Cohort,Concept,List,Integer,boolean,Integer,PatientDataHandler)")
+	public void streamObservationsValues_shouldPassTheSameValuesAsGetObservationsValues() throws Exception {
+		Cohort cohort = service.getAllPatients();
+		Concept weight = Context.getConceptService().getConcept(5089);
+		List<String> attributes = Arrays.asList("obsDatetime", "location");
+		Map<Integer, List<List<Object>>> expected = service.getObservationsValues(cohort, weight,
+		    new ArrayList<String>(attributes), 2, true);
+		final Map<Integer, List<List<Object>>> actual = new HashMap<Integer, List<List<Object>>>();
+		service.streamObservationsValues(cohort, weight, new ArrayList<String>(attributes), 2, true, 1,
+		    new PatientDataHandler<List<List<Object>>>() {
+			
+			    public void handle(Integer patientId, List<List<Object>> data) {
+				    actual.put(patientId, data);
+			    }
+		    });
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(2, actual.get(7).size());
+	}
+	
+	/**
+	 * @see {@link PatientSetService#streamEncountersByType(Cohort,List,Integer,PatientDataHandler)}
+	 */
+	@Test
+	@Verifies(value = "should pass each patient's most recent encounter to the handler", method = "streamEncountersByType(Cohort,List,Integer,PatientDataHandler)")
+	public void streamEncountersByType_shouldPassEachPatientsMostRecentEncounterToTheHandler() throws Exception {
+		final Map<Integer, Integer> encounterIds = new HashMap<Integer, Integer>();
+		service.streamEncountersByType(service.getAllPatients(), null, 1, new PatientDataHandler<Encounter>() {
+			
+			public void handle(Integer patientId, Encounter data) {
+				encounterIds.put(patientId, data.getEncounterId());
+			}
+		});
+		Map<Integer, Encounter> expected = service.getEncountersByType(service.getAllPatients(), (List<EncounterType>) null);
+		Assert.assertEquals(expected.keySet(), encounterIds.keySet());
+		for (Map.Entry<Integer, Encounter> e : expected.entrySet())
+			Assert.assertEquals(e.getValue().getEncounterId(), encounterIds.get(e.getKey()));
+		Assert.assertEquals(Integer.valueOf(5), encounterIds.get(7));
+	}
 }
@@ -186,4 +186,35 @@ public class ContextTest extends BaseContextSensitiveTest {
 		PatientService ps2 = Context.getService(PatientService.class);
 		Assert.assertTrue(ps1 == ps2);
 	}
+	
+	/**
+	 * @see {@link ServiceContext#getService(Class)}
+	 */
+	@Test
+	@Verifies(value = "should wait until the context is done refreshing", method = "getService(Class)")
+	public void getService_shouldWaitUntilTheContextIsDoneRefreshing() throws Exception {
+		final ServiceContext serviceContext = ServiceContext.getInstance();
+		final PatientService[] found = new PatientService[1];
+		Thread lookup = new Thread() {
+			
+			@Override
+			public void run() {
+				found[0] = serviceContext.getService(PatientService.class);
+			}
+		};
+		
+		serviceContext.startRefreshingContext();
+		try {
+			lookup.start();
+			lookup.join(500);
+			Assert.assertTrue(lookup.isAlive());
+			Assert.assertNull(found[0]);
+		}
+		finally {
+			serviceContext.doneRefreshingContext();
+		}
+		lookup.join(5000);
+		Assert.assertFalse(lookup.isAlive());
+		Assert.assertNotNull(found[0]);
+	}
 }
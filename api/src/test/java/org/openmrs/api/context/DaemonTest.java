@@ -18,6 +18,8 @@ import org.junit.Test;
 import org.openmrs.api.APIAuthenticationException;
 import org.openmrs.api.APIException;
 import org.openmrs.scheduler.Task;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask;
+import org.openmrs.scheduler.executor.MissedRunPolicy;
 import org.openmrs.scheduler.tasks.AbstractTask;
 import org.openmrs.scheduler.tasks.HelloWorldTask;
 import org.openmrs.scheduler.timer.TimerSchedulerTask;
@@ -57,6 +59,17 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(new PrivateSchedulerTask(task).runTheTest());
 	}
 	
+	/**
+	 * @see Daemon#executeScheduledTask(Task)
+	 * @verifies not throw error if called from an ExecutorSchedulerTask class
+	 */
+	@Test
+	public void executeScheduledTask_shouldNotThrowErrorIfCalledFromAnExecutorSchedulerTaskClass() throws Throwable {
+		PrivateTask task = new PrivateTask();
+		new PrivateExecutorSchedulerTask(task).runTheTest();
+		Assert.assertTrue(task.wasRun);
+	}
+	
 	/**
 	 * @see Daemon#runInNewDaemonThread(Runnable)
 	 * @verifies throw error if called from a non daemon thread
@@ -88,6 +101,21 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		Assert.assertTrue(new PrivateSchedulerTask(taskThatStartsAnotherThread).runTheTest());
 	}
 	
+	/**
+	 * @see Daemon#newDaemonThread(Runnable)
+	 * @verifies throw error if called from a non daemon thread
+	 */
+	@Test(expected = APIAuthenticationException.class)
+	public void newDaemonThread_shouldThrowErrorIfCalledFromANonDaemonThread() {
+		Daemon.newDaemonThread(new Runnable() {
+			
+			@Override
+			public void run() {
+				// do nothing
+			}
+		});
+	}
+	
 	/**
 	 * A TimerSchedulerTask that can call the daemon thread
 	 * 
@@ -113,6 +141,25 @@ public class DaemonTest extends BaseContextSensitiveTest {
 		}
 	}
 	
+	/**
+	 * An ExecutorSchedulerTask that can call the daemon thread
+	 * 
+	 * @see DaemonTest#executeScheduledTask_shouldNotThrowErrorIfCalledFromAnExecutorSchedulerTaskClass()
+	 */
+	private class PrivateExecutorSchedulerTask extends ExecutorSchedulerTask {
+		
+		private Task task;
+		
+		public PrivateExecutorSchedulerTask(Task task) {
+			super(task, null, null, null, 0, MissedRunPolicy.SKIP);
+			this.task = task;
+		}
+		
+		public void runTheTest() throws Throwable {
+			Daemon.executeScheduledTask(this.task);
+		}
+	}
+	
 	/**
 	 * Small task that just marks itself when it gets run
 	 * 
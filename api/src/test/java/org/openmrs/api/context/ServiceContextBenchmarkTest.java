@@ -0,0 +1,80 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.PatientService;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+/**
+ * Times {@link Context#getPatientService()} when it is called from 1, 8 and 64 threads at the same
+ * time. The throughput is logged at info level; the test itself only checks that every thread got
+ * the service. It is excluded from the default build, run it with
+ * <code>mvn test -Dtest=ServiceContextBenchmarkTest</code>.
+ */
+public class ServiceContextBenchmarkTest extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(ServiceContextBenchmarkTest.class);
+	
+	private static final int[] THREADS = { 1, 8, 64 };
+	
+	private static final int LOOKUPS_PER_THREAD = 200000;
+	
+	@Test
+	public void shouldReturnTheServiceToEveryThread() throws Exception {
+		final PatientService expected = Context.getPatientService();
+		for (int threads : THREADS) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				final CountDownLatch start = new CountDownLatch(1);
+				List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+				for (int i = 0; i < threads; i++) {
+					results.add(executor.submit(new Callable<Boolean>() {
+						
+						public Boolean call() throws Exception {
+							start.await();
+							boolean same = true;
+							for (int j = 0; j < LOOKUPS_PER_THREAD; j++)
+								same &= Context.getPatientService() == expected;
+							return same;
+						}
+					}));
+				}
+				
+				long startTime = System.nanoTime();
+				start.countDown();
+				for (Future<Boolean> result : results)
+					Assert.assertTrue(result.get());
+				long time = (System.nanoTime() - startTime) / 1000000;
+				
+				log.info(threads + " threads: " + (threads * LOOKUPS_PER_THREAD) + " lookups in " + time + "ms, "
+				        + (threads * (long) LOOKUPS_PER_THREAD * 1000 / Math.max(time, 1)) + " lookups/s");
+			}
+			finally {
+				executor.shutdown();
+			}
+		}
+	}
+}
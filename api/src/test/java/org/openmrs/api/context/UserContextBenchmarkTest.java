@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.UserService;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.util.RoleConstants;
+
+/**
+ * Compares {@link UserContext#hasPrivilege(String)}, which looks privileges up in the expanded
+ * roles of the user, with walking the roles of the user on every check the way it was done before,
+ * for a user whose role inherits from a chain of other roles. The timings are logged at info level;
+ * the test itself only checks that both give the same answers. It is excluded from the default
+ * build, run it with <code>mvn test -Dtest=UserContextBenchmarkTest</code>.
+ */
+public class UserContextBenchmarkTest extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(UserContextBenchmarkTest.class);
+	
+	private static final int ROLES = 6;
+	
+	private static final int PRIVILEGES_PER_ROLE = 25;
+	
+	private static final int CHECKS = 100000;
+	
+	/**
+	 * The privilege check as it was done before the roles were expanded once per user
+	 */
+	private boolean walkRoles(User user, Role authenticated, Role anonymous, String privilege) {
+		return user.hasPrivilege(privilege) || authenticated.hasPrivilege(privilege) || anonymous.hasPrivilege(privilege);
+	}
+	
+	@Test
+	public void shouldGiveTheSameAnswersAsWalkingTheRoles() throws Exception {
+		UserService us = Context.getUserService();
+		
+		// a chain of roles, each one inheriting from the next
+		List<String> privileges = new ArrayList<String>();
+		Role parent = null;
+		for (int i = ROLES - 1; i >= 0; i--) {
+			Role role = new Role("Benchmark Role " + i, "Role " + i);
+			for (int j = 0; j < PRIVILEGES_PER_ROLE; j++) {
+				Privilege privilege = us.savePrivilege(new Privilege("Benchmark Privilege " + i + "." + j, "Privilege"));
+				role.addPrivilege(privilege);
+				privileges.add(privilege.getPrivilege());
+			}
+			if (parent != null)
+				role.setInheritedRoles(new HashSet<Role>(Collections.singleton(parent)));
+			parent = us.saveRole(role);
+		}
+		privileges.add("A Privilege Nobody Has");
+		
+		UserContext userContext = new UserContext();
+		User user = userContext.becomeUser("butch");
+		user.addRole(parent);
+		Role authenticated = us.getRole(RoleConstants.AUTHENTICATED);
+		Role anonymous = us.getRole(RoleConstants.ANONYMOUS);
+		
+		long start = System.currentTimeMillis();
+		List<Boolean> walked = new ArrayList<Boolean>();
+		for (int i = 0; i < CHECKS; i++) {
+			boolean hasPrivilege = walkRoles(user, authenticated, anonymous, privileges.get(i % privileges.size()));
+			if (i < privileges.size())
+				walked.add(hasPrivilege);
+		}
+		long walkTime = System.currentTimeMillis() - start;
+		
+		start = System.currentTimeMillis();
+		List<Boolean> expanded = new ArrayList<Boolean>();
+		for (int i = 0; i < CHECKS; i++) {
+			boolean hasPrivilege = userContext.hasPrivilege(privileges.get(i % privileges.size()));
+			if (i < privileges.size())
+				expanded.add(hasPrivilege);
+		}
+		long expandedTime = System.currentTimeMillis() - start;
+		
+		log.info(CHECKS + " privilege checks through " + ROLES + " roles: walking the roles " + walkTime
+		        + "ms, expanded roles " + expandedTime + "ms");
+		
+		Assert.assertEquals(walked, expanded);
+		Assert.assertFalse(expanded.get(expanded.size() - 1));
+		Assert.assertTrue(expanded.get(0));
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.api.UserService;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.RoleConstants;
+
+/**
+ * Tests methods on the {@link UserContext} class
+ */
+public class UserContextTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link UserContext#hasPrivilege(String)}
+	 */
+	@Test
+	@Verifies(value = "should authorize once a privilege is added to a role of the user after the first check", method = "hasPrivilege(String)")
+	public void hasPrivilege_shouldAuthorizeOnceAPrivilegeIsAddedToARoleOfTheUserAfterTheFirstCheck() throws Exception {
+		// a user context that nobody is logged in to only has the anonymous role
+		UserContext userContext = new UserContext();
+		Assert.assertFalse(userContext.hasPrivilege("A New Privilege"));
+		
+		UserService us = Context.getUserService();
+		Privilege privilege = us.savePrivilege(new Privilege("A New Privilege", "Only given to anonymous users"));
+		Role anonymous = us.getRole(RoleConstants.ANONYMOUS);
+		anonymous.addPrivilege(privilege);
+		us.saveRole(anonymous);
+		Context.flushSession();
+		
+		Assert.assertTrue(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link UserContext#UserContext(UserContext)}
+	 */
+	@Test
+	@Verifies(value = "should be authenticated as the same user", method = "UserContext(UserContext)")
+	public void UserContext_shouldBeAuthenticatedAsTheSameUser() throws Exception {
+		UserContext userContext = new UserContext(Context.getUserContext());
+		Assert.assertNotSame(Context.getUserContext(), userContext);
+		Assert.assertEquals(Context.getAuthenticatedUser(), userContext.getAuthenticatedUser());
+		Assert.assertEquals(Context.getLocale(), userContext.getLocale());
+	}
+	
+	/**
+	 * @see {@link UserContext#UserContext(UserContext)}
+	 */
+	@Test
+	@Verifies(value = "should not copy the proxy privileges", method = "UserContext(UserContext)")
+	public void UserContext_shouldNotCopyTheProxyPrivileges() throws Exception {
+		UserContext anonymous = new UserContext();
+		anonymous.addProxyPrivilege("Some Privilege");
+		Assert.assertTrue(anonymous.hasPrivilege("Some Privilege"));
+		Assert.assertFalse(new UserContext(anonymous).hasPrivilege("Some Privilege"));
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.type.Type;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link CacheInvalidatingInterceptor} class
+ */
+public class CacheInvalidatingInterceptorTest {
+	
+	/**
+	 * Records the keys it throws values away by, an obs has the key "obs"
+	 */
+	private static class RecordingInterceptor extends CacheInvalidatingInterceptor<String> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private List<String> invalidated = new ArrayList<String>();
+		
+		@Override
+		protected Collection<String> getKeys(Object entity) {
+			if (entity instanceof Obs)
+				return Collections.singleton("obs");
+			return Collections.emptySet();
+		}
+		
+		@Override
+		protected void invalidate(String key) {
+			invalidated.add(key);
+		}
+		
+		@Override
+		public void invalidateAll() {
+			invalidated.add("all");
+		}
+	}
+	
+	/**
+	 * @see {@link CacheInvalidatingInterceptor#onSave(Object,Serializable,Object[],String[],Type[])}
+	 */
+	@Test
+	@Verifies(value = "should throw away the values that depend on the saved object", method = "onSave(Object,Serializable,Object[],String[],Type[])")
+	public void onSave_shouldThrowAwayTheValuesThatDependOnTheSavedObject() throws Exception {
+		RecordingInterceptor interceptor = new RecordingInterceptor();
+		interceptor.onSave(new Location(1), 1, null, null, null);
+		Assert.assertEquals(0, interceptor.invalidated.size());
+		
+		interceptor.onSave(new Obs(), 1, null, null, null);
+		Assert.assertEquals(Collections.singletonList("obs"), interceptor.invalidated);
+	}
+	
+	/**
+	 * @see {@link CacheInvalidatingInterceptor#onSave(Object,Serializable,Object[],String[],Type[])}
+	 */
+	@Test
+	@Verifies(value = "should throw away the values again when the transaction ends", method = "onSave(Object,Serializable,Object[],String[],Type[])")
+	public void onSave_shouldThrowAwayTheValuesAgainWhenTheTransactionEnds() throws Exception {
+		RecordingInterceptor interceptor = new RecordingInterceptor();
+		interceptor.onSave(new Obs(), 1, null, null, null);
+		interceptor.onDelete(new Obs(), 2, null, null, null);
+		interceptor.invalidated.clear();
+		
+		interceptor.afterTransactionCompletion(null);
+		Assert.assertEquals(Collections.singletonList("obs"), interceptor.invalidated);
+		
+		// the next transaction starts with nothing changed
+		interceptor.afterTransactionCompletion(null);
+		Assert.assertEquals(1, interceptor.invalidated.size());
+	}
+	
+	/**
+	 * @see {@link CacheInvalidatingInterceptor#afterTransactionCompletion(org.hibernate.Transaction)}
+	 */
+	@Test
+	@Verifies(value = "should not throw away values when the transaction changed nothing", method = "afterTransactionCompletion(Transaction)")
+	public void afterTransactionCompletion_shouldNotThrowAwayValuesWhenTheTransactionChangedNothing() throws Exception {
+		RecordingInterceptor interceptor = new RecordingInterceptor();
+		interceptor.onSave(new Location(1), 1, null, null, null);
+		interceptor.afterTransactionCompletion(null);
+		Assert.assertEquals(0, interceptor.invalidated.size());
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+import junit.framework.Assert;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Compares concept searches answered by the {@link ConceptWordIndex} with the same searches run
+ * against the concept_word table, on a synthetic dictionary. The timings are logged at info level;
+ * the test itself only checks that both give the same answers. Raise {@link #CONCEPTS} to get
+ * numbers closer to a full dictionary. It is excluded from the default build, run it with
+ * <code>mvn test -Dtest=ConceptWordIndexBenchmarkTest</code>.
+ */
+public class ConceptWordIndexBenchmarkTest extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(ConceptWordIndexBenchmarkTest.class);
+	
+	private static final int CONCEPTS = 3000;
+	
+	private static final int SEARCHES = 100;
+	
+	private static final int FIRST_ID = 100000;
+	
+	/**
+	 * Inserts CONCEPTS concepts, each with a name of two or three words picked from a small
+	 * vocabulary, and returns the vocabulary
+	 */
+	private List<String> createDictionary(Random random) throws Exception {
+		List<String> vocabulary = new ArrayList<String>();
+		String letters = "ABCDEFGHIKLMNOPRSTUVY";
+		for (int i = 0; i < 400; i++) {
+			StringBuilder word = new StringBuilder();
+			int length = 3 + random.nextInt(6);
+			for (int j = 0; j < length; j++)
+				word.append(letters.charAt(random.nextInt(letters.length())));
+			vocabulary.add(word.toString());
+		}
+		
+		Connection connection = getConnection();
+		PreparedStatement concept = connection.prepareStatement("insert into concept (concept_id, retired, datatype_id, "
+		        + "class_id, is_set, creator, date_created, uuid) values (?, ?, ?, ?, 0, 1, ?, ?)");
+		PreparedStatement name = connection.prepareStatement("insert into concept_name (concept_name_id, concept_id, "
+		        + "name, locale, creator, date_created, voided, uuid, concept_name_type, locale_preferred) "
+		        + "values (?, ?, ?, 'en', 1, ?, 0, ?, 'FULLY_SPECIFIED', 1)");
+		PreparedStatement word = connection.prepareStatement("insert into concept_word (concept_word_id, concept_id, "
+		        + "word, locale, concept_name_id, weight) values (?, ?, ?, 'en', ?, ?)");
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		int wordId = FIRST_ID;
+		for (int id = FIRST_ID; id < FIRST_ID + CONCEPTS; id++) {
+			concept.setInt(1, id);
+			concept.setBoolean(2, id % 10 == 0);
+			concept.setInt(3, 1 + random.nextInt(4));
+			concept.setInt(4, 1 + random.nextInt(3));
+			concept.setTimestamp(5, now);
+			concept.setString(6, UUID.randomUUID().toString());
+			concept.addBatch();
+			
+			List<String> words = new ArrayList<String>();
+			for (int i = 2 + random.nextInt(2); i > 0; i--)
+				words.add(vocabulary.get(random.nextInt(vocabulary.size())));
+			name.setInt(1, id);
+			name.setInt(2, id);
+			name.setString(3, words.toString());
+			name.setTimestamp(4, now);
+			name.setString(5, UUID.randomUUID().toString());
+			name.addBatch();
+			
+			for (String w : words) {
+				word.setInt(1, wordId++);
+				word.setInt(2, id);
+				word.setString(3, w);
+				word.setInt(4, id);
+				word.setDouble(5, 1 + random.nextInt(500) / 100.0);
+				word.addBatch();
+			}
+		}
+		concept.executeBatch();
+		name.executeBatch();
+		word.executeBatch();
+		
+		return vocabulary;
+	}
+	
+	/**
+	 * Runs every search phrase through getCountOfConcepts and returns the counts
+	 */
+	private List<Integer> countAll(List<String> phrases, List<ConceptClass> classes, List<ConceptDatatype> datatypes) {
+		ConceptService cs = Context.getConceptService();
+		List<ConceptClass> noClasses = Collections.emptyList();
+		List<ConceptDatatype> noDatatypes = Collections.emptyList();
+		List<Integer> counts = new ArrayList<Integer>();
+		for (int i = 0; i < phrases.size(); i++) {
+			List<Locale> locales = Collections.singletonList(Locale.ENGLISH);
+			if (i % 2 == 0)
+				counts.add(cs.getCountOfConcepts(phrases.get(i), locales, false, noClasses, noClasses, noDatatypes,
+				    noDatatypes, null));
+			else
+				counts.add(cs.getCountOfConcepts(phrases.get(i), locales, false, classes, noClasses, noDatatypes,
+				    datatypes, null));
+		}
+		return counts;
+	}
+	
+	@Test
+	public void shouldGiveTheSameCountsAsTheDatabaseSearch() throws Exception {
+		Random random = new Random(42);
+		List<String> vocabulary = createDictionary(random);
+		
+		// one or two word phrases made of word prefixes, as typed into a search box
+		List<String> phrases = new ArrayList<String>();
+		for (int i = 0; i < SEARCHES; i++) {
+			String first = vocabulary.get(random.nextInt(vocabulary.size()));
+			String phrase = first.substring(0, 1 + random.nextInt(first.length()));
+			if (i % 3 == 0) {
+				String second = vocabulary.get(random.nextInt(vocabulary.size()));
+				phrase += " " + second.substring(0, 1 + random.nextInt(second.length()));
+			}
+			phrases.add(phrase);
+		}
+		
+		ConceptService cs = Context.getConceptService();
+		List<ConceptClass> classes = new ArrayList<ConceptClass>();
+		classes.add(cs.getConceptClass(1));
+		classes.add(cs.getConceptClass(2));
+		List<ConceptDatatype> datatypes = Collections.singletonList(cs.getConceptDatatype(3));
+		
+		long start = System.currentTimeMillis();
+		List<Integer> databaseCounts = countAll(phrases, classes, datatypes);
+		long databaseTime = System.currentTimeMillis() - start;
+		
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_SEARCH_IN_MEMORY_INDEX, "true"));
+		start = System.currentTimeMillis();
+		cs.getCountOfConcepts("A", Collections.singletonList(Locale.ENGLISH), false, classes, classes, datatypes,
+		    datatypes, null);
+		long buildTime = System.currentTimeMillis() - start;
+		
+		start = System.currentTimeMillis();
+		List<Integer> indexCounts = countAll(phrases, classes, datatypes);
+		long indexTime = System.currentTimeMillis() - start;
+		
+		log.info(SEARCHES + " searches over " + CONCEPTS + " concepts: database " + databaseTime + "ms, index "
+		        + indexTime + "ms (plus " + buildTime + "ms to build it)");
+		
+		Assert.assertEquals(databaseCounts, indexCounts);
+	}
+}
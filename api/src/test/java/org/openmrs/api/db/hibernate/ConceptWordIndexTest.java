@@ -0,0 +1,178 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.db.hibernate.ConceptWordIndex.Entry;
+
+/**
+ * Tests the {@link ConceptWordIndex} class
+ */
+public class ConceptWordIndexTest {
+	
+	private static final List<Locale> ENGLISH = Collections.singletonList(Locale.ENGLISH);
+	
+	private static final List<Integer> NONE = Collections.emptyList();
+	
+	private ConceptWordIndex index;
+	
+	/**
+	 * Indexes a small dictionary: concept 1 "CD4 COUNT" (class 1, datatype 1), concept 2 "CD4
+	 * PERCENT" (class 1, datatype 2), concept 3 "COUGH" (class 2, datatype 1, retired) and concept
+	 * 4 "COUNT OF CHILDREN" (class 2, datatype 1), with a french name for concept 1
+	 */
+	@Before
+	public void buildIndex() throws Exception {
+		index = new ConceptWordIndex();
+		index.putConcept(1, 1, 1, false, Arrays.asList(new Entry(1, 11, "CD4", Locale.ENGLISH, 4.0), new Entry(1, 11,
+		        "COUNT", Locale.ENGLISH, 2.0), new Entry(1, 12, "COMPTE", Locale.FRENCH, 3.0)));
+		index.putConcept(2, 1, 2, false, Arrays.asList(new Entry(2, 21, "CD4", Locale.ENGLISH, 5.0), new Entry(2, 21,
+		        "PERCENT", Locale.ENGLISH, 2.0)));
+		index.putConcept(3, 2, 1, true, Arrays.asList(new Entry(3, 31, "COUGH", Locale.ENGLISH, 6.0)));
+		index.putConcept(4, 2, 1, false, Arrays.asList(new Entry(4, 41, "COUNT", Locale.ENGLISH, 3.0), new Entry(4, 41,
+		        "OF", Locale.ENGLISH, 1.0), new Entry(4, 41, "CHILDREN", Locale.ENGLISH, 1.5)));
+	}
+	
+	private List<Integer> search(List<String> words, boolean includeRetired, List<Integer> requireClassIds,
+	        List<Integer> excludeClassIds, List<Integer> requireDatatypeIds, List<Integer> excludeDatatypeIds) {
+		List<Integer> conceptIds = new ArrayList<Integer>();
+		for (Entry entry : index.getConcepts(words, ENGLISH, includeRetired, null, requireClassIds, excludeClassIds,
+		    requireDatatypeIds, excludeDatatypeIds, null, null))
+			conceptIds.add(entry.getConceptId());
+		return conceptIds;
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getConcepts(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,Integer,Integer)
+	 * @verifies match every word of the phrase against the start of a word of the concept
+	 */
+	@Test
+	public void getConcepts_shouldMatchEveryWordOfThePhraseAgainstTheStartOfAWordOfTheConcept() throws Exception {
+		Assert.assertEquals(Arrays.asList(2, 1), search(Arrays.asList("CD"), false, NONE, NONE, NONE, NONE));
+		Assert.assertEquals(Arrays.asList(1), search(Arrays.asList("COU", "CD"), false, NONE, NONE, NONE, NONE));
+		Assert.assertEquals(Arrays.asList(4), search(Arrays.asList("CH", "COUN"), false, NONE, NONE, NONE, NONE));
+		Assert.assertTrue(search(Arrays.asList("COMPTE"), false, NONE, NONE, NONE, NONE).isEmpty());
+		Assert.assertTrue(search(Arrays.asList("CD4", "OF"), false, NONE, NONE, NONE, NONE).isEmpty());
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getConcepts(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,Integer,Integer)
+	 * @verifies return the highest weighted word of each concept first
+	 */
+	@Test
+	public void getConcepts_shouldReturnTheHighestWeightedWordOfEachConceptFirst() throws Exception {
+		List<Entry> results = index.getConcepts(Arrays.asList("C"), ENGLISH, false, null, NONE, NONE, NONE, NONE, null,
+		    null);
+		Assert.assertEquals(3, results.size());
+		Assert.assertEquals("CD4", results.get(0).getWord());
+		Assert.assertEquals(2, results.get(0).getConceptId());
+		Assert.assertEquals(4.0, results.get(1).getWeight());
+		Assert.assertEquals(Integer.valueOf(11), results.get(1).getConceptNameId());
+		Assert.assertEquals(4, results.get(2).getConceptId());
+		
+		List<Entry> page = index.getConcepts(Arrays.asList("C"), ENGLISH, false, null, NONE, NONE, NONE, NONE, 1, 1);
+		Assert.assertEquals(1, page.size());
+		Assert.assertEquals(1, page.get(0).getConceptId());
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getConcepts(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,Integer,Integer)
+	 * @verifies exclude retired concepts unless asked to include them
+	 */
+	@Test
+	public void getConcepts_shouldExcludeRetiredConceptsUnlessAskedToIncludeThem() throws Exception {
+		Assert.assertEquals(Arrays.asList(4, 1), search(Arrays.asList("COU"), false, NONE, NONE, NONE, NONE));
+		Assert.assertEquals(Arrays.asList(3, 4, 1), search(Arrays.asList("COU"), true, NONE, NONE, NONE, NONE));
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getConcepts(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,Integer,Integer)
+	 * @verifies restrict on concept classes and datatypes
+	 */
+	@Test
+	public void getConcepts_shouldRestrictOnConceptClassesAndDatatypes() throws Exception {
+		List<String> words = Arrays.asList("C");
+		Assert.assertEquals(Arrays.asList(2, 1), search(words, true, Arrays.asList(1), NONE, NONE, NONE));
+		Assert.assertEquals(Arrays.asList(3, 4), search(words, true, NONE, Arrays.asList(1), NONE, NONE));
+		Assert.assertEquals(Arrays.asList(3, 1, 4), search(words, true, NONE, NONE, Arrays.asList(1), NONE));
+		Assert.assertEquals(Arrays.asList(1), search(words, true, Arrays.asList(1), NONE, NONE, Arrays.asList(2)));
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getConcepts(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,Integer,Integer)
+	 * @verifies restrict on answers when there are no search words
+	 */
+	@Test
+	public void getConcepts_shouldRestrictOnAnswersWhenThereAreNoSearchWords() throws Exception {
+		List<String> noWords = Collections.emptyList();
+		List<Entry> results = index.getConcepts(noWords, ENGLISH, false, Arrays.asList(1, 3), NONE, NONE, NONE, NONE,
+		    null, null);
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals("CD4", results.get(0).getWord());
+		
+		Assert.assertTrue(index.getConcepts(noWords, ENGLISH, false, null, NONE, NONE, NONE, NONE, null, null).isEmpty());
+		Assert.assertTrue(index.getConcepts(Arrays.asList("CO"), ENGLISH, false, Arrays.asList(2), NONE, NONE, NONE,
+		    NONE, null, null).isEmpty());
+	}
+	
+	/**
+	 * @see ConceptWordIndex#getCount(List,java.util.Collection,boolean,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,java.util.Collection,boolean)
+	 * @verifies count matched words or distinct concepts
+	 */
+	@Test
+	public void getCount_shouldCountMatchedWordsOrDistinctConcepts() throws Exception {
+		index.putConcept(5, 1, 1, false, Arrays.asList(new Entry(5, 51, "CD4", Locale.ENGLISH, 1.0), new Entry(5, 52,
+		        "CD4", Locale.ENGLISH, 1.0)));
+		List<String> words = Arrays.asList("CD4");
+		Assert.assertEquals(4, index.getCount(words, ENGLISH, false, null, NONE, NONE, NONE, NONE, false));
+		Assert.assertEquals(3, index.getCount(words, ENGLISH, false, null, NONE, NONE, NONE, NONE, true));
+		Assert.assertEquals(1, index.getCount(Arrays.asList("COMP"), Collections.singletonList(Locale.FRENCH), false,
+		    null, NONE, NONE, NONE, NONE, true));
+	}
+	
+	/**
+	 * @see ConceptWordIndex#putConcept(Integer,Integer,Integer,boolean,java.util.Collection)
+	 * @verifies replace the words and attributes of the concept
+	 */
+	@Test
+	public void putConcept_shouldReplaceTheWordsAndAttributesOfTheConcept() throws Exception {
+		index.putConcept(3, 1, 2, false, Arrays.asList(new Entry(3, 32, "COLD", Locale.ENGLISH, 6.0)));
+		Assert.assertTrue(search(Arrays.asList("COUGH"), true, NONE, NONE, NONE, NONE).isEmpty());
+		Assert.assertEquals(Arrays.asList(3), search(Arrays.asList("COLD"), false, Arrays.asList(1), NONE, Arrays
+		        .asList(2), NONE));
+		Assert.assertEquals(4, index.getConceptCount());
+	}
+	
+	/**
+	 * @see ConceptWordIndex#removeConcept(Integer)
+	 * @verifies remove the concept from search results
+	 */
+	@Test
+	public void removeConcept_shouldRemoveTheConceptFromSearchResults() throws Exception {
+		index.removeConcept(2);
+		Assert.assertEquals(Arrays.asList(1), search(Arrays.asList("CD4"), false, NONE, NONE, NONE, NONE));
+		Assert.assertTrue(search(Arrays.asList("PERCENT"), false, NONE, NONE, NONE, NONE).isEmpty());
+		Assert.assertTrue(search(Arrays.asList("C"), false, Arrays.asList(1), NONE, Arrays.asList(2), NONE).isEmpty());
+		Assert.assertEquals(3, index.getConceptCount());
+	}
+}
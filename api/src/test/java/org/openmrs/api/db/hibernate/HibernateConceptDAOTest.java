@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptSearchResult;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the in-memory concept word index of the {@link HibernateConceptDAO}. The index only sees
+ * changes once they are committed, and test transactions are rolled back, so the tests apply the
+ * changes of their transaction themselves.
+ */
+public class HibernateConceptDAOTest extends BaseContextSensitiveTest {
+	
+	private HibernateConceptDAO dao;
+	
+	private ConceptService conceptService;
+	
+	private List<Locale> locales = Collections.singletonList(Locale.ENGLISH);
+	
+	@Before
+	public void before() throws Exception {
+		dao = (HibernateConceptDAO) applicationContext.getBean("conceptDAO");
+		conceptService = Context.getConceptService();
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_CONCEPT_SEARCH_IN_MEMORY_INDEX, "true"));
+	}
+	
+	/**
+	 * @see {@link HibernateConceptDAO#getConcepts(String,List,boolean,List,List,List,List,Concept,Integer,Integer)}
+	 */
+	@Test
+	@Verifies(value = "should return the highest weighted name of each concept first when using the in-memory index", method = "getConcepts(String,List<Locale>,null,List<ConceptClass>,List<ConceptClass>,List<ConceptDatatype>,List<ConceptDatatype>,Concept,Integer,Integer)")
+	public void getConcepts_shouldReturnTheHighestWeightedNameOfEachConceptFirstWhenUsingTheInMemoryIndex()
+	        throws Exception {
+		executeDataSet("org/openmrs/api/include/ConceptServiceTest-words.xml");
+		List<ConceptSearchResult> searchResults = dao.getConcepts("cd4", locales, false, null, null, null, null, null,
+		    null, null);
+		Assert.assertEquals(1, searchResults.size());
+		Assert.assertEquals(5497, searchResults.get(0).getConcept().getConceptId().intValue());
+		
+		// index the words of every concept so that there are weights to order on
+		for (Concept concept : conceptService.getAllConcepts())
+			dao.updateConceptWord(concept);
+		dao.applyConceptWordIndexUpdates();
+		
+		List<ConceptSearchResult> allResults = dao.getConcepts("c", locales, true, null, null, null, null, null, null,
+		    null);
+		Set<Concept> uniqueConcepts = new HashSet<Concept>();
+		Double previousWeight = Double.MAX_VALUE;
+		for (ConceptSearchResult result : allResults) {
+			Assert.assertTrue(uniqueConcepts.add(result.getConcept()));
+			Assert.assertTrue(result.getTransientWeight() <= previousWeight);
+			Assert.assertEquals(result.getConcept(), result.getConceptName().getConcept());
+			previousWeight = result.getTransientWeight();
+		}
+		
+		Assert.assertTrue(allResults.size() > 1);
+		List<ConceptSearchResult> page = dao.getConcepts("c", locales, true, null, null, null, null, null, 1, 1);
+		Assert.assertEquals(allResults.subList(1, 2), page);
+	}
+	
+	/**
+	 * @see {@link HibernateConceptDAO#updateConceptWord(Concept)}
+	 */
+	@Test
+	@Verifies(value = "should keep the in-memory index up to date", method = "updateConceptWord(Concept)")
+	public void updateConceptWord_shouldKeepTheInMemoryIndexUpToDate() throws Exception {
+		Assert.assertTrue(dao.getConcepts("xyzzy", locales, false, null, null, null, null, null, null, null).isEmpty());
+		
+		Concept concept = conceptService.getConcept(5089);
+		concept.addName(new ConceptName("Xyzzy plugh", Locale.ENGLISH));
+		conceptService.saveConcept(concept);
+		Assert.assertTrue(dao.getConcepts("xyzzy", locales, false, null, null, null, null, null, null, null).isEmpty());
+		
+		dao.applyConceptWordIndexUpdates();
+		List<ConceptSearchResult> results = dao.getConcepts("plugh xyz", locales, false, null, null, null, null, null,
+		    null, null);
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(concept, results.get(0).getConcept());
+		Assert.assertEquals("PLUGH", results.get(0).getWord());
+		
+		concept.setRetired(true);
+		concept.setRetireReason("test");
+		dao.updateConceptWord(concept);
+		dao.applyConceptWordIndexUpdates();
+		Assert.assertTrue(dao.getConcepts("xyzzy", locales, false, null, null, null, null, null, null, null).isEmpty());
+		Assert.assertEquals(1, dao.getConcepts("xyzzy", locales, true, null, null, null, null, null, null, null).size());
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link KeysetIterator} class.
+ */
+public class KeysetIteratorTest extends BaseContextSensitiveTest {
+	
+	private SessionFactory getSessionFactory() {
+		return (SessionFactory) applicationContext.getBean("sessionFactory");
+	}
+	
+	/**
+	 * @see {@link KeysetIterator#hasNext()}
+	 */
+	@Test
+	@Verifies(value = "should iterate over all rows in ascending id order", method = "hasNext()")
+	public void hasNext_shouldIterateOverAllRowsInAscendingIdOrder() throws Exception {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (List<Object> row : Context.getAdministrationService().executeSQL(
+		    "select concept_id from concept order by concept_id", true))
+			expected.add(((Number) row.get(0)).intValue());
+		
+		List<Integer> actual = new ArrayList<Integer>();
+		Iterator<Concept> iterator = new KeysetIterator<Concept>(getSessionFactory(), Concept.class, 3);
+		while (iterator.hasNext())
+			actual.add(iterator.next().getConceptId());
+		
+		Assert.assertEquals(expected, actual);
+		Assert.assertFalse(iterator.hasNext());
+	}
+	
+	/**
+	 * @see {@link KeysetIterator#hasNext()}
+	 */
+	@Test
+	@Verifies(value = "should evict the pages the iteration has moved past", method = "hasNext()")
+	public void hasNext_shouldEvictThePagesTheIterationHasMovedPast() throws Exception {
+		Session session = getSessionFactory().getCurrentSession();
+		Iterator<Concept> iterator = new KeysetIterator<Concept>(getSessionFactory(), Concept.class, 2);
+		Concept first = iterator.next();
+		Concept second = iterator.next();
+		Assert.assertTrue(session.contains(first));
+		
+		Concept third = iterator.next();
+		Assert.assertFalse(session.contains(first));
+		Assert.assertFalse(session.contains(second));
+		Assert.assertTrue(session.contains(third));
+	}
+	
+	/**
+	 * @see {@link KeysetIterator#hasNext()}
+	 */
+	@Test
+	@Verifies(value = "should fetch the given associations with each page", method = "hasNext()")
+	public void hasNext_shouldFetchTheGivenAssociationsWithEachPage() throws Exception {
+		Iterator<Concept> iterator = new KeysetIterator<Concept>(getSessionFactory(), Concept.class, 2, "names");
+		while (iterator.hasNext())
+			Assert.assertTrue(Hibernate.isInitialized(iterator.next().getNames(true)));
+	}
+	
+	/**
+	 * @see {@link KeysetIterator#hasNext()}
+	 */
+	@Test
+	@Verifies(value = "should evict the last page once the iteration is over", method = "hasNext()")
+	public void hasNext_shouldEvictTheLastPageOnceTheIterationIsOver() throws Exception {
+		Session session = getSessionFactory().getCurrentSession();
+		Iterator<Concept> iterator = new KeysetIterator<Concept>(getSessionFactory(), Concept.class, 2);
+		Concept last = null;
+		while (iterator.hasNext()) {
+			last = iterator.next();
+			Assert.assertTrue(session.contains(last));
+		}
+		
+		Assert.assertNotNull(last);
+		Assert.assertFalse(session.contains(last));
+	}
+}
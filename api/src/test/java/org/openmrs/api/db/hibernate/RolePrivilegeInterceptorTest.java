@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.db.hibernate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.hibernate.collection.PersistentMap;
+import org.hibernate.collection.PersistentSet;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.Privilege;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.RoleConstants;
+
+/**
+ * Tests methods on the {@link RolePrivilegeInterceptor} class
+ */
+public class RolePrivilegeInterceptorTest extends BaseContextSensitiveTest {
+	
+	private UserContext userContext;
+	
+	/**
+	 * Sets up a user context that has expanded its privileges and then gives the anonymous role a
+	 * new privilege without telling anyone
+	 */
+	@Before
+	public void expandPrivilegesAndChangeAnonymousRole() throws Exception {
+		userContext = new UserContext();
+		Assert.assertFalse(userContext.hasPrivilege("A New Privilege"));
+		
+		Role anonymous = Context.getUserService().getRole(RoleConstants.ANONYMOUS);
+		anonymous.addPrivilege(new Privilege("A New Privilege"));
+		Assert.assertFalse("the expanded privileges should have been kept", userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should return a key for roles and privileges", method = "getKeys(Object)")
+	public void getKeys_shouldReturnAKeyForRolesAndPrivileges() throws Exception {
+		RolePrivilegeInterceptor interceptor = new RolePrivilegeInterceptor();
+		Assert.assertEquals(1, interceptor.getKeys(new Privilege("Some Privilege")).size());
+		
+		interceptor.onSave(new Role("Some Role"), null, null, null, null);
+		Assert.assertTrue(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should not return a key for users", method = "getKeys(Object)")
+	public void getKeys_shouldNotReturnAKeyForUsers() throws Exception {
+		RolePrivilegeInterceptor interceptor = new RolePrivilegeInterceptor();
+		Assert.assertEquals(0, interceptor.getKeys(new User()).size());
+		
+		interceptor.onFlushDirty(new User(), null, null, null, null, null);
+		Assert.assertFalse(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should not return keys for other objects", method = "getKeys(Object)")
+	public void getKeys_shouldNotReturnKeysForOtherObjects() throws Exception {
+		RolePrivilegeInterceptor interceptor = new RolePrivilegeInterceptor();
+		Assert.assertEquals(0, interceptor.getKeys(new Location(1)).size());
+		
+		interceptor.onSave(new Location(1), null, null, null, null);
+		Assert.assertFalse(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#onCollectionUpdate(Object,Serializable)}
+	 */
+	@Test
+	@Verifies(value = "should mark privileges as changed when the privileges of a role change", method = "onCollectionUpdate(Object,Serializable)")
+	public void onCollectionUpdate_shouldMarkPrivilegesAsChangedWhenThePrivilegesOfARoleChange() throws Exception {
+		PersistentSet privileges = new PersistentSet(null, new HashSet<Privilege>());
+		privileges.setOwner(new Role("Some Role"));
+		new RolePrivilegeInterceptor().onCollectionUpdate(privileges, "Some Role");
+		Assert.assertTrue(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#onCollectionUpdate(Object,Serializable)}
+	 */
+	@Test
+	@Verifies(value = "should mark privileges as changed when the roles of a user change", method = "onCollectionUpdate(Object,Serializable)")
+	public void onCollectionUpdate_shouldMarkPrivilegesAsChangedWhenTheRolesOfAUserChange() throws Exception {
+		PersistentSet roles = new PersistentSet(null, new HashSet<Role>());
+		roles.setOwner(new User());
+		roles.setSnapshot(1, User.class.getName() + ".roles", null);
+		new RolePrivilegeInterceptor().onCollectionUpdate(roles, 1);
+		Assert.assertTrue(userContext.hasPrivilege("A New Privilege"));
+	}
+	
+	/**
+	 * @see {@link RolePrivilegeInterceptor#onCollectionUpdate(Object,Serializable)}
+	 */
+	@Test
+	@Verifies(value = "should not mark privileges as changed when the properties of a user change", method = "onCollectionUpdate(Object,Serializable)")
+	public void onCollectionUpdate_shouldNotMarkPrivilegesAsChangedWhenThePropertiesOfAUserChange() throws Exception {
+		PersistentMap userProperties = new PersistentMap(null, new HashMap<String, String>());
+		userProperties.setOwner(new User());
+		userProperties.setSnapshot(1, User.class.getName() + ".userProperties", null);
+		new RolePrivilegeInterceptor().onCollectionUpdate(userProperties, 1);
+		Assert.assertFalse(userContext.hasPrivilege("A New Privilege"));
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.handler;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Patient;
+import org.openmrs.User;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the {@link PatientSaveHandler} class.
+ */
+public class PatientSaveHandlerTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link PatientSaveHandler#handle(Patient,User,Date,String)}
+	 */
+	@Test
+	@Verifies(value = "should reindex the patient when the transaction commits", method = "handle(Patient,User,Date,String)")
+	public void handle_shouldReindexThePatientWhenTheTransactionCommits() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "true"));
+		PatientService ps = Context.getPatientService();
+		Assert.assertEquals(1, ps.searchPatients("Collet", null, null).getCount());
+		
+		Patient patient = ps.getPatient(7);
+		patient.setVoided(true);
+		new PatientSaveHandler().handle(patient, null, null, null);
+		Assert.assertEquals(1, ps.searchPatients("Collet", null, null).getCount());
+		
+		for (TransactionSynchronization synchronization : new ArrayList<TransactionSynchronization>(
+		        TransactionSynchronizationManager.getSynchronizations()))
+			synchronization.afterCommit();
+		Assert.assertEquals(0, ps.searchPatients("Collet", null, null).getCount());
+	}
+}
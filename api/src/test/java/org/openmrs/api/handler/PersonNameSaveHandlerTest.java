@@ -0,0 +1,60 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.api.handler;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.PersonName;
+import org.openmrs.User;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the {@link PersonNameSaveHandler} class.
+ */
+public class PersonNameSaveHandlerTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link PersonNameSaveHandler#handle(PersonName,User,Date,String)}
+	 */
+	@Test
+	@Verifies(value = "should reindex the person when the transaction commits", method = "handle(PersonName,User,Date,String)")
+	public void handle_shouldReindexThePersonWhenTheTransactionCommits() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_PATIENT_SEARCH_IN_MEMORY_INDEX, "true"));
+		PatientService ps = Context.getPatientService();
+		Assert.assertEquals(0, ps.searchPatients("Nelson", null, null).getCount());
+		
+		PersonName name = Context.getPersonService().getPerson(2).getPersonName();
+		name.setFamilyName(" Nelson ");
+		new PersonNameSaveHandler().handle(name, null, null, null);
+		Assert.assertEquals("Nelson", name.getFamilyName());
+		Assert.assertEquals(0, ps.searchPatients("Nelson", null, null).getCount());
+		
+		for (TransactionSynchronization synchronization : new ArrayList<TransactionSynchronization>(
+		        TransactionSynchronizationManager.getSynchronizations()))
+			synchronization.afterCommit();
+		Assert.assertEquals(2, ps.searchPatients("Nelson", null, null).getPatientIds().get(0).intValue());
+		Assert.assertEquals(0, ps.searchPatients("Hornblower", null, null).getCount());
+	}
+}
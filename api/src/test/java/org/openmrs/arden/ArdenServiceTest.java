@@ -14,9 +14,14 @@
 package org.openmrs.arden;
 
 import java.io.File;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
@@ -51,4 +56,43 @@ public class ArdenServiceTest extends BaseContextSensitiveTest {
 		}
 	}
 	
+	/**
+	 * @see {@link ArdenService#evaluateMlm(String,Cohort,Map)}
+	 */
+	@Test(expected = APIException.class)
+	@Verifies(value = "should fail if the rule class of the mlm is not deployed", method = "evaluateMlm(String,Cohort,Map)")
+	public void evaluateMlm_shouldFailIfTheRuleClassOfTheMlmIsNotDeployed() throws Exception {
+		Context.getArdenService().evaluateMlm("NoSuchMlm", new Cohort("2,7"), null);
+	}
+	
+	/**
+	 * @see {@link ArdenService#evaluateMlm(String,Cohort,Map)}
+	 */
+	@Test
+	@Verifies(value = "should record the evaluation in the statistics of the deployed rule class", method = "evaluateMlm(String,Cohort,Map)")
+	public void evaluateMlm_shouldRecordTheEvaluationInTheStatisticsOfTheDeployedRuleClass() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty("logic.default.packageName", "org.openmrs.arden"));
+		ArdenService ardenService = Context.getArdenService();
+		try {
+			ardenService.evaluateMlm("MockMlmRule", new Cohort("2,7"), null);
+			Assert.fail("the logic service is not available to the api tests");
+		}
+		catch (APIException e) {
+			MlmEvaluationStats stats = ardenService.getEvaluationStats("MockMlmRule");
+			Assert.assertEquals(1, stats.getEvaluations());
+			Assert.assertEquals(1, stats.getFailures());
+			Assert.assertEquals(2, stats.getPatients());
+		}
+	}
+	
+	/**
+	 * @see {@link ArdenService#getEvaluationStats(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null for an mlm that has not been evaluated", method = "getEvaluationStats(String)")
+	public void getEvaluationStats_shouldReturnNullForAnMlmThatHasNotBeenEvaluated() throws Exception {
+		Assert.assertNull(Context.getArdenService().getEvaluationStats("NoSuchMlm"));
+	}
+	
 }
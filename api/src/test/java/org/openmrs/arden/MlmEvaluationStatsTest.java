@@ -0,0 +1,42 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.arden;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link MlmEvaluationStats} class
+ */
+public class MlmEvaluationStatsTest {
+	
+	/**
+	 * @see {@link MlmEvaluationStats#addEvaluation(int,long,boolean)}
+	 */
+	@Test
+	@Verifies(value = "should add the evaluation to the totals", method = "addEvaluation(int,long,boolean)")
+	public void addEvaluation_shouldAddTheEvaluationToTheTotals() throws Exception {
+		MlmEvaluationStats stats = new MlmEvaluationStats();
+		stats.addEvaluation(10, 30, false);
+		stats.addEvaluation(30, 10, true);
+		Assert.assertEquals(2, stats.getEvaluations());
+		Assert.assertEquals(1, stats.getFailures());
+		Assert.assertEquals(40, stats.getPatients());
+		Assert.assertEquals(40, stats.getTotalTime());
+		Assert.assertEquals(30, stats.getMaxTime());
+		Assert.assertEquals(20.0, stats.getMeanTime(), 0);
+		Assert.assertEquals(1.0, stats.getMeanTimePerPatient(), 0);
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link CsvConceptDictionaryFormat}
+ */
+public class CsvConceptDictionaryFormatTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link CsvConceptDictionaryFormat#newWriter(java.io.Writer,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should write a header row and one row per concept", method = "newWriter(Writer,Locale)")
+	public void newWriter_shouldWriteAHeaderRowAndOneRowPerConcept() throws Exception {
+		StringWriter out = new StringWriter();
+		ConceptDictionaryWriter writer = new CsvConceptDictionaryFormat().newWriter(out, Locale.ENGLISH);
+		writer.writeConcept(Context.getConceptService().getConcept(3));
+		writer.writeConcept(Context.getConceptService().getConcept(5089));
+		writer.finish();
+		
+		String[] lines = out.toString().split("\n");
+		Assert.assertEquals(
+		    "Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator", lines[0]);
+		Assert.assertTrue(lines[1].startsWith("3,COUGH SYRUP,"));
+		Assert.assertTrue(lines[2].startsWith("5089,WEIGHT (KG),Patient's weight in kilograms.,"));
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.concept;
+
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link JsonConceptDictionaryFormat}
+ */
+public class JsonConceptDictionaryFormatTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link JsonConceptDictionaryFormat#newWriter(java.io.Writer,Locale)}
+	 */
+	@Test
+	@Verifies(value = "should write the concepts as an array of objects", method = "newWriter(Writer,Locale)")
+	public void newWriter_shouldWriteTheConceptsAsAnArrayOfObjects() throws Exception {
+		StringWriter out = new StringWriter();
+		ConceptDictionaryWriter writer = new JsonConceptDictionaryFormat().newWriter(out, Locale.ENGLISH);
+		writer.writeConcept(Context.getConceptService().getConcept(3));
+		writer.writeConcept(Context.getConceptService().getConcept(5089));
+		writer.finish();
+		
+		String json = out.toString();
+		Assert.assertTrue(json.startsWith("{\"concepts\":[{\"conceptId\":3,\"uuid\":\"0cbe2ed3-cd5f-4f46-9459-26127c9265ab\","));
+		Assert.assertTrue(json.contains("},{\"conceptId\":5089,"));
+		Assert.assertTrue(json.contains("\"descriptions\":[{\"description\":\"Patient's weight in kilograms.\",\"locale\":\"en\"}]"));
+		Assert.assertTrue(json.endsWith("}]}"));
+	}
+}
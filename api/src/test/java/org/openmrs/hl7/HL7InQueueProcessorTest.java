@@ -0,0 +1,155 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
+
+/**
+ * Tests the worker threads of the {@link HL7InQueueProcessor}
+ */
+public class HL7InQueueProcessorTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * The ids of the queue entries created for each patient identifier, in queue order
+	 */
+	private Map<String, List<Integer>> entriesByPatient;
+	
+	/**
+	 * Queues interleaved messages about a few patients, and makes the processor use several
+	 * workers
+	 */
+	@Before
+	public void createQueueEntries() throws Exception {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(OpenmrsConstants.GP_HL7_PROCESSOR_THREADS, "4"));
+		
+		entriesByPatient = new LinkedHashMap<String, List<Integer>>();
+		for (int i = 0; i < 60; i++) {
+			String identifier = (i % 6) + "^^^^";
+			HL7InQueue hl7InQueue = new HL7InQueue();
+			hl7InQueue.setHL7Data("MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|" + i
+			        + "|P|2.5\rPID|||" + identifier + "||John^Doe^||\rPV1||O|1^Unknown Location");
+			hl7InQueue.setHL7Source(new HL7Source(1));
+			hl7InQueue.setHL7SourceKey("key " + i);
+			hl7InQueue.setMessageState(HL7Constants.HL7_STATUS_PENDING);
+			Context.getHL7Service().saveHL7InQueue(hl7InQueue);
+			
+			if (!entriesByPatient.containsKey(identifier))
+				entriesByPatient.put(identifier, new ArrayList<Integer>());
+			entriesByPatient.get(identifier).add(hl7InQueue.getHL7InQueueId());
+		}
+	}
+	
+	/**
+	 * @see {@link HL7InQueueProcessor#processHL7InQueue()}
+	 */
+	@Test
+	@Verifies(value = "should process the entries of one patient in queue order", method = "processHL7InQueue()")
+	public void processHL7InQueue_shouldProcessTheEntriesOfOnePatientInQueueOrder() throws Exception {
+		RecordingProcessor processor = new RecordingProcessor();
+		processor.processHL7InQueue();
+		
+		for (List<Integer> entries : entriesByPatient.values()) {
+			List<Integer> processed = new ArrayList<Integer>(processor.processed);
+			processed.retainAll(entries);
+			Assert.assertEquals(entries, processed);
+			
+			Set<Thread> threads = new HashSet<Thread>();
+			for (Integer entry : entries)
+				threads.add(processor.threads.get(entry));
+			Assert.assertEquals(1, threads.size());
+		}
+	}
+	
+	/**
+	 * @see {@link HL7InQueueProcessor#processHL7InQueue()}
+	 */
+	@Test
+	@Verifies(value = "should stop the worker threads when done", method = "processHL7InQueue()")
+	public void processHL7InQueue_shouldStopTheWorkerThreadsWhenDone() throws Exception {
+		RecordingProcessor processor = new RecordingProcessor();
+		processor.processHL7InQueue();
+		
+		Set<Thread> workers = new HashSet<Thread>(processor.threads.values());
+		Assert.assertFalse(workers.isEmpty());
+		for (Thread worker : workers) {
+			Assert.assertNotSame(Thread.currentThread(), worker);
+			// the executor has terminated, the thread only has to close its session
+			worker.join(10000);
+			Assert.assertFalse(worker.isAlive());
+		}
+	}
+	
+	/**
+	 * @see {@link HL7InQueueProcessor#processHL7InQueue()}
+	 */
+	@Test
+	@Verifies(value = "should give each worker a user context of its own", method = "processHL7InQueue()")
+	public void processHL7InQueue_shouldGiveEachWorkerAUserContextOfItsOwn() throws Exception {
+		RecordingProcessor processor = new RecordingProcessor();
+		processor.processHL7InQueue();
+		
+		Map<Thread, UserContext> userContexts = new HashMap<Thread, UserContext>();
+		for (Map.Entry<Integer, Thread> entry : processor.threads.entrySet())
+			userContexts.put(entry.getValue(), processor.userContexts.get(entry.getKey()));
+		Assert.assertTrue(userContexts.size() > 1);
+		for (UserContext userContext : userContexts.values()) {
+			Assert.assertNotSame(Context.getUserContext(), userContext);
+			Assert.assertEquals(Context.getAuthenticatedUser(), userContext.getAuthenticatedUser());
+		}
+		// user contexts do not override equals
+		Assert.assertEquals(userContexts.size(), new HashSet<UserContext>(userContexts.values()).size());
+	}
+	
+	/**
+	 * Records which worker thread got each queue entry instead of processing it
+	 */
+	private static class RecordingProcessor extends HL7InQueueProcessor {
+		
+		private List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+		
+		private Map<Integer, Thread> threads = Collections.synchronizedMap(new LinkedHashMap<Integer, Thread>());
+		
+		private Map<Integer, UserContext> userContexts = Collections
+		        .synchronizedMap(new HashMap<Integer, UserContext>());
+		
+		/**
+		 * @see org.openmrs.hl7.HL7InQueueProcessor#processQueueEntry(java.lang.Integer)
+		 */
+		@Override
+		protected boolean processQueueEntry(Integer hl7InQueueId) {
+			processed.add(hl7InQueueId);
+			threads.put(hl7InQueueId, Thread.currentThread());
+			userContexts.put(hl7InQueueId, Context.getUserContext());
+			return true;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+import org.openmrs.hl7.HL7ResolverCache.Resolver;
+import org.openmrs.test.Verifies;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Tests methods on the {@link HL7ResolverCache} class
+ */
+public class HL7ResolverCacheTest {
+	
+	/**
+	 * Resolves every key to the same id and counts how often it is called
+	 */
+	private static class CountingResolver implements Resolver {
+		
+		private final Integer id;
+		
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		public CountingResolver(Integer id) {
+			this.id = id;
+		}
+		
+		public Integer resolve() throws HL7Exception {
+			calls.incrementAndGet();
+			return id;
+		}
+	}
+	
+	/**
+	 * @see {@link HL7ResolverCache#get(Region,String,Resolver)}
+	 */
+	@Test
+	@Verifies(value = "should only call the resolver the first time a key is asked for", method = "get(Region,String,Resolver)")
+	public void get_shouldOnlyCallTheResolverTheFirstTimeAKeyIsAskedFor() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		CountingResolver resolver = new CountingResolver(5089);
+		Assert.assertEquals(5089, cache.get(Region.CONCEPT_MAPPING, "SSTRM|WGT234", resolver).intValue());
+		Assert.assertEquals(5089, cache.get(Region.CONCEPT_MAPPING, "SSTRM|WGT234", resolver).intValue());
+		Assert.assertEquals(1, resolver.calls.get());
+		
+		// the same key in another region is a different lookup
+		cache.get(Region.LOCATION, "SSTRM|WGT234", resolver);
+		Assert.assertEquals(2, resolver.calls.get());
+	}
+	
+	/**
+	 * @see {@link HL7ResolverCache#get(Region,String,Resolver)}
+	 */
+	@Test
+	@Verifies(value = "should cache keys that cannot be resolved", method = "get(Region,String,Resolver)")
+	public void get_shouldCacheKeysThatCannotBeResolved() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		CountingResolver resolver = new CountingResolver(null);
+		Assert.assertNull(cache.get(Region.USER, "|Unknown|User", resolver));
+		Assert.assertNull(cache.get(Region.USER, "|Unknown|User", resolver));
+		Assert.assertEquals(1, resolver.calls.get());
+	}
+	
+	/**
+	 * @see {@link HL7ResolverCache#get(Region,String,Resolver)}
+	 */
+	@Test
+	@Verifies(value = "should count hits and misses", method = "get(Region,String,Resolver)")
+	public void get_shouldCountHitsAndMisses() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		CountingResolver resolver = new CountingResolver(1);
+		cache.get(Region.PROVIDER, "1||", resolver);
+		cache.get(Region.PROVIDER, "1||", resolver);
+		cache.get(Region.PROVIDER, "1||", resolver);
+		cache.get(Region.PROVIDER, "2||", resolver);
+		
+		Assert.assertEquals(2, cache.getHits(Region.PROVIDER));
+		Assert.assertEquals(2, cache.getMisses(Region.PROVIDER));
+		Assert.assertEquals(0.5, cache.getHitRate(Region.PROVIDER), 0.0001);
+		Assert.assertEquals(0, cache.getMisses(Region.USER));
+		
+		cache.clearAll();
+		Assert.assertEquals(0, cache.getHits(Region.PROVIDER));
+		Assert.assertEquals(0.0, cache.getHitRate(Region.PROVIDER), 0.0001);
+	}
+	
+	/**
+	 * @see {@link HL7ResolverCache#get(Region,String,Resolver)}
+	 */
+	@Test
+	@Verifies(value = "should drop the least recently used entries beyond the capacity", method = "get(Region,String,Resolver)")
+	public void get_shouldDropTheLeastRecentlyUsedEntriesBeyondTheCapacity() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		cache.setCapacity(2);
+		CountingResolver resolver = new CountingResolver(1);
+		cache.get(Region.LOCATION, "a", resolver);
+		cache.get(Region.LOCATION, "b", resolver);
+		cache.get(Region.LOCATION, "a", resolver);
+		
+		// "b" is now the least recently used entry and makes room for "c"
+		cache.get(Region.LOCATION, "c", resolver);
+		Assert.assertEquals(3, resolver.calls.get());
+		cache.get(Region.LOCATION, "a", resolver);
+		Assert.assertEquals(3, resolver.calls.get());
+		cache.get(Region.LOCATION, "b", resolver);
+		Assert.assertEquals(4, resolver.calls.get());
+	}
+	
+	/**
+	 * @see {@link HL7ResolverCache#get(Region,String,Resolver)}
+	 */
+	@Test
+	@Verifies(value = "should not cache anything if the capacity is zero", method = "get(Region,String,Resolver)")
+	public void get_shouldNotCacheAnythingIfTheCapacityIsZero() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		cache.setCapacity(0);
+		CountingResolver resolver = new CountingResolver(1);
+		cache.get(Region.LOCATION, "a", resolver);
+		cache.get(Region.LOCATION, "a", resolver);
+		Assert.assertEquals(2, resolver.calls.get());
+		Assert.assertEquals(0, cache.getHits(Region.LOCATION));
+	}
+}
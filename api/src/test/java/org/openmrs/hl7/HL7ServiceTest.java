@@ -653,4 +653,41 @@ public class HL7ServiceTest extends BaseContextSensitiveTest {
 		hl7service.getUuidFromIdentifiers(identifiers);
 	}
 	
+	/**
+	 * @see {@link HL7Service#getPendingHL7InQueues(Integer,int)}
+	 */
+	@Test
+	@Verifies(value = "should return pending queue items after the given id in id order", method = "getPendingHL7InQueues(Integer,int)")
+	public void getPendingHL7InQueues_shouldReturnPendingQueueItemsAfterTheGivenIdInIdOrder() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		HL7Service hl7service = Context.getHL7Service();
+		
+		List<HL7InQueue> all = hl7service.getPendingHL7InQueues(null, 10);
+		Assert.assertEquals(2, all.size());
+		Assert.assertEquals(1, all.get(0).getHL7InQueueId().intValue());
+		Assert.assertEquals(2, all.get(1).getHL7InQueueId().intValue());
+		
+		Assert.assertEquals(1, hl7service.getPendingHL7InQueues(null, 1).size());
+		List<HL7InQueue> rest = hl7service.getPendingHL7InQueues(1, 10);
+		Assert.assertEquals(1, rest.size());
+		Assert.assertEquals(2, rest.get(0).getHL7InQueueId().intValue());
+		Assert.assertTrue(hl7service.getPendingHL7InQueues(2, 10).isEmpty());
+	}
+	
+	/**
+	 * @see {@link HL7Service#getPendingHL7InQueues(Integer,int)}
+	 */
+	@Test
+	@Verifies(value = "should not return queue items that are not pending", method = "getPendingHL7InQueues(Integer,int)")
+	public void getPendingHL7InQueues_shouldNotReturnQueueItemsThatAreNotPending() throws Exception {
+		executeDataSet("org/openmrs/hl7/include/ORUTest-initialData.xml");
+		HL7Service hl7service = Context.getHL7Service();
+		HL7InQueue queueItem = hl7service.getHL7InQueue(1);
+		queueItem.setMessageState(HL7Constants.HL7_STATUS_PROCESSING);
+		hl7service.saveHL7InQueue(queueItem);
+		
+		List<HL7InQueue> pending = hl7service.getPendingHL7InQueues(null, 10);
+		Assert.assertEquals(1, pending.size());
+		Assert.assertEquals(2, pending.get(0).getHL7InQueueId().intValue());
+	}
 }
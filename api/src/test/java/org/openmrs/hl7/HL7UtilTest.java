@@ -103,4 +103,36 @@ public class HL7UtilTest {
 		TimeZone.setDefault(originalTimeZone);
 	}
 	
+	/**
+	 * @see {@link HL7Util#getFirstPatientIdentifier(String)}
+	 */
+	@Test
+	@Verifies(value = "should return the first patient identifier of the PID segment", method = "getFirstPatientIdentifier(String)")
+	public void getFirstPatientIdentifier_shouldReturnTheFirstPatientIdentifierOfThePIDSegment() throws Exception {
+		String message = "MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|JqnfhKKtouEz8kzTk6Zo|P|2.5\r"
+		        + "PID|||3^^^^~4^^^OpenMRS^||John3^Doe^||\rPV1||O|1^Unknown Location";
+		Assert.assertEquals("3^^^^", HL7Util.getFirstPatientIdentifier(message));
+	}
+	
+	/**
+	 * @see {@link HL7Util#getFirstPatientIdentifier(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null if the message has no PID segment", method = "getFirstPatientIdentifier(String)")
+	public void getFirstPatientIdentifier_shouldReturnNullIfTheMessageHasNoPIDSegment() throws Exception {
+		Assert.assertNull(HL7Util.getFirstPatientIdentifier("MSH|^~\\&|FORMENTRY\rPV1||O|1^Unknown Location"));
+		Assert.assertNull(HL7Util.getFirstPatientIdentifier("MSH|^~\\&|FORMENTRY\rPID||"));
+		Assert.assertNull(HL7Util.getFirstPatientIdentifier("a malformed hl7 message"));
+		Assert.assertNull(HL7Util.getFirstPatientIdentifier(null));
+	}
+	
+	/**
+	 * @see {@link HL7Util#getFirstPatientIdentifier(String)}
+	 */
+	@Test
+	@Verifies(value = "should use the separators given in the MSH segment", method = "getFirstPatientIdentifier(String)")
+	public void getFirstPatientIdentifier_shouldUseTheSeparatorsGivenInTheMSHSegment() throws Exception {
+		String message = "MSH#^@\\&#FORMENTRY\r\nPID###12^^^MRN@13^^^MRN#\r\n";
+		Assert.assertEquals("12^^^MRN", HL7Util.getFirstPatientIdentifier(message));
+	}
 }
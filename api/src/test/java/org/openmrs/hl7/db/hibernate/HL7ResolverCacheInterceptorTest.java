@@ -0,0 +1,60 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7.db.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.Person;
+import org.openmrs.hl7.HL7ResolverCache;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+import org.openmrs.hl7.HL7ResolverCache.Resolver;
+import org.openmrs.test.Verifies;
+
+import ca.uhn.hl7v2.HL7Exception;
+
+/**
+ * Tests methods on the {@link HL7ResolverCacheInterceptor} class
+ */
+public class HL7ResolverCacheInterceptorTest {
+	
+	/**
+	 * @see {@link HL7ResolverCacheInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should return the regions that depend on the object", method = "getKeys(Object)")
+	public void getKeys_shouldReturnTheRegionsThatDependOnTheObject() throws Exception {
+		HL7ResolverCache cache = new HL7ResolverCache();
+		HL7ResolverCacheInterceptor interceptor = new HL7ResolverCacheInterceptor();
+		interceptor.setResolverCache(cache);
+		Assert.assertTrue(interceptor.getKeys(new Person(1)).contains(Region.PROVIDER));
+		
+		final int[] calls = new int[1];
+		Resolver resolver = new Resolver() {
+			
+			public Integer resolve() throws HL7Exception {
+				calls[0]++;
+				return 1;
+			}
+		};
+		cache.get(Region.LOCATION, "1|", resolver);
+		cache.get(Region.USER, "1||", resolver);
+		
+		interceptor.onSave(new Location(1), 1, null, null, null);
+		
+		cache.get(Region.LOCATION, "1|", resolver);
+		cache.get(Region.USER, "1||", resolver);
+		Assert.assertEquals("only the location should have been looked up again", 3, calls[0]);
+	}
+}
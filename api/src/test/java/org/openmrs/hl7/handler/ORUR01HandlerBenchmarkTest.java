@@ -0,0 +1,121 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.hl7.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.hl7.HL7ResolverCache;
+import org.openmrs.hl7.HL7ResolverCache.Region;
+import org.openmrs.test.BaseContextSensitiveTest;
+
+import ca.uhn.hl7v2.parser.GenericParser;
+
+/**
+ * Replays a corpus of ORU^R01 messages through the {@link ORUR01Handler} once with the
+ * {@link HL7ResolverCache} turned off and once with it on. The timings and hit rates are logged at
+ * info level; the test itself only checks that both runs create the same obs. Raise
+ * {@link #MESSAGES} and {@link #OBX_PER_MESSAGE} to get numbers closer to a real queue. It is
+ * excluded from the default build, run it with
+ * <code>mvn test -Dtest=ORUR01HandlerBenchmarkTest</code>.
+ */
+public class ORUR01HandlerBenchmarkTest extends BaseContextSensitiveTest {
+	
+	private static final Log log = LogFactory.getLog(ORUR01HandlerBenchmarkTest.class);
+	
+	private static final int MESSAGES = 20;
+	
+	private static final int OBX_PER_MESSAGE = 25;
+	
+	private HL7ResolverCache resolverCache;
+	
+	@Before
+	public void runBeforeEachTest() throws Exception {
+		executeDataSet(ORUR01HandlerTest.ORU_INITIAL_DATA_XML);
+		resolverCache = (HL7ResolverCache) applicationContext.getBean("hl7ResolverCache");
+	}
+	
+	@After
+	public void restoreResolverCache() throws Exception {
+		resolverCache.setCapacity(HL7ResolverCache.DEFAULT_CAPACITY);
+		resolverCache.clearAll();
+	}
+	
+	/**
+	 * @return a recorded form entry style corpus, every obs coded through a concept mapping
+	 */
+	private List<String> createCorpus() {
+		List<String> corpus = new ArrayList<String>();
+		for (int i = 0; i < MESSAGES; i++) {
+			StringBuilder message = new StringBuilder();
+			message.append("MSH|^~\\&|FORMENTRY|AMRS.ELD|HL7LISTENER|AMRS.ELD|20080226102656||ORU^R01|bench" + i
+			        + "|P|2.5|1||||||||16^AMRS.ELD.FORMID\r");
+			message.append("PID|||3^^^^||John3^Doe^||\r");
+			message.append("PV1||O|1^Unknown Location||||1^Super User (1-8)|||||||||||||||||||||||||||||||||||||20080212|||||||V\r");
+			message.append("ORC|RE||||||||20080226102537|1^Super User\r");
+			message.append("OBR|1|||1238^MEDICAL RECORD OBSERVATIONS^99DCT\r");
+			for (int j = 0; j < OBX_PER_MESSAGE; j++)
+				message.append("OBX|" + (j + 1) + "|NM|WGT234^WEIGHT^SSTRM||" + (50 + j) + "|||||||||20080206\r");
+			corpus.add(message.toString());
+		}
+		return corpus;
+	}
+	
+	/**
+	 * Runs the corpus through a handler using the resolver cache and returns the time it took
+	 */
+	private long replay(List<String> corpus) throws Exception {
+		GenericParser parser = new GenericParser();
+		ORUR01Handler handler = new ORUR01Handler();
+		handler.setResolverCache(resolverCache);
+		long start = System.currentTimeMillis();
+		for (String message : corpus)
+			handler.processMessage(parser.parse(message));
+		return System.currentTimeMillis() - start;
+	}
+	
+	@Test
+	public void shouldCreateTheSameObsWithAndWithoutTheCache() throws Exception {
+		List<String> corpus = createCorpus();
+		Patient patient = new Patient(3);
+		int before = Context.getObsService().getObservationsByPerson(patient).size();
+		
+		resolverCache.setCapacity(0);
+		long uncachedTime = replay(corpus);
+		int uncachedObs = Context.getObsService().getObservationsByPerson(patient).size() - before;
+		
+		resolverCache.setCapacity(HL7ResolverCache.DEFAULT_CAPACITY);
+		resolverCache.clearAll();
+		long cachedTime = replay(corpus);
+		int cachedObs = Context.getObsService().getObservationsByPerson(patient).size() - before - uncachedObs;
+		
+		StringBuilder hitRates = new StringBuilder();
+		for (Region region : Region.values())
+			hitRates.append(" ").append(region).append("=").append(Math.round(resolverCache.getHitRate(region) * 100))
+			        .append("%");
+		log.info(MESSAGES + " messages of " + OBX_PER_MESSAGE + " obs: uncached " + uncachedTime + "ms, cached "
+		        + cachedTime + "ms, hit rates" + hitRates);
+		
+		Assert.assertEquals(MESSAGES * OBX_PER_MESSAGE, uncachedObs);
+		Assert.assertEquals(uncachedObs, cachedObs);
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.logic.result;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.logic.Duration;
+import org.openmrs.logic.LogicException;
+import org.openmrs.logic.op.Operator;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link CohortResults} class.
+ */
+public class CohortResultsTest {
+	
+	private static final long DAY = 86400000L;
+	
+	private Date today;
+	
+	private Map<Integer, Result> results;
+	
+	private Result numeric(int daysAgo, double value) {
+		return new Result(new Date(today.getTime() - daysAgo * DAY), value, null);
+	}
+	
+	/**
+	 * Patient 1 has the values 300 (10 days ago), 150 (100 days ago) and 250 (1000 days ago), in that
+	 * order. Patient 2 has 500 (5 days ago), patient 3 has none.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		today = new Date();
+		results = new HashMap<Integer, Result>();
+		results.put(1, new Result(Arrays.asList(numeric(10, 300), numeric(100, 150), numeric(1000, 250))));
+		results.put(2, numeric(5, 500));
+		results.put(3, Result.emptyResult());
+	}
+	
+	private CohortResults getCohortResults() {
+		return CohortResults.fromResults(new Cohort("1,2,3,4"), results, today);
+	}
+	
+	/**
+	 * @see {@link CohortResults#fromResults(Cohort,Map,Date)}
+	 */
+	@Test
+	@Verifies(value = "should keep the members of the cohort that have no results", method = "fromResults(Cohort,Map,Date)")
+	public void fromResults_shouldKeepTheMembersOfTheCohortThatHaveNoResults() throws Exception {
+		CohortResults cohortResults = getCohortResults();
+		Assert.assertEquals(4, cohortResults.size());
+		Map<Integer, Result> counts = cohortResults.count().toResults();
+		Assert.assertEquals(0, counts.get(3).toNumber().intValue());
+		Assert.assertEquals(0, counts.get(4).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#fromResults(Cohort,Map,Date)}
+	 */
+	@Test
+	@Verifies(value = "should order the values of each patient by result date", method = "fromResults(Cohort,Map,Date)")
+	public void fromResults_shouldOrderTheValuesOfEachPatientByResultDate() throws Exception {
+		Result result = getCohortResults().toResults().get(1);
+		Assert.assertEquals(3, result.size());
+		Assert.assertEquals(250, result.get(0).toNumber().intValue());
+		Assert.assertEquals(150, result.get(1).toNumber().intValue());
+		Assert.assertEquals(300, result.get(2).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#last()}
+	 */
+	@Test
+	@Verifies(value = "should keep the latest value of each patient", method = "last()")
+	public void last_shouldKeepTheLatestValueOfEachPatient() throws Exception {
+		Map<Integer, Result> last = getCohortResults().last().toResults();
+		Assert.assertEquals(300, last.get(1).toNumber().intValue());
+		Assert.assertEquals(500, last.get(2).toNumber().intValue());
+		Assert.assertTrue(last.get(3).isNull());
+	}
+	
+	/**
+	 * @see {@link CohortResults#first()}
+	 */
+	@Test
+	@Verifies(value = "should keep the earliest value of each patient", method = "first()")
+	public void first_shouldKeepTheEarliestValueOfEachPatient() throws Exception {
+		Map<Integer, Result> first = getCohortResults().first().toResults();
+		Assert.assertEquals(250, first.get(1).toNumber().intValue());
+		Assert.assertEquals(500, first.get(2).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#count()}
+	 */
+	@Test
+	@Verifies(value = "should count the values of each patient", method = "count()")
+	public void count_shouldCountTheValuesOfEachPatient() throws Exception {
+		Map<Integer, Result> counts = getCohortResults().count().toResults();
+		Assert.assertEquals(3, counts.get(1).toNumber().intValue());
+		Assert.assertEquals(1, counts.get(2).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#average()}
+	 */
+	@Test
+	@Verifies(value = "should ignore values without a numeric value", method = "average()")
+	public void average_shouldIgnoreValuesWithoutANumericValue() throws Exception {
+		results.put(3, new Result(today, null, null, null, null, null, null, null));
+		Map<Integer, Result> averages = getCohortResults().average().toResults();
+		Assert.assertEquals(700 / 3, averages.get(1).toNumber().intValue());
+		Assert.assertEquals(500, averages.get(2).toNumber().intValue());
+		Assert.assertTrue(averages.get(3).isEmpty());
+		Assert.assertTrue(averages.get(4).isEmpty());
+	}
+	
+	/**
+	 * @see {@link CohortResults#gt(double)}
+	 */
+	@Test
+	@Verifies(value = "should keep only the values greater than the given number", method = "gt(double)")
+	public void gt_shouldKeepOnlyTheValuesGreaterThanTheGivenNumber() throws Exception {
+		Map<Integer, Result> counts = getCohortResults().gt(200).count().toResults();
+		Assert.assertEquals(2, counts.get(1).toNumber().intValue());
+		Assert.assertEquals(1, counts.get(2).toNumber().intValue());
+		Assert.assertEquals(0, counts.get(3).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#within(Duration)}
+	 */
+	@Test
+	@Verifies(value = "should keep only the values within the duration before the index date", method = "within(Duration)")
+	public void within_shouldKeepOnlyTheValuesWithinTheDurationBeforeTheIndexDate() throws Exception {
+		Map<Integer, Result> counts = getCohortResults().within(Duration.days(30)).count().toResults();
+		Assert.assertEquals(1, counts.get(1).toNumber().intValue());
+		Assert.assertEquals(1, counts.get(2).toNumber().intValue());
+		
+		counts = getCohortResults().within(Duration.years(1)).count().toResults();
+		Assert.assertEquals(2, counts.get(1).toNumber().intValue());
+	}
+	
+	/**
+	 * @see {@link CohortResults#apply(Operator,Object)}
+	 */
+	@Test
+	@Verifies(value = "should apply the operator named by the criteria", method = "apply(Operator,Object)")
+	public void apply_shouldApplyTheOperatorNamedByTheCriteria() throws Exception {
+		Cohort lowValues = getCohortResults().apply(Operator.LT, 200).getCohort();
+		Assert.assertEquals(1, lowValues.size());
+		Assert.assertTrue(lowValues.contains(1));
+		
+		Cohort recentValues = getCohortResults().apply(Operator.AFTER, new Date(today.getTime() - 7 * DAY)).getCohort();
+		Assert.assertEquals(1, recentValues.size());
+		Assert.assertTrue(recentValues.contains(2));
+	}
+	
+	/**
+	 * @see {@link CohortResults#apply(Operator,Object)}
+	 */
+	@Test(expected = LogicException.class)
+	@Verifies(value = "should fail for an unsupported operator", method = "apply(Operator,Object)")
+	public void apply_shouldFailForAnUnsupportedOperator() throws Exception {
+		getCohortResults().apply(Operator.AND, 200);
+	}
+	
+	/**
+	 * @see {@link CohortResults#getCohort()}
+	 */
+	@Test
+	@Verifies(value = "should return the patients with a value that is true", method = "getCohort()")
+	public void getCohort_shouldReturnThePatientsWithAValueThatIsTrue() throws Exception {
+		results.put(5, new Result(today, Boolean.FALSE, null));
+		Cohort cohort = getCohortResults().getCohort();
+		Assert.assertEquals(2, cohort.size());
+		Assert.assertTrue(cohort.contains(1));
+		Assert.assertTrue(cohort.contains(2));
+	}
+	
+	/**
+	 * @see {@link CohortResults#toResults()}
+	 */
+	@Test
+	@Verifies(value = "should return the empty result for patients without values", method = "toResults()")
+	public void toResults_shouldReturnTheEmptyResultForPatientsWithoutValues() throws Exception {
+		Map<Integer, Result> last = getCohortResults().gt(1000).toResults();
+		Assert.assertEquals(4, last.size());
+		for (Result result : last.values())
+			Assert.assertTrue(result.isNull());
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link MostRecentObsCache} class
+ */
+public class MostRecentObsCacheTest {
+	
+	/**
+	 * @see {@link MostRecentObsCache#get(Integer,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should return cached ids and nulls only for the cached concepts", method = "get(Integer,Collection)")
+	public void get_shouldReturnCachedIdsAndNullsOnlyForTheCachedConcepts() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		cache.put(7, 5089, 16, cache.getDataVersion());
+		cache.put(7, 3, null, cache.getDataVersion());
+		
+		Map<Integer, Integer> obsIds = cache.get(7, Arrays.asList(5089, 3, 5497));
+		Assert.assertEquals(2, obsIds.size());
+		Assert.assertEquals(16, obsIds.get(5089).intValue());
+		Assert.assertTrue(obsIds.containsKey(3));
+		Assert.assertNull(obsIds.get(3));
+		Assert.assertEquals(0, cache.get(8, Arrays.asList(5089)).size());
+	}
+	
+	/**
+	 * @see {@link MostRecentObsCache#get(Integer,Collection)}
+	 */
+	@Test
+	@Verifies(value = "should count hits and misses", method = "get(Integer,Collection)")
+	public void get_shouldCountHitsAndMisses() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		cache.put(7, 5089, 16, cache.getDataVersion());
+		
+		cache.get(7, Arrays.asList(5089, 5497));
+		cache.get(7, Arrays.asList(5089));
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(2d / 3, cache.getHitRate(), 0.0001);
+	}
+	
+	/**
+	 * @see {@link MostRecentObsCache#put(Integer,Integer,Integer,long)}
+	 */
+	@Test
+	@Verifies(value = "should not cache ids looked up before the obs changed", method = "put(Integer,Integer,Integer,long)")
+	public void put_shouldNotCacheIdsLookedUpBeforeTheObsChanged() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		long dataVersion = cache.getDataVersion();
+		cache.personChanged(7);
+		cache.put(7, 5089, 16, dataVersion);
+		Assert.assertEquals(0, cache.getSize());
+	}
+	
+	/**
+	 * @see {@link MostRecentObsCache#put(Integer,Integer,Integer,long)}
+	 */
+	@Test
+	@Verifies(value = "should drop the least recently used persons beyond the capacity", method = "put(Integer,Integer,Integer,long)")
+	public void put_shouldDropTheLeastRecentlyUsedPersonsBeyondTheCapacity() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		cache.setCapacity(2);
+		cache.put(1, 5089, 1, cache.getDataVersion());
+		cache.put(2, 5089, 2, cache.getDataVersion());
+		cache.get(1, Arrays.asList(5089));
+		cache.put(3, 5089, 3, cache.getDataVersion());
+		
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals(1, cache.get(1, Arrays.asList(5089)).size());
+		Assert.assertEquals(0, cache.get(2, Arrays.asList(5089)).size());
+		Assert.assertEquals(1, cache.get(3, Arrays.asList(5089)).size());
+	}
+	
+	/**
+	 * @see {@link MostRecentObsCache#personChanged(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should only throw away the entries of the given person", method = "personChanged(Integer)")
+	public void personChanged_shouldOnlyThrowAwayTheEntriesOfTheGivenPerson() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		cache.put(7, 5089, 16, cache.getDataVersion());
+		cache.put(8, 5089, 20, cache.getDataVersion());
+		
+		cache.personChanged(7);
+		Assert.assertEquals(0, cache.get(7, Arrays.asList(5089)).size());
+		Assert.assertEquals(20, cache.get(8, Arrays.asList(5089)).get(5089).intValue());
+	}
+}
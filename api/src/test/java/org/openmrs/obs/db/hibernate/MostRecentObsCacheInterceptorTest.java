@@ -0,0 +1,62 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.obs.db.hibernate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Person;
+import org.openmrs.obs.MostRecentObsCache;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link MostRecentObsCacheInterceptor} class
+ */
+public class MostRecentObsCacheInterceptorTest {
+	
+	/**
+	 * @see {@link MostRecentObsCacheInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should return the person whose obs is saved", method = "getKeys(Object)")
+	public void getKeys_shouldReturnThePersonWhoseObsIsSaved() throws Exception {
+		MostRecentObsCache cache = new MostRecentObsCache();
+		MostRecentObsCacheInterceptor interceptor = new MostRecentObsCacheInterceptor();
+		interceptor.setMostRecentObsCache(cache);
+		Obs obs = new Obs();
+		obs.setPerson(new Person(7));
+		Assert.assertEquals(Collections.singleton(7), interceptor.getKeys(obs));
+		
+		cache.put(7, 5089, 16, cache.getDataVersion());
+		cache.put(8, 5089, 20, cache.getDataVersion());
+		interceptor.onSave(obs, 1, null, null, null);
+		Assert.assertEquals(0, cache.get(7, Arrays.asList(5089)).size());
+		Assert.assertEquals(1, cache.get(8, Arrays.asList(5089)).size());
+	}
+	
+	/**
+	 * @see {@link MostRecentObsCacheInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should not return keys for other objects", method = "getKeys(Object)")
+	public void getKeys_shouldNotReturnKeysForOtherObjects() throws Exception {
+		MostRecentObsCacheInterceptor interceptor = new MostRecentObsCacheInterceptor();
+		interceptor.setMostRecentObsCache(new MostRecentObsCache());
+		Assert.assertEquals(0, interceptor.getKeys(new Location(1)).size());
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+
+/**
+ * Runs the {@link DuplicatePatientDetector} on a synthetic population with planted duplicates, on
+ * one thread and on one thread per processor, and times comparing every pair of a part of the
+ * population for reference. The timings are logged at info level; the test itself only checks that
+ * every planted duplicate is found. Raise {@link #PATIENTS} to get numbers closer to a large
+ * database. It is excluded from the default build, run it with
+ * <code>mvn test -Dtest=DuplicatePatientDetectorBenchmarkTest</code>.
+ */
+public class DuplicatePatientDetectorBenchmarkTest {
+	
+	private static final Log log = LogFactory.getLog(DuplicatePatientDetectorBenchmarkTest.class);
+	
+	private static final int PATIENTS = 50000;
+	
+	private static final int DUPLICATES = 500;
+	
+	private static final int ALL_PAIRS_PATIENTS = 3000;
+	
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	private static final String[] SYLLABLES = { "ka", "ma", "ni", "ro", "tu", "be", "sa", "li", "wa", "jo", "ke", "mu",
+	        "ne", "ha", "di", "go", "fa", "pi", "ze", "yo" };
+	
+	private static class SyntheticPatient {
+		
+		Integer patientId;
+		
+		String gender;
+		
+		Date birthdate;
+		
+		String givenName;
+		
+		String familyName;
+	}
+	
+	private static String randomName(Random random) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 3 + random.nextInt(2); i > 0; i--)
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+	
+	/**
+	 * Replaces one letter of a name, but not the first one
+	 */
+	private static String typo(String name, Random random) {
+		int i = 1 + random.nextInt(name.length() - 1);
+		char c = (char) ('a' + random.nextInt(26));
+		if (c == name.charAt(i))
+			c = c == 'z' ? 'a' : (char) (c + 1);
+		return name.substring(0, i) + c + name.substring(i + 1);
+	}
+	
+	/**
+	 * Makes PATIENTS random patients, the last DUPLICATES of which are copies of earlier ones with a
+	 * typo in one of their names and a birthdate up to a month off
+	 */
+	private List<SyntheticPatient> createPopulation(Random random, Set<String> plantedPairs) {
+		List<SyntheticPatient> population = new ArrayList<SyntheticPatient>();
+		long start = new Date(0).getTime() - 30 * 365 * MILLIS_PER_DAY;
+		for (int id = 1; id <= PATIENTS; id++) {
+			SyntheticPatient patient = new SyntheticPatient();
+			patient.patientId = id;
+			if (id <= PATIENTS - DUPLICATES) {
+				patient.gender = random.nextBoolean() ? "M" : "F";
+				patient.birthdate = new Date(start + random.nextInt(70 * 365) * MILLIS_PER_DAY);
+				patient.givenName = randomName(random);
+				patient.familyName = randomName(random);
+			} else {
+				SyntheticPatient original = population.get(random.nextInt(PATIENTS - DUPLICATES));
+				patient.gender = original.gender;
+				patient.birthdate = new Date(original.birthdate.getTime() + (random.nextInt(61) - 30) * MILLIS_PER_DAY);
+				patient.givenName = random.nextBoolean() ? typo(original.givenName, random) : original.givenName;
+				patient.familyName = patient.givenName.equals(original.givenName) ? typo(original.familyName, random)
+				        : original.familyName;
+				plantedPairs.add(original.patientId + "-" + patient.patientId);
+			}
+			population.add(patient);
+		}
+		return population;
+	}
+	
+	private List<DuplicatePatientMatch> detect(List<SyntheticPatient> population, int threads) throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		for (SyntheticPatient p : population)
+			detector.addPatient(p.patientId, p.gender, p.birthdate, false, p.givenName, p.familyName);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return detector.findDuplicates(executor);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void shouldFindThePlantedDuplicates() throws Exception {
+		Random random = new Random(42);
+		Set<String> plantedPairs = new HashSet<String>();
+		List<SyntheticPatient> population = createPopulation(random, plantedPairs);
+		
+		long start = System.currentTimeMillis();
+		List<DuplicatePatientMatch> matches = detect(population, 1);
+		long oneThreadTime = System.currentTimeMillis() - start;
+		
+		int processors = Runtime.getRuntime().availableProcessors();
+		start = System.currentTimeMillis();
+		List<DuplicatePatientMatch> parallelMatches = detect(population, processors);
+		long parallelTime = System.currentTimeMillis() - start;
+		
+		// what the detector saves: scoring every pair of a small part of the population
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		List<DuplicatePatientDetector.Candidate> candidates = new ArrayList<DuplicatePatientDetector.Candidate>();
+		for (SyntheticPatient p : population.subList(0, ALL_PAIRS_PATIENTS))
+			candidates.add(new DuplicatePatientDetector.Candidate(p.patientId, p.gender, p.birthdate, false, p.givenName,
+			        p.familyName));
+		start = System.currentTimeMillis();
+		int allPairsMatches = 0;
+		for (int i = 0; i < candidates.size(); i++)
+			for (int j = i + 1; j < candidates.size(); j++)
+				if (detector.score(candidates.get(i), candidates.get(j)) >= detector.getMinimumScore())
+					allPairsMatches++;
+		long allPairsTime = System.currentTimeMillis() - start;
+		
+		log.info(PATIENTS + " patients: " + matches.size() + " likely duplicates found in " + oneThreadTime
+		        + "ms on one thread, " + parallelTime + "ms on " + processors + " threads; scoring all pairs of "
+		        + ALL_PAIRS_PATIENTS + " patients took " + allPairsTime + "ms (" + allPairsMatches + " matches)");
+		
+		Assert.assertEquals(matches.size(), parallelMatches.size());
+		Set<String> foundPairs = new HashSet<String>();
+		for (DuplicatePatientMatch match : matches)
+			foundPairs.add(match.getPatientId() + "-" + match.getDuplicatePatientId());
+		plantedPairs.removeAll(foundPairs);
+		Assert.assertTrue("missed " + plantedPairs, plantedPairs.isEmpty());
+	}
+}
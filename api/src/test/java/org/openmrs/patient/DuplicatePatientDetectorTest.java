@@ -0,0 +1,148 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link DuplicatePatientDetector} class
+ */
+public class DuplicatePatientDetectorTest {
+	
+	private ExecutorService executor = Executors.newFixedThreadPool(2);
+	
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+	
+	private static Date date(int year, int month, int day) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month - 1, day);
+		return calendar.getTime();
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should find patients with similar names close birthdates and the same gender", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldFindPatientsWithSimilarNamesCloseBirthdatesAndTheSameGender() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.addPatient(1, "F", date(1976, 8, 25), false, "Collet", "Chebaskwony");
+		detector.addPatient(2, "F", date(1976, 9, 1), false, "Colet", "Chebaskwoni");
+		detector.addPatient(3, "F", date(1976, 8, 25), false, "Anet", "Chebaskwony");
+		// a typo in the first letter of the family name is caught by the given name block
+		detector.addPatient(4, "F", date(1976, 8, 25), false, "Collet", "Shebaskwony");
+		
+		List<DuplicatePatientMatch> matches = detector.findDuplicates(executor);
+		Assert.assertEquals(3, matches.size());
+		for (DuplicatePatientMatch match : matches) {
+			Assert.assertTrue(match.getScore() >= DuplicatePatientDetector.DEFAULT_MINIMUM_SCORE);
+			Assert.assertTrue(match.getPatientId() != 3 && match.getDuplicatePatientId() != 3);
+		}
+		Assert.assertEquals(1, matches.get(0).getPatientId().intValue());
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should not pair patients of different genders", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldNotPairPatientsOfDifferentGenders() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.addPatient(1, "F", date(1980, 1, 1), false, "Jean", "Baptiste");
+		detector.addPatient(2, "M", date(1980, 1, 1), false, "Jean", "Baptiste");
+		Assert.assertEquals(0, detector.findDuplicates(executor).size());
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should not pair patients born further apart than the birthdate window", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldNotPairPatientsBornFurtherApartThanTheBirthdateWindow() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.setBirthdateWindowDays(30);
+		detector.addPatient(1, "M", date(1980, 1, 1), false, "John", "Otieno");
+		detector.addPatient(2, "M", date(1980, 3, 1), false, "John", "Otieno");
+		detector.addPatient(3, "M", date(1980, 1, 20), false, "John", "Otieno");
+		// an unknown birthdate could be anyone's
+		detector.addPatient(4, "M", null, false, "John", "Otieno");
+		
+		List<DuplicatePatientMatch> matches = detector.findDuplicates(executor);
+		Assert.assertEquals(4, matches.size());
+		for (DuplicatePatientMatch match : matches)
+			Assert.assertFalse(match.getPatientId() == 1 && match.getDuplicatePatientId() == 2);
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should return each pair once with the score of its closest names", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldReturnEachPairOnceWithTheScoreOfItsClosestNames() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.setMinimumScore(0.5);
+		detector.addPatient(1, "F", date(1990, 5, 5), false, "Mary", "Wanjiru");
+		detector.addPatient(1, "F", date(1990, 5, 5), false, "Mary", "Kamau");
+		detector.addPatient(2, "F", date(1990, 5, 5), false, "Mary", "Kamau");
+		
+		List<DuplicatePatientMatch> matches = detector.findDuplicates(executor);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1, matches.get(0).getPatientId().intValue());
+		Assert.assertEquals(2, matches.get(0).getDuplicatePatientId().intValue());
+		Assert.assertEquals(1.0, matches.get(0).getScore(), 0.0001);
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should not pair a patient with itself", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldNotPairAPatientWithItself() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.addPatient(1, "F", date(1990, 5, 5), false, "Mary", "Kamau");
+		detector.addPatient(1, "F", date(1990, 5, 5), false, "Mary", "Kamau");
+		Assert.assertEquals(0, detector.findDuplicates(executor).size());
+	}
+	
+	/**
+	 * @see {@link DuplicatePatientDetector#findDuplicates(ExecutorService)}
+	 */
+	@Test
+	@Verifies(value = "should return the best pairs up to the maximum number of results", method = "findDuplicates(ExecutorService)")
+	public void findDuplicates_shouldReturnTheBestPairsUpToTheMaximumNumberOfResults() throws Exception {
+		DuplicatePatientDetector detector = new DuplicatePatientDetector();
+		detector.setMaxResults(1);
+		detector.addPatient(1, "F", date(1976, 8, 25), false, "Collet", "Chebaskwony");
+		detector.addPatient(2, "F", date(1976, 9, 1), false, "Colet", "Chebaskwoni");
+		detector.addPatient(3, "F", date(1976, 8, 25), false, "Collet", "Chebaskwony");
+		
+		List<DuplicatePatientMatch> matches = detector.findDuplicates(executor);
+		Assert.assertEquals(1, matches.size());
+		Assert.assertEquals(1, matches.get(0).getPatientId().intValue());
+		Assert.assertEquals(3, matches.get(0).getDuplicatePatientId().intValue());
+	}
+}
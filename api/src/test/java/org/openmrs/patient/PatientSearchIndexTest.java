@@ -0,0 +1,247 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.patient;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PersonName;
+import org.openmrs.test.Verifies;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests methods on the {@link PatientSearchIndex} class
+ */
+public class PatientSearchIndexTest {
+	
+	private PatientSearchIndex loadIndex() {
+		PatientSearchIndex index = new PatientSearchIndex();
+		PatientSearchIndex.Loader loader = index.newLoader();
+		loader.addName(2, "Horatio", "Test", "Hornblower", null);
+		loader.addName(7, "Collet", "Test", "Chebaskwony", null);
+		loader.addName(8, "Anet", null, "Oloo", null);
+		loader.addName(9, "José", "Maria", "de la Cruz", "Nuñez");
+		loader.addName(10, "Jo", null, "Horn", null);
+		loader.addIdentifier(7, "6TS-4");
+		loader.addIdentifier(8, "0412-7");
+		Assert.assertTrue(loader.finish());
+		return index;
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchNames(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should find patients by the start of any part of their name", method = "searchNames(String,int)")
+	public void searchNames_shouldFindPatientsByTheStartOfAnyPartOfTheirName() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Map<Integer, Integer> ranks = index.searchNames("horn", 3);
+		Assert.assertEquals(2, ranks.size());
+		// the exact match comes first
+		Assert.assertEquals(10, ranks.keySet().iterator().next().intValue());
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT, ranks.get(10).intValue());
+		Assert.assertEquals(PatientSearchIndex.RANK_PREFIX, ranks.get(2).intValue());
+		
+		Assert.assertTrue(index.searchNames("cruz", 3).containsKey(9));
+		Assert.assertTrue(index.searchNames("Nuñ", 3).containsKey(9));
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchNames(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should require every word of the query to match", method = "searchNames(String,int)")
+	public void searchNames_shouldRequireEveryWordOfTheQueryToMatch() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Map<Integer, Integer> ranks = index.searchNames("test hornb", 3);
+		Assert.assertEquals(1, ranks.size());
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT + PatientSearchIndex.RANK_PREFIX, ranks.get(2).intValue());
+		Assert.assertEquals(0, index.searchNames("test oloo", 3).size());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchNames(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should find names that sound alike after the better matches", method = "searchNames(String,int)")
+	public void searchNames_shouldFindNamesThatSoundAlikeAfterTheBetterMatches() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Map<Integer, Integer> ranks = index.searchNames("Colet", 3);
+		Assert.assertEquals(1, ranks.size());
+		Assert.assertEquals(PatientSearchIndex.RANK_SOUNDS_LIKE, ranks.get(7).intValue());
+		
+		// "Hornbluer" sounds like Hornblower, but is not the start of it
+		ranks = index.searchNames("Hornbluer", 3);
+		Assert.assertEquals(PatientSearchIndex.RANK_SOUNDS_LIKE, ranks.get(2).intValue());
+		ranks = index.searchNames("Horatio Hornbluer", 3);
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT + PatientSearchIndex.RANK_SOUNDS_LIKE, ranks.get(2).intValue());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchNames(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should only match short words exactly", method = "searchNames(String,int)")
+	public void searchNames_shouldOnlyMatchShortWordsExactly() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Map<Integer, Integer> ranks = index.searchNames("jo", 3);
+		Assert.assertEquals(1, ranks.size());
+		Assert.assertTrue(ranks.containsKey(10));
+		
+		ranks = index.searchNames("jo", 2);
+		Assert.assertEquals(2, ranks.size());
+		Assert.assertTrue(ranks.containsKey(9));
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchNames(String,int)}
+	 */
+	@Test
+	@Verifies(value = "should ignore case and accents", method = "searchNames(String,int)")
+	public void searchNames_shouldIgnoreCaseAndAccents() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT, index.searchNames("JOSE", 3).get(9).intValue());
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT, index.searchNames("nunez", 3).get(9).intValue());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#searchIdentifier(String)}
+	 */
+	@Test
+	@Verifies(value = "should find patients ignoring separators case and leading zeros", method = "searchIdentifier(String)")
+	public void searchIdentifier_shouldFindPatientsIgnoringSeparatorsCaseAndLeadingZeros() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		
+		Assert.assertEquals(PatientSearchIndex.RANK_EXACT, index.searchIdentifier("6ts4").get(7).intValue());
+		Assert.assertTrue(index.searchIdentifier("4127").containsKey(8));
+		Assert.assertTrue(index.searchIdentifier("00412 7").containsKey(8));
+		Assert.assertEquals(0, index.searchIdentifier("412").size());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#reindexAfterCommit(Person)}
+	 */
+	@Test
+	@Verifies(value = "should update the index when the transaction commits", method = "reindexAfterCommit(Person)")
+	public void reindexAfterCommit_shouldUpdateTheIndexWhenTheTransactionCommits() throws Exception {
+		PatientSearchIndex index = loadIndex();
+		Patient patient = new Patient(11);
+		patient.addName(new PersonName("Hellen", "Musamari", "Ndeto"));
+		PatientIdentifier identifier = new PatientIdentifier();
+		identifier.setIdentifier("X-99");
+		patient.addIdentifier(identifier);
+		Patient voided = new Patient(8);
+		voided.setVoided(true);
+		
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			index.reindexAfterCommit(patient);
+			index.reindexAfterCommit(voided);
+			Assert.assertTrue(index.hasPendingChanges());
+			Assert.assertEquals(0, index.searchNames("hellen", 3).size());
+			Assert.assertEquals(1, index.searchNames("oloo", 3).size());
+			
+			for (TransactionSynchronization synchronization : new ArrayList<TransactionSynchronization>(
+			        TransactionSynchronizationManager.getSynchronizations())) {
+				synchronization.afterCommit();
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		
+		Assert.assertFalse(index.hasPendingChanges());
+		Assert.assertTrue(index.searchNames("hellen", 3).containsKey(11));
+		Assert.assertTrue(index.searchIdentifier("X99").containsKey(11));
+		Assert.assertEquals(0, index.searchNames("oloo", 3).size());
+		Assert.assertEquals(0, index.searchIdentifier("4127").size());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex.Loader#finish()}
+	 */
+	@Test
+	@Verifies(value = "should keep the changes made while loading", method = "finish()")
+	public void finish_shouldKeepTheChangesMadeWhileLoading() throws Exception {
+		PatientSearchIndex index = new PatientSearchIndex();
+		PatientSearchIndex.Loader loader = index.newLoader();
+		loader.addName(2, "Horatio", "Test", "Hornblower", null);
+		loader.addName(8, "Anet", null, "Oloo", null);
+		
+		Patient patient = new Patient(11);
+		patient.addName(new PersonName("Hellen", "Musamari", "Ndeto"));
+		index.reindex(patient);
+		index.remove(8);
+		Assert.assertFalse(index.isLoaded());
+		
+		Assert.assertTrue(loader.finish());
+		Assert.assertTrue(index.searchNames("hellen", 3).containsKey(11));
+		Assert.assertTrue(index.searchNames("horatio", 3).containsKey(2));
+		Assert.assertEquals(0, index.searchNames("oloo", 3).size());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex.Loader#finish()}
+	 */
+	@Test
+	@Verifies(value = "should not replace the contents of an index cleared while loading", method = "finish()")
+	public void finish_shouldNotReplaceTheContentsOfAnIndexClearedWhileLoading() throws Exception {
+		PatientSearchIndex index = new PatientSearchIndex();
+		PatientSearchIndex.Loader loader = index.newLoader();
+		loader.addName(2, "Horatio", "Test", "Hornblower", null);
+		index.clear();
+		
+		Assert.assertFalse(loader.finish());
+		Assert.assertFalse(index.isLoaded());
+		Assert.assertEquals(0, index.getSize());
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#normalizeIdentifier(String)}
+	 */
+	@Test
+	@Verifies(value = "should remove separators and leading zeros", method = "normalizeIdentifier(String)")
+	public void normalizeIdentifier_shouldRemoveSeparatorsAndLeadingZeros() throws Exception {
+		Assert.assertEquals("4127", PatientSearchIndex.normalizeIdentifier("0412-7"));
+		Assert.assertEquals("6TS4", PatientSearchIndex.normalizeIdentifier(" 6ts 4 "));
+		Assert.assertEquals("0", PatientSearchIndex.normalizeIdentifier("00-0"));
+		Assert.assertNull(PatientSearchIndex.normalizeIdentifier("--"));
+	}
+	
+	/**
+	 * @see {@link PatientSearchIndex#soundex(String)}
+	 */
+	@Test
+	@Verifies(value = "should compute the soundex code", method = "soundex(String)")
+	public void soundex_shouldComputeTheSoundexCode() throws Exception {
+		Assert.assertEquals("R163", PatientSearchIndex.soundex("robert"));
+		Assert.assertEquals("R163", PatientSearchIndex.soundex("rupert"));
+		Assert.assertEquals("A261", PatientSearchIndex.soundex("ashcraft"));
+		Assert.assertEquals("T522", PatientSearchIndex.soundex("tymczak"));
+		Assert.assertEquals("P236", PatientSearchIndex.soundex("pfister"));
+		Assert.assertEquals("L000", PatientSearchIndex.soundex("lee"));
+		Assert.assertNull(PatientSearchIndex.soundex("9abc"));
+	}
+}
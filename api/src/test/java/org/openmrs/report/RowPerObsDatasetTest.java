@@ -16,14 +16,21 @@ package org.openmrs.report;
 import static org.junit.Assert.assertEquals;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.junit.Test;
 import org.openmrs.Cohort;
+import org.openmrs.Concept;
 import org.openmrs.api.DataSetService;
 import org.openmrs.api.context.Context;
 import org.openmrs.report.impl.TsvReportRenderer;
@@ -31,6 +38,7 @@ import org.openmrs.reporting.PatientCharacteristicFilter;
 import org.openmrs.reporting.PatientSearch;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.SkipBaseSetup;
+import org.openmrs.test.Verifies;
 import org.openmrs.util.OpenmrsUtil;
 import org.simpleframework.xml.Serializer;
 
@@ -108,4 +116,46 @@ public class RowPerObsDatasetTest extends BaseContextSensitiveTest {
 		
 	}
 	
+	/**
+	 * @return the patient id, question, answer and date of each row of the data set
+	 */
+	private Set<String> getRows(DataSet<Object> dataSet) {
+		Set<String> rows = new HashSet<String>();
+		for (Iterator<Map<String, Object>> i = dataSet.iterator(); i.hasNext();) {
+			Map<String, Object> row = i.next();
+			rows.add(row.get("patientId") + " " + row.get("questionConceptId") + " " + row.get("answer") + " "
+			        + row.get("obsDatetime"));
+		}
+		return rows;
+	}
+	
+	/**
+	 * @see {@link RowPerObsDataSet#iterator()}
+	 */
+	@Test
+	@Verifies(value = "should stream the obs of the patients one batch at a time", method = "iterator()")
+	public void iterator_shouldStreamTheObsOfThePatientsOneBatchAtATime() throws Exception {
+		RowPerObsDataSetDefinition definition = new RowPerObsDataSetDefinition();
+		definition.getQuestions().add(Context.getConceptService().getConcept(5089));
+		definition.getQuestions().add(Context.getConceptService().getConcept(5497));
+		Cohort patients = new Cohort("2,6,7,8");
+		
+		RowPerObsDataSet expected = new RowPerObsDataSet();
+		expected.setDefinition(definition);
+		expected.setData(Context.getObsService().getObservations(patients,
+		    new ArrayList<Concept>(definition.getQuestions()), null, null));
+		
+		RowPerObsDataSet streamed = new RowPerObsDataSet();
+		streamed.setDefinition(definition);
+		streamed.setPatients(patients);
+		streamed.setBatchSize(1);
+		
+		Set<String> rows = getRows(streamed);
+		assertEquals(expected.getData().size(), rows.size());
+		assertEquals(getRows(expected), rows);
+		
+		// the data set can be iterated over again
+		assertEquals(rows, getRows(streamed));
+	}
+	
 }
@@ -13,17 +13,25 @@
  */
 package org.openmrs.report;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Test;
 import org.openmrs.Cohort;
+import org.openmrs.PatientProgram;
 import org.openmrs.Program;
 import org.openmrs.api.context.Context;
 import org.openmrs.reporting.PatientCharacteristicFilter;
 import org.openmrs.reporting.PatientSearch;
 import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
 import org.openmrs.util.OpenmrsUtil;
 import org.simpleframework.xml.Serializer;
 
@@ -77,4 +85,35 @@ public class RowPerProgramEnrollmentDatasetTest extends BaseContextSensitiveTest
 		//new TsvReportRenderer().render(data, null, System.out);
 	}
 	
+	/**
+	 * @see {@link RowPerProgramEnrollmentDataSet#iterator()}
+	 */
+	@Test
+	@Verifies(value = "should stream the enrollments of the patients one batch at a time", method = "iterator()")
+	public void iterator_shouldStreamTheEnrollmentsOfThePatientsOneBatchAtATime() throws Exception {
+		RowPerProgramEnrollmentDataSetDefinition definition = new RowPerProgramEnrollmentDataSetDefinition();
+		Set<Program> programs = new HashSet<Program>();
+		programs.add(Context.getProgramWorkflowService().getProgram(1));
+		programs.add(Context.getProgramWorkflowService().getProgram(2));
+		definition.setPrograms(programs);
+		Cohort patients = new Cohort("2,6,7,8");
+		
+		Set<Integer> expected = new HashSet<Integer>();
+		for (PatientProgram pp : Context.getProgramWorkflowService().getPatientPrograms(patients,
+		    new ArrayList<Program>(programs)))
+			expected.add(pp.getPatientProgramId());
+		
+		RowPerProgramEnrollmentDataSet streamed = new RowPerProgramEnrollmentDataSet();
+		streamed.setDefinition(definition);
+		streamed.setPatients(patients);
+		streamed.setBatchSize(1);
+		
+		List<Integer> patientProgramIds = new ArrayList<Integer>();
+		for (Iterator<Map<String, Object>> i = streamed.iterator(); i.hasNext();)
+			patientProgramIds.add((Integer) i.next().get("patientProgramId"));
+		
+		assertEquals(expected.size(), patientProgramIds.size());
+		assertEquals(expected, new HashSet<Integer>(patientProgramIds));
+	}
+	
 }
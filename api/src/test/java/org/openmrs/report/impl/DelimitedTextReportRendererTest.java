@@ -0,0 +1,67 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.report.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.api.context.Context;
+import org.openmrs.report.DataSet;
+import org.openmrs.report.ReportData;
+import org.openmrs.report.RowPerObsDataSet;
+import org.openmrs.report.RowPerObsDataSetDefinition;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the {@link DelimitedTextReportRenderer} class
+ */
+public class DelimitedTextReportRendererTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link DelimitedTextReportRenderer#render(ReportData,String,java.io.Writer)}
+	 */
+	@Test
+	@Verifies(value = "should render every row of a streamed data set", method = "render(ReportData,String,Writer)")
+	public void render_shouldRenderEveryRowOfAStreamedDataSet() throws Exception {
+		RowPerObsDataSetDefinition definition = new RowPerObsDataSetDefinition();
+		definition.setName("weights");
+		definition.getQuestions().add(Context.getConceptService().getConcept(5089));
+		
+		RowPerObsDataSet dataSet = new RowPerObsDataSet();
+		dataSet.setDefinition(definition);
+		dataSet.setPatients(new Cohort("2,6,7,8"));
+		dataSet.setBatchSize(1);
+		
+		Map<String, DataSet> dataSets = new HashMap<String, DataSet>();
+		dataSets.put("weights", dataSet);
+		ReportData data = new ReportData();
+		data.setDataSets(dataSets);
+		
+		StringWriter writer = new StringWriter();
+		new CsvReportRenderer().render(data, null, writer);
+		
+		String[] lines = writer.toString().split("\n");
+		int weights = dataSet.getData().size();
+		assertEquals(1 + weights, lines.length);
+		for (int i = 1; i <= weights; i++)
+			assertTrue(lines[i].startsWith("\"7\","));
+	}
+}
@@ -16,11 +16,17 @@ package org.openmrs.reporting;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
 
 import org.junit.Test;
 import org.openmrs.Cohort;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
 import org.openmrs.report.EvaluationContext;
 import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
 
 /**
  *
@@ -50,4 +56,103 @@ public class CachingPatientFilterTest extends BaseContextSensitiveTest {
 		assertEquals("Cache should have been automatically cleared", 0, ec.getCache().size());
 	}
 	
+	/**
+	 * @return the server-wide cohort cache, emptied
+	 */
+	private CohortResultCache getEmptySharedCache() {
+		CohortResultCache cache = Context.getRegisteredComponents(CohortResultCache.class).get(0);
+		cache.clear();
+		return cache;
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#filter(Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should reuse the cohort computed in another evaluation context", method = "filter(Cohort,EvaluationContext)")
+	public void filter_shouldReuseTheCohortComputedInAnotherEvaluationContext() throws Exception {
+		CohortResultCache cache = getEmptySharedCache();
+		CachingPatientFilter maleFilter = new PatientCharacteristicFilter("M", null, null);
+		
+		Cohort males = maleFilter.filter(null, new EvaluationContext());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getSize());
+		
+		Cohort malesAgain = maleFilter.filter(null, new EvaluationContext());
+		assertEquals(1, cache.getHits());
+		assertEquals(males.getMemberIds(), malesAgain.getMemberIds());
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#filter(Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should not share cohorts computed against a custom base cohort", method = "filter(Cohort,EvaluationContext)")
+	public void filter_shouldNotShareCohortsComputedAgainstACustomBaseCohort() throws Exception {
+		CohortResultCache cache = getEmptySharedCache();
+		EvaluationContext ec = new EvaluationContext();
+		ec.setBaseCohort(new Cohort("2,7"));
+		
+		new PatientCharacteristicFilter("M", null, null).filter(null, ec);
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getMisses());
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#filter(Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should compute the cohort again after patient data is saved", method = "filter(Cohort,EvaluationContext)")
+	public void filter_shouldComputeTheCohortAgainAfterPatientDataIsSaved() throws Exception {
+		getEmptySharedCache();
+		CachingPatientFilter maleFilter = new PatientCharacteristicFilter("M", null, null);
+		Cohort males = maleFilter.filter(null, new EvaluationContext());
+		
+		Patient patient = Context.getPatientService().getPatient(7);
+		assertEquals("F", patient.getGender());
+		patient.setGender("M");
+		Context.getPatientService().savePatient(patient);
+		Context.flushSession();
+		
+		Cohort malesAfterSave = maleFilter.filter(null, new EvaluationContext());
+		assertEquals(males.size() + 1, malesAfterSave.size());
+	}
+	/**
+	 * @see {@link CachingPatientFilter#getCacheKeyDate()}
+	 */
+	@Test
+	@Verifies(value = "should return the start of today", method = "getCacheKeyDate()")
+	public void getCacheKeyDate_shouldReturnTheStartOfToday() throws Exception {
+		Calendar today = Calendar.getInstance();
+		Calendar date = Calendar.getInstance();
+		date.setTime(CachingPatientFilter.getCacheKeyDate());
+		assertEquals(today.get(Calendar.YEAR), date.get(Calendar.YEAR));
+		assertEquals(today.get(Calendar.DAY_OF_YEAR), date.get(Calendar.DAY_OF_YEAR));
+		assertEquals(0, date.get(Calendar.HOUR_OF_DAY));
+		assertEquals(0, date.get(Calendar.MINUTE));
+		assertEquals(0, date.get(Calendar.SECOND));
+		assertEquals(0, date.get(Calendar.MILLISECOND));
+	}
+	
+	/**
+	 * @see {@link CachingPatientFilter#filter(Cohort,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should reuse the cohort of a filter with relative dates", method = "filter(Cohort,EvaluationContext)")
+	public void filter_shouldReuseTheCohortOfAFilterWithRelativeDates() throws Exception {
+		CohortResultCache cache = getEmptySharedCache();
+		EncounterPatientFilter filter = new EncounterPatientFilter();
+		filter.setWithinLastDays(30);
+		
+		Calendar from = Calendar.getInstance();
+		from.setTime(CachingPatientFilter.getCacheKeyDate());
+		from.add(Calendar.DAY_OF_MONTH, -30);
+		assertTrue(filter.getCacheKey().contains("." + from.getTime() + "."));
+		
+		filter.filter(null, new EvaluationContext());
+		filter.filter(null, new EvaluationContext());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+	
 }
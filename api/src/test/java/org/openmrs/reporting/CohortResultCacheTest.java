@@ -0,0 +1,110 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link CohortResultCache} class
+ */
+public class CohortResultCacheTest {
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should return a copy of the cached cohort", method = "get(String)")
+	public void get_shouldReturnACopyOfTheCachedCohort() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		Cohort cohort = new Cohort("2,6,7");
+		cache.put("key", cohort, cache.getDataVersion());
+		cohort.addMember(8);
+		
+		Cohort cached = cache.get("key");
+		Assert.assertEquals(3, cached.size());
+		cached.removeMember(2);
+		Assert.assertEquals(3, cache.get("key").size());
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should not return cohorts older than the time to live", method = "get(String)")
+	public void get_shouldNotReturnCohortsOlderThanTheTimeToLive() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		cache.setTimeToLive(-1);
+		cache.put("key", new Cohort("2"), cache.getDataVersion());
+		
+		Assert.assertNull(cache.get("key"));
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(1, cache.getEvictions());
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should count hits and misses", method = "get(String)")
+	public void get_shouldCountHitsAndMisses() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		Assert.assertNull(cache.get("key"));
+		cache.put("key", new Cohort("2"), cache.getDataVersion());
+		cache.get("key");
+		cache.get("key");
+		
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(2.0 / 3, cache.getHitRate(), 0.0001);
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#put(String,Cohort,long)}
+	 */
+	@Test
+	@Verifies(value = "should not cache cohorts computed before the data changed", method = "put(String,Cohort,long)")
+	public void put_shouldNotCacheCohortsComputedBeforeTheDataChanged() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		cache.put("old", new Cohort("2"), cache.getDataVersion());
+		
+		long dataVersion = cache.getDataVersion();
+		cache.dataChanged();
+		cache.put("new", new Cohort("2"), dataVersion);
+		
+		Assert.assertNull(cache.get("old"));
+		Assert.assertNull(cache.get("new"));
+	}
+	
+	/**
+	 * @see {@link CohortResultCache#put(String,Cohort,long)}
+	 */
+	@Test
+	@Verifies(value = "should drop the least recently used cohorts beyond the capacity", method = "put(String,Cohort,long)")
+	public void put_shouldDropTheLeastRecentlyUsedCohortsBeyondTheCapacity() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		cache.setCapacity(2);
+		cache.put("a", new Cohort("2"), cache.getDataVersion());
+		cache.put("b", new Cohort("6"), cache.getDataVersion());
+		cache.get("a");
+		cache.put("c", new Cohort("7"), cache.getDataVersion());
+		
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertNotNull(cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+		Assert.assertNotNull(cache.get("c"));
+	}
+}
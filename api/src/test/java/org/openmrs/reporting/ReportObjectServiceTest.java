@@ -3,6 +3,7 @@ package org.openmrs.reporting;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.openmrs.Concept;
 import org.openmrs.api.PatientSetService;
@@ -10,9 +11,12 @@ import org.openmrs.api.context.Context;
 import org.openmrs.cohort.CohortSearchHistory;
 import org.openmrs.test.BaseContextSensitiveTest;
 import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsConstants;
 
 public class ReportObjectServiceTest extends BaseContextSensitiveTest {
 	
+	private static final String REPORT_OBJECTS_XML = "org/openmrs/report/include/PatientSearchParameterTest.xml";
+	
 	/**
 	 * @see {@link ReportObjectService#saveSearchHistory(CohortSearchHistory)}
 	 * 
@@ -37,4 +41,65 @@ public class ReportObjectServiceTest extends BaseContextSensitiveTest {
 		history.addSearchItem(search);
 		Context.getReportObjectService().saveSearchHistory(history);
 	}
+	
+	/**
+	 * @see {@link ReportObjectService#getAllReportObjects()}
+	 */
+	@Test
+	@Verifies(value = "should not decode unchanged report objects again", method = "getAllReportObjects()")
+	public void getAllReportObjects_shouldNotDecodeUnchangedReportObjectsAgain() throws Exception {
+		executeDataSet(REPORT_OBJECTS_XML);
+		List<AbstractReportObject> first = Context.getReportObjectService().getAllReportObjects();
+		List<AbstractReportObject> second = Context.getReportObjectService().getAllReportObjects();
+		Assert.assertEquals(3, first.size());
+		Assert.assertEquals(first.size(), second.size());
+		for (int i = 0; i < first.size(); i++)
+			Assert.assertSame(first.get(i), second.get(i));
+	}
+	
+	/**
+	 * @see {@link ReportObjectService#getReportObjectsByType(String)}
+	 */
+	@Test
+	@Verifies(value = "should decode report objects again after they are saved", method = "getReportObjectsByType(String)")
+	public void getReportObjectsByType_shouldDecodeReportObjectsAgainAfterTheyAreSaved() throws Exception {
+		executeDataSet(REPORT_OBJECTS_XML);
+		ReportObjectService service = Context.getReportObjectService();
+		AbstractReportObject before = service.getReportObjectsByType(OpenmrsConstants.REPORT_OBJECT_TYPE_PATIENTSEARCH)
+		        .get(0);
+		
+		AbstractReportObject changed = service.getReportObject(before.getReportObjectId());
+		Assert.assertNotSame(before, changed);
+		changed.setDescription("a new description");
+		service.saveReportObject(changed);
+		
+		AbstractReportObject after = service.getReportObjectsByType(OpenmrsConstants.REPORT_OBJECT_TYPE_PATIENTSEARCH)
+		        .get(0);
+		Assert.assertEquals(before.getReportObjectId(), after.getReportObjectId());
+		Assert.assertNotSame(before, after);
+		Assert.assertEquals("a new description", after.getDescription());
+	}
+	
+	/**
+	 * @see {@link ReportObjectService#getPatientSearch(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the patient search with the given name", method = "getPatientSearch(String)")
+	public void getPatientSearch_shouldGetThePatientSearchWithTheGivenName() throws Exception {
+		executeDataSet(REPORT_OBJECTS_XML);
+		PatientSearch search = Context.getReportObjectService().getPatientSearch("ExpressStable");
+		Assert.assertNotNull(search);
+		Assert.assertEquals(((PatientSearchReportObject) Context.getReportObjectService().getReportObject(2))
+		        .getPatientSearch().getFilterClass(), search.getFilterClass());
+	}
+	
+	/**
+	 * @see {@link ReportObjectService#getPatientSearch(String)}
+	 */
+	@Test
+	@Verifies(value = "should return null if there is no patient search with the given name", method = "getPatientSearch(String)")
+	public void getPatientSearch_shouldReturnNullIfThereIsNoPatientSearchWithTheGivenName() throws Exception {
+		executeDataSet(REPORT_OBJECTS_XML);
+		Assert.assertNull(Context.getReportObjectService().getPatientSearch("No such search"));
+	}
 }
@@ -0,0 +1,55 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.db.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.reporting.CohortResultCache;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests methods on the {@link CohortResultCacheInterceptor} class
+ */
+public class CohortResultCacheInterceptorTest {
+	
+	/**
+	 * @see {@link CohortResultCacheInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should return a key for patient data", method = "getKeys(Object)")
+	public void getKeys_shouldReturnAKeyForPatientData() throws Exception {
+		CohortResultCache cache = new CohortResultCache();
+		CohortResultCacheInterceptor interceptor = new CohortResultCacheInterceptor();
+		interceptor.setCohortResultCache(cache);
+		Assert.assertEquals(1, interceptor.getKeys(new Obs()).size());
+		
+		cache.put("key", new Cohort("2"), cache.getDataVersion());
+		interceptor.onSave(new Obs(), 1, null, null, null);
+		Assert.assertNull(cache.get("key"));
+	}
+	
+	/**
+	 * @see {@link CohortResultCacheInterceptor#getKeys(Object)}
+	 */
+	@Test
+	@Verifies(value = "should not return keys for other objects", method = "getKeys(Object)")
+	public void getKeys_shouldNotReturnKeysForOtherObjects() throws Exception {
+		CohortResultCacheInterceptor interceptor = new CohortResultCacheInterceptor();
+		interceptor.setCohortResultCache(new CohortResultCache());
+		Assert.assertEquals(0, interceptor.getKeys(new Location(1)).size());
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the batching methods of {@link DataExportFunctions}
+ */
+public class DataExportFunctionsTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * @see {@link DataExportFunctions#getPatientSetBatchCount()}
+	 */
+	@Test
+	@Verifies(value = "should return the index of the last batch", method = "getPatientSetBatchCount()")
+	public void getPatientSetBatchCount_shouldReturnTheIndexOfTheLastBatch() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setPatientSet(new Cohort("2,6,7,8,999"));
+		
+		functions.setBatchSize(2);
+		assertEquals(2, functions.getPatientSetBatchCount().intValue());
+		
+		functions.setBatchSize(5);
+		assertEquals(0, functions.getPatientSetBatchCount().intValue());
+	}
+	
+	/**
+	 * @see {@link DataExportFunctions#getPatientSetBatchCount()}
+	 */
+	@Test
+	@Verifies(value = "should return zero for an empty patient set", method = "getPatientSetBatchCount()")
+	public void getPatientSetBatchCount_shouldReturnZeroForAnEmptyPatientSet() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		assertNull(functions.getPatientSetBatchCount());
+		
+		functions.setPatientSet(new Cohort());
+		assertEquals(0, functions.getPatientSetBatchCount().intValue());
+	}
+	
+	/**
+	 * @see {@link DataExportFunctions#setPatientSetFromBatch(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should only put the patients of the given batch in the patient set", method = "setPatientSetFromBatch(Integer)")
+	public void setPatientSetFromBatch_shouldOnlyPutThePatientsOfTheGivenBatchInThePatientSet() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setPatientSet(new Cohort("2,6,7,8,999"));
+		functions.setBatchSize(2);
+		
+		functions.setPatientSetFromBatch(0);
+		assertEquals(Arrays.asList(2, 6), Arrays.asList(functions.getPatientSet().getMemberIds().toArray()));
+		functions.setPatientSetFromBatch(1);
+		assertEquals(Arrays.asList(7, 8), Arrays.asList(functions.getPatientSet().getMemberIds().toArray()));
+		functions.setPatientSetFromBatch(2);
+		assertEquals(Arrays.asList(999), Arrays.asList(functions.getPatientSet().getMemberIds().toArray()));
+	}
+	
+	/**
+	 * @see {@link DataExportFunctions#setPatientSetFromBatch(Integer)}
+	 */
+	@Test
+	@Verifies(value = "should drop the data fetched for the previous batch", method = "setPatientSetFromBatch(Integer)")
+	public void setPatientSetFromBatch_shouldDropTheDataFetchedForThePreviousBatch() throws Exception {
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setPatientSet(new Cohort("2,6,7,8"));
+		functions.setBatchSize(2);
+		
+		functions.setPatientSetFromBatch(0);
+		functions.setPatientId(2);
+		assertEquals("M", functions.getPatientAttr("Person", "gender"));
+		assertTrue(functions.patientAttributeMap.get("Person.gender").containsKey(6));
+		
+		functions.setPatientSetFromBatch(1);
+		assertTrue(functions.patientAttributeMap.isEmpty());
+		
+		functions.setPatientId(7);
+		assertEquals("F", functions.getPatientAttr("Person", "gender"));
+		assertFalse(functions.patientAttributeMap.get("Person.gender").containsKey(6));
+	}
+}
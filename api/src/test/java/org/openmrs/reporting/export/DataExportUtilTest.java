@@ -0,0 +1,80 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.reporting.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.openmrs.Cohort;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+import org.openmrs.util.OpenmrsUtil;
+
+/**
+ * Tests the {@link DataExportUtil} class
+ */
+public class DataExportUtilTest extends BaseContextSensitiveTest {
+	
+	/**
+	 * Generates a patient id and gender export of the given patients
+	 * 
+	 * @param name the name of the export
+	 * @param patients the patients to export
+	 * @param batchSize the number of patients exported at a time
+	 * @return the generated file contents
+	 */
+	private String generateGenderExport(String name, Cohort patients, int batchSize) throws Exception {
+		DataExportReportObject export = new DataExportReportObject();
+		export.setName(name);
+		export.addSimpleColumn("PATIENT_ID", "$!{fn.patientId}");
+		export.addSimpleColumn("GENDER", "$!{fn.getPatientAttr('Person', 'gender')}");
+		
+		DataExportFunctions functions = new DataExportFunctions();
+		functions.setBatchSize(batchSize);
+		DataExportUtil.generateExport(export, patients, functions, null);
+		
+		File exportFile = DataExportUtil.getGeneratedFile(export);
+		String output = OpenmrsUtil.getFileAsString(exportFile);
+		exportFile.delete();
+		return output;
+	}
+	
+	/**
+	 * @see {@link DataExportUtil#generateExport(DataExportReportObject,Cohort,DataExportFunctions,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should write the same rows when the patients are exported in several batches", method = "generateExport(DataExportReportObject,Cohort,DataExportFunctions,EvaluationContext)")
+	public void generateExport_shouldWriteTheSameRowsWhenThePatientsAreExportedInSeveralBatches() throws Exception {
+		String expectedOutput = "PATIENT_ID\tGENDER\n2\tM\n6\tM\n7\tF\n8\tF\n";
+		
+		assertEquals(expectedOutput, generateGenderExport("ONE_BATCH", new Cohort("2,6,7,8"), 100));
+		assertEquals(expectedOutput, generateGenderExport("THREE_BATCHES", new Cohort("2,6,7,8"), 3));
+		assertEquals(expectedOutput, generateGenderExport("FOUR_BATCHES", new Cohort("2,6,7,8"), 1));
+	}
+	
+	/**
+	 * @see {@link DataExportUtil#generateExport(DataExportReportObject,Cohort,DataExportFunctions,EvaluationContext)}
+	 */
+	@Test
+	@Verifies(value = "should reuse the compiled template of an export", method = "generateExport(DataExportReportObject,Cohort,DataExportFunctions,EvaluationContext)")
+	public void generateExport_shouldReuseTheCompiledTemplateOfAnExport() throws Exception {
+		generateGenderExport("REUSED_TEMPLATE", new Cohort("2"), 100);
+		int compiledTemplates = DataExportUtil.getCompiledTemplateCount();
+		
+		assertEquals("PATIENT_ID\tGENDER\n6\tM\n", generateGenderExport("REUSED_TEMPLATE", new Cohort("6"), 100));
+		assertEquals(compiledTemplates, DataExportUtil.getCompiledTemplateCount());
+	}
+}
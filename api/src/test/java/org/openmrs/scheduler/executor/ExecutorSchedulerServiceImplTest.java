@@ -0,0 +1,343 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.scheduler.Schedule;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.db.SchedulerDAO;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods on the {@link ExecutorSchedulerServiceImpl} class
+ */
+public class ExecutorSchedulerServiceImplTest extends BaseContextSensitiveTest {
+	
+	private static final AtomicInteger running = new AtomicInteger();
+	
+	private static final AtomicInteger maxRunning = new AtomicInteger();
+	
+	private static final List<Long> startTimes = new ArrayList<Long>();
+	
+	/** Gets a permit each time a task starts */
+	private static final Semaphore starts = new Semaphore(0);
+	
+	/**
+	 * Task that sleeps for the number of milliseconds in its "delay" property and records when it
+	 * started and how many tasks ran at the same time
+	 */
+	public static class SleepingTask extends AbstractTask {
+		
+		private long delay;
+		
+		@Override
+		public void initialize(TaskDefinition definition) {
+			delay = Long.valueOf(definition.getProperty("delay"));
+		}
+		
+		/**
+		 * @return null, so that the runs do not save their last execution time to the database
+		 */
+		@Override
+		public TaskDefinition getTaskDefinition() {
+			return null;
+		}
+		
+		@Override
+		public void execute() {
+			synchronized (startTimes) {
+				startTimes.add(System.currentTimeMillis());
+			}
+			starts.release();
+			int now = running.incrementAndGet();
+			synchronized (maxRunning) {
+				if (now > maxRunning.get())
+					maxRunning.set(now);
+			}
+			try {
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e) {
+				// just stop
+			}
+			finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Task definition that gets a permit each time the scheduler records another run on it
+	 */
+	private static class WaitableTaskDefinition extends TaskDefinition {
+		
+		private final Semaphore executions = new Semaphore(0);
+		
+		@Override
+		public void setExecutionCount(long executionCount) {
+			long newExecutions = executionCount - getExecutionCount();
+			super.setExecutionCount(executionCount);
+			if (newExecutions > 0)
+				executions.release((int) newExecutions);
+		}
+	}
+	
+	/**
+	 * Keeps the task definitions in memory, the tests do not need them in the database
+	 */
+	private static class InMemorySchedulerDAO implements SchedulerDAO {
+		
+		private Map<Integer, TaskDefinition> tasks = new HashMap<Integer, TaskDefinition>();
+		
+		public void createTask(TaskDefinition taskDefinition) {
+			taskDefinition.setId(tasks.size() + 1000);
+			updateTask(taskDefinition);
+		}
+		
+		public TaskDefinition getTask(Integer taskId) {
+			return tasks.get(taskId);
+		}
+		
+		public void updateTask(TaskDefinition task) {
+			tasks.put(task.getId(), task);
+		}
+		
+		public List<TaskDefinition> getTasks() {
+			return new ArrayList<TaskDefinition>(tasks.values());
+		}
+		
+		public void deleteTask(TaskDefinition task) {
+			tasks.remove(task.getId());
+		}
+		
+		public void deleteTask(Integer taskId) {
+			tasks.remove(taskId);
+		}
+		
+		public Schedule getSchedule(Integer scheduleId) {
+			return null;
+		}
+		
+		public TaskDefinition getTaskByName(String name) {
+			for (TaskDefinition task : tasks.values()) {
+				if (task.getName().equals(name))
+					return task;
+			}
+			return null;
+		}
+	}
+	
+	private ExecutorSchedulerServiceImpl service;
+	
+	@Before
+	public void before() throws Exception {
+		running.set(0);
+		maxRunning.set(0);
+		synchronized (startTimes) {
+			startTimes.clear();
+		}
+		starts.drainPermits();
+		service = new ExecutorSchedulerServiceImpl();
+		service.setSchedulerDAO(new InMemorySchedulerDAO());
+	}
+	
+	/**
+	 * Shuts the service down and waits for its threads to stop, so that they are not counted by
+	 * the next test
+	 */
+	@After
+	public void after() throws Exception {
+		service.onShutdown();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("OpenMRS Scheduler ")) {
+				thread.join(10000);
+				Assert.assertFalse(thread.isAlive());
+			}
+		}
+	}
+	
+	private TaskDefinition newTask(int id, long delay, Long repeatInterval) {
+		TaskDefinition task = new WaitableTaskDefinition();
+		task.setId(id);
+		task.setName("Sleeping task " + id);
+		task.setStartOnStartup(false);
+		task.setStartTime(null);
+		task.setRepeatInterval(repeatInterval);
+		task.setTaskClass(SleepingTask.class.getName());
+		task.setProperty("delay", String.valueOf(delay));
+		return task;
+	}
+	
+	/**
+	 * Waits up to ten seconds for the given number of runs to start
+	 */
+	private void waitForStarts(int count) throws InterruptedException {
+		Assert.assertTrue("expected " + count + " runs, got " + getStarts(), starts.tryAcquire(count, 10, TimeUnit.SECONDS));
+		// leave the permits for later waits
+		starts.release(count);
+	}
+	
+	private int getStarts() {
+		synchronized (startTimes) {
+			return startTimes.size();
+		}
+	}
+	
+	private long getStartTime(int run) {
+		synchronized (startTimes) {
+			return startTimes.get(run);
+		}
+	}
+	
+	/**
+	 * Waits up to ten seconds for the given task to finish running
+	 */
+	private void waitForExecutions(TaskDefinition task, int executions) throws InterruptedException {
+		Semaphore permits = ((WaitableTaskDefinition) task).executions;
+		Assert.assertTrue(permits.tryAcquire(executions, 10, TimeUnit.SECONDS));
+		permits.release(executions);
+		Assert.assertEquals(executions, task.getExecutionCount());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should run tasks that have no start time right away", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldRunTasksThatHaveNoStartTimeRightAway() throws Exception {
+		long before = System.currentTimeMillis();
+		service.scheduleTask(newTask(101, 0, null));
+		waitForStarts(1);
+		Assert.assertTrue(getStartTime(0) - before < 2000);
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should not run more tasks at the same time than the pool size", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldNotRunMoreTasksAtTheSameTimeThanThePoolSize() throws Exception {
+		service.setPoolSize(1);
+		TaskDefinition t1 = newTask(101, 300, null);
+		TaskDefinition t2 = newTask(102, 300, null);
+		service.scheduleTask(t1);
+		service.scheduleTask(t2);
+		waitForExecutions(t1, 1);
+		waitForExecutions(t2, 1);
+		Assert.assertEquals(1, maxRunning.get());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should record the duration and number of runs on the task definition", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldRecordTheDurationAndNumberOfRunsOnTheTaskDefinition() throws Exception {
+		TaskDefinition task = newTask(101, 200, null);
+		Assert.assertNull(task.getLastExecutionDuration());
+		service.scheduleTask(task);
+		waitForExecutions(task, 1);
+		
+		Assert.assertTrue(task.getLastExecutionDuration() >= 200);
+		Assert.assertEquals(task.getLastExecutionDuration().longValue(), task.getTotalExecutionDuration());
+		Assert.assertEquals(0, task.getSkippedExecutionCount());
+		Assert.assertEquals("Not Running", service.getStatus(101));
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should skip runs that are missed while the task is running if the policy is SKIP", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldSkipRunsThatAreMissedWhileTheTaskIsRunningIfThePolicyIsSKIP() throws Exception {
+		service.setMissedRunPolicy(MissedRunPolicy.SKIP);
+		// runs every second, but takes longer than that
+		TaskDefinition task = newTask(101, 1200, 1L);
+		service.scheduleTask(task);
+		waitForStarts(2);
+		
+		// the run due after one second was dropped, the next one is due after two seconds
+		Assert.assertEquals(1, task.getSkippedExecutionCount());
+		Assert.assertTrue(getStartTime(1) - getStartTime(0) >= 1500);
+		Assert.assertEquals(1, maxRunning.get());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#scheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should run once right away after runs were missed if the policy is RUN_ONCE", method = "scheduleTask(TaskDefinition)")
+	public void scheduleTask_shouldRunOnceRightAwayAfterRunsWereMissedIfThePolicyIsRUN_ONCE() throws Exception {
+		service.setMissedRunPolicy(MissedRunPolicy.RUN_ONCE);
+		// runs every second, but takes longer than that
+		TaskDefinition task = newTask(101, 1200, 1L);
+		service.scheduleTask(task);
+		waitForStarts(2);
+		
+		// the run due after one second starts as soon as the first one is done
+		Assert.assertEquals(0, task.getSkippedExecutionCount());
+		Assert.assertTrue(getStartTime(1) - getStartTime(0) < 1800);
+		Assert.assertEquals(1, maxRunning.get());
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#rescheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should not run a task while its previous instance is still running", method = "rescheduleTask(TaskDefinition)")
+	public void rescheduleTask_shouldNotRunATaskWhileItsPreviousInstanceIsStillRunning() throws Exception {
+		service.setMissedRunPolicy(MissedRunPolicy.RUN_ONCE);
+		TaskDefinition task = newTask(101, 500, null);
+		service.scheduleTask(task);
+		waitForStarts(1);
+		
+		// the new instance is due right away, but has to wait for the old one to finish
+		service.rescheduleTask(task);
+		waitForStarts(2);
+		Assert.assertEquals(1, maxRunning.get());
+		Assert.assertTrue(getStartTime(1) - getStartTime(0) >= 500);
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerServiceImpl#rescheduleTask(TaskDefinition)}
+	 */
+	@Test
+	@Verifies(value = "should not leave threads behind", method = "rescheduleTask(TaskDefinition)")
+	public void rescheduleTask_shouldNotLeaveThreadsBehind() throws Exception {
+		service.setPoolSize(2);
+		TaskDefinition task = newTask(101, 0, 3600L);
+		for (int i = 0; i < 20; i++)
+			service.rescheduleTask(task);
+		
+		int schedulerThreads = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("OpenMRS Scheduler "))
+				schedulerThreads++;
+		}
+		Assert.assertTrue(schedulerThreads <= 2);
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.scheduler.executor;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.executor.ExecutorSchedulerTask.RunGuard;
+import org.openmrs.scheduler.tasks.AbstractTask;
+import org.openmrs.test.BaseContextSensitiveTest;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods on the {@link ExecutorSchedulerTask} class
+ */
+public class ExecutorSchedulerTaskTest extends BaseContextSensitiveTest {
+	
+	private static ScheduledThreadPoolExecutor executor;
+	
+	private static RunGuard runGuard;
+	
+	private static ExecutorSchedulerTask waiting;
+	
+	/**
+	 * Task that makes another instance wait for it and shuts the executor down while it runs
+	 */
+	public static class ShutdownTask extends AbstractTask {
+		
+		@Override
+		public TaskDefinition getTaskDefinition() {
+			return null;
+		}
+		
+		@Override
+		public void execute() {
+			runGuard.tryStart(waiting, true);
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @see {@link ExecutorSchedulerTask#run()}
+	 */
+	@Test
+	@Verifies(value = "should not hand the waiting instance to an executor that is shut down", method = "run()")
+	public void run_shouldNotHandTheWaitingInstanceToAnExecutorThatIsShutDown() throws Exception {
+		executor = new ScheduledThreadPoolExecutor(1);
+		runGuard = new RunGuard();
+		TaskDefinition definition = new TaskDefinition();
+		definition.setName("Shutdown task");
+		waiting = new ExecutorSchedulerTask(new ShutdownTask(), definition, executor, runGuard, 0,
+		        MissedRunPolicy.RUN_ONCE);
+		ExecutorSchedulerTask running = new ExecutorSchedulerTask(new ShutdownTask(), definition, executor, runGuard,
+		        0, MissedRunPolicy.RUN_ONCE);
+		
+		running.run();
+		Assert.assertEquals(1, definition.getExecutionCount());
+		Assert.assertTrue(executor.isShutdown());
+		Assert.assertEquals(0, executor.getTaskCount());
+	}
+}
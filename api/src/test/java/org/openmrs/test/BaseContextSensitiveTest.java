@@ -68,9 +68,12 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.db.hibernate.CacheInvalidatingInterceptor;
+import org.openmrs.api.impl.AdministrationServiceImpl;
 import org.openmrs.module.ModuleConstants;
 import org.openmrs.module.ModuleUtil;
 import org.openmrs.util.OpenmrsClassLoader;
+import org.springframework.aop.framework.Advised;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.junit4.AbstractJUnit4SpringContextTests;
@@ -570,6 +573,7 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		// do the actual update/insert:
 		// insert new rows, update existing rows, and leave others alone
 		DatabaseOperation.REFRESH.execute(dbUnitConn, dataset);
+		clearCachedData();
 		
 		//turn foreign key checks back on
 		if (useInMemoryDatabase()) {
@@ -587,6 +591,21 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		}
 	}
 	
+	/**
+	 * Tables are written to directly by dbunit, so the global property values cached by the
+	 * administration service and the values of the caches kept up to date by interceptors have to
+	 * be thrown away
+	 */
+	private void clearCachedData() throws Exception {
+		Object adminService = applicationContext.getBean("adminServiceTarget");
+		if (adminService instanceof Advised)
+			adminService = ((Advised) adminService).getTargetSource().getTarget();
+		((AdministrationServiceImpl) adminService).clearGlobalPropertyCache();
+		for (CacheInvalidatingInterceptor<?> interceptor : applicationContext.getBeansOfType(
+		    CacheInvalidatingInterceptor.class).values())
+			interceptor.invalidateAll();
+	}
+	
 	/**
 	 * This is a convenience method to clear out all rows in all tables in the current connection
 	 * 
@@ -618,6 +637,7 @@ public abstract class BaseContextSensitiveTest extends AbstractJUnit4SpringConte
 		// do the actual deleting/truncating
 		if (useInMemoryDatabase())
 			DatabaseOperation.DELETE_ALL.execute(dbUnitConn, dataset);
+		clearCachedData();
 		
 		// turn constraints back on for this connection
 		if (useInMemoryDatabase()) {
@@ -0,0 +1,230 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompressedIntegerSet} class
+ */
+public class CompressedIntegerSetTest {
+
+	/**
+	 * Builds a set and a reference TreeSet holding the same random values, dense enough that some
+	 * chunks are stored as bitmaps and others as arrays
+	 */
+	private CompressedIntegerSet randomSet(long seed, TreeSet<Integer> reference) {
+		Random random = new Random(seed);
+		CompressedIntegerSet set = new CompressedIntegerSet();
+		for (int i = 0; i < 20000; i++) {
+			int value = random.nextInt(100000);
+			set.add(value);
+			reference.add(value);
+		}
+		for (int i = 0; i < 100; i++) {
+			int value = random.nextInt(Integer.MAX_VALUE);
+			set.add(value);
+			reference.add(value);
+		}
+		return set;
+	}
+
+	/**
+	 * @see CompressedIntegerSet#valueOf(java.util.Collection)
+	 * @verifies return the same instance if given a compressed integer set
+	 */
+	@Test
+	public void valueOf_shouldReturnTheSameInstanceIfGivenACompressedIntegerSet() throws Exception {
+		CompressedIntegerSet set = new CompressedIntegerSet(Arrays.asList(1, 2, 3));
+		Assert.assertSame(set, CompressedIntegerSet.valueOf(set));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#valueOf(java.util.Collection)
+	 * @verifies copy any other collection
+	 */
+	@Test
+	public void valueOf_shouldCopyAnyOtherCollection() throws Exception {
+		TreeSet<Integer> ids = new TreeSet<Integer>(Arrays.asList(5, 3, 1));
+		CompressedIntegerSet set = CompressedIntegerSet.valueOf(ids);
+		Assert.assertEquals(ids, set);
+		ids.add(7);
+		Assert.assertFalse(set.contains(7));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#add(int)
+	 * @verifies add negative and positive values
+	 */
+	@Test
+	public void add_shouldAddNegativeAndPositiveValues() throws Exception {
+		CompressedIntegerSet set = new CompressedIntegerSet();
+		set.add(70000);
+		set.add(-5);
+		set.add(Integer.MIN_VALUE);
+		set.add(Integer.MAX_VALUE);
+		set.add(0);
+		Assert.assertEquals(Arrays.asList(Integer.MIN_VALUE, -5, 0, 70000, Integer.MAX_VALUE), new ArrayList<Integer>(
+		        set));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#add(int)
+	 * @verifies not add duplicate values
+	 */
+	@Test
+	public void add_shouldNotAddDuplicateValues() throws Exception {
+		CompressedIntegerSet set = new CompressedIntegerSet();
+		Assert.assertTrue(set.add(42));
+		Assert.assertFalse(set.add(42));
+		for (int i = 0; i < 10000; i++)
+			set.add(i);
+		Assert.assertFalse(set.add(4000));
+		Assert.assertEquals(10000, set.size());
+	}
+
+	/**
+	 * @see CompressedIntegerSet#contains(int)
+	 * @verifies return true only for added values
+	 */
+	@Test
+	public void contains_shouldReturnTrueOnlyForAddedValues() throws Exception {
+		TreeSet<Integer> reference = new TreeSet<Integer>();
+		CompressedIntegerSet set = randomSet(1, reference);
+		for (int i = 0; i < 100000; i++)
+			Assert.assertEquals(reference.contains(i), set.contains(i));
+		Assert.assertFalse(set.contains("1"));
+		Assert.assertFalse(set.contains(null));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#remove(int)
+	 * @verifies remove values and drop empty chunks
+	 */
+	@Test
+	public void remove_shouldRemoveValuesAndDropEmptyChunks() throws Exception {
+		CompressedIntegerSet set = new CompressedIntegerSet();
+		for (int i = 0; i < 70000; i++)
+			set.add(i);
+		for (int i = 0; i < 70000; i += 2)
+			Assert.assertTrue(set.remove(i));
+		Assert.assertFalse(set.remove(0));
+		Assert.assertEquals(35000, set.size());
+		Assert.assertEquals(Integer.valueOf(1), set.ceiling(0));
+		for (int i = 1; i < 70000; i += 2)
+			set.remove(i);
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertNull(set.ceiling(Integer.MIN_VALUE));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#ceiling(int)
+	 * @verifies return the next value at or above the given value
+	 */
+	@Test
+	public void ceiling_shouldReturnTheNextValueAtOrAboveTheGivenValue() throws Exception {
+		CompressedIntegerSet set = new CompressedIntegerSet(Arrays.asList(3, 65535, 200000));
+		Assert.assertEquals(Integer.valueOf(3), set.ceiling(3));
+		Assert.assertEquals(Integer.valueOf(65535), set.ceiling(4));
+		Assert.assertEquals(Integer.valueOf(200000), set.ceiling(65536));
+		Assert.assertNull(set.ceiling(200001));
+	}
+
+	/**
+	 * @see CompressedIntegerSet#iterator()
+	 * @verifies iterate in ascending order
+	 */
+	@Test
+	public void iterator_shouldIterateInAscendingOrder() throws Exception {
+		TreeSet<Integer> reference = new TreeSet<Integer>();
+		CompressedIntegerSet set = randomSet(2, reference);
+		Assert.assertEquals(new ArrayList<Integer>(reference), new ArrayList<Integer>(set));
+		Assert.assertEquals(reference.size(), set.size());
+	}
+
+	/**
+	 * @see CompressedIntegerSet#iterator()
+	 * @verifies support removal through the iterator
+	 */
+	@Test
+	public void iterator_shouldSupportRemovalThroughTheIterator() throws Exception {
+		TreeSet<Integer> reference = new TreeSet<Integer>();
+		CompressedIntegerSet set = randomSet(3, reference);
+		for (Iterator<Integer> i = set.iterator(); i.hasNext();) {
+			if (i.next() % 3 == 0)
+				i.remove();
+		}
+		for (Iterator<Integer> i = reference.iterator(); i.hasNext();) {
+			if (i.next() % 3 == 0)
+				i.remove();
+		}
+		Assert.assertEquals(reference, set);
+	}
+
+	/**
+	 * @see CompressedIntegerSet#or(CompressedIntegerSet,CompressedIntegerSet)
+	 * @verifies return all values in either set
+	 */
+	@Test
+	public void or_shouldReturnAllValuesInEitherSet() throws Exception {
+		TreeSet<Integer> a = new TreeSet<Integer>();
+		TreeSet<Integer> b = new TreeSet<Integer>();
+		CompressedIntegerSet result = CompressedIntegerSet.or(randomSet(4, a), randomSet(5, b));
+		a.addAll(b);
+		Assert.assertEquals(a, result);
+		Assert.assertEquals(a.size(), result.size());
+	}
+
+	/**
+	 * @see CompressedIntegerSet#and(CompressedIntegerSet,CompressedIntegerSet)
+	 * @verifies return only values in both sets
+	 */
+	@Test
+	public void and_shouldReturnOnlyValuesInBothSets() throws Exception {
+		TreeSet<Integer> a = new TreeSet<Integer>();
+		TreeSet<Integer> b = new TreeSet<Integer>();
+		CompressedIntegerSet result = CompressedIntegerSet.and(randomSet(6, a), randomSet(7, b));
+		a.retainAll(b);
+		Assert.assertEquals(a, result);
+		Assert.assertEquals(a.size(), result.size());
+		Assert.assertTrue(CompressedIntegerSet.and(result, null).isEmpty());
+	}
+
+	/**
+	 * @see CompressedIntegerSet#andNot(CompressedIntegerSet,CompressedIntegerSet)
+	 * @verifies return values in the first set but not the second
+	 */
+	@Test
+	public void andNot_shouldReturnValuesInTheFirstSetButNotTheSecond() throws Exception {
+		TreeSet<Integer> a = new TreeSet<Integer>();
+		TreeSet<Integer> b = new TreeSet<Integer>();
+		CompressedIntegerSet first = randomSet(8, a);
+		CompressedIntegerSet result = CompressedIntegerSet.andNot(first, randomSet(9, b));
+		a.removeAll(b);
+		Assert.assertEquals(a, result);
+		Assert.assertEquals(a.size(), result.size());
+
+		List<Integer> firstValues = new ArrayList<Integer>(first);
+		Assert.assertEquals(firstValues, new ArrayList<Integer>(CompressedIntegerSet.andNot(first, null)));
+	}
+}
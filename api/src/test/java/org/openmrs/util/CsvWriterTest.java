@@ -0,0 +1,66 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link CsvWriter}
+ */
+public class CsvWriterTest {
+	
+	/**
+	 * @see {@link CsvWriter#writeValue(Object)}
+	 */
+	@Test
+	@Verifies(value = "should quote values that contain a separator, quote or line break", method = "writeValue(Object)")
+	public void writeValue_shouldQuoteValuesThatContainASeparatorQuoteOrLineBreak() throws Exception {
+		StringWriter out = new StringWriter();
+		CsvWriter csv = new CsvWriter(out);
+		csv.writeValue("plain").writeValue("a,b").writeValue("say \"hi\"").writeValue("two\nlines");
+		csv.flush();
+		Assert.assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"", out.toString());
+	}
+	
+	/**
+	 * @see {@link CsvWriter#writeValue(Object)}
+	 */
+	@Test
+	@Verifies(value = "should write null as an empty field", method = "writeValue(Object)")
+	public void writeValue_shouldWriteNullAsAnEmptyField() throws Exception {
+		StringWriter out = new StringWriter();
+		CsvWriter csv = new CsvWriter(out);
+		csv.writeValue(null).writeValue(1).writeValue(null);
+		csv.flush();
+		Assert.assertEquals(",1,", out.toString());
+	}
+	
+	/**
+	 * @see {@link CsvWriter#writeRow(Object[])}
+	 */
+	@Test
+	@Verifies(value = "should write the values separated by commas and end the row", method = "writeRow(Object[])")
+	public void writeRow_shouldWriteTheValuesSeparatedByCommasAndEndTheRow() throws Exception {
+		StringWriter out = new StringWriter();
+		CsvWriter csv = new CsvWriter(out);
+		csv.writeRow("a", 2, true);
+		csv.writeRow("b");
+		csv.flush();
+		Assert.assertEquals("a,2,true\nb\n", out.toString());
+	}
+}
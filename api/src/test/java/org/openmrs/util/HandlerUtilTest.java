@@ -57,6 +57,30 @@ public class HandlerUtilTest extends BaseContextSensitiveTest {
 		Assert.assertEquals(0, l.size());
 	}
 	
+	/**
+	 * @see {@link HandlerUtil#getHandlersForType(Class, Class)}
+	 */
+	@Test
+	@Verifies(value = "should return the cached handlers the second time", method = "getHandlersForType(Class, Class)")
+	public void getHandlersForType_shouldReturnTheCachedHandlersTheSecondTime() throws Exception {
+		List<Validator> l = HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class);
+		Assert.assertSame(l, HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class));
+		Assert.assertNotSame(l, HandlerUtil.getHandlersForType(Validator.class, Order.class));
+	}
+	
+	/**
+	 * @see {@link HandlerUtil#getHandlersForType(Class, Class)}
+	 */
+	@Test
+	@Verifies(value = "should look the handlers up again after the cache is cleared", method = "getHandlersForType(Class, Class)")
+	public void getHandlersForType_shouldLookTheHandlersUpAgainAfterTheCacheIsCleared() throws Exception {
+		List<Validator> l = HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class);
+		HandlerUtil.clearCachedHandlers();
+		List<Validator> l2 = HandlerUtil.getHandlersForType(Validator.class, DrugOrder.class);
+		Assert.assertNotSame(l, l2);
+		Assert.assertEquals(l, l2);
+	}
+	
 	/**
 	 * @see {@link HandlerUtil#getPreferredHandler(Class, Class)}
 	 */
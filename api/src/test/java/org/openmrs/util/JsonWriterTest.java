@@ -0,0 +1,53 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.util;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests the methods in {@link JsonWriter}
+ */
+public class JsonWriterTest {
+	
+	/**
+	 * @see {@link JsonWriter#beginObject()}
+	 */
+	@Test
+	@Verifies(value = "should separate the members of objects and arrays with commas", method = "beginObject()")
+	public void beginObject_shouldSeparateTheMembersOfObjectsAndArraysWithCommas() throws Exception {
+		StringWriter out = new StringWriter();
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject().name("id").value(5).name("retired").value(false).name("names").beginArray().value("a")
+		        .value((String) null).beginObject().endObject().endArray().name("empty").beginArray().endArray().endObject();
+		json.flush();
+		Assert.assertEquals("{\"id\":5,\"retired\":false,\"names\":[\"a\",null,{}],\"empty\":[]}", out.toString());
+	}
+	
+	/**
+	 * @see {@link JsonWriter#value(String)}
+	 */
+	@Test
+	@Verifies(value = "should escape quotes, backslashes and control characters", method = "value(String)")
+	public void value_shouldEscapeQuotesBackslashesAndControlCharacters() throws Exception {
+		StringWriter out = new StringWriter();
+		JsonWriter json = new JsonWriter(out);
+		json.value("a \"b\" \\ c\n\t\u0001");
+		json.flush();
+		Assert.assertEquals("\"a \\\"b\\\" \\\\ c\\n\\t\\u0001\"", out.toString());
+	}
+}
@@ -14,7 +14,6 @@
 package org.openmrs.web.controller;
 
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -32,17 +31,20 @@ import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.general.DefaultPieDataset;
-import org.jfree.data.statistics.HistogramDataset;
-import org.jfree.data.time.Day;
+import org.jfree.data.statistics.SimpleHistogramBin;
+import org.jfree.data.statistics.SimpleHistogramDataset;
+import org.jfree.data.time.Month;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.IntervalXYDataset;
 import org.openmrs.Concept;
 import org.openmrs.ConceptDatatype;
 import org.openmrs.Obs;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.ObsService;
+import org.openmrs.api.ObsService.ObsGrouping;
 import org.openmrs.api.context.Context;
-import org.openmrs.util.OpenmrsConstants;
+import org.openmrs.obs.ObsStatistics;
 import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.validation.BindException;
 import org.springframework.web.servlet.ModelAndView;
@@ -54,6 +56,22 @@ public class ConceptStatsFormController extends SimpleFormController {
 	/** Logger for this class and subclasses */
 	protected final Log log = LogFactory.getLog(getClass());
 	
+	/**
+	 * The number of bins of the histograms
+	 */
+	private static final int HISTOGRAM_BINS = 50;
+	
+	/**
+	 * Values further than 1.5 times the range between this percentile and its opposite from either
+	 * of them are outliers
+	 */
+	private static final double OUTLIER_PERCENTILE = 0.98;
+	
+	/**
+	 * The maximum number of outliers listed
+	 */
+	private static final int MAX_OUTLIERS = 1000;
+	
 	/**
 	 * @see org.springframework.web.servlet.mvc.AbstractFormController#processFormSubmission(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse, java.lang.Object,
@@ -138,121 +156,62 @@ public class ConceptStatsFormController extends SimpleFormController {
 				if (ConceptDatatype.NUMERIC.equals(concept.getDatatype().getHl7Abbreviation())) {
 					map.put("displayType", "numeric");
 					
-					List<Obs> numericAnswers = obsService.getObservations(null, null, Collections.singletonList(concept),
-					    null, Collections.singletonList(OpenmrsConstants.PERSON_TYPE.PERSON), null, Collections
-					            .singletonList("valueNumeric"), null, null, null, null, false);
+					ObsStatistics stats = obsService.getNumericObsStatistics(concept, null, null, null, null, null,
+					    new double[] { 1 - OUTLIER_PERCENTILE, 0.5, OUTLIER_PERCENTILE }, HISTOGRAM_BINS);
+					map.put("size", stats.getCount());
 					
-					if (numericAnswers.size() > 0) {
-						Double min = numericAnswers.get(0).getValueNumeric();
-						Double max = (Double) numericAnswers.get(numericAnswers.size() - 1).getValueNumeric();
-						Double median = (Double) numericAnswers.get(numericAnswers.size() / 2).getValueNumeric();
-						
-						Map<Double, Integer> counts = new HashMap<Double, Integer>(); // counts for the histogram
-						Double total = 0.0; // sum of values. used for mean
-						
-						// dataset setup for lineChart
-						TimeSeries timeSeries = new TimeSeries(concept.getName().getName(), Day.class);
-						TimeSeriesCollection timeDataset = new TimeSeriesCollection();
-						Calendar calendar = Calendar.getInstance();
-						
-						// array for histogram
-						double[] obsNumerics = new double[(numericAnswers.size())];
-						
-						Integer i = 0;
-						for (Obs obs : numericAnswers) {
-							Date date = (Date) obs.getObsDatetime();
-							Double value = (Double) obs.getValueNumeric();
-							
-							// for mean calculation
-							total += value;
-							
-							// for histogram
-							obsNumerics[i++] = value;
-							Integer count = counts.get(value);
-							counts.put(value, count == null ? 1 : count + 1);
-							
-							// for line chart
-							calendar.setTime(date);
-							Day day = new Day(calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.MONTH) + 1, // January = 0 
-							        calendar.get(Calendar.YEAR) < 1900 ? 1900 : calendar.get(Calendar.YEAR) // jfree chart doesn't like the 19th century
-							);
-							timeSeries.addOrUpdate(day, value);
-						}
-						
-						Double size = new Double(numericAnswers.size());
-						Double mean = total / size;
-						
-						map.put("size", numericAnswers.size());
-						map.put("min", min);
-						map.put("max", max);
-						map.put("mean", mean);
-						map.put("median", median);
+					if (stats.getCount() > 0) {
+						map.put("min", stats.getMin());
+						map.put("max", stats.getMax());
+						map.put("mean", stats.getMean());
+						map.put("median", stats.getPercentile(0.5));
 						
 						// create histogram chart
-						HistogramDataset histDataset = new HistogramDataset(); // dataset for histogram
-						histDataset.addSeries(concept.getName().getName(), obsNumerics, counts.size());
-						
 						JFreeChart histogram = ChartFactory.createHistogram(concept.getName().getName(), msa
 						        .getMessage("Concept.stats.histogramDomainAxisTitle"), msa
-						        .getMessage("Concept.stats.histogramRangeAxisTitle"), histDataset, PlotOrientation.VERTICAL,
-						    false, true, false);
+						        .getMessage("Concept.stats.histogramRangeAxisTitle"), createHistogramDataset(concept, stats),
+						    PlotOrientation.VERTICAL, false, true, false);
 						map.put("histogram", histogram);
 						
-						if (size > 25) {
-							// calculate 98th percentile of the data:
-							Double x = 0.98;
-							Integer xpercentile = (int) (x * size);
-							Double upperQuartile = numericAnswers.get(xpercentile).getValueNumeric();
-							Double lowerQuartile = numericAnswers.get((int) (size - xpercentile)).getValueNumeric();
+						if (stats.getCount() > 25) {
+							Double upperQuartile = stats.getPercentile(OUTLIER_PERCENTILE);
+							Double lowerQuartile = stats.getPercentile(1 - OUTLIER_PERCENTILE);
 							Double innerQuartile = upperQuartile - lowerQuartile;
 							Double innerQuartileLimit = innerQuartile * 1.5; // outliers will be greater than this from the upper/lower quartile
 							Double upperQuartileLimit = upperQuartile + innerQuartileLimit;
 							Double lowerQuartileLimit = lowerQuartile - innerQuartileLimit;
 							
-							List<Obs> outliers = new Vector<Obs>();
-							
-							// move outliers to the outliers list
-							// removing lower quartile outliers
-							for (i = 0; i < size - xpercentile; i++) {
-								Obs possibleOutlier = numericAnswers.get(i);
-								if (possibleOutlier.getValueNumeric() >= lowerQuartileLimit)
-									break; // quit if this value is greater than the lower limit
-								outliers.add(possibleOutlier);
-							}
-							
-							// removing upper quartile outliers
-							for (i = size.intValue() - 1; i >= xpercentile; i--) {
-								Obs possibleOutlier = numericAnswers.get(i);
-								if (possibleOutlier.getValueNumeric() <= upperQuartileLimit)
-									break; // quit if this value is less than the upper limit
-								outliers.add(possibleOutlier);
-							}
-							numericAnswers.removeAll(outliers);
+							// the view shows the obs id, date and value of each outlier
+							List<Object[]> outliers = new Vector<Object[]>();
+							for (Obs o : obsService.getNumericObsOutsideRange(concept, lowerQuartileLimit,
+							    upperQuartileLimit, null, null, null, MAX_OUTLIERS))
+								outliers.add(new Object[] { o.getObsId(), o.getObsDatetime(), o.getValueNumeric() });
 							
-							double[] obsNumericsOutliers = new double[(numericAnswers.size())];
-							i = 0;
-							counts.clear();
-							for (Obs values : numericAnswers) {
-								Double value = values.getValueNumeric();
-								obsNumericsOutliers[i++] = value;
-								Integer count = counts.get(value);
-								counts.put(value, count == null ? 1 : count + 1);
+							if (outliers.size() > 0) {
+								// create outlier histogram chart
+								ObsStatistics inliers = obsService.getNumericObsStatistics(concept, null, null, null,
+								    lowerQuartileLimit, upperQuartileLimit, null, HISTOGRAM_BINS);
+								JFreeChart histogramOutliers = ChartFactory.createHistogram(concept.getName().getName(),
+								    msa.getMessage("Concept.stats.histogramDomainAxisTitle"), msa
+								            .getMessage("Concept.stats.histogramRangeAxisTitle"), createHistogramDataset(
+								        concept, inliers), PlotOrientation.VERTICAL, false, true, false);
+								map.put("histogramOutliers", histogramOutliers);
 							}
-							
-							// create outlier histogram chart
-							HistogramDataset outlierHistDataset = new HistogramDataset();
-							outlierHistDataset.addSeries(concept.getName().getName(), obsNumericsOutliers, counts.size());
-							
-							JFreeChart histogramOutliers = ChartFactory.createHistogram(concept.getName().getName(), msa
-							        .getMessage("Concept.stats.histogramDomainAxisTitle"), msa
-							        .getMessage("Concept.stats.histogramRangeAxisTitle"), outlierHistDataset,
-							    PlotOrientation.VERTICAL, false, true, false);
-							map.put("histogramOutliers", histogramOutliers);
 							map.put("outliers", outliers);
-							
 						}
 						
-						// create line graph chart
+						// create line graph chart of the monthly means
+						TimeSeries timeSeries = new TimeSeries(concept.getName().getName(), Month.class);
+						Calendar calendar = Calendar.getInstance();
+						for (Map.Entry<Object, ObsStatistics> entry : obsService.getNumericObsStatisticsByGroup(concept,
+						    ObsGrouping.MONTH, null, null, null).entrySet()) {
+							calendar.setTime((Date) entry.getKey());
+							Month month = new Month(calendar.get(Calendar.MONTH) + 1, // January = 0
+							        calendar.get(Calendar.YEAR) < 1900 ? 1900 : calendar.get(Calendar.YEAR) // jfree chart doesn't like the 19th century
+							);
+							timeSeries.addOrUpdate(month, entry.getValue().getMean());
+						}
+						TimeSeriesCollection timeDataset = new TimeSeriesCollection();
 						timeDataset.addSeries(timeSeries);
 						JFreeChart lineChart = ChartFactory.createTimeSeriesChart(concept.getName().getName(), msa
 						        .getMessage("Concept.stats.lineChartDomainAxisLabel"), msa
@@ -264,26 +223,24 @@ public class ConceptStatsFormController extends SimpleFormController {
 					// create bar chart for boolean answers
 					map.put("displayType", "boolean");
 					
-					List<Obs> obs = obsService.getObservations(null, null, Collections.singletonList(concept), null,
-					    Collections.singletonList(OpenmrsConstants.PERSON_TYPE.PERSON), null, null, null, null, null, null,
-					    false);
-					
-					DefaultPieDataset pieDataset = new DefaultPieDataset();
-					
-					// count the number of unique answers
-					Map<String, Integer> counts = new HashMap<String, Integer>();
-					for (Obs o : obs) {
-						Boolean answer = o.getValueAsBoolean();
-						if (answer == null)
-							answer = false;
-						String name = answer.toString();
-						Integer count = counts.get(name);
-						counts.put(name, count == null ? 1 : count + 1);
+					// booleans are coded as the true and false concepts, older ones are numeric 1 or 0
+					long total = 0;
+					long trueCount = 0;
+					for (Map.Entry<Concept, Long> entry : obsService.getCodedObsFrequencies(concept, null, null, null)
+					        .entrySet()) {
+						total += entry.getValue();
+						if (entry.getKey() != null && entry.getKey().equals(cs.getTrueConcept()))
+							trueCount += entry.getValue();
 					}
+					trueCount += obsService.getNumericObsStatistics(concept, null, null, null, 1.0, 1.0, null, null)
+					        .getCount();
 					
-					// put the counts into the dataset
-					for (Map.Entry<String, Integer> entry : counts.entrySet())
-						pieDataset.setValue(entry.getKey(), entry.getValue());
+					// put the counts into the dataset, unanswered obs count as false
+					DefaultPieDataset pieDataset = new DefaultPieDataset();
+					if (trueCount > 0)
+						pieDataset.setValue(Boolean.TRUE.toString(), trueCount);
+					if (total > trueCount)
+						pieDataset.setValue(Boolean.FALSE.toString(), total - trueCount);
 					
 					JFreeChart pieChart = ChartFactory.createPieChart(concept.getName().getName(), pieDataset, true, true,
 					    false);
@@ -293,29 +250,20 @@ public class ConceptStatsFormController extends SimpleFormController {
 					// create pie graph for coded answers
 					map.put("displayType", "coded");
 					
-					List<Obs> obs = obsService.getObservations(null, null, Collections.singletonList(concept), null,
-					    Collections.singletonList(OpenmrsConstants.PERSON_TYPE.PERSON), null, null, null, null, null, null,
-					    false);
-					
 					DefaultPieDataset pieDataset = new DefaultPieDataset();
 					
-					// count the number of unique answers
-					Map<String, Integer> counts = new HashMap<String, Integer>();
-					for (Obs o : obs) {
-						Concept value = o.getValueCoded();
+					// put the counts of the unique answers into the dataset
+					for (Map.Entry<Concept, Long> entry : obsService.getCodedObsFrequencies(concept, null, null, null)
+					        .entrySet()) {
+						Concept value = entry.getKey();
 						String name;
 						if (value == null)
 							name = "[value_coded is null]";
 						else
 							name = value.getName().getName();
-						Integer count = counts.get(name);
-						counts.put(name, count == null ? 1 : count + 1);
+						pieDataset.setValue(name, entry.getValue());
 					}
 					
-					// put the counts into the dataset
-					for (Map.Entry<String, Integer> entry : counts.entrySet())
-						pieDataset.setValue(entry.getKey(), entry.getValue());
-					
 					JFreeChart pieChart = ChartFactory.createPieChart(concept.getName().getName(), pieDataset, true, true,
 					    false);
 					map.put("pieChart", pieChart);
@@ -333,4 +281,31 @@ public class ConceptStatsFormController extends SimpleFormController {
 		return map;
 	}
 	
+	/**
+	 * Creates the dataset of a histogram chart from the bins computed by the database
+	 * 
+	 * @param concept the concept of the values
+	 * @param stats the statistics holding the histogram
+	 * @return the dataset
+	 */
+	private IntervalXYDataset createHistogramDataset(Concept concept, ObsStatistics stats) {
+		SimpleHistogramDataset dataset = new SimpleHistogramDataset(concept.getName().getName());
+		long[] counts = stats.getHistogramCounts();
+		double start = stats.getHistogramStart();
+		double width = stats.getHistogramBinWidth();
+		if (width == 0) {
+			// all values are equal and counted in the first bin
+			SimpleHistogramBin bin = new SimpleHistogramBin(start - 0.5, start + 0.5);
+			bin.setItemCount((int) counts[0]);
+			dataset.addBin(bin);
+			return dataset;
+		}
+		for (int i = 0; i < counts.length; i++) {
+			SimpleHistogramBin bin = new SimpleHistogramBin(start + i * width, start + (i + 1) * width, true,
+			        i == counts.length - 1);
+			bin.setItemCount((int) counts[i]);
+			dataset.addBin(bin);
+		}
+		return dataset;
+	}
 }
@@ -15,12 +15,14 @@ package org.openmrs.web.controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.servlet.ServletException;
@@ -55,6 +57,51 @@ public class PortletController implements Controller {
 	
 	protected Log log = LogFactory.getLog(this.getClass());
 	
+	/**
+	 * Patient data group for the patientEncounters model entry
+	 */
+	public static final String PATIENT_DATA_ENCOUNTERS = "encounters";
+	
+	/**
+	 * Patient data group for the patientVisits and activeVisits model entries
+	 */
+	public static final String PATIENT_DATA_VISITS = "visits";
+	
+	/**
+	 * Patient data group for the patientObs model entry, which holds every obs of the patient
+	 */
+	public static final String PATIENT_DATA_OBS = "obs";
+	
+	/**
+	 * Patient data group for the patientMostRecentObs model entry
+	 */
+	public static final String PATIENT_DATA_MOST_RECENT_OBS = "mostRecentObs";
+	
+	/**
+	 * Patient data group for the patientDrugOrders, currentDrugOrders, completedDrugOrders and
+	 * standardRegimens model entries
+	 */
+	public static final String PATIENT_DATA_DRUG_ORDERS = "drugOrders";
+	
+	/**
+	 * Patient data group for the patientPrograms and patientCurrentPrograms model entries
+	 */
+	public static final String PATIENT_DATA_PROGRAMS = "programs";
+	
+	private Map<String, String> patientDataByPortlet;
+	
+	/**
+	 * Sets the patient data each portlet needs. The keys are portlet names, which are portlet urls
+	 * without path and extension, and the values are comma-separated lists of the PATIENT_DATA_*
+	 * groups the portlet shows. The patient, vitals and reason for exit are always put in the
+	 * model. Portlets that are not in the map get all of the patient data.
+	 * 
+	 * @param patientDataByPortlet the patient data groups by portlet name
+	 */
+	public void setPatientDataByPortlet(Map<String, String> patientDataByPortlet) {
+		this.patientDataByPortlet = patientDataByPortlet;
+	}
+	
 	/**
 	 * This method produces a model containing the following mappings:
 	 * 
@@ -71,6 +118,7 @@ public class PortletController implements Controller {
 	 *          (Integer) patientId
 	 *          (Patient) patient
 	 *          (List<Obs>) patientObs
+	 *          (List<Obs>) patientMostRecentObs // most recent obs of the weight, height and cd4 concepts and the concepts in the conceptIds and mostRecentObsConceptIds parameters
 	 *          (List<Encounter>) patientEncounters
 	 *          (List<Visit>) patientVisits
 	 *          (List<Visit>) activeVisits
@@ -84,6 +132,7 @@ public class PortletController implements Controller {
 	 *          (Integer) personId
 	 *          (if the patient has any obs for the concept in the global property 'concept.reasonExitedCare')
 	 *              (Obs) patientReasonForExit
+	 *          (only the encounters, visits, obs, orders and programs the portlet needs are loaded, see {@link #setPatientDataByPortlet(Map)})
 	 *     (if the request has a personId or patientId attribute)
 	 *          (Person) person
 	 *          (List<Relationship>) personRelationships
@@ -105,6 +154,8 @@ public class PortletController implements Controller {
 	 * 
 	 * @should calculate bmi into patientBmiAsString
 	 * @should not fail with empty height and weight properties
+	 * @should only load the patient data the portlet needs
+	 * @should put the most recent obs of the asked for concepts in the model
 	 */
 	@SuppressWarnings("unchecked")
 	public ModelAndView handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException,
@@ -179,27 +230,15 @@ public class PortletController implements Controller {
 			// if a patient id is available, put patient data documented above in the model
 			Object o = request.getAttribute("org.openmrs.portlet.patientId");
 			if (o != null) {
-				String patientVariation = "";
 				Integer patientId = (Integer) o;
-				if (!model.containsKey("patient")) {
-					// we can't continue if the user can't view patients
-					if (Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENTS)) {
+				// we can't continue if the user can't view patients
+				if (Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENTS)) {
+					if (!model.containsKey("patient")) {
+						String patientVariation = "";
 						Patient p = Context.getPatientService().getPatient(patientId);
 						model.put("patient", p);
 						
-						// add encounters if this user can view them
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ENCOUNTERS))
-							model.put("patientEncounters", Context.getEncounterService().getEncountersByPatient(p));
-						
-						// add visits if this user can view them
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_VISITS)) {
-							model.put("patientVisits", Context.getVisitService().getVisitsByPatient(p));
-							model.put("activeVisits", Context.getVisitService().getActiveVisitsByPatient(p));
-						}
-						
 						if (Context.hasPrivilege(PrivilegeConstants.VIEW_OBS)) {
-							List<Obs> patientObs = Context.getObsService().getObservationsByPerson(p);
-							model.put("patientObs", patientObs);
 							Obs latestWeight = null;
 							Obs latestHeight = null;
 							String bmiAsString = "?";
@@ -214,17 +253,14 @@ public class PortletController implements Controller {
 								if (StringUtils.hasLength(heightString))
 									heightConcept = cs.getConceptNumeric(cs.getConcept(Integer.valueOf(heightString))
 									        .getConceptId());
-								for (Obs obs : patientObs) {
-									if (obs.getConcept().equals(weightConcept)) {
-										if (latestWeight == null
-										        || obs.getObsDatetime().compareTo(latestWeight.getObsDatetime()) > 0)
-											latestWeight = obs;
-									} else if (obs.getConcept().equals(heightConcept)) {
-										if (latestHeight == null
-										        || obs.getObsDatetime().compareTo(latestHeight.getObsDatetime()) > 0)
-											latestHeight = obs;
-									}
-								}
+								List<Concept> vitals = new ArrayList<Concept>();
+								vitals.add(weightConcept);
+								vitals.add(heightConcept);
+								Map<Concept, Obs> mostRecentVitals = Context.getObsService().getMostRecentObs(p, vitals);
+								if (weightConcept != null)
+									latestWeight = mostRecentVitals.get(weightConcept);
+								if (heightConcept != null)
+									latestHeight = mostRecentVitals.get(heightConcept);
 								if (latestWeight != null)
 									model.put("patientWeight", latestWeight);
 								if (latestHeight != null)
@@ -261,6 +297,7 @@ public class PortletController implements Controller {
 							model.put("patientBmiAsString", bmiAsString);
 						} else {
 							model.put("patientObs", new HashSet<Obs>());
+							model.put("patientMostRecentObs", new ArrayList<Obs>());
 						}
 						
 						// information about whether or not the patient has exited care
@@ -292,35 +329,6 @@ public class PortletController implements Controller {
 						}
 						model.put("patientReasonForExit", reasonForExitObs);
 						
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_ORDERS)) {
-							List<DrugOrder> drugOrderList = Context.getOrderService().getDrugOrdersByPatient(p);
-							model.put("patientDrugOrders", drugOrderList);
-							List<DrugOrder> currentDrugOrders = new ArrayList<DrugOrder>();
-							List<DrugOrder> discontinuedDrugOrders = new ArrayList<DrugOrder>();
-							Date rightNow = new Date();
-							for (Iterator<DrugOrder> iter = drugOrderList.iterator(); iter.hasNext();) {
-								DrugOrder next = iter.next();
-								if (next.isCurrent() || next.isFuture())
-									currentDrugOrders.add(next);
-								if (next.isDiscontinued(rightNow))
-									discontinuedDrugOrders.add(next);
-							}
-							model.put("currentDrugOrders", currentDrugOrders);
-							model.put("completedDrugOrders", discontinuedDrugOrders);
-							
-							List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
-							if (standardRegimens != null)
-								model.put("standardRegimens", standardRegimens);
-						}
-						
-						if (Context.hasPrivilege(PrivilegeConstants.VIEW_PROGRAMS)
-						        && Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENT_PROGRAMS)) {
-							model.put("patientPrograms", Context.getProgramWorkflowService().getPatientPrograms(p, null,
-							    null, null, null, null, false));
-							model.put("patientCurrentPrograms", Context.getProgramWorkflowService().getPatientPrograms(p,
-							    null, null, new Date(), new Date(), null, false));
-						}
-						
 						model.put("patientId", patientId);
 						if (p != null) {
 							personId = p.getPatientId();
@@ -329,6 +337,76 @@ public class PortletController implements Controller {
 						
 						model.put("patientVariation", patientVariation);
 					}
+					
+					// the rest is only loaded once a portlet of this request needs it
+					Patient p = (Patient) model.get("patient");
+					Set<String> patientData = getPatientData(portletPath);
+					
+					// add encounters if this user can view them
+					if (isNeeded(patientData, PATIENT_DATA_ENCOUNTERS) && !model.containsKey("patientEncounters")
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_ENCOUNTERS))
+						model.put("patientEncounters", Context.getEncounterService().getEncountersByPatient(p));
+					
+					// add visits if this user can view them
+					if (isNeeded(patientData, PATIENT_DATA_VISITS) && !model.containsKey("patientVisits")
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_VISITS)) {
+						model.put("patientVisits", Context.getVisitService().getVisitsByPatient(p));
+						model.put("activeVisits", Context.getVisitService().getActiveVisitsByPatient(p));
+					}
+					
+					if (isNeeded(patientData, PATIENT_DATA_OBS) && !model.containsKey("patientObs"))
+						model.put("patientObs", Context.getObsService().getObservationsByPerson(p));
+					
+					if (isNeeded(patientData, PATIENT_DATA_MOST_RECENT_OBS)
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_OBS)) {
+						List<Obs> mostRecentObs = (List<Obs>) model.get("patientMostRecentObs");
+						Set<Integer> mostRecentObsConceptIds = (Set<Integer>) model.get("patientMostRecentObsConceptIds");
+						if (mostRecentObs == null) {
+							mostRecentObs = new ArrayList<Obs>();
+							mostRecentObsConceptIds = new HashSet<Integer>();
+							model.put("patientMostRecentObs", mostRecentObs);
+							model.put("patientMostRecentObsConceptIds", mostRecentObsConceptIds);
+						}
+						// only look up the concepts earlier portlets of this request did not ask for
+						List<Concept> questions = new ArrayList<Concept>();
+						for (Concept question : getMostRecentObsConcepts(model)) {
+							if (mostRecentObsConceptIds.add(question.getConceptId()))
+								questions.add(question);
+						}
+						if (questions.size() > 0)
+							mostRecentObs.addAll(Context.getObsService().getMostRecentObs(p, questions).values());
+					}
+					
+					if (isNeeded(patientData, PATIENT_DATA_DRUG_ORDERS) && !model.containsKey("patientDrugOrders")
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_ORDERS)) {
+						List<DrugOrder> drugOrderList = Context.getOrderService().getDrugOrdersByPatient(p);
+						model.put("patientDrugOrders", drugOrderList);
+						List<DrugOrder> currentDrugOrders = new ArrayList<DrugOrder>();
+						List<DrugOrder> discontinuedDrugOrders = new ArrayList<DrugOrder>();
+						Date rightNow = new Date();
+						for (Iterator<DrugOrder> iter = drugOrderList.iterator(); iter.hasNext();) {
+							DrugOrder next = iter.next();
+							if (next.isCurrent() || next.isFuture())
+								currentDrugOrders.add(next);
+							if (next.isDiscontinued(rightNow))
+								discontinuedDrugOrders.add(next);
+						}
+						model.put("currentDrugOrders", currentDrugOrders);
+						model.put("completedDrugOrders", discontinuedDrugOrders);
+						
+						List<RegimenSuggestion> standardRegimens = Context.getOrderService().getStandardRegimens();
+						if (standardRegimens != null)
+							model.put("standardRegimens", standardRegimens);
+					}
+					
+					if (isNeeded(patientData, PATIENT_DATA_PROGRAMS) && !model.containsKey("patientPrograms")
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_PROGRAMS)
+					        && Context.hasPrivilege(PrivilegeConstants.VIEW_PATIENT_PROGRAMS)) {
+						model.put("patientPrograms", Context.getProgramWorkflowService().getPatientPrograms(p, null, null,
+						    null, null, null, false));
+						model.put("patientCurrentPrograms", Context.getProgramWorkflowService().getPatientPrograms(p, null,
+						    null, new Date(), new Date(), null, false));
+					}
 				}
 			}
 			
@@ -432,6 +510,55 @@ public class PortletController implements Controller {
 		
 	}
 	
+	/**
+	 * @param portletPath the portlet url without extension
+	 * @return the patient data groups the portlet needs, null if it needs all of them
+	 */
+	private Set<String> getPatientData(String portletPath) {
+		if (patientDataByPortlet == null)
+			return null;
+		String groups = patientDataByPortlet.get(portletPath.substring(portletPath.lastIndexOf('/') + 1));
+		if (groups == null)
+			return null;
+		Set<String> ret = new HashSet<String>();
+		for (String group : groups.split(",")) {
+			if (StringUtils.hasText(group))
+				ret.add(group.trim());
+		}
+		return ret;
+	}
+	
+	private boolean isNeeded(Set<String> patientData, String group) {
+		return patientData == null || patientData.contains(group);
+	}
+	
+	/**
+	 * @return the concepts in the concept.weight, concept.height and concept.cd4_count global
+	 *         properties and in the conceptIds and mostRecentObsConceptIds portlet parameters
+	 */
+	private List<Concept> getMostRecentObsConcepts(Map<String, Object> model) {
+		AdministrationService as = Context.getAdministrationService();
+		List<String> ids = new ArrayList<String>();
+		ids.add(as.getGlobalProperty("concept.weight"));
+		ids.add(as.getGlobalProperty("concept.height"));
+		ids.add(as.getGlobalProperty("concept.cd4_count"));
+		for (String parameter : new String[] { "conceptIds", "mostRecentObsConceptIds" }) {
+			Object o = model.get(parameter);
+			if (o instanceof String)
+				ids.addAll(Arrays.asList(((String) o).split(",")));
+		}
+		
+		List<Concept> ret = new ArrayList<Concept>();
+		for (String id : ids) {
+			if (StringUtils.hasText(id)) {
+				Concept concept = Context.getConceptService().getConcept(id.trim());
+				if (concept != null)
+					ret.add(concept);
+			}
+		}
+		return ret;
+	}
+	
 	/**
 	 * Subclasses should override this to put more data into the model. This will be called AFTER
 	 * handleRequest has put mappings in the model as described in its javadoc. Note that context
@@ -18,8 +18,10 @@ import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -51,7 +53,9 @@ import org.openmrs.api.LocationService;
 import org.openmrs.api.PatientIdentifierException;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
+import org.openmrs.patient.DuplicatePatientMatch;
 import org.openmrs.patient.IdentifierValidator;
+import org.openmrs.patient.PatientSearchResults;
 import org.openmrs.patient.UnallowedIdentifierException;
 import org.openmrs.util.OpenmrsConstants;
 
@@ -213,10 +217,17 @@ public class DWRPatientService implements GlobalPropertyListener {
 		Collection<Object> objectList = new Vector<Object>();
 		try {
 			PatientService ps = Context.getPatientService();
+			if (maximumResults == null)
+				maximumResults = getMaximumSearchResults();
+			if (length != null && length > maximumResults)
+				length = maximumResults;
+			
+			// the count and the requested page come back from the same search
+			PatientSearchResults results = ps.searchPatients(searchValue, start, length);
 			int patientCount = 0;
 			//if this is the first call
 			if (getMatchCount) {
-				patientCount += ps.getCountOfPatients(searchValue);
+				patientCount += results.getCount();
 				
 				// if only 2 results found and a number was not in the
 				// search, then do a decapitated search: trim each word
@@ -287,11 +298,6 @@ public class DWRPatientService implements GlobalPropertyListener {
 				} else {
 					//ensure that count never exceeds this value because the API's service layer would never
 					//return more than it since it is limited in the DAO layer
-					if (maximumResults == null)
-						maximumResults = getMaximumSearchResults();
-					if (length != null && length > maximumResults)
-						length = maximumResults;
-					
 					if (patientCount > maximumResults) {
 						patientCount = maximumResults;
 						if (log.isDebugEnabled())
@@ -303,8 +309,23 @@ public class DWRPatientService implements GlobalPropertyListener {
 			
 			//if we have any matches or this isn't the first ajax call when the caller
 			//requests for the count
-			if (patientCount > 0 || !getMatchCount)
-				objectList = findBatchOfPatients(searchValue, false, start, length);
+			if (patientCount > 0 || !getMatchCount) {
+				// findBatchOfPatients pads a short page of a name search with a decapitated search
+				List<Integer> patientIds = results.getPatientIds();
+				if ((length == null || length > 2) && patientIds.size() < 3 && !searchValue.matches(".*\\d+.*")) {
+					objectList = findBatchOfPatients(searchValue, false, start, length);
+				} else {
+					// fetch the whole page in one query, then put it back in the order of the results
+					Map<Integer, Patient> patients = new HashMap<Integer, Patient>();
+					for (Patient patient : Context.getPatientSetService().getPatients(patientIds))
+						patients.put(patient.getPatientId(), patient);
+					for (Integer patientId : patientIds) {
+						Patient patient = patients.get(patientId);
+						if (patient != null)
+							objectList.add(new PatientListItem(patient));
+					}
+				}
+			}
 			
 			resultsMap.put("count", patientCount);
 			resultsMap.put("objectList", objectList);
@@ -339,10 +360,14 @@ public class DWRPatientService implements GlobalPropertyListener {
 	}
 	
 	/**
-	 * find all patients with duplicate attributes (searchOn)
+	 * find all patients with duplicate attributes (searchOn). If searchOn contains
+	 * "likelyDuplicates", the best 100 pairs of patients that are likely to be the same person are
+	 * returned instead, the two patients of each pair next to each other, so a patient that is in
+	 * several pairs is listed once per pair.
 	 * 
 	 * @param searchOn
 	 * @return list of patientListItems
+	 * @see PatientService#getLikelyDuplicatePatients(Double, Integer, boolean, Integer)
 	 */
 	public Vector<Object> findDuplicatePatients(String[] searchOn) {
 		Vector<Object> patientList = new Vector<Object>();
@@ -352,6 +377,36 @@ public class DWRPatientService implements GlobalPropertyListener {
 			for (String s : searchOn)
 				options.add(s);
 			
+			if (options.contains("likelyDuplicates")) {
+				List<DuplicatePatientMatch> matches = Context.getPatientService().getLikelyDuplicatePatients(null,
+				    null, options.contains("includeVoided"), 100);
+				Set<Integer> patientIds = new HashSet<Integer>();
+				for (DuplicatePatientMatch match : matches) {
+					patientIds.add(match.getPatientId());
+					patientIds.add(match.getDuplicatePatientId());
+				}
+				Map<Integer, PatientListItem> items = new HashMap<Integer, PatientListItem>();
+				for (Patient patient : Context.getPatientSetService().getPatients(patientIds))
+					items.put(patient.getPatientId(), new PatientListItem(patient));
+				// voided patients are left out of that query, the few asked for are loaded one by one
+				for (Integer patientId : patientIds) {
+					if (!items.containsKey(patientId)) {
+						Patient patient = Context.getPatientService().getPatient(patientId);
+						if (patient != null)
+							items.put(patientId, new PatientListItem(patient));
+					}
+				}
+				for (DuplicatePatientMatch match : matches) {
+					PatientListItem patient = items.get(match.getPatientId());
+					PatientListItem duplicate = items.get(match.getDuplicatePatientId());
+					if (patient != null && duplicate != null) {
+						patientList.add(patient);
+						patientList.add(duplicate);
+					}
+				}
+				return patientList;
+			}
+			
 			List<Patient> patients = Context.getPatientService().getDuplicatePatientsByAttributes(options);
 			
 			if (patients.size() > 200)
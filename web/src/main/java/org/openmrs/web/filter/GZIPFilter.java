@@ -36,8 +36,6 @@ public class GZIPFilter extends OncePerRequestFilter {
 	
 	private static final Log log = LogFactory.getLog(GZIPFilter.class);
 	
-	private Boolean cachedGZipEnabledFlag = null;
-	
 	/**
 	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
@@ -82,25 +80,16 @@ public class GZIPFilter extends OncePerRequestFilter {
 	}
 	
 	/**
-	 * Returns global property gzip.enabled as boolean
+	 * Returns global property gzip.enabled as boolean. The administration service caches it, so
+	 * this is cheap enough to ask on every request and picks up changes to the property.
 	 */
 	private boolean isGZIPEnabled() {
-		if (cachedGZipEnabledFlag != null)
-			return cachedGZipEnabledFlag;
-		
 		try {
-			String gzipEnabled = Context.getAdministrationService().getGlobalProperty(
-			    OpenmrsConstants.GLOBAL_PROPERTY_GZIP_ENABLED, "");
-			
-			boolean isEnabled = gzipEnabled.toLowerCase().equals("true");
-			cachedGZipEnabledFlag = isEnabled;
-			return cachedGZipEnabledFlag;
+			return Context.getAdministrationService().getGlobalPropertyValue(OpenmrsConstants.GLOBAL_PROPERTY_GZIP_ENABLED,
+			    Boolean.FALSE);
 		}
 		catch (Throwable t) {
 			log.warn("Unable to get the global property: " + OpenmrsConstants.GLOBAL_PROPERTY_GZIP_ENABLED, t);
-			// not caching the enabled flag here in case it becomes available 
-			// before the next request
-			
 			return false;
 		}
 	}
@@ -13,6 +13,7 @@
  */
 package org.openmrs.web.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import javax.servlet.ServletException;
@@ -24,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
+import org.openmrs.api.APIException;
 
 public abstract class AbstractGraphServlet extends HttpServlet {
 	
@@ -36,6 +38,8 @@ public abstract class AbstractGraphServlet extends HttpServlet {
 	
 	public static final String JPG_MIME_TYPE = "image/jpeg";
 	
+	private final RenderedChartCache chartCache = new RenderedChartCache();
+	
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		
 		try {
@@ -59,7 +63,29 @@ public abstract class AbstractGraphServlet extends HttpServlet {
 				mimeType = request.getParameter("mimeType");
 			}
 			
-			JFreeChart chart = createChart(request, response);
+			if (JPG_MIME_TYPE.equalsIgnoreCase(mimeType))
+				mimeType = JPG_MIME_TYPE;
+			else if (PNG_MIME_TYPE.equalsIgnoreCase(mimeType))
+				mimeType = PNG_MIME_TYPE;
+			else
+				throw new APIException("Unsupported MIME type");
+			
+			// Reuse the image drawn the last time the same chart was asked for, if it can be cached
+			String key = getCacheKey(request);
+			if (key != null)
+				key += "|" + width + "x" + height + "|" + mimeType;
+			byte[] image = key == null ? null : chartCache.get(key);
+			if (image == null) {
+				JFreeChart chart = createChart(request, response);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				if (JPG_MIME_TYPE.equals(mimeType))
+					ChartUtilities.writeChartAsJPEG(out, chart, width, height);
+				else
+					ChartUtilities.writeChartAsPNG(out, chart, width, height);
+				image = out.toByteArray();
+				if (key != null)
+					chartCache.put(key, image);
+			}
 			
 			// Modify response to disable caching
 			response.setHeader("Pragma", "No-cache");
@@ -68,24 +94,20 @@ public abstract class AbstractGraphServlet extends HttpServlet {
 			
 			// Write chart out to response as image 
 			try {
-				if (JPG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(JPG_MIME_TYPE);
-					ChartUtilities.writeChartAsJPEG(response.getOutputStream(), chart, width, height);
-				} else if (PNG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(PNG_MIME_TYPE);
-					ChartUtilities.writeChartAsPNG(response.getOutputStream(), chart, width, height);
-				} else {
-					// Throw exception: unsupported mime type
-				}
+				response.setContentType(mimeType);
+				response.setContentLength(image.length);
+				response.getOutputStream().write(image);
 			}
 			catch (IOException e) {
-				log.error(e);
+				// if its tomcat and the user simply navigated away from the page, don't throw an error
+				if (!e.getClass().getName().equals("org.apache.catalina.connector.ClientAbortException"))
+					log.error("Unable to write chart", e);
 			}
 			
 		}
 		// Add error handling above and remove this try/catch 
 		catch (Exception e) {
-			log.error(e);
+			log.error("An unknown expected exception was thrown while rendering a graph", e);
 		}
 	}
 	
@@ -98,6 +120,25 @@ public abstract class AbstractGraphServlet extends HttpServlet {
 	 */
 	protected abstract JFreeChart createChart(HttpServletRequest request, HttpServletResponse response);
 	
+	/**
+	 * Override this method to let the images of a graph be cached. The key must identify everything
+	 * the chart shows, including when its data last changed, so that a changed chart gets a new key.
+	 * The size and mime type of the image are added to it.
+	 * 
+	 * @param request the current request
+	 * @return the key of the chart, or null if it must be drawn every time, which is the default
+	 */
+	protected String getCacheKey(HttpServletRequest request) {
+		return null;
+	}
+	
+	/**
+	 * @return the cache of the images of this servlet's charts
+	 */
+	protected RenderedChartCache getChartCache() {
+		return chartCache;
+	}
+	
 	/**
 	 * 
 	 */
@@ -14,10 +14,9 @@
 package org.openmrs.web.servlet;
 
 import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.Locale;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -26,17 +25,20 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openmrs.Concept;
-import org.openmrs.ConceptAnswer;
-import org.openmrs.ConceptDescription;
-import org.openmrs.ConceptName;
-import org.openmrs.ConceptSet;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
+import org.openmrs.concept.ConceptDictionaryFormat;
 
 /**
  * This servlet will package all non retired concepts into a comma delimited file. Retired concepts
- * are ignored.
+ * are ignored. The optional request parameters are:
+ * <ul>
+ * <li><code>format</code>: the name of the concept dictionary format to use instead of csv</li>
+ * <li><code>gzip</code>: true to gzip the file</li>
+ * <li><code>changedSince</code>: a date as yyyy-MM-dd, to only include the concepts created or
+ * changed since then</li>
+ * <li><code>includeRetired</code>: true to include retired concepts</li>
+ * </ul>
  */
 public class DownloadDictionaryServlet extends HttpServlet {
 	
@@ -56,92 +58,37 @@ public class DownloadDictionaryServlet extends HttpServlet {
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		
+		ConceptService cs = Context.getConceptService();
+		String formatName = request.getParameter("format");
+		ConceptDictionaryFormat format = cs.getConceptDictionaryFormat(formatName == null ? "csv" : formatName);
+		if (format == null) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format: " + formatName);
+			return;
+		}
+		
+		Date changedSince = null;
+		String changedSinceParam = request.getParameter("changedSince");
+		if (changedSinceParam != null && changedSinceParam.length() > 0) {
+			try {
+				changedSince = new SimpleDateFormat("yyyy-MM-dd").parse(changedSinceParam);
+			}
+			catch (ParseException e) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, "changedSince must be a date as yyyy-MM-dd");
+				return;
+			}
+		}
+		boolean gzip = "true".equals(request.getParameter("gzip"));
+		boolean includeRetired = "true".equals(request.getParameter("includeRetired"));
+		
 		try {
-			Locale locale = Context.getLocale();
-			
-			ConceptService cs = Context.getConceptService();
 			String s = new SimpleDateFormat("dMy_Hm").format(new Date());
+			String fileName = "conceptDictionary" + s + "." + format.getFileExtension() + (gzip ? ".gz" : "");
 			
-			response.setHeader("Content-Type", "text/csv;charset=UTF-8");
-			response.setHeader("Content-Disposition", "attachment; filename=conceptDictionary" + s + ".csv");
+			response.setHeader("Content-Type", (gzip ? "application/x-gzip" : format.getContentType() + ";charset=UTF-8"));
+			response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
 			
-			String line = "Concept Id,Name,Description,Synonyms,Answers,Set Members,Class,Datatype,Changed By,Creator\n";
-			response.getWriter().write(line);
-			
-			int listIndex = 0;
-			Iterator<Concept> conceptIterator = cs.conceptIterator();
-			while (conceptIterator.hasNext()) {
-				Concept c = conceptIterator.next();
-				if (!c.isRetired()) {
-					
-					line = c.getConceptId() + ",";
-					String name, description;
-					ConceptName cn = c.getName(locale);
-					if (cn == null)
-						name = "";
-					else
-						name = cn.getName();
-					
-					ConceptDescription cd = c.getDescription(locale);
-					if (cd == null)
-						description = "";
-					else
-						description = cd.getDescription();
-					
-					line += '"' + name.replace("\"", "\"\"") + "\",";
-					
-					if (description == null)
-						description = "";
-					line = line + '"' + description.replace("\"", "\"\"") + "\",";
-					
-					String tmp = "";
-					for (ConceptName syn : c.getNames()) {
-						tmp += syn + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptAnswer answer : c.getAnswers(false)) {
-						if (answer.getAnswerConcept() != null)
-							tmp += answer.getAnswerConcept().getName() + "\n";
-						else if (answer.getAnswerDrug() != null)
-							tmp += answer.getAnswerDrug().getFullName(Context.getLocale()) + "\n";
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					tmp = "";
-					for (ConceptSet set : c.getConceptSets()) {
-						if (set.getConcept() != null) {
-							name = set.getConcept().getName().toString();
-							tmp += name.replace("\"", "\"\"") + "\n";
-						}
-					}
-					line += '"' + tmp.trim() + "\",";
-					
-					line += '"';
-					if (c.getConceptClass() != null)
-						line += c.getConceptClass().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getDatatype() != null)
-						line += c.getDatatype().getName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getChangedBy() != null)
-						line += c.getChangedBy().getPersonName();
-					line += "\",";
-					
-					line += '"';
-					if (c.getCreator() != null)
-						line += c.getCreator().getPersonName();
-					line += "\"\n";
-					
-					response.getWriter().write(line);
-				}
-				
-			}
+			cs.exportConceptDictionary(response.getOutputStream(), format.getName(), changedSince, includeRetired, gzip);
+			response.getOutputStream().flush();
 		}
 		catch (Throwable t) {
 			log.error("Error while downloading concepts.", t);
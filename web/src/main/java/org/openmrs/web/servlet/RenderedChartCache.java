@@ -0,0 +1,96 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.servlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the images of the most recently rendered charts, so that a graph servlet does not have to
+ * draw the same chart again for every page view. The key of a chart must change whenever what the
+ * chart shows changes, e.g. by holding the date its data last changed, see
+ * {@link AbstractGraphServlet#getCacheKey(javax.servlet.http.HttpServletRequest)}. The images of at
+ * most {@link #getCapacity()} charts are kept, dropping the least recently used ones.
+ * 
+ * @since 1.9
+ */
+public class RenderedChartCache {
+	
+	/**
+	 * The default maximum number of images kept
+	 */
+	public static final int DEFAULT_CAPACITY = 200;
+	
+	private final int capacity;
+	
+	private final Map<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+			return size() > capacity;
+		}
+	};
+	
+	public RenderedChartCache() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param capacity the maximum number of images kept
+	 */
+	public RenderedChartCache(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * @return the maximum number of images kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @param key the key of the chart, including its size and mime type
+	 * @return the image, or null if it is not kept
+	 * @should get the image put under the key
+	 * @should drop the least recently used image when full
+	 */
+	public synchronized byte[] get(String key) {
+		return images.get(key);
+	}
+	
+	/**
+	 * @param key the key of the chart, including its size and mime type
+	 * @param image the rendered image
+	 */
+	public synchronized void put(String key, byte[] image) {
+		images.put(key, image);
+	}
+	
+	/**
+	 * Throws away all images
+	 */
+	public synchronized void clear() {
+		images.clear();
+	}
+	
+	/**
+	 * @return the number of images kept
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+}
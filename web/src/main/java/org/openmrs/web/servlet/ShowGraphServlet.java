@@ -15,22 +15,19 @@ package org.openmrs.web.servlet;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.StandardChartTheme;
 import org.jfree.chart.axis.DateAxis;
@@ -48,10 +45,9 @@ import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
 import org.openmrs.Concept;
 import org.openmrs.ConceptNumeric;
-import org.openmrs.Obs;
 import org.openmrs.Patient;
-import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.obs.ObsTimeSeries;
 
 /**
  * This servlet returns an image graphing the numeric values for given concept(s). <br/>
@@ -62,7 +58,7 @@ import org.openmrs.api.context.Context;
  * <br/>
  * The only url parameters that are required are "patientId" and "conceptId".
  */
-public class ShowGraphServlet extends HttpServlet {
+public class ShowGraphServlet extends AbstractGraphServlet {
 	
 	public static final long serialVersionUID = 1231231L;
 	
@@ -70,11 +66,6 @@ public class ShowGraphServlet extends HttpServlet {
 	
 	// private static final DateFormat Formatter = new SimpleDateFormat("MM/dd/yyyy");
 	
-	// Supported mime types
-	private static final String PNG_MIME_TYPE = "image/png";
-	
-	private static final String JPG_MIME_TYPE = "image/jpeg";
-	
 	private static final Color COLOR_ABNORMAL = new Color(255, 255, 0, 64);
 	
 	private static final Color COLOR_CRITICAL = new Color(255, 128, 128, 64);
@@ -82,65 +73,55 @@ public class ShowGraphServlet extends HttpServlet {
 	private static final Color COLOR_ERROR = new Color(255, 28, 28, 64);
 	
 	/**
-	 * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
+	 * @see org.openmrs.web.servlet.AbstractGraphServlet#createChart(javax.servlet.http.HttpServletRequest,
 	 *      javax.servlet.http.HttpServletResponse)
 	 */
 	@Override
-	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		try {
-			JFreeChart chart = getChart(request);
-			
-			// get the height and width of the graph
-			String widthString = request.getParameter("width");
-			String heightString = request.getParameter("height");
-			
-			Integer width;
-			Integer height;
-			if (widthString != null && widthString.length() > 0)
-				width = Integer.parseInt(widthString);
-			else
-				width = 500;
-			if (heightString != null && heightString.length() > 0)
-				height = Integer.parseInt(heightString);
-			else
-				height = 300;
-			
-			// get the requested mime type of the graph
-			String mimeType = request.getParameter("mimeType");
-			if (mimeType == null)
-				mimeType = PNG_MIME_TYPE;
-			
-			// Modify response to disable caching
-			response.setHeader("Pragma", "No-cache");
-			response.setDateHeader("Expires", 0);
-			response.setHeader("Cache-Control", "no-cache");
-			
-			// Write chart out to response as image
-			try {
-				if (JPG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(JPG_MIME_TYPE);
-					ChartUtilities.writeChartAsJPEG(response.getOutputStream(), chart, width, height);
-				} else if (PNG_MIME_TYPE.equalsIgnoreCase(mimeType)) {
-					response.setContentType(PNG_MIME_TYPE);
-					ChartUtilities.writeChartAsPNG(response.getOutputStream(), chart, width, height);
-				} else {
-					throw new APIException("Unsupported MIME type");
-				}
-			}
-			catch (IOException e) {
-				// if its tomcat and the user simply navigated away from the page, don't throw an error
-				if (e.getClass().getName().equals("org.apache.catalina.connector.ClientAbortException")) {
-					// do nothing
-				} else {
-					log.error("Error class name: " + e.getClass().getName());
-					log.error("Unable to write chart", e);
-				}
+	protected JFreeChart createChart(HttpServletRequest request, HttpServletResponse response) {
+		return getChart(request);
+	}
+	
+	/**
+	 * The chart of a patient changes when one of the parameters, the concepts or the patient's obs
+	 * for them change. The default dates change every day, and the concept names in the title and
+	 * legend are in the user's locale.
+	 * 
+	 * @see org.openmrs.web.servlet.AbstractGraphServlet#getCacheKey(javax.servlet.http.HttpServletRequest)
+	 * @should change when an obs of the patient for the concept is voided
+	 * @should return null without a patient or concept
+	 * @should change with the locale of the user
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected String getCacheKey(HttpServletRequest request) {
+		String patientId = request.getParameter("patientId");
+		String conceptId1 = request.getParameter("conceptId");
+		if (patientId == null || conceptId1 == null)
+			return null;
+		Patient patient = Context.getPatientService().getPatient(Integer.parseInt(patientId));
+		if (patient == null)
+			return null;
+		
+		StringBuilder key = new StringBuilder();
+		key.append(Context.getLocale()).append("|");
+		Map<String, String[]> parameters = request.getParameterMap();
+		for (String name : new TreeSet<String>(parameters.keySet()))
+			key.append(name).append("=").append(Arrays.toString(parameters.get(name))).append("&");
+		// the default dates hold the milliseconds of the current time, which do not matter
+		key.append(getFromDate(request.getParameter("fromDate")).getTime() / 1000).append("-").append(
+		    getToDate(request.getParameter("toDate")).getTime() / 1000);
+		
+		for (String conceptId : new String[] { conceptId1, request.getParameter("conceptId2") }) {
+			if (conceptId == null)
+				continue;
+			Concept concept = Context.getConceptService().getConcept(Integer.parseInt(conceptId));
+			if (concept != null) {
+				key.append("|").append(concept.getDateChanged() == null ? null : concept.getDateChanged().getTime());
+				Date lastObsChange = Context.getObsService().getLastObsChange(patient, concept);
+				key.append("|").append(lastObsChange == null ? null : lastObsChange.getTime());
 			}
 		}
-		// Add error handling above and remove this try/catch
-		catch (Exception e) {
-			log.error("An unknown expected exception was thrown while rendering a graph", e);
-		}
+		return key.toString();
 	}
 	
 	/**
@@ -193,16 +174,16 @@ public class ShowGraphServlet extends HttpServlet {
 		boolean userSpecifiedMaxRange = false;
 		boolean userSpecifiedMinRange = false;
 		
-		// Fetching obs
-		List<Obs> observations1 = new ArrayList<Obs>();
-		List<Obs> observations2 = new ArrayList<Obs>();
+		// Fetching the dates and values of the obs
+		ObsTimeSeries observations1 = null;
+		ObsTimeSeries observations2 = null;
 		Concept concept1 = null, concept2 = null;
 		if (conceptId1 != null)
 			concept1 = Context.getConceptService().getConcept(Integer.parseInt(conceptId1));
 		if (conceptId2 != null)
 			concept2 = Context.getConceptService().getConcept(Integer.parseInt(conceptId2));
 		if (concept1 != null) {
-			observations1 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept1);
+			observations1 = Context.getObsService().getNumericObsTimeSeries(patient, concept1, fromDate, toDate);
 			chartTitle = concept1.getName().getName();
 			rangeAxisTitle = ((ConceptNumeric) concept1).getUnits();
 			minRange = ((ConceptNumeric) concept1).getLowAbsolute();
@@ -216,7 +197,7 @@ public class ShowGraphServlet extends HttpServlet {
 			if (concept2 != null) {
 				String concept2Units = ((ConceptNumeric) concept2).getUnits();
 				if (concept2Units != null && concept2Units.equals(rangeAxisTitle)) {
-					observations2 = Context.getObsService().getObservationsByPersonAndConcept(patient, concept2);
+					observations2 = Context.getObsService().getNumericObsTimeSeries(patient, concept2, fromDate, toDate);
 					chartTitle += " + " + concept2.getName().getName();
 					if (((ConceptNumeric) concept2).getHiAbsolute() != null
 					        && ((ConceptNumeric) concept2).getHiAbsolute() > maxRange)
@@ -283,45 +264,9 @@ public class ShowGraphServlet extends HttpServlet {
 		else
 			series2 = new TimeSeries(concept2.getName().getName(), timeScale);
 		
-		// Add data points for concept1
-		for (Obs obs : observations1) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series1.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
-		
-		// Add data points for concept2
-		for (Obs obs : observations2) {
-			if (obs.getValueNumeric() != null && obs.getObsDatetime().getTime() >= fromDate.getTime()
-			        && obs.getObsDatetime().getTime() < toDate.getTime()) {
-				cal.setTime(obs.getObsDatetime());
-				if (timeScale == Minute.class) {
-					Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
-					        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(min, obs.getValueNumeric());
-				} else if (timeScale == Hour.class) {
-					Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH), cal
-					        .get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(hour, obs.getValueNumeric());
-				} else {
-					Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
-					series2.addOrUpdate(day, obs.getValueNumeric());
-				}
-			}
-		}
+		// Add data points for both concepts
+		addDataPoints(series1, observations1, timeScale, cal);
+		addDataPoints(series2, observations2, timeScale, cal);
 		
 		// Add series to dataset
 		dataset.addSeries(series1);
@@ -423,6 +368,37 @@ public class ShowGraphServlet extends HttpServlet {
 		return chart;
 	}
 	
+	/**
+	 * Adds the values of the obs to the series, one per period of the time scale
+	 * 
+	 * @param series the series to add the values to
+	 * @param observations the dates and values of the obs, may be null
+	 * @param timeScale the time scale of the series
+	 * @param cal the calendar to use
+	 */
+	private void addDataPoints(TimeSeries series, ObsTimeSeries observations, Class<? extends RegularTimePeriod> timeScale,
+	        Calendar cal) {
+		if (observations == null)
+			return;
+		Date[] dates = observations.getDates();
+		double[] values = observations.getValues();
+		for (int i = 0; i < dates.length; i++) {
+			cal.setTime(dates[i]);
+			if (timeScale == Minute.class) {
+				Minute min = new Minute(cal.get(Calendar.MINUTE), cal.get(Calendar.HOUR_OF_DAY), cal
+				        .get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(min, values[i]);
+			} else if (timeScale == Hour.class) {
+				Hour hour = new Hour(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.DAY_OF_MONTH),
+				        cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(hour, values[i]);
+			} else {
+				Day day = new Day(cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+				series.addOrUpdate(day, values[i]);
+			}
+		}
+	}
+	
 	/**
 	 * Get the FromDate object from the given string that is the time in milliseconds. If
 	 * dateFromRequest is null, return 1 year ago from today.
@@ -472,12 +448,4 @@ public class ShowGraphServlet extends HttpServlet {
 		
 		return toDate;
 	}
-	
-	/**
-	 * There are no post actions. Ignore this method.
-	 */
-	@Override
-	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		doGet(request, response);
-	}
 }
@@ -21,6 +21,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.servlet.ServletException;
@@ -33,7 +34,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Cohort;
 import org.openmrs.Concept;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.logic.LogicException;
 import org.openmrs.logic.LogicService;
@@ -81,24 +81,30 @@ public class SummaryServlet extends HttpServlet {
 		
 		Cohort patientSet = getPatientSet(request, response);
 		
-		PatientService patientService = Context.getPatientService();
 		LogicService logic = Context.getLogicService();
 		
+		// evaluate the rule for the whole set at once instead of patient by patient, so that the
+		// data it needs is read once for all of them
+		Map<Integer, Result> summaries;
+		try {
+			summaries = logic.eval(patientSet, "CLINICAL SUMMARY");
+		}
+		catch (LogicException e) {
+			throw new ServletException("Error while evaluating rule CLINICAL SUMMARY for patients: " + patientSet, e);
+		}
+		
 		summary.write("<clinicalSummaryList>\n");
 		for (Integer patientId : patientSet.getMemberIds()) {
-			try {
-				Result xml = logic.eval(patientService.getPatient(patientId), "CLINICAL SUMMARY");
-				
-				// Output results
-				String s = xml.toString();
-				summary.write(s);
-				String[] lines = s.split("\n");
-				for (int x = 1; x < lines.length; x++) {
-					summary.write(lines[x] + "\n");
-				}
-			}
-			catch (LogicException e) {
-				throw new ServletException("Error while evaluating rule CLINICAL SUMMARY for patient: " + patientId, e);
+			Result xml = summaries.get(patientId);
+			if (xml == null)
+				continue;
+			
+			// Output results
+			String s = xml.toString();
+			summary.write(s);
+			String[] lines = s.split("\n");
+			for (int x = 1; x < lines.length; x++) {
+				summary.write(lines[x] + "\n");
 			}
 		}
 		summary.write("</clinicalSummaryList>");
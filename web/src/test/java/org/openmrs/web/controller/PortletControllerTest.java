@@ -13,14 +13,19 @@
  */
 package org.openmrs.web.controller;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.Obs;
 import org.openmrs.test.Verifies;
 import org.openmrs.web.WebConstants;
 import org.openmrs.web.test.BaseWebContextSensitiveTest;
@@ -41,16 +46,30 @@ public class PortletControllerTest extends BaseWebContextSensitiveTest {
 	 * @throws Exception
 	 */
 	private Map<String, Object> getModelFromController(Integer patientId) throws Exception {
+		return getModelFromController(new PortletController(), patientId, new HashMap());
+	}
+	
+	/**
+	 * Convenience method to get the "model" from the given controller's handleRequest method
+	 * 
+	 * @param controller the controller to call
+	 * @param patientId the patient id to fetch
+	 * @param parameters the portlet parameters
+	 * @return the Map from string to object of everything in the generated "model"
+	 * @throws Exception
+	 */
+	private Map<String, Object> getModelFromController(PortletController controller, Integer patientId, Map parameters)
+	        throws Exception {
 		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
 		HttpServletResponse response = new MockHttpServletResponse();
 		
 		request.setAttribute(WebConstants.INIT_REQ_UNIQUE_ID, "1");
 		request.getSession().setAttribute(WebConstants.OPENMRS_PORTLET_LAST_REQ_ID, "0");
 		request.setAttribute("javax.servlet.include.servlet_path", "testPortlet");
-		request.setAttribute("org.openmrs.portlet.parameters", new HashMap());
+		request.setAttribute("org.openmrs.portlet.parameters", parameters);
 		request.setAttribute("org.openmrs.portlet.patientId", patientId);
 		
-		ModelAndView modelAndView = new PortletController().handleRequest(request, response);
+		ModelAndView modelAndView = controller.handleRequest(request, response);
 		
 		return (Map<String, Object>) modelAndView.getModel().get("model");
 	}
@@ -75,4 +94,45 @@ public class PortletControllerTest extends BaseWebContextSensitiveTest {
 		Map<String, Object> modelmap = getModelFromController(7);
 		Assert.assertEquals("?", modelmap.get("patientBmiAsString"));
 	}
+	
+	/**
+	 * @see {@link PortletController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should only load the patient data the portlet needs", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldOnlyLoadThePatientDataThePortletNeeds() throws Exception {
+		executeDataSet("org/openmrs/web/controller/include/PortletControllerTest-bmi.xml");
+		PortletController controller = new PortletController();
+		controller.setPatientDataByPortlet(Collections.singletonMap("testPortlet", "visits"));
+		
+		Map<String, Object> modelmap = getModelFromController(controller, 7, new HashMap());
+		Assert.assertTrue(modelmap.containsKey("patientVisits"));
+		Assert.assertFalse(modelmap.containsKey("patientEncounters"));
+		Assert.assertFalse(modelmap.containsKey("patientObs"));
+		Assert.assertFalse(modelmap.containsKey("patientDrugOrders"));
+		Assert.assertFalse(modelmap.containsKey("patientPrograms"));
+		// vitals are always there
+		Assert.assertEquals("61.7", modelmap.get("patientBmiAsString"));
+	}
+	
+	/**
+	 * @see {@link PortletController#handleRequest(HttpServletRequest,HttpServletResponse)}
+	 */
+	@Test
+	@Verifies(value = "should put the most recent obs of the asked for concepts in the model", method = "handleRequest(HttpServletRequest,HttpServletResponse)")
+	public void handleRequest_shouldPutTheMostRecentObsOfTheAskedForConceptsInTheModel() throws Exception {
+		PortletController controller = new PortletController();
+		controller.setPatientDataByPortlet(Collections.singletonMap("testPortlet", "mostRecentObs"));
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put("mostRecentObsConceptIds", "5089,5497");
+		
+		Map<String, Object> modelmap = getModelFromController(controller, 7, parameters);
+		Set<Integer> obsIds = new HashSet<Integer>();
+		for (Obs obs : (List<Obs>) modelmap.get("patientMostRecentObs"))
+			obsIds.add(obs.getObsId());
+		Assert.assertEquals(2, obsIds.size());
+		Assert.assertTrue(obsIds.contains(16));
+		Assert.assertTrue(obsIds.contains(11));
+		Assert.assertFalse(modelmap.containsKey("patientObs"));
+	}
 }
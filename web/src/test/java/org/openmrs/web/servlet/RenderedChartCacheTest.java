@@ -0,0 +1,56 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.web.servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.test.Verifies;
+
+/**
+ * Tests for the {@link RenderedChartCache} class.
+ */
+public class RenderedChartCacheTest {
+	
+	/**
+	 * @see {@link RenderedChartCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should get the image put under the key", method = "get(String)")
+	public void get_shouldGetTheImagePutUnderTheKey() throws Exception {
+		RenderedChartCache cache = new RenderedChartCache();
+		byte[] image = new byte[] { 1, 2, 3 };
+		cache.put("a", image);
+		
+		Assert.assertSame(image, cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+	}
+	
+	/**
+	 * @see {@link RenderedChartCache#get(String)}
+	 */
+	@Test
+	@Verifies(value = "should drop the least recently used image when full", method = "get(String)")
+	public void get_shouldDropTheLeastRecentlyUsedImageWhenFull() throws Exception {
+		RenderedChartCache cache = new RenderedChartCache(2);
+		cache.put("a", new byte[0]);
+		cache.put("b", new byte[0]);
+		cache.get("a");
+		cache.put("c", new byte[0]);
+		
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNotNull(cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+		Assert.assertNotNull(cache.get("c"));
+	}
+}
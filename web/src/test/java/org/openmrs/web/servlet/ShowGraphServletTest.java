@@ -15,12 +15,15 @@ package org.openmrs.web.servlet;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.jfree.chart.JFreeChart;
 import org.junit.Assert;
 import org.junit.Test;
+import org.openmrs.api.ObsService;
+import org.openmrs.api.context.Context;
 import org.openmrs.test.Verifies;
 import org.openmrs.web.test.BaseWebContextSensitiveTest;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -132,4 +135,58 @@ public class ShowGraphServletTest extends BaseWebContextSensitiveTest {
 		Assert.assertEquals(0, toDate.getSeconds());
 	}
 	
+	/**
+	 * @see {@link ShowGraphServlet#getCacheKey(HttpServletRequest)}
+	 */
+	@Test
+	@Verifies(value = "should change when an obs of the patient for the concept is voided", method = "getCacheKey(HttpServletRequest)")
+	public void getCacheKey_shouldChangeWhenAnObsOfThePatientForTheConceptIsVoided() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setParameter("patientId", "7");
+		request.setParameter("conceptId", "5089"); // weight
+		
+		ShowGraphServlet servlet = new ShowGraphServlet();
+		String key = servlet.getCacheKey(request);
+		Assert.assertEquals(key, servlet.getCacheKey(request));
+		
+		ObsService os = Context.getObsService();
+		os.voidObs(os.getObs(10), "testing");
+		Context.flushSession();
+		Assert.assertFalse(key.equals(servlet.getCacheKey(request)));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#getCacheKey(HttpServletRequest)}
+	 */
+	@Test
+	@Verifies(value = "should return null without a patient or concept", method = "getCacheKey(HttpServletRequest)")
+	public void getCacheKey_shouldReturnNullWithoutAPatientOrConcept() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setParameter("patientId", "7");
+		
+		Assert.assertNull(new ShowGraphServlet().getCacheKey(request));
+	}
+	
+	/**
+	 * @see {@link ShowGraphServlet#getCacheKey(HttpServletRequest)}
+	 */
+	@Test
+	@Verifies(value = "should change with the locale of the user", method = "getCacheKey(HttpServletRequest)")
+	public void getCacheKey_shouldChangeWithTheLocaleOfTheUser() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setParameter("patientId", "7");
+		request.setParameter("conceptId", "5089"); // weight
+		
+		ShowGraphServlet servlet = new ShowGraphServlet();
+		Locale locale = Context.getLocale();
+		try {
+			Context.setLocale(Locale.ENGLISH);
+			String key = servlet.getCacheKey(request);
+			Context.setLocale(Locale.FRENCH);
+			Assert.assertFalse(key.equals(servlet.getCacheKey(request)));
+		}
+		finally {
+			Context.setLocale(locale);
+		}
+	}
 }
@@ -100,7 +100,12 @@
 		);
 		
 		searchWidget.findObjects = function(phrase) {
-			if (searchOn.length > 1)
+			var likelyDuplicates = false;
+			for (var i = 0; i < searchOn.length; i++) {
+				if (searchOn[i] == "likelyDuplicates")
+					likelyDuplicates = true;
+			}
+			if (searchOn.length > 1 || likelyDuplicates)
 				DWRPatientService.findDuplicatePatients(searchOn, searchWidget.simpleClosure(searchWidget, "doObjectsFound"));
 		}
 		
@@ -123,6 +128,7 @@
 <input type="checkbox" name="attr" id="middleName" value="middleName" onclick="selectAttribute(this)" onactivate="selectAttribute(this)"/><label for="middleName"><spring:message code="PersonName.middleName"/></label> <br/>
 <input type="checkbox" name="attr" id="familyName" value="familyName" onclick="selectAttribute(this)" onactivate="selectAttribute(this)"/><label for="familyName"><spring:message code="PersonName.familyName"/></label> <br/>
 <br/>
+<input type="checkbox" name="attr" id="likelyDuplicates" value="likelyDuplicates" onclick="selectAttribute(this)" onactivate="selectAttribute(this)"/><label for="likelyDuplicates"><spring:message code="Patient.merge.likelyDuplicates"/></label> <br/>
 <input type="checkbox" name="attr" id="includeVoided" value="includeVoided" onclick="selectAttribute(this)" onactivate="selectAttribute(this)"/><label for="includeVoided"><spring:message code="Patient.merge.includeVoided"/></label> <br/>
 
 <br />
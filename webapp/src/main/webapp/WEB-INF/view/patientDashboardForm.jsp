@@ -109,7 +109,7 @@
 	</div>
 </c:if>
 
-<openmrs:portlet url="patientHeader" id="patientDashboardHeader" patientId="${patient.patientId}"/>
+<openmrs:portlet url="patientHeader" id="patientDashboardHeader" patientId="${patient.patientId}" parameters="mostRecentObsConceptIds=5096"/>
 
 <openmrs:globalProperty var="enableFormEntryTab" key="FormEntry.enableDashboardTab" defaultValue="true"/>
 
@@ -143,20 +143,20 @@
 					<small>
 						(
 						<spring:message code="Patient.weight"/>:
-						<openmrs_tag:mostRecentObs observations="${model.patientObs}" concept="${weightConceptId}" showUnits="true" locale="${model.locale}" showDate="false" />
+						<openmrs_tag:mostRecentObs observations="${model.patientMostRecentObs}" concept="${weightConceptId}" showUnits="true" locale="${model.locale}" showDate="false" />
 						,
 						<spring:message code="Patient.height"/>:
-						<openmrs_tag:mostRecentObs observations="${model.patientObs}" concept="${heightConceptId}" showUnits="true" locale="${model.locale}" showDate="false" />
+						<openmrs_tag:mostRecentObs observations="${model.patientMostRecentObs}" concept="${heightConceptId}" showUnits="true" locale="${model.locale}" showDate="false" />
 						)
 					</small>
 				</th>
 				<td id="patientHeaderObsCD4">
 					<spring:message code="Patient.cd4"/>:
-					<openmrs_tag:mostRecentObs observations="${model.patientObs}" concept="${cd4ConceptId}" locale="${model.locale}" />
+					<openmrs_tag:mostRecentObs observations="${model.patientMostRecentObs}" concept="${cd4ConceptId}" locale="${model.locale}" />
 				</td>
 				<td id="patientHeaderObsReturnVisit">
 					<spring:message code="Patient.returnVisit"/>:
-					<openmrs_tag:mostRecentObs observations="${model.patientObs}" concept="5096" locale="${model.locale}" />
+					<openmrs_tag:mostRecentObs observations="${model.patientMostRecentObs}" concept="5096" locale="${model.locale}" />
 				</td>
 				<td id="patientHeaderObsRegimen">
 					<spring:message code="Patient.regimen" />: